@@ -7,6 +7,7 @@ import org.acme.entities.MemoryCluster;
 import org.acme.entities.MemoryFragment;
 import org.acme.repositories.MemoryClusterRepository;
 import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.services.ArchivedMemorySearchService;
 import org.acme.services.MemoryCleanupService;
 import org.eclipse.microprofile.reactive.messaging.Channel;
 import org.eclipse.microprofile.reactive.messaging.Emitter;
@@ -19,10 +20,13 @@ import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 
 import jakarta.inject.Inject;
+import jakarta.ws.rs.BadRequestException;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
@@ -39,6 +43,7 @@ import jakarta.ws.rs.core.Response;
  *   <li><strong>Memory Operations:</strong> Store new conversational content</li>
  *   <li><strong>Cluster Monitoring:</strong> View clustering status and statistics</li>
  *   <li><strong>Cleanup Management:</strong> Manual cleanup operations and statistics</li>
+ *   <li><strong>Archive Search:</strong> Similarity search over quantized archived memories</li>
  *   <li><strong>System Diagnostics:</strong> Embedding store analysis and debugging</li>
  * </ul>
  * 
@@ -66,6 +71,9 @@ public class MemoryResource {
     @Inject
     MemoryCleanupService cleanupService;
 
+    @Inject
+    ArchivedMemorySearchService archiveSearch;
+
     @Inject
     MemoryFragmentRepository memoryFragmentRepository;
 
@@ -213,6 +221,38 @@ public class MemoryResource {
         return cleanupService.performManualCleanup();
     }
 
+    /**
+     * Searches archived memory fragments by semantic similarity.
+     * 
+     * <p>Archived fragments are no longer in the embedding store; they are scored
+     * directly against their 4-bit quantized codes. Similarities are therefore
+     * approximate but remain suitable for ranking.</p>
+     * 
+     * @param query the query text
+     * @param limit maximum number of results (default 10)
+     * @return Plain text list of matching archived fragments with similarity scores
+     */
+    @GET
+    @Path("/archive/search")
+    @Produces(MediaType.TEXT_PLAIN)
+    public String searchArchive(@QueryParam("q") String query, @QueryParam("limit") @DefaultValue("10") int limit) {
+        if (query == null || query.isBlank()) {
+            throw new BadRequestException("Query parameter 'q' is required");
+        }
+
+        List<ArchivedMemorySearchService.ArchivedMatch> matches = archiveSearch.search(query, limit);
+
+        StringBuilder result = new StringBuilder();
+        result.append("=== ARCHIVE SEARCH ===\n");
+        result.append("Archived fragments: ").append(archiveSearch.size())
+                .append(" (").append(archiveSearch.getMemoryUsageBytes()).append(" bytes of codes)\n");
+        result.append("Matches: ").append(matches.size()).append("\n\n");
+        for (ArchivedMemorySearchService.ArchivedMatch match : matches) {
+            result.append(String.format("[%.4f] #%d %s\n", match.similarity(), match.fragmentId(), match.text()));
+        }
+        return result.toString();
+    }
+
     /**
      * Lists and analyzes stored embeddings with comprehensive metadata.
      * 
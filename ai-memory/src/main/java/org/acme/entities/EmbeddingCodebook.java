@@ -0,0 +1,103 @@
+package org.acme.entities;
+
+import java.time.LocalDateTime;
+
+import org.hibernate.annotations.Array;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Table;
+
+/**
+ * Entity persisting a calibrated per-dimension quantization codebook.
+ *
+ * <p>Quantized embeddings are only meaningful together with the codebook that produced
+ * them, so every {@link MemoryFragment} with quantized codes references the codebook by ID.
+ * Recalibration creates a new row instead of updating an existing one, which keeps older
+ * codes decodable.</p>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ * @see org.acme.util.QuantizationCodebook
+ */
+@Entity
+@Table(name = "embedding_codebooks")
+public class EmbeddingCodebook extends PanacheEntity {
+
+    /**
+     * Code width in bits, either 8 or 4.
+     */
+    @Column(name = "bits")
+    private Integer bits;
+
+    /**
+     * Lower bound of every dimension of the normalized embeddings.
+     */
+    @JdbcTypeCode(SqlTypes.VECTOR)
+    @Array(length = 384)
+    @Column(name = "min_values")
+    private float[] minValues;
+
+    /**
+     * Width of one quantization step of every dimension.
+     */
+    @JdbcTypeCode(SqlTypes.VECTOR)
+    @Array(length = 384)
+    @Column(name = "scales")
+    private float[] scales;
+
+    /**
+     * Number of embeddings the ranges were calibrated from.
+     */
+    @Column(name = "sample_size")
+    private Integer sampleSize;
+
+    /**
+     * Timestamp of the calibration.
+     */
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    public Integer getBits() {
+        return bits;
+    }
+
+    public void setBits(Integer bits) {
+        this.bits = bits;
+    }
+
+    public float[] getMinValues() {
+        return minValues;
+    }
+
+    public void setMinValues(float[] minValues) {
+        this.minValues = minValues;
+    }
+
+    public float[] getScales() {
+        return scales;
+    }
+
+    public void setScales(float[] scales) {
+        this.scales = scales;
+    }
+
+    public Integer getSampleSize() {
+        return sampleSize;
+    }
+
+    public void setSampleSize(Integer sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
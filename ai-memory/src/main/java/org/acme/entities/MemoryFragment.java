@@ -4,6 +4,7 @@ import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.acme.util.QuantizedEmbedding;
 import org.hibernate.annotations.Array;
 import org.hibernate.annotations.JdbcTypeCode;
 import org.hibernate.type.SqlTypes;
@@ -86,16 +87,41 @@ public class MemoryFragment extends PanacheEntity {
     /**
      * Compressed embedding representation for efficient storage and archival.
      * 
-     * <p>This scalar-quantized version of the embedding reduces storage requirements
-     * while preserving approximate semantic information. Used for:
+     * <p>Per-dimension scalar-quantized codes of the embedding (one byte per dimension
+     * for 8-bit codes, two dimensions per byte for 4-bit codes). Used for:
      * <ul>
      *   <li>Long-term archival storage</li>
      *   <li>Memory-constrained operations</li>
      *   <li>Approximate similarity when precision isn't critical</li>
      * </ul>
+     * 
+     * <p>Codes are interpreted with the codebook referenced by {@link #codebookId}.</p>
      */
     @Column(name = "quantized_embedding")
-    private byte quantizedEmbedding;
+    private byte[] quantizedEmbedding;
+
+    /**
+     * Code width of {@link #quantizedEmbedding} in bits (8 or 4).
+     */
+    @Column(name = "quantization_bits")
+    private Integer quantizationBits;
+
+    /**
+     * ID of the {@link EmbeddingCodebook} the quantized codes were created with,
+     * or null for the uncalibrated fallback codebook.
+     */
+    @Column(name = "codebook_id")
+    private Long codebookId;
+
+    /**
+     * Whether this fragment has been archived.
+     * 
+     * <p>Archived fragments only keep their 4-bit quantized codes: the full-precision
+     * embedding is dropped and the fragment is removed from the embedding store. They
+     * remain searchable through the archive search.</p>
+     */
+    @Column(name = "archived")
+    private boolean archived = false;
 
     /**
      * The hierarchical abstraction level of this memory fragment.
@@ -260,23 +286,100 @@ public class MemoryFragment extends PanacheEntity {
     }
 
     /**
-     * Gets the quantized embedding for efficient storage.
+     * Gets the quantized embedding codes.
      * 
-     * @return the compressed embedding byte value
+     * @return the packed quantized codes, or null if not quantized
      */
-    public byte getQuantizedEmbedding() {
+    public byte[] getQuantizedEmbedding() {
         return quantizedEmbedding;
     }
 
     /**
-     * Sets the quantized embedding.
+     * Sets the quantized embedding codes.
      * 
-     * @param quantizedEmbedding the compressed embedding byte value
+     * @param quantizedEmbedding the packed quantized codes
      */
-    public void setQuantizedEmbedding(byte quantizedEmbedding) {
+    public void setQuantizedEmbedding(byte[] quantizedEmbedding) {
         this.quantizedEmbedding = quantizedEmbedding;
     }
 
+    /**
+     * Gets the code width of the quantized embedding.
+     * 
+     * @return 8 or 4, or null if not quantized
+     */
+    public Integer getQuantizationBits() {
+        return quantizationBits;
+    }
+
+    /**
+     * Sets the code width of the quantized embedding.
+     * 
+     * @param quantizationBits 8 or 4
+     */
+    public void setQuantizationBits(Integer quantizationBits) {
+        this.quantizationBits = quantizationBits;
+    }
+
+    /**
+     * Gets the ID of the codebook the quantized codes were created with.
+     * 
+     * @return the codebook ID, or null for the uncalibrated fallback codebook
+     */
+    public Long getCodebookId() {
+        return codebookId;
+    }
+
+    /**
+     * Sets the ID of the codebook the quantized codes were created with.
+     * 
+     * @param codebookId the codebook ID
+     */
+    public void setCodebookId(Long codebookId) {
+        this.codebookId = codebookId;
+    }
+
+    /**
+     * Sets the quantized codes together with their code width and codebook.
+     * 
+     * @param quantized the quantized embedding, or null to clear it
+     */
+    public void setQuantized(QuantizedEmbedding quantized) {
+        this.quantizedEmbedding = quantized != null ? quantized.codes() : null;
+        this.quantizationBits = quantized != null ? quantized.bits() : null;
+        this.codebookId = quantized != null ? quantized.codebookId() : null;
+    }
+
+    /**
+     * Gets the quantized codes together with their code width and codebook.
+     * 
+     * @return the quantized embedding, or null if not quantized
+     */
+    public QuantizedEmbedding getQuantized() {
+        if (quantizedEmbedding == null || quantizationBits == null) {
+            return null;
+        }
+        return new QuantizedEmbedding(quantizedEmbedding, quantizationBits, codebookId);
+    }
+
+    /**
+     * Checks whether this fragment has been archived.
+     * 
+     * @return true if only the quantized codes are kept
+     */
+    public boolean isArchived() {
+        return archived;
+    }
+
+    /**
+     * Sets whether this fragment has been archived.
+     * 
+     * @param archived true if only the quantized codes are kept
+     */
+    public void setArchived(boolean archived) {
+        this.archived = archived;
+    }
+
     /**
      * Gets the abstraction level of this memory fragment.
      * 
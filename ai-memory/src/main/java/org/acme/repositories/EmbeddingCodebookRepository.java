@@ -0,0 +1,28 @@
+package org.acme.repositories;
+
+import java.util.Optional;
+
+import org.acme.entities.EmbeddingCodebook;
+
+import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import jakarta.enterprise.context.ApplicationScoped;
+
+/**
+ * Repository for persisted quantization codebooks.
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+@ApplicationScoped
+public class EmbeddingCodebookRepository implements PanacheRepository<EmbeddingCodebook> {
+
+    /**
+     * Finds the most recent codebook for a code width.
+     *
+     * @param bits 8 or 4
+     * @return Optional containing the latest codebook, empty if none was calibrated yet
+     */
+    public Optional<EmbeddingCodebook> findLatest(int bits) {
+        return find("bits = ?1 ORDER BY createdAt DESC, id DESC", bits).firstResultOptional();
+    }
+}
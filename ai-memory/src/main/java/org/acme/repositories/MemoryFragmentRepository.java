@@ -1,10 +1,14 @@
 package org.acme.repositories;
 
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
 import java.util.List;
 
 import org.acme.entities.MemoryFragment;
+import org.hibernate.Session;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.panache.common.Parameters;
 import jakarta.enterprise.context.ApplicationScoped;
 
 /**
@@ -48,12 +52,13 @@ public class MemoryFragmentRepository implements PanacheRepository<MemoryFragmen
      * <ul>
      *   <li>clusterId is null (not assigned to any cluster)</li>
      *   <li>abstractionLevel = 1 (original content, not abstractions)</li>
+     *   <li>not archived (archived fragments no longer carry a full embedding)</li>
      * </ul>
      * 
      * @return List of unclustered memory fragments ready for clustering
      */
     public List<MemoryFragment> findUnclustered() {
-        return find("clusterId is null AND abstractionLevel = 1").list();
+        return find("clusterId is null AND abstractionLevel = 1 AND archived = false").list();
     }
     
     /**
@@ -135,4 +140,171 @@ public class MemoryFragmentRepository implements PanacheRepository<MemoryFragmen
     public List<MemoryFragment> findAbstractions() {
         return find("abstractionLevel > 1").list();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Finds all archived memory fragments.
+     * 
+     * <p>Archived fragments only keep their quantized codes and are searched
+     * through the archive index instead of the embedding store.</p>
+     * 
+     * @return List of archived memory fragments
+     */
+    public List<MemoryFragment> findArchived() {
+        return find("archived = true").list();
+    }
+
+    /**
+     * Lightweight reference to a fragment, enough to remove it from every store
+     * and to maintain the memory counters without loading text or embeddings.
+     *
+     * @param id               the fragment ID
+     * @param archived         whether the fragment is archived
+     * @param abstractionLevel the abstraction level
+     * @param importanceScore  the importance score, may be null
+     */
+    public record FragmentRef(Long id, boolean archived, Integer abstractionLevel, Double importanceScore) {
+    }
+
+    // Hibernate instantiates FragmentRef from the matching selection
+    private static final String REF_SELECT =
+            "SELECT f.id, f.archived, f.abstractionLevel, f.importanceScore ";
+
+    /**
+     * Finds the next keyset page of fragment references matching a condition.
+     * 
+     * <p>Used by the cleanup engine to walk large tables in bounded batches.
+     * The condition is a JPQL predicate on alias {@code f} with named parameters;
+     * pages are ordered by ID and start after {@code afterId}.</p>
+     * 
+     * @param condition JPQL predicate on alias {@code f}
+     * @param parameters named parameters of the condition
+     * @param afterId only IDs greater than this are returned
+     * @param limit maximum page size
+     * @return the next page of references, ordered by ID
+     */
+    public List<FragmentRef> findRefsAfter(String condition, Parameters parameters, long afterId, int limit) {
+        var query = getEntityManager().createQuery(
+                REF_SELECT + "FROM MemoryFragment f WHERE (" + condition + ") AND f.id > :afterId ORDER BY f.id",
+                FragmentRef.class);
+        parameters.map().forEach(query::setParameter);
+        return query.setParameter("afterId", afterId).setMaxResults(limit).getResultList();
+    }
+
+    /**
+     * Finds the fragment references with the lowest importance scores.
+     * 
+     * @param limit maximum number of references
+     * @return references ordered by ascending importance (missing scores first)
+     */
+    public List<FragmentRef> findLeastImportantRefs(int limit) {
+        return getEntityManager().createQuery(
+                REF_SELECT + "FROM MemoryFragment f ORDER BY f.importanceScore ASC NULLS FIRST, f.id",
+                FragmentRef.class)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Finds the next keyset page of old original fragments that still carry a
+     * full embedding and are due for archival.
+     * 
+     * @param cutoffDate fragments created before this date are returned
+     * @param afterId only IDs greater than this are returned
+     * @param limit maximum page size
+     * @return the next page of fragments, ordered by ID
+     */
+    public List<MemoryFragment> findArchivableAfter(LocalDateTime cutoffDate, long afterId, int limit) {
+        return find("abstractionLevel = 1 AND archived = false AND embedding IS NOT NULL "
+                + "AND createdAt < ?1 AND id > ?2 ORDER BY id", cutoffDate, afterId)
+                .page(0, limit)
+                .list();
+    }
+
+    /**
+     * Finds the references of the direct children of the given abstractions.
+     * 
+     * @param parentIds IDs of the parent abstractions
+     * @return references of their children, ordered by ID
+     */
+    public List<FragmentRef> findChildRefs(List<Long> parentIds) {
+        return getEntityManager().createQuery(
+                REF_SELECT + "FROM MemoryFragment f WHERE f.parentMemory.id IN :parentIds ORDER BY f.id",
+                FragmentRef.class)
+                .setParameter("parentIds", parentIds)
+                .getResultList();
+    }
+
+    /**
+     * Aggregated fragment counts, computed in a single query.
+     *
+     * @param total            total number of fragments
+     * @param original         fragments at abstraction level 1
+     * @param abstracted       fragments at abstraction level 2+
+     * @param archived         archived fragments
+     * @param importanceSum    sum of importance scores (0.5 for missing scores)
+     * @param recentlyAccessed fragments accessed after the given timestamp
+     */
+    public record FragmentCounts(long total, long original, long abstracted, long archived,
+            double importanceSum, long recentlyAccessed) {
+    }
+
+    /**
+     * Computes all fragment counts in one aggregate query instead of loading fragments.
+     * 
+     * @param recentSince fragments accessed after this timestamp count as recently accessed
+     * @return the aggregated counts
+     */
+    public FragmentCounts countSummary(LocalDateTime recentSince) {
+        Object[] row = getEntityManager().createQuery(
+                "SELECT count(f), "
+                        + "coalesce(sum(CASE WHEN f.abstractionLevel = 1 THEN 1 ELSE 0 END), 0), "
+                        + "coalesce(sum(CASE WHEN f.abstractionLevel > 1 THEN 1 ELSE 0 END), 0), "
+                        + "coalesce(sum(CASE WHEN f.archived = true THEN 1 ELSE 0 END), 0), "
+                        + "coalesce(sum(coalesce(f.importanceScore, 0.5)), 0.0), "
+                        + "coalesce(sum(CASE WHEN f.lastAccessed > :recentSince THEN 1 ELSE 0 END), 0) "
+                        + "FROM MemoryFragment f",
+                Object[].class)
+                .setParameter("recentSince", recentSince)
+                .getSingleResult();
+        return new FragmentCounts(
+                ((Number) row[0]).longValue(),
+                ((Number) row[1]).longValue(),
+                ((Number) row[2]).longValue(),
+                ((Number) row[3]).longValue(),
+                ((Number) row[4]).doubleValue(),
+                ((Number) row[5]).longValue());
+    }
+
+    /**
+     * Accesses of one fragment recorded since the last flush.
+     *
+     * @param id           the fragment ID
+     * @param count        number of accesses to add
+     * @param lastAccessed the latest of these accesses
+     */
+    public record AccessUpdate(Long id, int count, LocalDateTime lastAccessed) {
+    }
+
+    /**
+     * Adds recorded accesses in one JDBC batch. The last access of a fragment only
+     * ever moves forward, so a late flush never overwrites a newer value.
+     *
+     * @param updates the accesses to add, at most one per fragment
+     */
+    public void addAccesses(List<AccessUpdate> updates) {
+        getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "UPDATE memory_fragments SET access_count = coalesce(access_count, 0) + ?, "
+                            + "last_accessed = greatest(coalesce(last_accessed, ?), ?) WHERE id = ?")) {
+                for (AccessUpdate access : updates) {
+                    update.setInt(1, access.count());
+                    update.setObject(2, access.lastAccessed());
+                    update.setObject(3, access.lastAccessed());
+                    update.setLong(4, access.id());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        });
+    }
+}
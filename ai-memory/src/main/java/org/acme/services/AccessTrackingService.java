@@ -0,0 +1,96 @@
+package org.acme.services;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.repositories.MemoryFragmentRepository.AccessUpdate;
+
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+
+/**
+ * Batches memory access tracking off the retrieval path.
+ *
+ * <p>Retrieval only records accesses in memory; they are aggregated per fragment and
+ * written periodically in one JDBC batch. Accesses of a failed flush are kept for the
+ * next one; accesses not yet flushed are lost if the process dies. The in-memory
+ * ranking attributes of {@link MemoryIndexService} are updated immediately, so ranking
+ * does not wait for the flush.</p>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+@ApplicationScoped
+public class AccessTrackingService {
+
+    @Inject
+    MemoryFragmentRepository fragmentRepository;
+
+    @Inject
+    MemoryIndexService memoryIndex;
+
+    private final Map<Long, PendingAccess> pending = new ConcurrentHashMap<>();
+
+    private record PendingAccess(int count, LocalDateTime lastAccessed) {
+        PendingAccess merge(PendingAccess other) {
+            return new PendingAccess(count + other.count,
+                    lastAccessed.isAfter(other.lastAccessed) ? lastAccessed : other.lastAccessed);
+        }
+    }
+
+    /**
+     * Records that a fragment was returned by retrieval.
+     *
+     * @param fragmentId the retrieved fragment ID
+     */
+    public void recordAccess(Long fragmentId) {
+        LocalDateTime now = LocalDateTime.now();
+        pending.merge(fragmentId, new PendingAccess(1, now), PendingAccess::merge);
+        memoryIndex.recordAccess(fragmentId, now);
+    }
+
+    /**
+     * Writes the pending access counts to the database.
+     */
+    @Scheduled(every = "5s", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void flush() {
+        // Drain per key so concurrent accesses are either flushed now or kept for the next run
+        List<AccessUpdate> batch = new ArrayList<>(pending.size());
+        for (Long fragmentId : pending.keySet()) {
+            PendingAccess access = pending.remove(fragmentId);
+            if (access != null) {
+                batch.add(new AccessUpdate(fragmentId, access.count(), access.lastAccessed()));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> fragmentRepository.addAccesses(batch));
+            Log.debugf("AccessTracking: Flushed access tracking for %d memories", batch.size());
+        } catch (RuntimeException e) {
+            // Keep the accesses for the next flush
+            batch.forEach(access -> pending.merge(access.id(),
+                    new PendingAccess(access.count(), access.lastAccessed()), PendingAccess::merge));
+            Log.warnf("AccessTracking: Could not flush access tracking for %d memories: %s",
+                    batch.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Flushes remaining accesses on shutdown.
+     */
+    void onStop(@Observes ShutdownEvent event) {
+        flush();
+    }
+}
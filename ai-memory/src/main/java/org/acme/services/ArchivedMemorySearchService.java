@@ -0,0 +1,220 @@
+package org.acme.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import org.acme.entities.MemoryFragment;
+import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.util.QuantizationCodebook;
+import org.acme.util.QuantizedEmbedding;
+import org.acme.util.ScalarQuantizer;
+
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+/**
+ * Similarity search over archived memory fragments.
+ *
+ * <p>Archived fragments no longer have a full-precision embedding and are not part of
+ * the embedding store. This service keeps their 4-bit quantized codes packed in memory,
+ * grouped by codebook, and scores queries directly against the codes using asymmetric
+ * distance computation. A 384-dimensional fragment costs 192 bytes in this index instead
+ * of 1536 bytes as a float vector.</p>
+ *
+ * <p>The index is loaded at startup and kept up to date by the cleanup service as
+ * fragments are archived or removed.</p>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+@ApplicationScoped
+public class ArchivedMemorySearchService {
+
+    @Inject
+    MemoryFragmentRepository fragmentRepository;
+
+    @Inject
+    ScalarQuantizer quantizer;
+
+    @Inject
+    EmbeddingModel embeddingModel;
+
+    /**
+     * Packed codes per codebook ID (null key for the uncalibrated fallback codebook).
+     */
+    private final Map<Long, Segment> segments = new HashMap<>();
+
+    /**
+     * A scored archived fragment.
+     *
+     * @param fragmentId   ID of the archived fragment
+     * @param text         the fragment text
+     * @param similarity   approximate cosine similarity to the query
+     */
+    public record ArchivedMatch(Long fragmentId, String text, double similarity) {
+    }
+
+    /**
+     * Loads the codes of all archived fragments into the in-memory index.
+     */
+    @Transactional
+    void loadIndex(@Observes StartupEvent event) {
+        List<MemoryFragment> archived = fragmentRepository.findArchived();
+        for (MemoryFragment fragment : archived) {
+            add(fragment.id, fragment.getQuantized());
+        }
+        Log.infof("Archive: Loaded %d archived fragments (%d bytes of codes)", size(), getMemoryUsageBytes());
+    }
+
+    /**
+     * Adds or replaces the codes of an archived fragment.
+     *
+     * <p>Must be called with an active transaction if the codebook is not cached yet.</p>
+     *
+     * @param fragmentId the fragment ID
+     * @param quantized the fragment's quantized codes
+     */
+    public synchronized void add(Long fragmentId, QuantizedEmbedding quantized) {
+        if (quantized == null) {
+            return;
+        }
+        remove(fragmentId);
+        Segment segment = segments.get(quantized.codebookId());
+        if (segment == null) {
+            segment = new Segment(quantizer.codebook(quantized.bits(), quantized.codebookId()));
+            segments.put(quantized.codebookId(), segment);
+        }
+        segment.add(fragmentId, quantized.codes());
+    }
+
+    /**
+     * Removes a fragment from the index, if present.
+     *
+     * @param fragmentId the fragment ID
+     */
+    public synchronized void remove(Long fragmentId) {
+        for (Segment segment : segments.values()) {
+            if (segment.remove(fragmentId)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the archived fragments most similar to a query text.
+     *
+     * @param query the query text
+     * @param limit maximum number of matches
+     * @return matches ordered by descending similarity
+     */
+    @Transactional
+    public List<ArchivedMatch> search(String query, int limit) {
+        float[] queryVector = embeddingModel.embed(query).content().vector();
+
+        // Min-heap keeping the best 'limit' candidates
+        PriorityQueue<Candidate> best = new PriorityQueue<>((x, y) -> Float.compare(x.similarity, y.similarity));
+        synchronized (this) {
+            for (Segment segment : segments.values()) {
+                QuantizationCodebook.Query prepared = segment.codebook.prepare(queryVector);
+                int stride = segment.codebook.codeBytes();
+                for (int i = 0; i < segment.size; i++) {
+                    float similarity = segment.codebook.similarity(prepared, segment.codes, i * stride);
+                    if (best.size() < limit) {
+                        best.add(new Candidate(segment.ids[i], similarity));
+                    } else if (limit > 0 && similarity > best.peek().similarity) {
+                        best.poll();
+                        best.add(new Candidate(segment.ids[i], similarity));
+                    }
+                }
+            }
+        }
+
+        List<ArchivedMatch> matches = new ArrayList<>(best.size());
+        for (Candidate candidate : best) {
+            MemoryFragment fragment = fragmentRepository.findById(candidate.fragmentId);
+            if (fragment != null) {
+                matches.add(new ArchivedMatch(fragment.id, fragment.getOriginalText(), candidate.similarity));
+            }
+        }
+        matches.sort((a, b) -> Double.compare(b.similarity(), a.similarity()));
+        return matches;
+    }
+
+    /**
+     * @return the number of indexed archived fragments
+     */
+    public synchronized int size() {
+        int size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of bytes used by the packed codes
+     */
+    public synchronized long getMemoryUsageBytes() {
+        long bytes = 0;
+        for (Segment segment : segments.values()) {
+            bytes += (long) segment.size * segment.codebook.codeBytes();
+        }
+        return bytes;
+    }
+
+    private record Candidate(long fragmentId, float similarity) {
+    }
+
+    /**
+     * Fixed-stride packed codes of all fragments quantized with one codebook.
+     */
+    private static final class Segment {
+        private final QuantizationCodebook codebook;
+        private final Map<Long, Integer> positions = new HashMap<>();
+        private long[] ids = new long[64];
+        private byte[] codes;
+        private int size;
+
+        Segment(QuantizationCodebook codebook) {
+            this.codebook = codebook;
+            this.codes = new byte[ids.length * codebook.codeBytes()];
+        }
+
+        void add(long id, byte[] fragmentCodes) {
+            int stride = codebook.codeBytes();
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+                codes = Arrays.copyOf(codes, size * 2 * stride);
+            }
+            ids[size] = id;
+            System.arraycopy(fragmentCodes, 0, codes, size * stride, stride);
+            positions.put(id, size);
+            size++;
+        }
+
+        boolean remove(long id) {
+            Integer position = positions.remove(id);
+            if (position == null) {
+                return false;
+            }
+            // Move the last entry into the hole to keep the codes contiguous
+            int last = --size;
+            if (position != last) {
+                int stride = codebook.codeBytes();
+                ids[position] = ids[last];
+                System.arraycopy(codes, last * stride, codes, position * stride, stride);
+                positions.put(ids[position], position);
+            }
+            return true;
+        }
+    }
+}
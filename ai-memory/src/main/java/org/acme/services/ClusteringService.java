@@ -12,7 +12,6 @@ import org.acme.entities.MemoryFragment;
 import org.acme.repositories.MemoryClusterRepository;
 import org.acme.repositories.MemoryFragmentRepository;
 import org.acme.util.DBSCANClusterer;
-import org.acme.util.DBSCANClusterer.MemoryFragmentCosineDistance;
 
 import io.quarkus.logging.Log;
 import io.quarkus.scheduler.Scheduled;
@@ -59,7 +58,8 @@ public class ClusteringService {
      * and groups them using the DBSCAN algorithm. The clustering process:</p>
      * <ol>
      *   <li>Fetches all unclustered memory fragments from the database</li>
-     *   <li>Applies DBSCAN clustering with configurable epsilon and minimum points parameters</li>
+     *   <li>Applies DBSCAN clustering with configurable epsilon and minimum points parameters,
+     *       using a packed embedding matrix and a VP-tree neighbor index</li>
      *   <li>Creates cluster entities with prototype vectors and meaningful themes</li>
      *   <li>Updates fragment records with their assigned cluster IDs</li>
      *   <li>Persists cluster metadata for future retrieval optimization</li>
@@ -92,37 +92,11 @@ public class ClusteringService {
         Log.infof("Clustering: Found %d unclustered fragments ready for clustering", unclusteredFragments.size());
 
         // Debug: Check embedding availability
-        int fragmentsWithEmbeddings = 0;
-        for (MemoryFragment fragment : unclusteredFragments) {
-            if (fragment.getEmbedding() != null) {
-                fragmentsWithEmbeddings++;
-            }
-        }
-        Log.infof("Clustering: %d fragments have embeddings out of %d total", fragmentsWithEmbeddings, unclusteredFragments.size());
-
-        // Debug: Sample distance calculation
-        if (unclusteredFragments.size() >= 2) {
-            MemoryFragment frag1 = unclusteredFragments.get(0);
-            MemoryFragment frag2 = unclusteredFragments.get(1);
-            MemoryFragmentCosineDistance distanceFunc = new MemoryFragmentCosineDistance();
-            double sampleDistance = distanceFunc.distance(frag1, frag2);
-            Log.infof("Clustering: Sample distance between fragments 1 and 2: %f", sampleDistance);
-            Log.infof("Clustering: Fragment 1 text: '%s'", frag1.getOriginalText().substring(0, Math.min(50, frag1.getOriginalText().length())));
-            Log.infof("Clustering: Fragment 2 text: '%s'", frag2.getOriginalText().substring(0, Math.min(50, frag2.getOriginalText().length())));
-        }
-
-        // Debug: Show all pairwise distances for better understanding
-        if (unclusteredFragments.size() >= 2) {
-            MemoryFragmentCosineDistance distanceFunc = new MemoryFragmentCosineDistance();
-            Log.infof("Clustering: Pairwise distances between all fragments:");
-            for (int i = 0; i < unclusteredFragments.size(); i++) {
-                for (int j = i + 1; j < unclusteredFragments.size(); j++) {
-                    double distance = distanceFunc.distance(unclusteredFragments.get(i), unclusteredFragments.get(j));
-                    Log.infof("Clustering: Distance between fragment %d and %d: %f", i + 1, j + 1, distance);
-                    Log.infof("Clustering: Fragment %d: '%s'", i + 1, unclusteredFragments.get(i).getOriginalText().substring(0, Math.min(40, unclusteredFragments.get(i).getOriginalText().length())));
-                    Log.infof("Clustering: Fragment %d: '%s'", j + 1, unclusteredFragments.get(j).getOriginalText().substring(0, Math.min(40, unclusteredFragments.get(j).getOriginalText().length())));
-                }
-            }
+        if (Log.isDebugEnabled()) {
+            long fragmentsWithEmbeddings = unclusteredFragments.stream()
+                    .filter(fragment -> fragment.getEmbedding() != null)
+                    .count();
+            Log.debugf("Clustering: %d fragments have embeddings out of %d total", fragmentsWithEmbeddings, unclusteredFragments.size());
         }
 
         // 2. Set up DBSCAN parameters - Much more selective to avoid cross-topic clustering
@@ -131,29 +105,19 @@ public class ClusteringService {
 
         Log.infof("Clustering: Using DBSCAN parameters - eps: %f, minPts: %d", eps, minPts);
 
-        // Debug: Show which fragments would be neighbors under the eps threshold
-        if (unclusteredFragments.size() >= 2) {
-            MemoryFragmentCosineDistance distanceFunc = new MemoryFragmentCosineDistance();
-            Log.infof("Clustering: Fragments that are neighbors (distance <= %f):", eps);
-            for (int i = 0; i < unclusteredFragments.size(); i++) {
-                for (int j = i + 1; j < unclusteredFragments.size(); j++) {
-                    double distance = distanceFunc.distance(unclusteredFragments.get(i), unclusteredFragments.get(j));
-                    if (distance <= eps) {
-                        Log.infof("Clustering: Fragments %d and %d are neighbors (distance: %f)", i + 1, j + 1, distance);
-                    }
-                }
-            }
-        }
-
         // 3. Run DBSCAN algorithm
-        DBSCANClusterer<MemoryFragment> dbscan = new DBSCANClusterer<>(
-            eps, minPts, new MemoryFragmentCosineDistance()
+        // Embeddings are packed into one normalized matrix and neighborhoods come from a VP-tree,
+        // instead of a pairwise scan with MemoryFragmentCosineDistance
+        DBSCANClusterer<MemoryFragment> dbscan = DBSCANClusterer.forEmbeddings(
+            eps, minPts, MemoryFragment::getEmbedding
         );
         
         Log.infof("Clustering: Running DBSCAN clustering algorithm...");
+        long start = System.nanoTime();
         List<Cluster<MemoryFragment>> clusters = dbscan.cluster(unclusteredFragments);
 
-        Log.infof("Clustering: DBSCAN completed, found %d clusters", clusters.size());
+        Log.infof("Clustering: DBSCAN completed in %d ms, found %d clusters",
+                (System.nanoTime() - start) / 1_000_000, clusters.size());
 
         // 4. Process the results
         int processedClusters = 0;
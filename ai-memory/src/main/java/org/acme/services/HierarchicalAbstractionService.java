@@ -64,6 +64,12 @@ public class HierarchicalAbstractionService {
 
     @Inject
     EmbeddingModel embeddingModel;
+
+    @Inject
+    MemoryIndexService memoryIndex;
+
+    @Inject
+    MemoryStatistics statistics;
     
     @Inject
     EmbeddingStore<TextSegment> embeddingStore;
@@ -172,9 +178,11 @@ public class HierarchicalAbstractionService {
                 
                 // 8. Persist the abstraction
                 fragmentRepository.persist(abstractedFragment);
+                statistics.fragmentAdded(abstractedFragment);
                 
-                // 9. Add to embedding store
+                // 9. Add to embedding store and the in-process ANN index
                 addAbstractionToEmbeddingStore(abstractedFragment);
+                memoryIndex.index(abstractedFragment);
                 
                 abstractionsCreated++;
                 Log.infof("Abstraction: Successfully created abstraction with ID %d for cluster %s", 
@@ -1,19 +1,30 @@
 package org.acme.services;
 
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
 import org.acme.entities.MemoryFragment;
 import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.repositories.MemoryFragmentRepository.FragmentRef;
+import org.acme.util.ScalarQuantizer;
 
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.panache.common.Parameters;
 import io.quarkus.scheduler.Scheduled;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 /**
  * Service responsible for managing memory lifecycle and preventing memory overflow.
@@ -27,6 +38,7 @@ import jakarta.transaction.Transactional;
  * <ul>
  *   <li><strong>Access-Based Cleanup:</strong> Removes rarely accessed memories</li>
  *   <li><strong>Age-Based Cleanup:</strong> Archives old memories based on creation date</li>
+ *   <li><strong>Quantized Archival:</strong> Keeps old memories searchable as 4-bit codes</li>
  *   <li><strong>Importance-Based Cleanup:</strong> Preserves high-importance memories</li>
  *   <li><strong>Hierarchy-Aware Cleanup:</strong> Manages abstraction levels intelligently</li>
  *   <li><strong>Duplicate Detection:</strong> Removes redundant memory fragments</li>
@@ -38,6 +50,12 @@ import jakarta.transaction.Transactional;
  *   <li><strong>Aggressive Cleanup:</strong> When memory usage exceeds configured thresholds</li>
  * </ul>
  * 
+ * <p>Selection criteria (age, access, importance, duplicates) are evaluated in SQL.
+ * Matching fragments are walked with keyset pagination in batches of
+ * {@value #BATCH_SIZE}, each batch in its own transaction, so a run never loads the
+ * whole table and never holds one long transaction. Memory counters come from
+ * {@link MemoryStatistics} instead of table scans.</p>
+ * 
  * @author AI Memory System
  * @since 1.0
  */
@@ -50,9 +68,16 @@ public class MemoryCleanupService {
     private static final int MAX_TOTAL_FRAGMENTS = 10000;
     
     /**
-     * Number of days to keep original (non-abstracted) memory fragments.
+     * Number of days to keep original (non-abstracted) memory fragments that were
+     * not archived. Originals older than {@link #DAYS_BEFORE_ARCHIVE} are archived
+     * instead, so in practice this only catches those that could not be archived.
      */
     private static final int DAYS_TO_KEEP_ORIGINAL = 30;
+
+    /**
+     * Number of days after which original memory fragments are archived as quantized codes.
+     */
+    private static final int DAYS_BEFORE_ARCHIVE = 14;
     
     /**
      * Number of days to keep abstracted memory fragments.
@@ -69,12 +94,37 @@ public class MemoryCleanupService {
      */
     private static final double MIN_IMPORTANCE_TO_PRESERVE = 0.7;
 
+    /**
+     * Number of fragments removed per transaction.
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * Number of fragments archived per transaction (these load full embeddings).
+     */
+    private static final int ARCHIVE_BATCH_SIZE = 100;
+
     @Inject
     MemoryFragmentRepository fragmentRepository;
 
     @Inject
     EmbeddingStore<TextSegment> embeddingStore;
 
+    @Inject
+    ScalarQuantizer quantizer;
+
+    @Inject
+    ArchivedMemorySearchService archiveSearch;
+
+    @Inject
+    MemoryIndexService memoryIndex;
+
+    @Inject
+    MemoryStatistics statistics;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
     /**
      * Performs periodic memory cleanup to maintain optimal system performance.
      * 
@@ -91,17 +141,25 @@ public class MemoryCleanupService {
      * 
      * @throws RuntimeException if cleanup operations fail due to database issues
      */
-    @Scheduled(every = "7h")
-    @Transactional
+    @Scheduled(every = "7h", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
     public void performCleanup() {
         Log.infof("Cleanup: Starting periodic memory cleanup task");
 
-        // Get current memory statistics
-        List<MemoryFragment> allFragments = fragmentRepository.listAll();
-        int totalFragments = allFragments.size();
-
+        long totalFragments = statistics.total();
         Log.infof("Cleanup: Current memory usage: %d fragments", totalFragments);
 
+        long remaining = runCleanup(totalFragments);
+        Log.infof("Cleanup: Cleanup completed - removed %d fragments, %d remaining",
+                totalFragments - remaining, remaining);
+    }
+
+    /**
+     * Runs the cleanup strategy matching the current memory usage.
+     * 
+     * @param totalFragments the current number of fragments
+     * @return the number of fragments remaining after cleanup
+     */
+    private synchronized long runCleanup(long totalFragments) {
         if (totalFragments <= MAX_TOTAL_FRAGMENTS) {
             Log.infof("Cleanup: Memory usage within limits (%d <= %d), running minimal cleanup",
                     totalFragments, MAX_TOTAL_FRAGMENTS);
@@ -112,11 +170,9 @@ public class MemoryCleanupService {
             runAggressiveCleanup();
         }
 
-        // Log final statistics
-        List<MemoryFragment> remainingFragments = fragmentRepository.listAll();
-        int fragmentsRemoved = totalFragments - remainingFragments.size();
-        Log.infof("Cleanup: Cleanup completed - removed %d fragments, %d remaining",
-                fragmentsRemoved, remainingFragments.size());
+        // Correct any drift of the incremental counters with one aggregate query
+        statistics.reconcile();
+        return statistics.total();
     }
 
     /**
@@ -129,6 +185,7 @@ public class MemoryCleanupService {
      * <p>Operations performed:</p>
      * <ul>
      *   <li>Remove very old, unaccessed original memories</li>
+     *   <li>Archive old original memories as quantized codes</li>
      *   <li>Clean up orphaned fragments</li>
      *   <li>Remove obvious duplicates</li>
      * </ul>
@@ -137,6 +194,7 @@ public class MemoryCleanupService {
         Log.infof("Cleanup: Starting minimal cleanup operations");
         
         removeOldUnusedOriginals();
+        archiveOldOriginals();
         cleanupOrphanedFragments();
         removeDuplicateAbstractions();
         
@@ -152,6 +210,7 @@ public class MemoryCleanupService {
      * <p>Operations performed (in order):</p>
      * <ol>
      *   <li>Remove old unused original memories</li>
+     *   <li>Archive old original memories as quantized codes</li>
      *   <li>Remove original memories that have been abstracted</li>
      *   <li>Remove duplicate abstractions</li>
      *   <li>Clean up orphaned fragments</li>
@@ -164,6 +223,7 @@ public class MemoryCleanupService {
         Log.infof("Cleanup: Starting aggressive cleanup operations");
         
         removeOldUnusedOriginals();
+        archiveOldOriginals();
         removeAbstractedOriginals();
         removeDuplicateAbstractions();
         cleanupOrphanedFragments();
@@ -186,21 +246,91 @@ public class MemoryCleanupService {
      *   <li>Abstraction level = 1 (original memories)</li>
      *   <li>Age > {@value #DAYS_TO_KEEP_ORIGINAL} days</li>
      *   <li>Access count < {@value #MIN_ACCESS_COUNT_TO_PRESERVE}</li>
+     *   <li>Not archived; archived originals are kept, as archiving them is what
+     *   keeps old memories affordable</li>
      * </ul>
      */
     private void removeOldUnusedOriginals() {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(DAYS_TO_KEEP_ORIGINAL);
         
-        List<MemoryFragment> oldUnusedFragments = fragmentRepository.find(
-            "abstractionLevel = 1 AND createdAt < ?1 AND accessCount < ?2",
-            cutoffDate, MIN_ACCESS_COUNT_TO_PRESERVE
-        ).list();
+        int removed = removeMatching(
+            "f.abstractionLevel = 1 AND f.archived = false AND f.createdAt < :cutoff "
+                + "AND f.accessCount < :minAccess",
+            Parameters.with("cutoff", cutoffDate).and("minAccess", MIN_ACCESS_COUNT_TO_PRESERVE)
+        );
+        
+        Log.infof("Cleanup: Removed %d old unused original fragments", removed);
+    }
+
+    /**
+     * Archives old original memory fragments as 4-bit quantized codes.
+     * 
+     * <p>Archiving drops the full-precision embedding (1536 bytes) and keeps only the
+     * per-dimension 4-bit codes (192 bytes). The fragment is removed from the embedding
+     * store and added to the archive index, where it stays searchable through
+     * asymmetric distance computation on the codes.</p>
+     * 
+     * <p>Criteria for archival:</p>
+     * <ul>
+     *   <li>Abstraction level = 1 (original memories)</li>
+     *   <li>Age > {@value #DAYS_BEFORE_ARCHIVE} days</li>
+     *   <li>Not archived yet and still has a full embedding</li>
+     * </ul>
+     */
+    private void archiveOldOriginals() {
+        LocalDateTime cutoffDate = LocalDateTime.now().minusDays(DAYS_BEFORE_ARCHIVE);
+        
+        if (!quantizer.ensureCalibrated(ScalarQuantizer.ARCHIVE_BITS)) {
+            Log.infof("Cleanup: No calibrated %d bit codebook available, skipping archival",
+                    ScalarQuantizer.ARCHIVE_BITS);
+            return;
+        }
         
-        Log.infof("Cleanup: Found %d old unused original fragments to remove", oldUnusedFragments.size());
+        int archived = 0;
+        long afterId = 0L;
+        while (true) {
+            long lastId = afterId;
+            List<MemoryFragment> batch = inNewTransaction(() -> archiveBatch(
+                    fragmentRepository.findArchivableAfter(cutoffDate, lastId, ARCHIVE_BATCH_SIZE)));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            archived += batch.size();
+            afterId = batch.get(batch.size() - 1).id;
+        }
         
-        for (MemoryFragment fragment : oldUnusedFragments) {
-            removeFragmentFromBothStores(fragment);
+        Log.infof("Cleanup: Archived %d old original fragments as %d bit codes",
+                archived, ScalarQuantizer.ARCHIVE_BITS);
+    }
+
+    /**
+     * Archives one batch of fragments. Must run inside a transaction. The in-memory
+     * indexes and counters are updated once the transaction has committed.
+     * 
+     * @param fragments managed fragments to archive
+     * @return the archived fragments
+     */
+    private List<MemoryFragment> archiveBatch(List<MemoryFragment> fragments) {
+        if (fragments.isEmpty()) {
+            return fragments;
+        }
+        List<String> fragmentIds = new ArrayList<>(fragments.size());
+        for (MemoryFragment fragment : fragments) {
+            fragment.setQuantized(quantizer.quantize(fragment.getEmbedding(), ScalarQuantizer.ARCHIVE_BITS));
+            fragment.setEmbedding(null);
+            fragment.setArchived(true);
+            fragmentIds.add(fragment.id.toString());
         }
+        
+        embeddingStore.removeAll(metadataKey("id").isIn(fragmentIds));
+        afterCommit(() -> {
+            for (MemoryFragment fragment : fragments) {
+                memoryIndex.remove(fragment.id);
+                archiveSearch.add(fragment.id, fragment.getQuantized());
+                statistics.fragmentArchived();
+            }
+        });
+        return fragments;
     }
 
     /**
@@ -213,28 +343,19 @@ public class MemoryCleanupService {
      * <p>Criteria for removal:</p>
      * <ul>
      *   <li>Has a parent memory (abstraction)</li>
-     *   <li>Parent abstraction exists in the system</li>
-     *   <li>Not frequently accessed recently</li>
+     *   <li>Access count < {@value #MIN_ACCESS_COUNT_TO_PRESERVE}</li>
+     *   <li>Importance score < {@value #MIN_IMPORTANCE_TO_PRESERVE}</li>
      * </ul>
      */
     private void removeAbstractedOriginals() {
-        List<MemoryFragment> abstractedOriginals = fragmentRepository.find(
-            "parentMemory IS NOT NULL"
-        ).list();
-        
-        Log.infof("Cleanup: Found %d abstracted original fragments to consider for removal", 
-                abstractedOriginals.size());
+        // Keep recently accessed or important abstracted originals
+        int removed = removeMatching(
+            "f.parentMemory IS NOT NULL AND f.accessCount < :minAccess AND f.importanceScore < :minImportance",
+            Parameters.with("minAccess", MIN_ACCESS_COUNT_TO_PRESERVE)
+                .and("minImportance", MIN_IMPORTANCE_TO_PRESERVE)
+        );
         
-        for (MemoryFragment fragment : abstractedOriginals) {
-            // Keep recently accessed or important abstracted originals
-            if (fragment.getAccessCount() < MIN_ACCESS_COUNT_TO_PRESERVE && 
-                fragment.getImportanceScore() < MIN_IMPORTANCE_TO_PRESERVE) {
-                
-                Log.infof("Cleanup: Removing abstracted original fragment %d (low access: %d, low importance: %.2f)",
-                        fragment.id, fragment.getAccessCount(), fragment.getImportanceScore());
-                removeFragmentFromBothStores(fragment);
-            }
-        }
+        Log.infof("Cleanup: Removed %d abstracted original fragments", removed);
     }
 
     /**
@@ -242,40 +363,29 @@ public class MemoryCleanupService {
      * 
      * <p>Over time, the abstraction process may create similar or duplicate abstractions
      * for different clusters. This method identifies and removes duplicate abstractions
-     * while preserving the most recently accessed or highest importance version.</p>
+     * while preserving the most recently accessed version.</p>
      * 
-     * <p>Duplicate detection criteria:</p>
+     * <p>Duplicate detection criteria (evaluated in SQL):</p>
      * <ul>
-     *   <li>Similar text content (basic comparison)</li>
-     *   <li>Same abstraction level</li>
-     *   <li>Low individual access patterns</li>
+     *   <li>Same text content, ignoring case and surrounding whitespace</li>
+     *   <li>Both fragments are abstractions</li>
+     *   <li>The other copy was accessed more recently (ties keep the highest ID); a
+     *   copy that was never accessed counts as last accessed when it was created</li>
      * </ul>
      */
     private void removeDuplicateAbstractions() {
-        List<MemoryFragment> abstractions = fragmentRepository.find(
-            "abstractionLevel > 1"
-        ).list();
-        
-        Log.infof("Cleanup: Analyzing %d abstractions for duplicates", abstractions.size());
-        
         // Simple duplicate detection - can be enhanced with semantic similarity
-        List<MemoryFragment> duplicates = abstractions.stream()
-            .collect(Collectors.groupingBy(f -> f.getOriginalText().toLowerCase().trim()))
-            .values()
-            .stream()
-            .filter(group -> group.size() > 1)
-            .flatMap(group -> {
-                // Keep the most recently accessed, remove others
-                group.sort((a, b) -> b.getLastAccessed().compareTo(a.getLastAccessed()));
-                return group.stream().skip(1); // Skip first (most recent), remove rest
-            })
-            .collect(Collectors.toList());
-        
-        Log.infof("Cleanup: Found %d duplicate abstractions to remove", duplicates.size());
+        int removed = removeMatching(
+            "f.abstractionLevel > 1 AND EXISTS (SELECT o.id FROM MemoryFragment o "
+                + "WHERE o.abstractionLevel > 1 AND o.id <> f.id "
+                + "AND lower(trim(o.originalText)) = lower(trim(f.originalText)) "
+                + "AND (coalesce(o.lastAccessed, o.createdAt) > coalesce(f.lastAccessed, f.createdAt) "
+                + "OR (coalesce(o.lastAccessed, o.createdAt) = coalesce(f.lastAccessed, f.createdAt) "
+                + "AND o.id > f.id)))",
+            new Parameters()
+        );
         
-        for (MemoryFragment duplicate : duplicates) {
-            removeFragmentFromBothStores(duplicate);
-        }
+        Log.infof("Cleanup: Removed %d duplicate abstractions", removed);
     }
 
     /**
@@ -294,16 +404,12 @@ public class MemoryCleanupService {
      */
     private void cleanupOrphanedFragments() {
         // Find fragments with non-existent parent references
-        List<MemoryFragment> orphanedFragments = fragmentRepository.find(
-            "parentMemory IS NOT NULL AND parentMemory.id NOT IN (SELECT f.id FROM MemoryFragment f)"
-        ).list();
-        
-        Log.infof("Cleanup: Found %d orphaned fragments to remove", orphanedFragments.size());
+        int removed = removeMatching(
+            "f.parentMemory IS NOT NULL AND f.parentMemory.id NOT IN (SELECT p.id FROM MemoryFragment p)",
+            new Parameters()
+        );
         
-        for (MemoryFragment fragment : orphanedFragments) {
-            Log.infof("Cleanup: Removing orphaned fragment %d", fragment.id);
-            removeFragmentFromBothStores(fragment);
-        }
+        Log.infof("Cleanup: Removed %d orphaned fragments", removed);
     }
 
     /**
@@ -323,16 +429,15 @@ public class MemoryCleanupService {
     private void removeOldAbstractedFragments() {
         LocalDateTime cutoffDate = LocalDateTime.now().minusDays(DAYS_TO_KEEP_ABSTRACTED);
         
-        List<MemoryFragment> oldAbstractions = fragmentRepository.find(
-            "abstractionLevel > 1 AND createdAt < ?1 AND accessCount < ?2 AND importanceScore < ?3",
-            cutoffDate, MIN_ACCESS_COUNT_TO_PRESERVE, MIN_IMPORTANCE_TO_PRESERVE
-        ).list();
-        
-        Log.infof("Cleanup: Found %d old abstracted fragments to remove", oldAbstractions.size());
+        int removed = removeMatching(
+            "f.abstractionLevel > 1 AND f.createdAt < :cutoff AND f.accessCount < :minAccess "
+                + "AND f.importanceScore < :minImportance",
+            Parameters.with("cutoff", cutoffDate)
+                .and("minAccess", MIN_ACCESS_COUNT_TO_PRESERVE)
+                .and("minImportance", MIN_IMPORTANCE_TO_PRESERVE)
+        );
         
-        for (MemoryFragment fragment : oldAbstractions) {
-            removeFragmentFromBothStores(fragment);
-        }
+        Log.infof("Cleanup: Removed %d old abstracted fragments", removed);
     }
 
     /**
@@ -358,60 +463,158 @@ public class MemoryCleanupService {
      * when other cleanup strategies haven't achieved sufficient memory reduction.
      * It's used as a last resort to bring memory usage within acceptable limits.</p>
      * 
-     * <p>The cleanup preserves a percentage of memories with the highest importance
-     * scores while removing those with the lowest scores.</p>
+     * <p>The lowest-scoring fragments are selected in SQL, one batch per transaction,
+     * until the fragment count is back at {@value #MAX_TOTAL_FRAGMENTS}.</p>
      */
     private void applyImportanceBasedCleanup() {
-        List<MemoryFragment> allFragments = fragmentRepository.listAll();
+        long excess = statistics.total() - MAX_TOTAL_FRAGMENTS;
         
-        if (allFragments.size() <= MAX_TOTAL_FRAGMENTS) {
+        if (excess <= 0) {
             Log.infof("Cleanup: Memory usage now within limits, skipping importance-based cleanup");
             return;
         }
         
-        // Sort by importance score and remove the lowest-scoring fragments
-        allFragments.sort((a, b) -> Double.compare(
-            a.getImportanceScore() != null ? a.getImportanceScore() : 0.0,
-            b.getImportanceScore() != null ? b.getImportanceScore() : 0.0
-        ));
-        
-        int targetsToRemove = allFragments.size() - MAX_TOTAL_FRAGMENTS;
-        List<MemoryFragment> lowImportanceFragments = allFragments.stream()
-            .limit(targetsToRemove)
-            .collect(Collectors.toList());
+        Log.infof("Cleanup: Removing %d low-importance fragments", excess);
         
-        Log.infof("Cleanup: Removing %d low-importance fragments", lowImportanceFragments.size());
+        long removed = 0;
+        while (removed < excess) {
+            int limit = (int) Math.min(BATCH_SIZE, excess - removed);
+            List<FragmentRef> batch = inNewTransaction(
+                    () -> removeBatch(fragmentRepository.findLeastImportantRefs(limit)));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            removed += batch.size();
+        }
+    }
+
+    /**
+     * Removes all fragments matching a JPQL condition.
+     * 
+     * <p>Matching fragments are walked with keyset pagination on the ID, one batch
+     * of at most {@value #BATCH_SIZE} per transaction. A failed batch is rolled back
+     * and ends the walk; the next run picks the remaining fragments up again.</p>
+     * 
+     * @param condition JPQL predicate on alias {@code f} with named parameters
+     * @param parameters the named parameters of the condition
+     * @return the number of removed fragments
+     */
+    private int removeMatching(String condition, Parameters parameters) {
+        int removed = 0;
+        long afterId = 0L;
+        while (true) {
+            long lastId = afterId;
+            List<FragmentRef> batch = inNewTransaction(() -> removeBatch(
+                    fragmentRepository.findRefsAfter(condition, parameters, lastId, BATCH_SIZE)));
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            removed += batch.size();
+            afterId = batch.get(batch.size() - 1).id();
+        }
+        return removed;
+    }
+
+    /**
+     * Removes a batch of memory fragments from the database, the embedding store
+     * and the in-memory indexes. Must run inside a transaction.
+     * 
+     * <p>Children of removed abstractions are removed with them, level by level,
+     * as the entity cascade does. Embeddings are removed with one filter per batch,
+     * the rows with one bulk delete. The in-memory indexes and counters are updated
+     * once the transaction has committed.</p>
+     * 
+     * @param refs the fragments to remove
+     * @return the given fragments, without the removed descendants
+     */
+    private List<FragmentRef> removeBatch(List<FragmentRef> refs) {
+        if (refs.isEmpty()) {
+            return refs;
+        }
+        List<FragmentRef> removed = new ArrayList<>(refs);
+        Set<Long> seen = new HashSet<>();
+        List<Long> parentIds = new ArrayList<>(refs.size());
+        for (FragmentRef ref : refs) {
+            seen.add(ref.id());
+            parentIds.add(ref.id());
+        }
+        while (!parentIds.isEmpty()) {
+            List<Long> childIds = new ArrayList<>();
+            for (FragmentRef child : fragmentRepository.findChildRefs(parentIds)) {
+                if (seen.add(child.id())) {
+                    removed.add(child);
+                    childIds.add(child.id());
+                }
+            }
+            parentIds = childIds;
+        }
+
+        List<Long> ids = new ArrayList<>(removed.size());
+        List<String> storedIds = new ArrayList<>(removed.size());
+        for (FragmentRef ref : removed) {
+            ids.add(ref.id());
+            if (!ref.archived()) {
+                storedIds.add(ref.id().toString());
+            }
+        }
         
-        for (MemoryFragment fragment : lowImportanceFragments) {
-            removeFragmentFromBothStores(fragment);
+        // Remove from EmbeddingStore first (by ID metadata), archived fragments
+        // are only present in the archive index
+        if (!storedIds.isEmpty()) {
+            embeddingStore.removeAll(metadataKey("id").isIn(storedIds));
         }
+        
+        // Remove from database, parents and children in one statement
+        fragmentRepository.delete("id IN ?1", ids);
+        
+        afterCommit(() -> {
+            for (FragmentRef ref : removed) {
+                if (ref.archived()) {
+                    archiveSearch.remove(ref.id());
+                } else {
+                    memoryIndex.remove(ref.id());
+                }
+                statistics.fragmentRemoved(ref);
+            }
+        });
+        Log.debugf("Cleanup: Removed batch of %d fragments and %d descendants",
+                refs.size(), removed.size() - refs.size());
+        return refs;
     }
 
     /**
-     * Removes a memory fragment from both database and embedding store.
+     * Applies an update of the in-memory indexes and counters once the current
+     * transaction has committed, so a rolled back batch leaves them untouched.
      * 
-     * <p>This utility method ensures that memory fragments are completely removed
-     * from both storage systems to maintain consistency. It handles the removal
-     * from the embedding store first, then from the database.</p>
+     * @param update the update to apply
+     */
+    private void afterCommit(Runnable update) {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    update.run();
+                }
+            }
+        });
+    }
+
+    /**
+     * Runs one cleanup batch in its own transaction.
      * 
-     * @param fragment the MemoryFragment to remove from both stores
-     * @throws RuntimeException if removal from either store fails
+     * @param batch the batch to run
+     * @return the batch result, or null if the batch failed and was rolled back
      */
-    private void removeFragmentFromBothStores(MemoryFragment fragment) {
+    private <T> T inNewTransaction(Callable<T> batch) {
         try {
-            // Remove from EmbeddingStore first (by ID)
-            String fragmentId = fragment.id.toString();
-            
-            // Note: EmbeddingStore removal by ID may need to be implemented
-            // depending on the specific EmbeddingStore implementation
-            Log.infof("Cleanup: Removing fragment %s from EmbeddingStore", fragmentId);
-            
-            // Remove from database
-            fragmentRepository.delete(fragment);
-            Log.infof("Cleanup: Removed fragment %d from database", fragment.id);
-            
+            return QuarkusTransaction.requiringNew().call(batch);
         } catch (Exception e) {
-            Log.errorf("Cleanup: Failed to remove fragment %d: %s", fragment.id, e.getMessage());
+            Log.errorf("Cleanup: Cleanup batch failed and was rolled back: %s", e.getMessage());
+            return null;
         }
     }
 
@@ -427,19 +630,11 @@ public class MemoryCleanupService {
     public String performManualCleanup() {
         Log.infof("Cleanup: Starting manual cleanup operation");
         
-        List<MemoryFragment> beforeFragments = fragmentRepository.listAll();
-        int initialCount = beforeFragments.size();
+        long initialCount = statistics.total();
         
         // Determine cleanup strategy based on current usage
-        if (initialCount > MAX_TOTAL_FRAGMENTS) {
-            runAggressiveCleanup();
-        } else {
-            runMinimalCleanup();
-        }
-        
-        List<MemoryFragment> afterFragments = fragmentRepository.listAll();
-        int finalCount = afterFragments.size();
-        int removedCount = initialCount - finalCount;
+        long finalCount = runCleanup(initialCount);
+        long removedCount = initialCount - finalCount;
         
         String report = String.format(
             "Manual cleanup completed:\n" +
@@ -459,50 +654,34 @@ public class MemoryCleanupService {
      * Provides comprehensive statistics about the current cleanup configuration and memory state.
      * 
      * <p>This method returns detailed information about memory usage, cleanup thresholds,
-     * and system configuration that can be used for monitoring and debugging purposes.</p>
+     * and system configuration that can be used for monitoring and debugging purposes.
+     * It reads the incrementally maintained counters and does not scan the fragment table.</p>
      * 
      * @return String containing detailed cleanup and memory statistics
      */
     public String getCleanupStats() {
-        List<MemoryFragment> allFragments = fragmentRepository.listAll();
-        
-        // Calculate statistics by abstraction level
-        long originalCount = allFragments.stream()
-            .filter(f -> f.getAbstractionLevel() == 1)
-            .count();
-        
-        long abstractedCount = allFragments.stream()
-            .filter(f -> f.getAbstractionLevel() > 1)
-            .count();
-        
-        long recentlyAccessedCount = allFragments.stream()
-            .filter(f -> f.getLastAccessed() != null && 
-                        f.getLastAccessed().isAfter(LocalDateTime.now().minusDays(7)))
-            .count();
-        
-        // Calculate average importance score
-        double avgImportance = allFragments.stream()
-            .mapToDouble(f -> f.getImportanceScore() != null ? f.getImportanceScore() : 0.5)
-            .average()
-            .orElse(0.5);
+        MemoryStatistics.Snapshot stats = statistics.snapshot();
         
         return String.format(
             "Memory Cleanup Statistics:\n" +
             "- Total fragments: %d\n" +
             "- Original fragments: %d\n" +
             "- Abstracted fragments: %d\n" +
-            "- Recently accessed (7 days): %d\n" +
+            "- Archived fragments: %d\n" +
+            "- Recently accessed (%d days): %d (as of %s)\n" +
             "- Average importance score: %.3f\n" +
             "- Memory usage vs limit: %d / %d (%.1f%%)\n" +
             "- Cleanup thresholds:\n" +
             "  * Original retention: %d days\n" +
+            "  * Archive after: %d days\n" +
             "  * Abstracted retention: %d days\n" +
             "  * Min access count: %d\n" +
             "  * Min importance: %.2f",
-            allFragments.size(), originalCount, abstractedCount, recentlyAccessedCount,
-            avgImportance, allFragments.size(), MAX_TOTAL_FRAGMENTS,
-            (allFragments.size() * 100.0 / MAX_TOTAL_FRAGMENTS),
-            DAYS_TO_KEEP_ORIGINAL, DAYS_TO_KEEP_ABSTRACTED,
+            stats.total(), stats.original(), stats.abstracted(), stats.archived(),
+            MemoryStatistics.RECENT_ACCESS_DAYS, stats.recentlyAccessed(), stats.reconciledAt(),
+            stats.averageImportance(), stats.total(), MAX_TOTAL_FRAGMENTS,
+            (stats.total() * 100.0 / MAX_TOTAL_FRAGMENTS),
+            DAYS_TO_KEEP_ORIGINAL, DAYS_BEFORE_ARCHIVE, DAYS_TO_KEEP_ABSTRACTED,
             MIN_ACCESS_COUNT_TO_PRESERVE, MIN_IMPORTANCE_TO_PRESERVE
         );
     }
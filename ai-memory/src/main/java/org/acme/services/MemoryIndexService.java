@@ -0,0 +1,360 @@
+package org.acme.services;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+import org.acme.entities.MemoryFragment;
+import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.util.HnswIndex;
+import org.acme.util.ScalarQuantizer;
+import org.acme.util.VectorMath;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+/**
+ * In-process approximate nearest-neighbor index over searchable memory fragments.
+ *
+ * <p>Keeps an {@link HnswIndex} of all non-archived fragment embeddings together with the
+ * attributes used for ranking (importance, access count, last access), so retrieval needs
+ * neither the embedding store nor the database on the request path. The ranking factors are
+ * fused into the ANN search: the candidates found by the graph search are re-scored with
+ * similarity, recency, access and importance before the top results are selected.</p>
+ *
+ * <p>Synchronization with {@link MemoryFragmentRepository}:</p>
+ * <ul>
+ *   <li><strong>Startup:</strong> The index is built from all searchable fragments</li>
+ *   <li><strong>Ingestion:</strong> The pipeline and the abstraction service index new fragments</li>
+ *   <li><strong>Cleanup:</strong> Removed and archived fragments are tombstoned</li>
+ *   <li><strong>Compaction:</strong> The index is rebuilt once tombstones exceed
+ *       {@value #REBUILD_TOMBSTONE_RATIO} of all nodes</li>
+ * </ul>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+@ApplicationScoped
+public class MemoryIndexService {
+
+    private static final int MAX_CONNECTIONS = 16;
+    private static final int EF_CONSTRUCTION = 100;
+    private static final int EF_SEARCH = 64;
+    private static final double REBUILD_TOMBSTONE_RATIO = 0.3;
+
+    @Inject
+    MemoryFragmentRepository fragmentRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private HnswIndex index = newIndex();
+    private IndexedFragment[] fragments = new IndexedFragment[64];
+    private final Map<Long, Integer> nodesByFragmentId = new HashMap<>();
+    // Changes made while a rebuild reads the database, replayed onto the rebuilt index
+    private List<IndexedChange> pendingChanges;
+
+    private record IndexedChange(Long fragmentId, float[] embedding, IndexedFragment attributes) {
+    }
+
+    /**
+     * A fragment returned by {@link #search}, scored by fused relevance.
+     *
+     * @param fragmentId       the fragment ID
+     * @param text             the fragment text
+     * @param embedding        the normalized fragment embedding
+     * @param similarity       cosine similarity to the query
+     * @param score            fused relevance score used for ranking
+     * @param abstractionLevel the abstraction level
+     * @param importanceScore  the importance score
+     * @param accessCount      the access count, including accesses not yet flushed
+     * @param lastAccessed     the last access, including accesses not yet flushed
+     */
+    public record ScoredFragment(Long fragmentId, String text, float[] embedding, double similarity, double score,
+            Integer abstractionLevel, double importanceScore, int accessCount, LocalDateTime lastAccessed) {
+    }
+
+    /**
+     * Ranking attributes of an indexed fragment. Access fields are updated in place on retrieval,
+     * by concurrent searches holding only the read lock.
+     */
+    private static final class IndexedFragment {
+        final long fragmentId;
+        final String text;
+        final Integer abstractionLevel;
+        final double importanceScore;
+        final AtomicInteger accessCount;
+        final AtomicLong lastAccessedMillis;
+
+        IndexedFragment(MemoryFragment fragment) {
+            this.fragmentId = fragment.id;
+            this.text = fragment.getOriginalText();
+            this.abstractionLevel = fragment.getAbstractionLevel();
+            this.importanceScore = fragment.getImportanceScore() != null ? fragment.getImportanceScore() : 0.5;
+            this.accessCount = new AtomicInteger(fragment.getAccessCount() != null ? fragment.getAccessCount() : 0);
+            this.lastAccessedMillis = new AtomicLong(
+                    fragment.getLastAccessed() != null ? toMillis(fragment.getLastAccessed()) : 0L);
+        }
+    }
+
+    /**
+     * Builds the index from the database at startup.
+     */
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the index from all searchable fragments and swaps it in atomically.
+     *
+     * <p>Requires an active transaction. Searches keep using the previous index
+     * while the new one is built.</p>
+     */
+    @Transactional
+    public synchronized void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            pendingChanges = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        HnswIndex rebuilt = newIndex();
+        List<IndexedFragment> rebuiltFragments = new ArrayList<>();
+        Map<Long, Integer> rebuiltNodes = new HashMap<>();
+
+        try (Stream<MemoryFragment> searchable = fragmentRepository
+                .find("archived = false AND embedding IS NOT NULL").stream()) {
+            searchable.forEach(fragment -> {
+                int node = rebuilt.add(fragment.getEmbedding());
+                if (node >= 0) {
+                    rebuiltFragments.add(new IndexedFragment(fragment));
+                    rebuiltNodes.put(fragment.id, node);
+                }
+            });
+        }
+
+        lock.writeLock().lock();
+        try {
+            index = rebuilt;
+            fragments = rebuiltFragments.toArray(new IndexedFragment[Math.max(64, rebuiltFragments.size())]);
+            nodesByFragmentId.clear();
+            nodesByFragmentId.putAll(rebuiltNodes);
+            List<IndexedChange> changes = pendingChanges;
+            pendingChanges = null;
+            for (IndexedChange change : changes) {
+                if (change.embedding() != null) {
+                    addLocked(change.fragmentId(), change.embedding(), change.attributes());
+                } else {
+                    removeLocked(change.fragmentId());
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Log.infof("MemoryIndex: Indexed %d fragments in %d ms",
+                rebuiltFragments.size(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    /**
+     * Rebuilds the index when deletions have left too many tombstones.
+     */
+    @Scheduled(every = "1h")
+    @Transactional
+    void compactIfNeeded() {
+        int size;
+        int deleted;
+        lock.readLock().lock();
+        try {
+            size = index.size();
+            deleted = index.deletedCount();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (size > 0 && deleted > size * REBUILD_TOMBSTONE_RATIO) {
+            Log.infof("MemoryIndex: %d of %d nodes are tombstones, rebuilding", deleted, size);
+            rebuild();
+        }
+    }
+
+    /**
+     * Adds a fragment to the index, replacing a previous entry for the same fragment.
+     *
+     * @param fragment a persisted fragment with an embedding
+     */
+    public void index(MemoryFragment fragment) {
+        if (fragment.id == null || fragment.getEmbedding() == null || fragment.isArchived()) {
+            return;
+        }
+        IndexedFragment attributes = new IndexedFragment(fragment);
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new IndexedChange(fragment.id, fragment.getEmbedding(), attributes));
+            }
+            addLocked(fragment.id, fragment.getEmbedding(), attributes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a fragment from the index, if present.
+     *
+     * @param fragmentId the fragment ID
+     */
+    public void remove(Long fragmentId) {
+        lock.writeLock().lock();
+        try {
+            if (pendingChanges != null) {
+                pendingChanges.add(new IndexedChange(fragmentId, null, null));
+            }
+            removeLocked(fragmentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addLocked(Long fragmentId, float[] embedding, IndexedFragment attributes) {
+        removeLocked(fragmentId);
+        int node = index.add(embedding);
+        if (node < 0) {
+            return;
+        }
+        if (node >= fragments.length) {
+            fragments = Arrays.copyOf(fragments, Math.max(node + 1, fragments.length * 2));
+        }
+        fragments[node] = attributes;
+        nodesByFragmentId.put(fragmentId, node);
+    }
+
+    private void removeLocked(Long fragmentId) {
+        Integer node = nodesByFragmentId.remove(fragmentId);
+        if (node != null) {
+            index.delete(node);
+            fragments[node] = null;
+        }
+    }
+
+    /**
+     * Records a retrieval of a fragment in the in-memory ranking attributes, so
+     * subsequent searches see it before the access is flushed to the database.
+     *
+     * @param fragmentId the fragment ID
+     * @param accessedAt the access timestamp
+     */
+    public void recordAccess(Long fragmentId, LocalDateTime accessedAt) {
+        lock.readLock().lock();
+        try {
+            Integer node = nodesByFragmentId.get(fragmentId);
+            IndexedFragment fragment = node != null ? fragments[node] : null;
+            if (fragment != null) {
+                fragment.accessCount.incrementAndGet();
+                // Concurrent accesses may arrive out of order, keep the latest
+                fragment.lastAccessedMillis.accumulateAndGet(toMillis(accessedAt), Math::max);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the fragments with the highest fused relevance for a query.
+     *
+     * <p>Fused score, matching the previous two-stage ranking:
+     * {@code 0.6 * similarity + 0.4 * (similarity + recency + access + importance)}, where
+     * similarity is the cosine rescaled to {@code (1 + cos) / 2} as the embedding store
+     * reported it, so score thresholds keep their meaning.</p>
+     *
+     * @param queryVector the query embedding
+     * @param limit maximum number of results
+     * @return results ordered by descending fused score
+     */
+    public List<ScoredFragment> search(float[] queryVector, int limit) {
+        if (limit <= 0 || queryVector.length != ScalarQuantizer.DIMENSIONS) {
+            return List.of();
+        }
+        float[] query = queryVector.clone();
+        if (!VectorMath.normalize(query, 0, query.length)) {
+            return List.of();
+        }
+        long now = System.currentTimeMillis();
+        int[] nodes = new int[limit];
+        double[] scores = new double[limit];
+
+        lock.readLock().lock();
+        try {
+            IndexedFragment[] attributes = fragments;
+            int count = index.search(query, limit, Math.max(EF_SEARCH, limit), (node, cosine) -> {
+                IndexedFragment fragment = attributes[node];
+                double similarity = (1.0 + cosine) / 2;
+                double relevance = similarity + recencyScore(fragment.lastAccessedMillis.get(), now)
+                        + Math.min(0.2, fragment.accessCount.get() * 0.02)
+                        + (fragment.importanceScore - 0.5) * 0.1;
+                return similarity * 0.6 + relevance * 0.4;
+            }, nodes, scores);
+
+            List<ScoredFragment> results = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                IndexedFragment fragment = attributes[nodes[i]];
+                float[] embedding = index.vector(nodes[i]);
+                long lastAccessed = fragment.lastAccessedMillis.get();
+                results.add(new ScoredFragment(fragment.fragmentId, fragment.text, embedding,
+                        VectorMath.dot(query, embedding), scores[i], fragment.abstractionLevel,
+                        fragment.importanceScore, fragment.accessCount.get(),
+                        lastAccessed > 0 ? toLocalDateTime(lastAccessed) : null));
+            }
+            return results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of searchable fragments in the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.liveSize();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Exponential decay: score drops to ~0.05 after 24 hours, ~0.01 after 48 hours.
+     */
+    private static double recencyScore(long lastAccessedMillis, long now) {
+        if (lastAccessedMillis == 0L) {
+            return 0.0;
+        }
+        long hoursAgo = (now - lastAccessedMillis) / 3_600_000L;
+        return 0.15 * Math.exp(-hoursAgo / 24.0);
+    }
+
+    private static HnswIndex newIndex() {
+        return new HnswIndex(ScalarQuantizer.DIMENSIONS, MAX_CONNECTIONS, EF_CONSTRUCTION);
+    }
+
+    private static long toMillis(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+}
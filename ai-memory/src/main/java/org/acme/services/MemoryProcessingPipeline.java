@@ -5,6 +5,7 @@ import java.util.Map;
 
 import org.acme.entities.MemoryFragment;
 import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.util.QuantizedEmbedding;
 import org.acme.util.ScalarQuantizer;
 import org.eclipse.microprofile.reactive.messaging.Incoming;
 import org.eclipse.microprofile.reactive.messaging.Outgoing;
@@ -77,6 +78,12 @@ public class MemoryProcessingPipeline {
     @Inject
     MemoryFragmentRepository memoryFragmentRepository;
 
+    @Inject
+    MemoryIndexService memoryIndex;
+
+    @Inject
+    MemoryStatistics statistics;
+
     /**
      * Stage 1: Converts raw text into embedding vectors.
      * 
@@ -141,11 +148,11 @@ public class MemoryProcessingPipeline {
         Log.infof("Stage 2: Quantizing embedding for text: %s",
                 payload.originalText().substring(0, Math.min(50, payload.originalText().length())) + "...");
 
-        // Convert float[] to byte[] using scalar quantization
-        byte quantizedEmbedding = quantizer.quantize(payload.embedding());
+        // Convert float[] to per-dimension byte codes using scalar quantization
+        QuantizedEmbedding quantizedEmbedding = quantizer.quantize(payload.embedding());
 
         Log.infof("Stage 2: Quantized embedding from %d floats to %d bytes",
-                payload.embedding().vector().length, 1);
+                payload.embedding().vector().length, quantizedEmbedding.codes().length);
 
         return new IngestionPayload(
                 payload.originalText(),
@@ -194,7 +201,7 @@ public class MemoryProcessingPipeline {
         MemoryFragment fragment = new MemoryFragment();
         fragment.setOriginalText(payload.originalText());
         fragment.setEmbedding(payload.embedding().vector());
-        fragment.setQuantizedEmbedding(payload.quantizedEmbedding());
+        fragment.setQuantized(payload.quantizedEmbedding());
         fragment.setAbstractionLevel(payload.abstractionLevel());
         fragment.setImportanceScore(payload.importanceScore());
         fragment.setClusterId(payload.clusterId());
@@ -203,6 +210,7 @@ public class MemoryProcessingPipeline {
         fragment.setAccessCount(payload.accessCount());
 
         memoryFragmentRepository.persist(fragment);
+        statistics.fragmentAdded(fragment);
         Log.infof("Stage 3: Persisted MemoryFragment with ID: %d", fragment.id);
 
         // 2. Create metadata for EmbeddingStore
@@ -223,6 +231,9 @@ public class MemoryProcessingPipeline {
         TextSegment textSegment = TextSegment.from(payload.originalText(), new Metadata(metadata));
         embeddingStore.add(payload.embedding(), textSegment);
 
+        // 4. Make the fragment searchable through the in-process ANN index
+        memoryIndex.index(fragment);
+
         Log.infof("Stage 3: Added to EmbeddingStore with metadata: abstraction_level=%d, importance_score=%.2f",
                 fragment.getAbstractionLevel(), fragment.getImportanceScore());
 
@@ -247,7 +258,8 @@ public class MemoryProcessingPipeline {
      * 
      * @param originalText       the original conversational text
      * @param embedding          the high-dimensional embedding vector
-     * @param quantizedEmbedding the compressed embedding for storage
+     * @param quantizedEmbedding the per-dimension quantized codes for storage (null
+     *                           before Stage 2)
      * @param abstractionLevel   the hierarchical level of this memory (1 for
      *                           original)
      * @param importanceScore    the calculated importance score (0.0 to 1.0)
@@ -260,7 +272,7 @@ public class MemoryProcessingPipeline {
     public static record IngestionPayload(
             String originalText,
             Embedding embedding,
-            byte quantizedEmbedding,
+            QuantizedEmbedding quantizedEmbedding,
             Integer abstractionLevel,
             Double importanceScore,
             String clusterId,
@@ -281,7 +293,7 @@ public class MemoryProcessingPipeline {
          * @param embedding    the generated embedding vector
          */
         public IngestionPayload(String originalText, Embedding embedding) {
-            this(originalText, embedding, (byte) 0, 1, 0.5, null,
+            this(originalText, embedding, null, 1, 0.5, null,
                     java.time.LocalDateTime.now(), java.time.LocalDateTime.now(), 0);
         }
     }
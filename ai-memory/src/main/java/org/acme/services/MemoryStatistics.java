@@ -0,0 +1,136 @@
+package org.acme.services;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
+import org.acme.entities.MemoryFragment;
+import org.acme.repositories.MemoryFragmentRepository;
+import org.acme.repositories.MemoryFragmentRepository.FragmentCounts;
+import org.acme.repositories.MemoryFragmentRepository.FragmentRef;
+
+import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
+
+/**
+ * Incrementally maintained memory counters.
+ *
+ * <p>Counters are initialized from a single aggregate query, then adjusted by the
+ * ingestion pipeline, the abstraction service and the cleanup engine as fragments are
+ * created, archived or removed. Reading them is O(1), so monitoring endpoints never
+ * scan the fragment table. The cleanup engine reconciles them with the database after
+ * each run to correct any drift, e.g. from rolled back transactions.</p>
+ *
+ * <p>The recently accessed count cannot be maintained incrementally (fragments age out
+ * of the window), so it is refreshed on reconciliation and reported with its timestamp.</p>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+@ApplicationScoped
+public class MemoryStatistics {
+
+    /**
+     * Window for the recently accessed count.
+     */
+    public static final int RECENT_ACCESS_DAYS = 7;
+
+    @Inject
+    MemoryFragmentRepository fragmentRepository;
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong original = new AtomicLong();
+    private final AtomicLong abstracted = new AtomicLong();
+    private final AtomicLong archived = new AtomicLong();
+    private final DoubleAdder importanceSum = new DoubleAdder();
+    private volatile long recentlyAccessed;
+    private volatile LocalDateTime reconciledAt;
+
+    /**
+     * Immutable view of the counters.
+     */
+    public record Snapshot(long total, long original, long abstracted, long archived, double averageImportance,
+            long recentlyAccessed, LocalDateTime reconciledAt) {
+    }
+
+    @Transactional
+    void onStart(@Observes StartupEvent event) {
+        reconcile();
+    }
+
+    /**
+     * Resets all counters from one aggregate query over the fragment table.
+     */
+    @Transactional
+    public void reconcile() {
+        LocalDateTime now = LocalDateTime.now();
+        FragmentCounts counts = fragmentRepository.countSummary(now.minusDays(RECENT_ACCESS_DAYS));
+        total.set(counts.total());
+        original.set(counts.original());
+        abstracted.set(counts.abstracted());
+        archived.set(counts.archived());
+        importanceSum.reset();
+        importanceSum.add(counts.importanceSum());
+        recentlyAccessed = counts.recentlyAccessed();
+        reconciledAt = now;
+        Log.infof("Statistics: Reconciled memory counters - %d fragments (%d original, %d abstracted, %d archived)",
+                counts.total(), counts.original(), counts.abstracted(), counts.archived());
+    }
+
+    /**
+     * Counts a newly persisted fragment.
+     */
+    public void fragmentAdded(MemoryFragment fragment) {
+        total.incrementAndGet();
+        levelCounter(fragment.getAbstractionLevel()).incrementAndGet();
+        importanceSum.add(importanceOf(fragment.getImportanceScore()));
+    }
+
+    /**
+     * Counts a fragment that was archived.
+     */
+    public void fragmentArchived() {
+        archived.incrementAndGet();
+    }
+
+    /**
+     * Counts a removed fragment.
+     */
+    public void fragmentRemoved(FragmentRef fragment) {
+        total.decrementAndGet();
+        levelCounter(fragment.abstractionLevel()).decrementAndGet();
+        if (fragment.archived()) {
+            archived.decrementAndGet();
+        }
+        importanceSum.add(-importanceOf(fragment.importanceScore()));
+    }
+
+    /**
+     * @return the current total number of fragments
+     */
+    public long total() {
+        return total.get();
+    }
+
+    /**
+     * @return a consistent-enough view of all counters for reporting
+     */
+    public Snapshot snapshot() {
+        long totalCount = total.get();
+        return new Snapshot(totalCount, original.get(), abstracted.get(), archived.get(),
+                totalCount > 0 ? importanceSum.sum() / totalCount : 0.5,
+                recentlyAccessed, reconciledAt);
+    }
+
+    private AtomicLong levelCounter(Integer abstractionLevel) {
+        return abstractionLevel != null && abstractionLevel > 1 ? abstracted : original;
+    }
+
+    private static double importanceOf(Double importanceScore) {
+        return importanceScore != null ? importanceScore : 0.5;
+    }
+}
@@ -1,9 +1,9 @@
 package org.acme.util;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Map;
+import java.util.function.Function;
 
 import org.acme.entities.Cluster;
 import org.acme.entities.MemoryFragment;
@@ -37,6 +37,13 @@ import org.acme.entities.MemoryFragment;
  *   <li><strong>Noise Point:</strong> Neither core nor border point</li>
  * </ul>
  * 
+ * <p>Points are handled by their index in the input list: visited and clustered state live in
+ * {@link BitSet}s and the expansion queue is a primitive {@link IntList} with a per-cluster stamp
+ * array for de-duplication, so expanding a cluster no longer costs {@code O(n)} per
+ * {@code contains()} check. Neighborhoods come from a pluggable {@link NeighborSearch}: a linear
+ * scan for arbitrary {@link DistanceFunction}s, or a {@link VpTree} over a packed
+ * {@link EmbeddingMatrix} for embeddings (see {@link #forEmbeddings}).</p>
+ * 
  * @param <T> the type of objects to be clustered
  * @author AI Memory System
  * @since 1.0
@@ -54,13 +61,22 @@ public class DBSCANClusterer<T> {
     private final int minPts;
     
     /**
-     * Function used to calculate distance between two points.
+     * Function used to calculate distance between two points, or null when clustering
+     * embeddings through the spatial index.
      */
     private final DistanceFunction<T> distanceFunction;
 
+    /**
+     * Extracts the embedding of a point when clustering through the spatial index.
+     */
+    private final Function<T, float[]> embeddingFunction;
+
     /**
      * Creates a new DBSCAN clusterer with the specified parameters.
      * 
+     * <p>Neighborhoods are found by scanning all points, so this is {@code O(n²)} distance
+     * evaluations. Prefer {@link #forEmbeddings} for embedding vectors.</p>
+     * 
      * @param eps the maximum distance between two points to be considered neighbors
      * @param minPts the minimum number of points required to form a dense region
      * @param distanceFunction the function used to calculate distance between points
@@ -69,6 +85,30 @@ public class DBSCANClusterer<T> {
         this.eps = eps;
         this.minPts = minPts;
         this.distanceFunction = distanceFunction;
+        this.embeddingFunction = null;
+    }
+
+    private DBSCANClusterer(double eps, int minPts, Function<T, float[]> embeddingFunction) {
+        this.eps = eps;
+        this.minPts = minPts;
+        this.distanceFunction = null;
+        this.embeddingFunction = embeddingFunction;
+    }
+
+    /**
+     * Creates a DBSCAN clusterer that uses cosine distance on embeddings, backed by a
+     * packed {@link EmbeddingMatrix} and a {@link VpTree} neighbor index.
+     * 
+     * <p>Results match {@link MemoryFragmentCosineDistance}: points without a usable
+     * embedding are treated as infinitely distant and therefore end up as noise.</p>
+     * 
+     * @param eps the maximum cosine distance between two points to be considered neighbors
+     * @param minPts the minimum number of points required to form a dense region
+     * @param embeddingFunction extracts the embedding of a point (may return null)
+     * @return a clusterer for embedding vectors
+     */
+    public static <T> DBSCANClusterer<T> forEmbeddings(double eps, int minPts, Function<T, float[]> embeddingFunction) {
+        return new DBSCANClusterer<>(eps, minPts, embeddingFunction);
     }
 
     /**
@@ -90,39 +130,40 @@ public class DBSCANClusterer<T> {
      * @return List of clusters, including a noise cluster if any noise points exist
      */
     public List<Cluster<T>> cluster(List<T> points) {
-        Map<T, PointStatus> pointStatus = new HashMap<>();
+        int n = points.size();
+        NeighborSearch search = neighborSearch(points);
+        BitSet visited = new BitSet(n);
+        BitSet clustered = new BitSet(n);
+        // queuedIn[p] == cluster number + 1 once p has been queued for that cluster
+        int[] queuedIn = new int[n];
+        IntList neighbors = new IntList();
+        IntList neighborNeighbors = new IntList();
         List<Cluster<T>> clusters = new ArrayList<>();
 
-        // Initialize all points as unvisited
-        for (T point : points) {
-            pointStatus.put(point, PointStatus.UNVISITED);
-        }
-
-        for (T point : points) {
-            if (pointStatus.get(point) == PointStatus.UNVISITED) {
-                pointStatus.put(point, PointStatus.VISITED);
-
-                // Find neighbors
-                List<T> neighbors = getNeighbors(point, points);
-
-                if (neighbors.size() >= minPts) {
-                    // Core point - create new cluster
-                    Cluster<T> cluster = new Cluster<>();
-                    expandCluster(point, neighbors, cluster, pointStatus, points);
-                    clusters.add(cluster);
-                } else {
-                    // Mark as noise (will be reconsidered if becomes border point)
-                    pointStatus.put(point, PointStatus.NOISE);
-                }
+        for (int point = 0; point < n; point++) {
+            if (visited.get(point)) {
+                continue;
+            }
+            visited.set(point);
+
+            neighbors.clear();
+            search.neighbors(point, neighbors);
+
+            if (neighbors.size() >= minPts) {
+                // Core point - create new cluster
+                Cluster<T> cluster = new Cluster<>();
+                int stamp = clusters.size() + 1;
+                expandCluster(point, neighbors, neighborNeighbors, cluster, stamp,
+                        visited, clustered, queuedIn, search, points);
+                clusters.add(cluster);
             }
+            // Otherwise noise for now; it may still become a border point of a later cluster
         }
 
         // Create noise cluster for remaining noise points
         Cluster<T> noiseCluster = new Cluster<>();
-        for (Map.Entry<T, PointStatus> entry : pointStatus.entrySet()) {
-            if (entry.getValue() == PointStatus.NOISE) {
-                noiseCluster.addPoint(entry.getKey());
-            }
+        for (int point = clustered.nextClearBit(0); point < n; point = clustered.nextClearBit(point + 1)) {
+            noiseCluster.addPoint(points.get(point));
         }
 
         if (!noiseCluster.isEmpty()) {
@@ -134,97 +175,97 @@ public class DBSCANClusterer<T> {
     }
 
     /**
-     * Expands a cluster by recursively adding density-reachable points.
+     * Expands a cluster by adding density-reachable points.
      * 
      * <p>This method implements the core cluster expansion logic of DBSCAN:</p>
      * <ul>
      *   <li>Adds the starting point to the cluster</li>
-     *   <li>Iterates through all neighbors of the point</li>
+     *   <li>Iterates through the growing queue of neighbors</li>
      *   <li>For unvisited neighbors, finds their neighbors and potentially expands further</li>
      *   <li>Adds border points (neighbors of core points) to the cluster</li>
      * </ul>
      * 
      * @param point the core point to start expansion from
-     * @param neighbors the initial neighbors of the core point
+     * @param queue the initial neighbors of the core point, extended in place
+     * @param scratch reusable buffer for neighbor lookups
      * @param cluster the cluster being expanded
-     * @param pointStatus map tracking the status of all points
+     * @param stamp marker written to {@code queuedIn} for points queued in this cluster
+     * @param visited points whose neighborhood has been examined
+     * @param clustered points that belong to a cluster
+     * @param queuedIn per point, the stamp of the last cluster it was queued for
+     * @param search neighbor lookup
      * @param allPoints complete list of all points being clustered
      */
-    private void expandCluster(T point, List<T> neighbors, Cluster<T> cluster,
-            Map<T, PointStatus> pointStatus, List<T> allPoints) {
-        cluster.addPoint(point);
-        pointStatus.put(point, PointStatus.CLUSTERED);
+    private void expandCluster(int point, IntList queue, IntList scratch, Cluster<T> cluster, int stamp,
+            BitSet visited, BitSet clustered, int[] queuedIn, NeighborSearch search, List<T> allPoints) {
+        cluster.addPoint(allPoints.get(point));
+        clustered.set(point);
+        queuedIn[point] = stamp;
+        for (int i = 0; i < queue.size(); i++) {
+            queuedIn[queue.get(i)] = stamp;
+        }
 
-        int i = 0;
-        while (i < neighbors.size()) {
-            T neighbor = neighbors.get(i);
-            PointStatus status = pointStatus.get(neighbor);
+        for (int i = 0; i < queue.size(); i++) {
+            int neighbor = queue.get(i);
 
-            if (status == PointStatus.UNVISITED) {
-                pointStatus.put(neighbor, PointStatus.VISITED);
-                List<T> neighborNeighbors = getNeighbors(neighbor, allPoints);
+            if (!visited.get(neighbor)) {
+                visited.set(neighbor);
+                scratch.clear();
+                search.neighbors(neighbor, scratch);
 
-                if (neighborNeighbors.size() >= minPts) {
+                if (scratch.size() >= minPts) {
                     // Neighbor is also a core point, merge its neighbors
-                    for (T nn : neighborNeighbors) {
-                        if (!neighbors.contains(nn)) {
-                            neighbors.add(nn);
+                    for (int j = 0; j < scratch.size(); j++) {
+                        int nn = scratch.get(j);
+                        if (queuedIn[nn] != stamp) {
+                            queuedIn[nn] = stamp;
+                            queue.add(nn);
                         }
                     }
                 }
             }
 
-            if (status != PointStatus.CLUSTERED) {
-                cluster.addPoint(neighbor);
-                pointStatus.put(neighbor, PointStatus.CLUSTERED);
+            if (!clustered.get(neighbor)) {
+                cluster.addPoint(allPoints.get(neighbor));
+                clustered.set(neighbor);
             }
-
-            i++;
         }
     }
 
     /**
-     * Finds all neighbors of a point within the eps distance.
-     * 
-     * <p>This method identifies the neighborhood of a point by calculating
-     * distances to all other points and selecting those within the eps threshold.
-     * The neighborhood determination is crucial for identifying core points and
-     * cluster boundaries.</p>
+     * Chooses the neighbor lookup strategy for the points being clustered.
      * 
-     * @param point the point to find neighbors for
-     * @param allPoints complete list of all points
-     * @return List of neighbors within eps distance
+     * @param points complete list of all points
+     * @return a linear scan for distance functions, or a VP-tree range search for embeddings
      */
-    private List<T> getNeighbors(T point, List<T> allPoints) {
-        List<T> neighbors = new ArrayList<>();
-
-        for (T other : allPoints) {
-            if (!point.equals(other) && distanceFunction.distance(point, other) <= eps) {
-                neighbors.add(other);
-            }
+    private NeighborSearch neighborSearch(List<T> points) {
+        if (distanceFunction != null) {
+            return (point, out) -> {
+                T p = points.get(point);
+                for (int other = 0; other < points.size(); other++) {
+                    if (other != point && distanceFunction.distance(p, points.get(other)) <= eps) {
+                        out.add(other);
+                    }
+                }
+            };
         }
 
-        return neighbors;
+        EmbeddingMatrix matrix = EmbeddingMatrix.of(points, embeddingFunction);
+        VpTree tree = new VpTree(matrix, matrix.validRows());
+        double radius = EmbeddingMatrix.cosineToEuclidean(eps);
+        return (point, out) -> {
+            if (matrix.isValid(point)) {
+                tree.rangeSearch(point, radius, out);
+            }
+        };
     }
 
     /**
-     * Enumeration representing the possible states of a point during DBSCAN clustering.
-     * 
-     * <p>Point status tracking is essential for the DBSCAN algorithm to avoid
-     * reprocessing points and to correctly classify points as core, border, or noise.</p>
+     * Finds the indexes of all points within eps distance of a point, excluding the point itself.
      */
-    private enum PointStatus {
-        /** Point has not been visited yet by the algorithm. */
-        UNVISITED,
-        
-        /** Point has been visited but not yet assigned to a cluster. */
-        VISITED,
-        
-        /** Point has been assigned to a cluster. */
-        CLUSTERED,
-        
-        /** Point has been classified as noise. */
-        NOISE
+    @FunctionalInterface
+    private interface NeighborSearch {
+        void neighbors(int point, IntList out);
     }
 
     /**
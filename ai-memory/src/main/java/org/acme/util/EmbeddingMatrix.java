@@ -0,0 +1,126 @@
+package org.acme.util;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Row-major matrix of L2-normalized embeddings packed into a single contiguous {@code float[]}.
+ * 
+ * <p>Packing the vectors next to each other keeps distance computations cache friendly and
+ * lets the JIT vectorize them, instead of chasing one heap array per entity. Because every row
+ * is normalized once up front, cosine similarity reduces to a dot product.</p>
+ * 
+ * <p>Rows whose source embedding is missing, has the wrong dimension or is all zeros are
+ * marked invalid; callers must skip them (they have no meaningful distance to anything).</p>
+ * 
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class EmbeddingMatrix {
+
+    private final float[] data;
+    private final int rows;
+    private final int dimensions;
+    private final BitSet valid;
+
+    private EmbeddingMatrix(float[] data, int rows, int dimensions, BitSet valid) {
+        this.data = data;
+        this.rows = rows;
+        this.dimensions = dimensions;
+        this.valid = valid;
+    }
+
+    /**
+     * Copies and normalizes the embeddings of the given points into a packed matrix.
+     * The dimension is taken from the first non-null embedding.
+     *
+     * @param points the points, row {@code i} corresponds to {@code points.get(i)}
+     * @param embedding extracts the (possibly null) embedding of a point
+     * @return the packed matrix
+     */
+    public static <T> EmbeddingMatrix of(List<T> points, Function<T, float[]> embedding) {
+        int rows = points.size();
+        int dimensions = 0;
+        for (T point : points) {
+            float[] vector = embedding.apply(point);
+            if (vector != null) {
+                dimensions = vector.length;
+                break;
+            }
+        }
+        float[] data = new float[rows * dimensions];
+        BitSet valid = new BitSet(rows);
+        for (int row = 0; row < rows; row++) {
+            float[] vector = embedding.apply(points.get(row));
+            if (vector == null || vector.length != dimensions || dimensions == 0) {
+                continue;
+            }
+            int offset = row * dimensions;
+            System.arraycopy(vector, 0, data, offset, dimensions);
+            if (VectorMath.normalize(data, offset, dimensions)) {
+                valid.set(row);
+            }
+        }
+        return new EmbeddingMatrix(data, rows, dimensions, valid);
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public boolean isValid(int row) {
+        return valid.get(row);
+    }
+
+    /**
+     * @return the indexes of all valid rows
+     */
+    public int[] validRows() {
+        return valid.stream().toArray();
+    }
+
+    /**
+     * Cosine similarity of two valid rows.
+     */
+    public float similarity(int a, int b) {
+        return VectorMath.dot(data, a * dimensions, data, b * dimensions, dimensions);
+    }
+
+    /**
+     * Cosine similarity between a valid row and an external, already normalized query vector.
+     */
+    public float similarity(int row, float[] normalizedQuery) {
+        return VectorMath.dot(data, row * dimensions, normalizedQuery, 0, dimensions);
+    }
+
+    /**
+     * Cosine distance ({@code 1 - cos}) of two rows; 2.0 (the maximum) if either row is invalid,
+     * matching {@link DBSCANClusterer.MemoryFragmentCosineDistance}.
+     */
+    public double cosineDistance(int a, int b) {
+        if (!valid.get(a) || !valid.get(b)) {
+            return 2.0;
+        }
+        return 1.0 - similarity(a, b);
+    }
+
+    /**
+     * Euclidean distance of two valid rows. For unit vectors this is {@code sqrt(2 * cosineDistance)},
+     * which, unlike cosine distance, is a true metric and can be used by metric-space indexes.
+     */
+    public double euclideanDistance(int a, int b) {
+        return Math.sqrt(Math.max(0.0, 2.0 - 2.0 * similarity(a, b)));
+    }
+
+    /**
+     * Converts a cosine distance threshold into the equivalent Euclidean radius for unit vectors.
+     */
+    public static double cosineToEuclidean(double cosineDistance) {
+        return Math.sqrt(Math.max(0.0, 2.0 * cosineDistance));
+    }
+}
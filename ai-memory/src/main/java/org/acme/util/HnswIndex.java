@@ -0,0 +1,456 @@
+package org.acme.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+
+/**
+ * In-process Hierarchical Navigable Small World graph (Malkov and Yashunin) for
+ * approximate nearest-neighbor search over unit vectors.
+ *
+ * <p>Vectors are normalized on insert and stored row by row in one packed float array,
+ * so similarity is a plain dot product. Nodes are identified by their insertion index.
+ * Search cost grows roughly logarithmically with the number of nodes, which keeps
+ * retrieval latency flat as the memory corpus grows.</p>
+ *
+ * <p>Deleted nodes are tombstoned: they stay in the graph for navigation but are never
+ * returned. Callers rebuild the index when the share of tombstones gets large.</p>
+ *
+ * <p>Not thread-safe: callers serialize {@link #add} and {@link #delete} against
+ * searches, e.g. with a read-write lock. Concurrent searches are safe.</p>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class HnswIndex {
+
+    /**
+     * Re-ranks an ANN candidate, e.g. to fuse similarity with recency or importance.
+     */
+    @FunctionalInterface
+    public interface NodeScorer {
+        double score(int node, float similarity);
+    }
+
+    private final int dimensions;
+    private final int maxConnections;
+    private final int maxConnectionsLevel0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+
+    private float[] vectors;
+    // links[node][level] = {count, neighbor...}
+    private int[][][] links;
+    private final BitSet deleted = new BitSet();
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    private final ThreadLocal<Visited> visited = ThreadLocal.withInitial(Visited::new);
+
+    /**
+     * @param dimensions vector dimension
+     * @param maxConnections links per node on the upper levels (M); level 0 uses 2M
+     * @param efConstruction candidate list size while inserting
+     */
+    public HnswIndex(int dimensions, int maxConnections, int efConstruction) {
+        this.dimensions = dimensions;
+        this.maxConnections = maxConnections;
+        this.maxConnectionsLevel0 = maxConnections * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1.0 / Math.log(maxConnections);
+        this.vectors = new float[64 * dimensions];
+        this.links = new int[64][][];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int liveSize() {
+        return size - deletedCount;
+    }
+
+    public int deletedCount() {
+        return deletedCount;
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.get(node);
+    }
+
+    /**
+     * Inserts a vector and links it into the graph.
+     *
+     * @param vector the vector, normalized on a copy
+     * @return the node ID, or -1 if the vector has the wrong dimension or zero length
+     */
+    public int add(float[] vector) {
+        if (vector == null || vector.length != dimensions) {
+            return -1;
+        }
+        if (size == links.length) {
+            links = Arrays.copyOf(links, size * 2);
+            vectors = Arrays.copyOf(vectors, size * 2 * dimensions);
+        }
+        int node = size;
+        int offset = node * dimensions;
+        System.arraycopy(vector, 0, vectors, offset, dimensions);
+        if (!VectorMath.normalize(vectors, offset, dimensions)) {
+            return -1;
+        }
+
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxLinks(l) + 1];
+        }
+        size++;
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = entryPoint;
+        float currentSimilarity = similarity(node, current);
+        for (int l = maxLevel; l > level; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbors = links[current][l];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    float s = similarity(node, neighbors[i]);
+                    if (s > currentSimilarity) {
+                        currentSimilarity = s;
+                        current = neighbors[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(vectors, offset, current, efConstruction, l);
+            int[] selected = selectNeighbors(candidates, maxLinks(l));
+            for (int neighbor : selected) {
+                connect(node, neighbor, l);
+                connect(neighbor, node, l);
+            }
+            current = candidates.node(0);
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Tombstones a node so it is no longer returned by searches.
+     */
+    public void delete(int node) {
+        if (node >= 0 && node < size && !deleted.get(node)) {
+            deleted.set(node);
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Finds the {@code ef} nearest live nodes and returns the best {@code k} of them by
+     * the scorer's fused score, highest first.
+     *
+     * @param query query vector (normalized by the caller)
+     * @param k maximum number of results
+     * @param ef size of the candidate list, at least k
+     * @param scorer re-ranking function applied to the candidates
+     * @param nodes output node IDs
+     * @param scores output fused scores
+     * @return number of results written
+     */
+    public int search(float[] query, int k, int ef, NodeScorer scorer, int[] nodes, double[] scores) {
+        if (entryPoint < 0 || k <= 0) {
+            return 0;
+        }
+        int current = entryPoint;
+        float currentSimilarity = VectorMath.dot(query, 0, vectors, current * dimensions, dimensions);
+        for (int l = maxLevel; l > 0; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbors = links[current][l];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    float s = VectorMath.dot(query, 0, vectors, neighbors[i] * dimensions, dimensions);
+                    if (s > currentSimilarity) {
+                        currentSimilarity = s;
+                        current = neighbors[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+
+        // Tombstones are not counted towards ef, so widen the beam by their share
+        int beam = Math.max(ef, k);
+        if (deletedCount > 0) {
+            beam = (int) Math.min(size, (long) beam * size / Math.max(1, liveSize()));
+        }
+        NodeHeap candidates = searchLayer(query, 0, current, beam, 0);
+
+        int count = 0;
+        for (int i = 0; i < candidates.size(); i++) {
+            int node = candidates.node(i);
+            if (deleted.get(node)) {
+                continue;
+            }
+            double score = scorer.score(node, candidates.score(i));
+            // Insertion into the sorted top-k output
+            if (count < k) {
+                count++;
+            } else if (score <= scores[count - 1]) {
+                continue;
+            }
+            int j = count - 1;
+            while (j > 0 && scores[j - 1] < score) {
+                scores[j] = scores[j - 1];
+                nodes[j] = nodes[j - 1];
+                j--;
+            }
+            scores[j] = score;
+            nodes[j] = node;
+        }
+        return count;
+    }
+
+    /**
+     * @return a copy of the normalized vector of a node
+     */
+    public float[] vector(int node) {
+        return Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions);
+    }
+
+    private int maxLinks(int level) {
+        return level == 0 ? maxConnectionsLevel0 : maxConnections;
+    }
+
+    private float similarity(int a, int b) {
+        return VectorMath.dot(vectors, a * dimensions, vectors, b * dimensions, dimensions);
+    }
+
+    // Greedy beam search on one level, returns up to ef nearest nodes (live or not)
+    private NodeHeap searchLayer(float[] query, int queryOffset, int start, int ef, int level) {
+        Visited seen = visited.get();
+        seen.reset(size);
+        NodeHeap candidates = new NodeHeap(ef + 1, false); // max-heap: closest first
+        NodeHeap results = new NodeHeap(ef + 1, true);     // min-heap: furthest first
+
+        float s = VectorMath.dot(query, queryOffset, vectors, start * dimensions, dimensions);
+        seen.mark(start);
+        candidates.push(start, s);
+        results.push(start, s);
+
+        while (candidates.size() > 0) {
+            float candidateScore = candidates.topScore();
+            if (results.size() >= ef && candidateScore < results.topScore()) {
+                break;
+            }
+            int candidate = candidates.pop();
+            int[] neighbors = level < links[candidate].length ? links[candidate][level] : null;
+            if (neighbors == null) {
+                continue;
+            }
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (!seen.mark(neighbor)) {
+                    continue;
+                }
+                float ns = VectorMath.dot(query, queryOffset, vectors, neighbor * dimensions, dimensions);
+                if (results.size() < ef || ns > results.topScore()) {
+                    candidates.push(neighbor, ns);
+                    results.push(neighbor, ns);
+                    if (results.size() > ef) {
+                        results.pop();
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    // Neighbor selection heuristic: keep a candidate only if it is closer to the node than
+    // to any already selected neighbor, which keeps links spread across directions
+    private int[] selectNeighbors(NodeHeap candidates, int max) {
+        int n = candidates.size();
+        candidates.sortDescending();
+        int[] selected = new int[Math.min(max, n)];
+        boolean[] taken = new boolean[n];
+        int count = 0;
+        for (int i = 0; i < n && count < selected.length; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (similarity(candidates.node(i), selected[j]) > candidates.score(i)) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidates.node(i);
+                taken[i] = true;
+            }
+        }
+        // Fill up with the closest pruned candidates to keep the graph well connected
+        for (int i = 0; i < n && count < selected.length; i++) {
+            if (!taken[i]) {
+                selected[count++] = candidates.node(i);
+            }
+        }
+        return count == selected.length ? selected : Arrays.copyOf(selected, count);
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int max = neighbors.length - 1;
+        if (neighbors[0] < max) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+        // Full: select again from the current neighbors and the new one. Dropping only the
+        // furthest neighbor would cut the long links between clusters and split the graph.
+        NodeHeap candidates = new NodeHeap(max + 1, false);
+        for (int i = 1; i <= max; i++) {
+            candidates.push(neighbors[i], similarity(from, neighbors[i]));
+        }
+        candidates.push(to, similarity(from, to));
+        int[] selected = selectNeighbors(candidates, max);
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+        neighbors[0] = selected.length;
+    }
+
+    /**
+     * Per-thread visited set with generation stamps, so it is never cleared.
+     */
+    private static final class Visited {
+        private int[] stamps = new int[64];
+        private int stamp;
+
+        void reset(int capacity) {
+            if (stamps.length < capacity) {
+                stamps = new int[Math.max(capacity, stamps.length * 2)];
+                stamp = 0;
+            }
+            if (++stamp == Integer.MAX_VALUE) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+        }
+
+        // Returns true if the node was not visited before
+        boolean mark(int node) {
+            if (stamps[node] == stamp) {
+                return false;
+            }
+            stamps[node] = stamp;
+            return true;
+        }
+    }
+
+    /**
+     * Binary heap of (node, score) pairs without boxing.
+     */
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+        private final boolean minHeap;
+
+        NodeHeap(int capacity, boolean minHeap) {
+            this.nodes = new int[Math.max(4, capacity)];
+            this.scores = new float[nodes.length];
+            this.minHeap = minHeap;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int node(int i) {
+            return nodes[i];
+        }
+
+        float score(int i) {
+            return scores[i];
+        }
+
+        float topScore() {
+            return scores[0];
+        }
+
+        void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!before(score, scores[parent])) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        int pop() {
+            int top = nodes[0];
+            int lastNode = nodes[--size];
+            float lastScore = scores[size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                    child++;
+                }
+                if (!before(scores[child], lastScore)) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = lastNode;
+            scores[i] = lastScore;
+            return top;
+        }
+
+        /**
+         * Sorts the entries by descending score in place; the heap order is lost.
+         */
+        void sortDescending() {
+            for (int i = 1; i < size; i++) {
+                int node = nodes[i];
+                float score = scores[i];
+                int j = i - 1;
+                while (j >= 0 && scores[j] < score) {
+                    nodes[j + 1] = nodes[j];
+                    scores[j + 1] = scores[j];
+                    j--;
+                }
+                nodes[j + 1] = node;
+                scores[j + 1] = score;
+            }
+        }
+
+        private boolean before(float a, float b) {
+            return minHeap ? a < b : a > b;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package org.acme.util;
+
+import java.util.Arrays;
+
+/**
+ * Minimal growable list of primitive ints, used for neighbor lists and work queues
+ * in the clustering and index code to avoid boxing.
+ * 
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class IntList {
+
+    private int[] values;
+    private int size;
+
+    public IntList() {
+        this(16);
+    }
+
+    public IntList(int initialCapacity) {
+        this.values = new int[Math.max(4, initialCapacity)];
+    }
+
+    public void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    public int get(int index) {
+        return values[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public int[] toArray() {
+        return Arrays.copyOf(values, size);
+    }
+}
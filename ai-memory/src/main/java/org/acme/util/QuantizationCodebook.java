@@ -0,0 +1,273 @@
+package org.acme.util;
+
+import java.util.Arrays;
+
+/**
+ * Per-dimension scalar quantization codebook for embedding vectors.
+ *
+ * <p>Every dimension {@code i} is calibrated to its own range {@code [min_i, min_i + scale_i * (L - 1)]},
+ * where {@code L} is 256 for 8-bit codes and 16 for 4-bit codes. Each dimension of a vector is then
+ * stored as one unsigned code, so an embedding keeps all of its dimensional information while using
+ * 4x (int8) or 8x (int4) less memory than {@code float[]}.</p>
+ *
+ * <p>Vectors are L2-normalized before encoding, so similarities computed on the codes approximate
+ * cosine similarity. Queries are never quantized: {@link #prepare(float[])} folds the codebook into
+ * per-dimension weights once, after which {@link #similarity(Query, byte[])} is a single pass of
+ * multiply-adds over the raw codes (asymmetric distance computation), without decoding.</p>
+ *
+ * <p>Code layout:</p>
+ * <ul>
+ *   <li><strong>8 bits:</strong> one byte per dimension</li>
+ *   <li><strong>4 bits:</strong> two dimensions per byte, even dimension in the low nibble</li>
+ * </ul>
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class QuantizationCodebook {
+
+    private final int bits;
+    private final int levels;
+    private final float[] min;
+    private final float[] scale;
+
+    /**
+     * Creates a codebook from calibrated ranges.
+     *
+     * @param bits 8 or 4
+     * @param min lower bound of every dimension
+     * @param scale width of one quantization step of every dimension
+     */
+    public QuantizationCodebook(int bits, float[] min, float[] scale) {
+        if (bits != 8 && bits != 4) {
+            throw new IllegalArgumentException("Only 8-bit and 4-bit codes are supported");
+        }
+        if (min.length != scale.length) {
+            throw new IllegalArgumentException("min and scale must have the same dimension");
+        }
+        this.bits = bits;
+        this.levels = 1 << bits;
+        this.min = min.clone();
+        this.scale = scale.clone();
+    }
+
+    /**
+     * Calibrates per-dimension ranges from the min/max of the (normalized) sample vectors.
+     *
+     * @param samples representative embeddings, all of the same dimension
+     * @param bits 8 or 4
+     * @return the calibrated codebook
+     */
+    public static QuantizationCodebook calibrate(Iterable<float[]> samples, int bits) {
+        float[] lo = null;
+        float[] hi = null;
+        float[] normalized = null;
+        for (float[] sample : samples) {
+            if (sample == null) {
+                continue;
+            }
+            if (lo == null) {
+                lo = new float[sample.length];
+                hi = new float[sample.length];
+                normalized = new float[sample.length];
+                Arrays.fill(lo, Float.POSITIVE_INFINITY);
+                Arrays.fill(hi, Float.NEGATIVE_INFINITY);
+            }
+            if (sample.length != lo.length) {
+                continue;
+            }
+            System.arraycopy(sample, 0, normalized, 0, sample.length);
+            if (!VectorMath.normalize(normalized, 0, normalized.length)) {
+                continue;
+            }
+            for (int i = 0; i < normalized.length; i++) {
+                lo[i] = Math.min(lo[i], normalized[i]);
+                hi[i] = Math.max(hi[i], normalized[i]);
+            }
+        }
+        if (lo == null || lo[0] == Float.POSITIVE_INFINITY) {
+            throw new IllegalArgumentException("At least one non-zero sample is required for calibration");
+        }
+        int steps = (1 << bits) - 1;
+        float[] scale = new float[lo.length];
+        for (int i = 0; i < lo.length; i++) {
+            float range = hi[i] - lo[i];
+            // A constant dimension still needs a non-zero step to stay decodable
+            scale[i] = range > 0f ? range / steps : 1e-6f;
+        }
+        return new QuantizationCodebook(bits, lo, scale);
+    }
+
+    /**
+     * Uncalibrated fallback covering {@code [-1, 1]} in every dimension, which bounds any
+     * component of a unit vector. Coarser than a calibrated codebook but always valid.
+     *
+     * @param bits 8 or 4
+     * @param dimensions embedding dimension
+     * @return the fallback codebook
+     */
+    public static QuantizationCodebook symmetric(int bits, int dimensions) {
+        float[] lo = new float[dimensions];
+        float[] scale = new float[dimensions];
+        Arrays.fill(lo, -1f);
+        Arrays.fill(scale, 2f / ((1 << bits) - 1));
+        return new QuantizationCodebook(bits, lo, scale);
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public int dimensions() {
+        return min.length;
+    }
+
+    public float[] min() {
+        return min.clone();
+    }
+
+    public float[] scale() {
+        return scale.clone();
+    }
+
+    /**
+     * @return the number of bytes of one encoded vector
+     */
+    public int codeBytes() {
+        return bits == 8 ? min.length : (min.length + 1) / 2;
+    }
+
+    /**
+     * Normalizes and quantizes a vector; values outside the calibrated range are clamped.
+     *
+     * @param vector the embedding to encode
+     * @return the codes, {@link #codeBytes()} long
+     */
+    public byte[] encode(float[] vector) {
+        checkDimension(vector.length);
+        float[] normalized = vector.clone();
+        VectorMath.normalize(normalized, 0, normalized.length);
+        byte[] codes = new byte[codeBytes()];
+        int maxCode = levels - 1;
+        for (int i = 0; i < normalized.length; i++) {
+            int code = Math.round((normalized[i] - min[i]) / scale[i]);
+            code = Math.max(0, Math.min(maxCode, code));
+            if (bits == 8) {
+                codes[i] = (byte) code;
+            } else {
+                codes[i >> 1] |= (byte) ((i & 1) == 0 ? code : code << 4);
+            }
+        }
+        return codes;
+    }
+
+    /**
+     * Reconstructs an approximation of the normalized vector from its codes.
+     *
+     * @param codes the codes produced by {@link #encode(float[])}
+     * @return the reconstructed vector
+     */
+    public float[] decode(byte[] codes) {
+        float[] vector = new float[min.length];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = min[i] + scale[i] * code(codes, i);
+        }
+        return vector;
+    }
+
+    /**
+     * Folds the codebook into per-dimension query weights, so that
+     * {@code dot(query, decode(codes)) = bias + sum(weight_i * code_i)}.
+     *
+     * @param query the full-precision query embedding
+     * @return the prepared query
+     */
+    public Query prepare(float[] query) {
+        checkDimension(query.length);
+        float[] normalized = query.clone();
+        VectorMath.normalize(normalized, 0, normalized.length);
+        float[] weights = new float[normalized.length];
+        double bias = 0.0;
+        for (int i = 0; i < normalized.length; i++) {
+            weights[i] = normalized[i] * scale[i];
+            bias += normalized[i] * min[i];
+        }
+        return new Query(weights, (float) bias);
+    }
+
+    /**
+     * Approximate cosine similarity between a prepared query and encoded vector,
+     * computed directly on the codes.
+     *
+     * @param query the prepared query
+     * @param codes the encoded vector
+     * @return the approximate cosine similarity
+     */
+    public float similarity(Query query, byte[] codes) {
+        return similarity(query, codes, 0);
+    }
+
+    /**
+     * Same as {@link #similarity(Query, byte[])} for codes stored at an offset of a packed array.
+     */
+    public float similarity(Query query, byte[] codes, int offset) {
+        float[] w = query.weights;
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        if (bits == 8) {
+            int i = 0;
+            int bound = w.length & ~3;
+            for (; i < bound; i += 4) {
+                s0 += w[i] * (codes[offset + i] & 0xff);
+                s1 += w[i + 1] * (codes[offset + i + 1] & 0xff);
+                s2 += w[i + 2] * (codes[offset + i + 2] & 0xff);
+                s3 += w[i + 3] * (codes[offset + i + 3] & 0xff);
+            }
+            for (; i < w.length; i++) {
+                s0 += w[i] * (codes[offset + i] & 0xff);
+            }
+        } else {
+            int i = 0;
+            int bound = w.length & ~1;
+            for (; i < bound; i += 2) {
+                int packed = codes[offset + (i >> 1)];
+                s0 += w[i] * (packed & 0x0f);
+                s1 += w[i + 1] * ((packed >> 4) & 0x0f);
+            }
+            if (i < w.length) {
+                s2 += w[i] * (codes[offset + (i >> 1)] & 0x0f);
+            }
+        }
+        return query.bias + (s0 + s1) + (s2 + s3);
+    }
+
+    private int code(byte[] codes, int dimension) {
+        if (bits == 8) {
+            return codes[dimension] & 0xff;
+        }
+        int packed = codes[dimension >> 1];
+        return (dimension & 1) == 0 ? packed & 0x0f : (packed >> 4) & 0x0f;
+    }
+
+    private void checkDimension(int length) {
+        if (length != min.length) {
+            throw new IllegalArgumentException(
+                    "Embedding dimension " + length + " does not match codebook dimension " + min.length);
+        }
+    }
+
+    /**
+     * A query folded into codebook space, see {@link #prepare(float[])}.
+     */
+    public static final class Query {
+        private final float[] weights;
+        private final float bias;
+
+        private Query(float[] weights, float bias) {
+            this.weights = weights;
+            this.bias = bias;
+        }
+    }
+}
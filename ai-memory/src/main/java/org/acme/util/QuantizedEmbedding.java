@@ -0,0 +1,14 @@
+package org.acme.util;
+
+/**
+ * Quantized codes of one embedding together with the codebook needed to interpret them.
+ *
+ * @param codes      packed per-dimension codes, see {@link QuantizationCodebook}
+ * @param bits       code width, 8 or 4
+ * @param codebookId ID of the persisted codebook, or null for the uncalibrated fallback
+ *
+ * @author AI Memory System
+ * @since 1.1
+ */
+public record QuantizedEmbedding(byte[] codes, int bits, Long codebookId) {
+}
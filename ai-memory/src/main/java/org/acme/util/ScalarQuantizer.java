@@ -1,173 +1,213 @@
 package org.acme.util;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.acme.entities.EmbeddingCodebook;
+import org.acme.entities.MemoryFragment;
+import org.acme.repositories.EmbeddingCodebookRepository;
+import org.acme.repositories.MemoryFragmentRepository;
+
 import dev.langchain4j.data.embedding.Embedding;
 import io.quarkus.logging.Log;
+import io.quarkus.runtime.StartupEvent;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.inject.Inject;
+import jakarta.transaction.Transactional;
 
 /**
- * Utility class for quantizing high-dimensional embedding vectors into compact representations.
- * 
- * <p>This service provides scalar quantization functionality to compress embedding vectors
- * from their original high-precision floating-point representation into more storage-efficient
- * formats. The quantization process trades precision for storage efficiency, making it
- * suitable for archival storage and memory-constrained operations.</p>
- * 
- * <p>Key features:</p>
- * <ul>
- *   <li><strong>Scalar Quantization:</strong> Reduces vectors to single-byte representations</li>
- *   <li><strong>Adaptive Quantization:</strong> Uses different strategies based on vector characteristics</li>
- *   <li><strong>Lossy Compression:</strong> Significantly reduces storage requirements</li>
- *   <li><strong>Approximate Reconstruction:</strong> Provides rough dequantization for analysis</li>
- * </ul>
- * 
- * <p>Quantization approaches:</p>
+ * Service for quantizing high-dimensional embedding vectors into compact per-dimension codes.
+ *
+ * <p>Every dimension of an embedding is kept as an unsigned 8-bit or 4-bit code, calibrated
+ * against per-dimension min/max ranges observed over stored embeddings. Compared to the
+ * 384 float vector this uses 4x (int8) or 8x (int4) less memory while remaining usable for
+ * similarity search: see {@link QuantizationCodebook} for the asymmetric distance computation
+ * that scores full-precision queries directly against the codes.</p>
+ *
+ * <p>Codebook lifecycle:</p>
  * <ul>
- *   <li><strong>Average-Based:</strong> For vectors with significant non-zero averages</li>
- *   <li><strong>Range-Based:</strong> For normalized vectors with near-zero averages</li>
- *   <li><strong>Statistical:</strong> Uses vector statistics for edge cases</li>
+ *   <li><strong>Uncalibrated:</strong> Until enough embeddings exist, a fallback codebook
+ *       covering [-1, 1] is used (codebook ID null)</li>
+ *   <li><strong>Calibration:</strong> {@link #calibrate(int)} samples recent embeddings and
+ *       persists a new {@link EmbeddingCodebook}</li>
+ *   <li><strong>Decoding:</strong> Older codes reference the codebook they were created with,
+ *       so recalibration never invalidates stored codes</li>
  * </ul>
- * 
- * <p><strong>Important Note:</strong> This is a simplified quantization implementation
- * suitable for demonstration and basic archival purposes. Production systems should
- * consider more sophisticated techniques such as:</p>
- * <ul>
- *   <li>Product Quantization (PQ)</li>
- *   <li>Binary Quantization</li>
- *   <li>Learned Quantization</li>
- *   <li>Multi-byte quantization schemes</li>
- * </ul>
- * 
+ *
  * @author AI Memory System
  * @since 1.0
  */
 @ApplicationScoped
 public class ScalarQuantizer {
-    
+
     /**
-     * Quantizes an embedding vector into a single-byte representation.
-     * 
-     * <p>This method compresses a high-dimensional embedding vector into a single byte
-     * value using adaptive quantization strategies. The quantization approach is selected
-     * based on the statistical characteristics of the input vector:</p>
-     * 
-     * <ul>
-     *   <li><strong>Standard Quantization:</strong> For vectors with meaningful averages,
-     *       scales the average to the [-128, 127] byte range</li>
-     *   <li><strong>Range-Based Quantization:</strong> For normalized vectors with near-zero
-     *       averages, uses the value range and statistical properties</li>
-     *   <li><strong>Threshold-Based Quantization:</strong> Applies minimum thresholds to
-     *       handle edge cases and very small values</li>
-     * </ul>
-     * 
-     * <p>The quantization process:</p>
-     * <ol>
-     *   <li>Calculates statistical properties (sum, average, min, max)</li>
-     *   <li>Determines the appropriate quantization strategy</li>
-     *   <li>Scales the representative value to byte range</li>
-     *   <li>Clamps the result to valid byte values [-128, 127]</li>
-     * </ol>
-     * 
-     * <p><strong>Precision Loss:</strong> This quantization is highly lossy and is
-     * intended for archival storage rather than high-precision operations. The
-     * single-byte representation captures only the most general characteristics
-     * of the original vector.</p>
-     * 
-     * @param embedding The high-dimensional embedding to quantize
-     * @return A byte value representing the quantized embedding
-     * @throws NullPointerException if the embedding is null
-     * @throws IllegalArgumentException if the embedding vector is empty
+     * Embedding dimension of the configured embedding model.
+     */
+    public static final int DIMENSIONS = 384;
+
+    /**
+     * Code width used for freshly ingested fragments.
+     */
+    public static final int INGEST_BITS = 8;
+
+    /**
+     * Code width used for archived fragments.
+     */
+    public static final int ARCHIVE_BITS = 4;
+
+    /**
+     * Maximum number of recent embeddings sampled for calibration.
      */
-    public byte quantize(Embedding embedding) {
-        float[] vector = embedding.vector();
-        
-        // Simple quantization: compute the average of all dimensions
-        // and map to byte range [-128, 127]
-        double sum = 0.0;
-        double min = Double.MAX_VALUE;
-        double max = Double.MIN_VALUE;
-        
-        for (float value : vector) {
-            sum += value;
-            min = Math.min(min, value);
-            max = Math.max(max, value);
+    private static final int CALIBRATION_SAMPLE_SIZE = 2000;
+
+    @Inject
+    EmbeddingCodebookRepository codebookRepository;
+
+    @Inject
+    MemoryFragmentRepository fragmentRepository;
+
+    private final Map<Long, QuantizationCodebook> codebooksById = new ConcurrentHashMap<>();
+    private final Map<Integer, ActiveCodebook> activeCodebooks = new ConcurrentHashMap<>();
+
+    private record ActiveCodebook(Long id, QuantizationCodebook codebook) {
+    }
+
+    /**
+     * Loads the latest persisted codebooks so ingestion does not hit the database.
+     */
+    @Transactional
+    void loadCodebooks(@Observes StartupEvent event) {
+        for (int bits : new int[] { INGEST_BITS, ARCHIVE_BITS }) {
+            codebookRepository.findLatest(bits).ifPresent(this::register);
         }
-        
-        double average = sum / vector.length;
-        
-        Log.infof("Quantizer Debug: vector length=%d, sum=%f, average=%f, min=%f, max=%f", 
-                vector.length, sum, average, min, max);
-        
-        // Improved quantization approach: use the range of values
-        // If the average is very close to 0, use the dominant direction instead
-        if (Math.abs(average) < 0.001) {
-            // For normalized embeddings, use the sign of the sum and a scaled magnitude
-            // based on the range of values
-            double range = max - min;
-            double scaledValue = (average / range) * 127;
-            
-            // If still too small, use a minimum threshold based on vector statistics
-            if (Math.abs(scaledValue) < 1.0) {
-                scaledValue = Math.signum(average) * Math.min(Math.abs(range * 100), 10.0);
-            }
-            
-            Log.infof("Quantizer: Using improved quantization - range=%f, scaledValue=%f", range, scaledValue);
-            
-            int quantized = (int) Math.round(scaledValue);
-            quantized = Math.max(-128, Math.min(127, quantized));
-            
-            return (byte) quantized;
+        Log.infof("Quantizer: Loaded calibrated codebooks for %s bit codes", activeCodebooks.keySet());
+    }
+
+    /**
+     * Quantizes an embedding with the active 8-bit codebook.
+     *
+     * @param embedding The high-dimensional embedding to quantize
+     * @return the quantized codes and the codebook they refer to
+     * @throws IllegalArgumentException if the embedding dimension does not match
+     */
+    public QuantizedEmbedding quantize(Embedding embedding) {
+        return quantize(embedding.vector(), INGEST_BITS);
+    }
+
+    /**
+     * Quantizes a vector with the active codebook of the given width.
+     *
+     * @param vector the embedding vector
+     * @param bits 8 or 4
+     * @return the quantized codes and the codebook they refer to
+     */
+    public QuantizedEmbedding quantize(float[] vector, int bits) {
+        ActiveCodebook active = active(bits);
+        byte[] codes = active.codebook().encode(vector);
+        Log.debugf("Quantizer: Encoded %d dimensions into %d bytes (%d bit, codebook %s)",
+                vector.length, codes.length, bits, active.id());
+        return new QuantizedEmbedding(codes, bits, active.id());
+    }
+
+    /**
+     * Reconstructs an approximation of the normalized embedding from its codes.
+     *
+     * @param quantized the quantized embedding
+     * @return the reconstructed embedding
+     */
+    public Embedding dequantize(QuantizedEmbedding quantized) {
+        return new Embedding(codebook(quantized.bits(), quantized.codebookId()).decode(quantized.codes()));
+    }
+
+    /**
+     * Resolves the codebook a set of codes was created with.
+     *
+     * <p>Codebooks that are not cached yet are loaded from the database, which
+     * requires an active transaction or request context.</p>
+     *
+     * @param bits code width
+     * @param codebookId persisted codebook ID, or null for the uncalibrated fallback
+     * @return the codebook
+     */
+    public QuantizationCodebook codebook(int bits, Long codebookId) {
+        if (codebookId == null) {
+            return QuantizationCodebook.symmetric(bits, DIMENSIONS);
         }
-        
-        // Original approach for non-normalized embeddings
-        int quantized = (int) Math.round(average * 127);
-        quantized = Math.max(-128, Math.min(127, quantized));
-        
-        Log.infof("Quantizer: Using original quantization - scaled=%f, final=%d", average * 127, quantized);
-        
-        return (byte) quantized;
+        return codebooksById.computeIfAbsent(codebookId, id -> toCodebook(codebookRepository.findByIdOptional(id)
+                .orElseThrow(() -> new IllegalStateException("Unknown quantization codebook " + id))));
+    }
+
+    /**
+     * @param bits code width
+     * @return true if a calibrated codebook exists for the code width
+     */
+    public boolean isCalibrated(int bits) {
+        return activeCodebooks.containsKey(bits);
+    }
+
+    /**
+     * Calibrates the code width if no calibrated codebook exists yet.
+     *
+     * @param bits code width
+     * @return true if a calibrated codebook is available afterwards
+     */
+    @Transactional
+    public boolean ensureCalibrated(int bits) {
+        return isCalibrated(bits) || calibrate(bits) != null;
     }
-    
+
     /**
-     * Dequantizes a byte value back to an approximate embedding vector.
-     * 
-     * <p>This method attempts to reconstruct an embedding vector from its quantized
-     * byte representation. The reconstruction is highly approximate and should be
-     * used only for analysis, debugging, or rough similarity estimates.</p>
-     * 
-     * <p>Reconstruction process:</p>
-     * <ol>
-     *   <li>Scales the byte value back to [-1.0, 1.0] float range</li>
-     *   <li>Creates a vector of the specified dimensions</li>
-     *   <li>Fills all dimensions with the same reconstructed value</li>
-     * </ol>
-     * 
-     * <p><strong>Limitations:</strong> This reconstruction is extremely crude and
-     * loses all dimensional information from the original vector. It provides only
-     * a general magnitude and direction indicator. Real-world applications would
-     * require more sophisticated dequantization methods.</p>
-     * 
-     * <p><strong>Use Cases:</strong> Suitable for:</p>
-     * <ul>
-     *   <li>Debugging quantization behavior</li>
-     *   <li>Rough magnitude comparisons</li>
-     *   <li>Statistical analysis of quantized data</li>
-     *   <li>Fallback operations when original embeddings are unavailable</li>
-     * </ul>
-     * 
-     * @param quantizedByte The quantized byte value to reconstruct from
-     * @param dimensions The number of dimensions for the output vector
-     * @return An approximate embedding vector with all dimensions set to the same value
-     * @throws IllegalArgumentException if dimensions is less than 1
+     * Calibrates per-dimension ranges from the most recent stored embeddings and
+     * persists them as the new active codebook for the code width.
+     *
+     * @param bits 8 or 4
+     * @return the ID of the new codebook, or null if there were no embeddings to calibrate from
      */
-    public Embedding dequantize(byte quantizedByte, int dimensions) {
-        float value = quantizedByte / 127.0f;
-        float[] vector = new float[dimensions];
-        
-        // Fill all dimensions with the same value (very crude approximation)
-        for (int i = 0; i < dimensions; i++) {
-            vector[i] = value;
+    @Transactional
+    public Long calibrate(int bits) {
+        List<float[]> samples = fragmentRepository
+                .find("embedding IS NOT NULL ORDER BY createdAt DESC")
+                .page(0, CALIBRATION_SAMPLE_SIZE)
+                .list()
+                .stream()
+                .map(MemoryFragment::getEmbedding)
+                .collect(Collectors.toList());
+        if (samples.isEmpty()) {
+            Log.infof("Quantizer: No embeddings available, skipping %d bit calibration", bits);
+            return null;
         }
-        
-        return new Embedding(vector);
+
+        QuantizationCodebook codebook = QuantizationCodebook.calibrate(samples, bits);
+
+        EmbeddingCodebook entity = new EmbeddingCodebook();
+        entity.setBits(bits);
+        entity.setMinValues(codebook.min());
+        entity.setScales(codebook.scale());
+        entity.setSampleSize(samples.size());
+        entity.setCreatedAt(LocalDateTime.now());
+        codebookRepository.persist(entity);
+
+        register(entity);
+        Log.infof("Quantizer: Calibrated %d bit codebook %d from %d embeddings", bits, entity.id, samples.size());
+        return entity.id;
+    }
+
+    private ActiveCodebook active(int bits) {
+        ActiveCodebook active = activeCodebooks.get(bits);
+        return active != null ? active : new ActiveCodebook(null, QuantizationCodebook.symmetric(bits, DIMENSIONS));
+    }
+
+    private void register(EmbeddingCodebook entity) {
+        QuantizationCodebook codebook = toCodebook(entity);
+        codebooksById.put(entity.id, codebook);
+        activeCodebooks.put(entity.getBits(), new ActiveCodebook(entity.id, codebook));
+    }
+
+    private static QuantizationCodebook toCodebook(EmbeddingCodebook entity) {
+        return new QuantizationCodebook(entity.getBits(), entity.getMinValues(), entity.getScales());
     }
-} 
\ No newline at end of file
+}
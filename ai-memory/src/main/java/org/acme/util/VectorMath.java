@@ -0,0 +1,77 @@
+package org.acme.util;
+
+/**
+ * Low-level vector kernels shared by the clustering, quantization and retrieval code.
+ * 
+ * <p>The loops are unrolled with independent accumulators so the JIT can keep several
+ * multiply-adds in flight and auto-vectorize them; this avoids depending on the incubating
+ * JDK Vector API (which needs {@code --add-modules} at build and run time).</p>
+ * 
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class VectorMath {
+
+    private VectorMath() {
+    }
+
+    /**
+     * Dot product of two full-length vectors.
+     *
+     * @param a first vector
+     * @param b second vector, same length as {@code a}
+     * @return the dot product
+     */
+    public static float dot(float[] a, float[] b) {
+        return dot(a, 0, b, 0, a.length);
+    }
+
+    /**
+     * Dot product of two vectors stored at offsets inside larger arrays (e.g. rows of a matrix).
+     *
+     * @param a array holding the first vector
+     * @param aOffset start of the first vector
+     * @param b array holding the second vector
+     * @param bOffset start of the second vector
+     * @param length number of dimensions
+     * @return the dot product
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float s0 = 0f;
+        float s1 = 0f;
+        float s2 = 0f;
+        float s3 = 0f;
+        int i = 0;
+        int bound = length & ~3;
+        for (; i < bound; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < length; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Scales a vector in place to unit length.
+     *
+     * @param v array holding the vector
+     * @param offset start of the vector
+     * @param length number of dimensions
+     * @return false if the vector has zero length and was left untouched
+     */
+    public static boolean normalize(float[] v, int offset, int length) {
+        float norm = dot(v, offset, v, offset, length);
+        if (norm == 0f || !Float.isFinite(norm)) {
+            return false;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < length; i++) {
+            v[offset + i] *= scale;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,135 @@
+package org.acme.util;
+
+/**
+ * Vantage-point tree over the rows of an {@link EmbeddingMatrix}, answering exact range queries
+ * in Euclidean distance (equivalently: cosine distance, since the rows are normalized).
+ * 
+ * <p>The tree is stored implicitly in two arrays, without node objects: the subtree rooted at
+ * position {@code lo} covers {@code [lo, hi)}, its vantage point is {@code items[lo]}, the points
+ * within {@code thresholds[lo]} of it occupy {@code [lo + 1, mid)} and the rest {@code [mid, hi)}.
+ * Splitting at the median keeps the depth at {@code log2(n)} regardless of the data.</p>
+ * 
+ * <p>Note that in high dimensions and with large radii the pruning gets weaker and queries
+ * degrade towards a linear scan, which is still cheaper than the naive scan because distances
+ * are computed on packed, pre-normalized rows.</p>
+ * 
+ * @author AI Memory System
+ * @since 1.1
+ */
+public final class VpTree {
+
+    private final EmbeddingMatrix matrix;
+    private final int[] items;
+    private final double[] thresholds;
+    // Scratch space for building: distance of items[i] to the current vantage point
+    private double[] distances;
+
+    /**
+     * Builds the tree over the given rows of the matrix. All rows must be valid.
+     *
+     * @param matrix the packed embeddings
+     * @param rows the rows to index
+     */
+    public VpTree(EmbeddingMatrix matrix, int[] rows) {
+        this.matrix = matrix;
+        this.items = rows.clone();
+        this.thresholds = new double[items.length];
+        this.distances = new double[items.length];
+        build(0, items.length);
+        this.distances = null;
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * Collects every indexed row within {@code radius} of the query row, excluding the query itself.
+     *
+     * @param query row of the matrix to search around
+     * @param radius Euclidean radius (see {@link EmbeddingMatrix#cosineToEuclidean(double)})
+     * @param out receives the matching rows; not cleared
+     */
+    public void rangeSearch(int query, double radius, IntList out) {
+        search(query, radius, 0, items.length, out);
+    }
+
+    private void search(int query, double radius, int lo, int hi, IntList out) {
+        while (lo < hi) {
+            int vantage = items[lo];
+            double d = matrix.euclideanDistance(query, vantage);
+            if (d <= radius && vantage != query) {
+                out.add(vantage);
+            }
+            if (hi - lo == 1) {
+                return;
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            double threshold = thresholds[lo];
+            boolean inside = d - radius <= threshold;
+            boolean outside = d + radius >= threshold;
+            if (inside && outside) {
+                search(query, radius, lo + 1, mid, out);
+                lo = mid;
+            } else if (inside) {
+                hi = mid;
+                lo = lo + 1;
+            } else {
+                lo = mid;
+            }
+        }
+    }
+
+    private void build(int lo, int hi) {
+        while (hi - lo > 1) {
+            int vantage = items[lo];
+            for (int i = lo + 1; i < hi; i++) {
+                distances[i] = matrix.euclideanDistance(vantage, items[i]);
+            }
+            int mid = (lo + 1 + hi) >>> 1;
+            // Partition so that [lo + 1, mid) holds the closest points and [mid, hi) the farthest
+            select(lo + 1, hi - 1, mid);
+            thresholds[lo] = distances[mid];
+            build(lo + 1, mid);
+            lo = mid;
+        }
+    }
+
+    // Quickselect on distances[] (moving items[] along) so that position k holds its sorted value
+    private void select(int left, int right, int k) {
+        while (left < right) {
+            double pivot = distances[(left + right) >>> 1];
+            int i = left;
+            int j = right;
+            while (i <= j) {
+                while (distances[i] < pivot) {
+                    i++;
+                }
+                while (distances[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(i, j);
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                right = j;
+            } else if (k >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void swap(int i, int j) {
+        double d = distances[i];
+        distances[i] = distances[j];
+        distances[j] = d;
+        int item = items[i];
+        items[i] = items[j];
+        items[j] = item;
+    }
+}
@@ -0,0 +1,142 @@
+package org.acme.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class HnswIndexTest {
+
+    private static final int DIMENSIONS = 64;
+    private static final int K = 10;
+
+    @Test
+    void testRecallOnClusteredData() {
+        Random random = new Random(7);
+        float[][] data = clustered(random, 20, 250, 0.04f);
+        HnswIndex index = build(data);
+
+        double recall = recall(index, data, new boolean[data.length], random, 200, 64);
+        assertTrue(recall >= 0.95, "recall@" + K + " " + recall);
+    }
+
+    @Test
+    void testRecallOnTightClusters() {
+        // Many near duplicates: pruning by distance alone cuts the clusters apart
+        Random random = new Random(11);
+        float[][] data = clustered(random, 50, 200, 0.01f);
+        HnswIndex index = build(data);
+
+        double recall = recall(index, data, new boolean[data.length], random, 200, 64);
+        assertTrue(recall >= 0.95, "recall@" + K + " " + recall);
+    }
+
+    @Test
+    void testRecallWithDeletions() {
+        Random random = new Random(3);
+        float[][] data = clustered(random, 20, 250, 0.04f);
+        HnswIndex index = build(data);
+        boolean[] deleted = new boolean[data.length];
+        for (int node = 0; node < data.length; node++) {
+            if (random.nextInt(5) == 0) {
+                deleted[node] = true;
+                index.delete(node);
+            }
+        }
+
+        double recall = recall(index, data, deleted, random, 200, 64);
+        assertTrue(recall >= 0.95, "recall@" + K + " " + recall);
+    }
+
+    @Test
+    void testFindsEveryNodeByItsOwnVector() {
+        Random random = new Random(5);
+        float[][] data = clustered(random, 20, 250, 0.04f);
+        HnswIndex index = build(data);
+
+        int[] nodes = new int[1];
+        double[] scores = new double[1];
+        int found = 0;
+        for (int node = 0; node < data.length; node++) {
+            assertEquals(1, index.search(data[node], 1, 64, (n, similarity) -> similarity, nodes, scores));
+            if (scores[0] >= 0.9999) {
+                found++;
+            }
+        }
+        assertTrue(found >= data.length * 0.995, "found " + found + " of " + data.length);
+    }
+
+    private static HnswIndex build(float[][] data) {
+        HnswIndex index = new HnswIndex(DIMENSIONS, 16, 100);
+        for (float[] vector : data) {
+            index.add(vector);
+        }
+        return index;
+    }
+
+    // Share of the true top k among the live nodes that the index returns
+    private static double recall(HnswIndex index, float[][] data, boolean[] deleted, Random random, int queries,
+            int ef) {
+        int[] nodes = new int[K];
+        double[] scores = new double[K];
+        int hits = 0;
+        for (int q = 0; q < queries; q++) {
+            float[] query = data[random.nextInt(data.length)].clone();
+            for (int i = 0; i < DIMENSIONS; i++) {
+                query[i] += (float) random.nextGaussian() * 0.02f;
+            }
+            VectorMath.normalize(query, 0, DIMENSIONS);
+
+            int count = index.search(query, K, ef, (node, similarity) -> similarity, nodes, scores);
+            int[] expected = bruteForce(data, deleted, query);
+            for (int i = 0; i < count; i++) {
+                for (int e : expected) {
+                    if (nodes[i] == e) {
+                        hits++;
+                        break;
+                    }
+                }
+            }
+        }
+        return (double) hits / (queries * K);
+    }
+
+    private static int[] bruteForce(float[][] data, boolean[] deleted, float[] query) {
+        Integer[] order = new Integer[data.length];
+        float[] similarity = new float[data.length];
+        for (int node = 0; node < data.length; node++) {
+            order[node] = node;
+            similarity[node] = deleted[node] ? Float.NEGATIVE_INFINITY : VectorMath.dot(query, data[node]);
+        }
+        Arrays.sort(order, (a, b) -> Float.compare(similarity[b], similarity[a]));
+        int[] top = new int[K];
+        for (int i = 0; i < K; i++) {
+            top[i] = order[i];
+        }
+        return top;
+    }
+
+    // Normalized points scattered around random centers
+    private static float[][] clustered(Random random, int clusters, int perCluster, float spread) {
+        float[][] data = new float[clusters * perCluster][];
+        for (int c = 0; c < clusters; c++) {
+            float[] center = new float[DIMENSIONS];
+            for (int i = 0; i < DIMENSIONS; i++) {
+                center[i] = (float) random.nextGaussian();
+            }
+            VectorMath.normalize(center, 0, DIMENSIONS);
+            for (int p = 0; p < perCluster; p++) {
+                float[] point = center.clone();
+                for (int i = 0; i < DIMENSIONS; i++) {
+                    point[i] += (float) random.nextGaussian() * spread;
+                }
+                VectorMath.normalize(point, 0, DIMENSIONS);
+                data[c * perCluster + p] = point;
+            }
+        }
+        return data;
+    }
+}
@@ -3,112 +3,246 @@ package org.acme;
 import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
-import java.util.Random;
+import java.util.stream.IntStream;
 
 import javax.imageio.ImageIO;
 
 import jakarta.enterprise.context.ApplicationScoped;
 
+/**
+ * Extracts the dominant colors of an image.
+ * <p>
+ * The image is first reduced to a histogram of 5-bit-per-channel colors, so the
+ * clustering works on at most 32768 weighted colors whatever the image size.
+ * Images above about a megapixel are sampled on a regular grid.
+ * K-means runs on that histogram with a deterministic k-means++ style seeding
+ * and stops when no color changes cluster. The same image always gives the
+ * same palette, ordered from the most to the least common color.
+ * </p>
+ */
 @ApplicationScoped
 public class ColorExtractorService {
 
+    private static final int BITS = 5;
+    private static final int LEVELS = 1 << BITS;
+    private static final int BINS = LEVELS * LEVELS * LEVELS;
+    private static final int MAX_ITERATIONS = 50;
+    private static final int MAX_SAMPLES = 1 << 20;
+    // Sampled rows per histogram task
+    private static final int BAND_ROWS = 64;
+    // Histogram colors per assignment task
+    private static final int CHUNK = 4096;
+
     public List<String> extractColors(InputStream inputStream, int numColors) throws Exception {
         BufferedImage image = ImageIO.read(inputStream);
-        int[][] pixels = getPixelArray(image);
-
-        List<int[]> centroids = initializeCentroids(pixels, numColors);
-        List<List<int[]>> clusters;
-
-        // Iterate a few times for the K-Means algorithm to converge
-        for (int i = 0; i < 10; i++) {
-            clusters = assignToClusters(pixels, centroids);
-            centroids = updateCentroids(clusters);
+        if (image == null) {
+            throw new IllegalArgumentException("Unsupported image format");
         }
 
+        Histogram histogram = Histogram.of(image);
+        Cluster[] clusters = kMeans(histogram, Math.min(numColors, histogram.size()));
+
         List<String> hexColors = new ArrayList<>();
-        for (int[] centroid : centroids) {
-            hexColors.add(String.format("#%02x%02x%02x", centroid[0], centroid[1], centroid[2]));
+        for (Cluster cluster : clusters) {
+            hexColors.add(String.format("#%02x%02x%02x",
+                    Math.round(cluster.r), Math.round(cluster.g), Math.round(cluster.b)));
         }
         return hexColors;
     }
 
-    private int[][] getPixelArray(BufferedImage image) {
-        int width = image.getWidth();
-        int height = image.getHeight();
-        // For performance, we can sample the pixels instead of using all of them
-        int sampleRate = Math.max(1, (width * height) / 10000); // Sample ~10,000 pixels
-        List<int[]> pixelList = new ArrayList<>();
-        int count = 0;
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                if (count % sampleRate == 0) {
-                    int rgb = image.getRGB(x, y);
-                    int[] pixel = new int[3];
-                    pixel[0] = (rgb >> 16) & 0xFF; // Red
-                    pixel[1] = (rgb >> 8) & 0xFF; // Green
-                    pixel[2] = rgb & 0xFF; // Blue
-                    pixelList.add(pixel);
+    /**
+     * Non-empty histogram bins with their pixel count and channel sums.
+     * The sums are exact, so merging partial results in any order gives the same means.
+     */
+    private record Histogram(int[] counts, long[] sumR, long[] sumG, long[] sumB,
+            float[] r, float[] g, float[] b) {
+
+        static Histogram of(BufferedImage image) {
+            int width = image.getWidth();
+            int height = image.getHeight();
+            // Large images are sampled on a regular grid of about MAX_SAMPLES pixels
+            int step = (int) Math.max(1, Math.sqrt((double) width * height / MAX_SAMPLES));
+            int rows = (height + step - 1) / step;
+            int bands = (rows + BAND_ROWS - 1) / BAND_ROWS;
+
+            // Every fork/join split fills its own histogram, so no synchronization is needed
+            long[] total = IntStream.range(0, bands).parallel()
+                    .collect(() -> new long[BINS * 4],
+                            (partial, band) -> {
+                                int[] row = new int[width];
+                                int end = Math.min(rows, (band + 1) * BAND_ROWS);
+                                for (int sampleRow = band * BAND_ROWS; sampleRow < end; sampleRow++) {
+                                    image.getRGB(0, sampleRow * step, width, 1, row, 0, width);
+                                    for (int x = 0; x < width; x += step) {
+                                        add(partial, row[x]);
+                                    }
+                                }
+                            },
+                            (a, b) -> Arrays.setAll(a, i -> a[i] + b[i]));
+
+            int size = 0;
+            for (int bin = 0; bin < BINS; bin++) {
+                if (total[4 * bin] > 0) {
+                    size++;
+                }
+            }
+            Histogram histogram = new Histogram(new int[size], new long[size], new long[size], new long[size],
+                    new float[size], new float[size], new float[size]);
+            int i = 0;
+            for (int bin = 0; bin < BINS; bin++) {
+                long count = total[4 * bin];
+                if (count > 0) {
+                    histogram.counts[i] = (int) Math.min(Integer.MAX_VALUE, count);
+                    histogram.sumR[i] = total[4 * bin + 1];
+                    histogram.sumG[i] = total[4 * bin + 2];
+                    histogram.sumB[i] = total[4 * bin + 3];
+                    histogram.r[i] = (float) total[4 * bin + 1] / count;
+                    histogram.g[i] = (float) total[4 * bin + 2] / count;
+                    histogram.b[i] = (float) total[4 * bin + 3] / count;
+                    i++;
                 }
-                count++;
             }
+            return histogram;
+        }
+
+        private static void add(long[] histogram, int rgb) {
+            int red = (rgb >> 16) & 0xFF;
+            int green = (rgb >> 8) & 0xFF;
+            int blue = rgb & 0xFF;
+            int bin = 4 * ((red >> (8 - BITS)) << (2 * BITS)
+                    | (green >> (8 - BITS)) << BITS
+                    | (blue >> (8 - BITS)));
+            histogram[bin]++;
+            histogram[bin + 1] += red;
+            histogram[bin + 2] += green;
+            histogram[bin + 3] += blue;
+        }
+
+        int size() {
+            return counts.length;
+        }
+
+        float distance(int i, float red, float green, float blue) {
+            float dr = r[i] - red;
+            float dg = g[i] - green;
+            float db = b[i] - blue;
+            return dr * dr + dg * dg + db * db;
         }
-        return pixelList.toArray(new int[0][]);
     }
 
-    private List<int[]> initializeCentroids(int[][] pixels, int numColors) {
-        List<int[]> centroids = new ArrayList<>();
-        Random random = new Random();
-        for (int i = 0; i < numColors; i++) {
-            centroids.add(pixels[random.nextInt(pixels.length)]);
+    private static final class Cluster {
+        float r;
+        float g;
+        float b;
+        long weight;
+
+        Cluster(float r, float g, float b) {
+            this.r = r;
+            this.g = g;
+            this.b = b;
         }
-        return centroids;
     }
 
-    private List<List<int[]>> assignToClusters(int[][] pixels, List<int[]> centroids) {
-        List<List<int[]>> clusters = new ArrayList<>();
-        for (int i = 0; i < centroids.size(); i++) {
-            clusters.add(new ArrayList<>());
+    private Cluster[] kMeans(Histogram histogram, int k) {
+        if (k <= 0) {
+            return new Cluster[0];
         }
+        Cluster[] clusters = seed(histogram, k);
+        int[] assignment = new int[histogram.size()];
+        Arrays.fill(assignment, -1);
 
-        for (int[] pixel : pixels) {
-            double minDistance = Double.MAX_VALUE;
-            int closestCentroidIndex = 0;
-            for (int i = 0; i < centroids.size(); i++) {
-                double distance = getDistance(pixel, centroids.get(i));
-                if (distance < minDistance) {
-                    minDistance = distance;
-                    closestCentroidIndex = i;
+        for (int iteration = 0; iteration < MAX_ITERATIONS; iteration++) {
+            int chunks = (histogram.size() + CHUNK - 1) / CHUNK;
+            // Per chunk: number of changed assignments, then weight and channel sums per cluster
+            long[][] partials = IntStream.range(0, chunks).parallel()
+                    .mapToObj(chunk -> assignChunk(histogram, clusters, assignment, chunk))
+                    .toArray(long[][]::new);
+
+            long changed = 0;
+            long[] sums = new long[4 * k];
+            for (long[] partial : partials) {
+                changed += partial[0];
+                for (int j = 0; j < sums.length; j++) {
+                    sums[j] += partial[j + 1];
+                }
+            }
+            if (changed == 0) {
+                break;
+            }
+            for (int c = 0; c < k; c++) {
+                long weight = sums[4 * c];
+                clusters[c].weight = weight;
+                // An empty cluster keeps its centroid
+                if (weight > 0) {
+                    clusters[c].r = (float) sums[4 * c + 1] / weight;
+                    clusters[c].g = (float) sums[4 * c + 2] / weight;
+                    clusters[c].b = (float) sums[4 * c + 3] / weight;
                 }
             }
-            clusters.get(closestCentroidIndex).add(pixel);
         }
+
+        Arrays.sort(clusters, Comparator.comparingLong((Cluster c) -> c.weight).reversed());
         return clusters;
     }
 
-    private List<int[]> updateCentroids(List<List<int[]>> clusters) {
-        List<int[]> newCentroids = new ArrayList<>();
-        for (List<int[]> cluster : clusters) {
-            if (cluster.isEmpty()) {
-                // if a cluster is empty, re-initialize its centroid randomly
-                newCentroids.add(
-                        new int[] { new Random().nextInt(256), new Random().nextInt(256), new Random().nextInt(256) });
-                continue;
+    private long[] assignChunk(Histogram histogram, Cluster[] clusters, int[] assignment, int chunk) {
+        long[] partial = new long[1 + 4 * clusters.length];
+        int end = Math.min(histogram.size(), (chunk + 1) * CHUNK);
+        for (int i = chunk * CHUNK; i < end; i++) {
+            int closest = 0;
+            float minDistance = Float.MAX_VALUE;
+            for (int c = 0; c < clusters.length; c++) {
+                float distance = histogram.distance(i, clusters[c].r, clusters[c].g, clusters[c].b);
+                if (distance < minDistance) {
+                    minDistance = distance;
+                    closest = c;
+                }
             }
-            long[] sum = new long[3];
-            for (int[] pixel : cluster) {
-                sum[0] += pixel[0];
-                sum[1] += pixel[1];
-                sum[2] += pixel[2];
+            if (assignment[i] != closest) {
+                assignment[i] = closest;
+                partial[0]++;
             }
-            newCentroids.add(new int[] { (int) (sum[0] / cluster.size()), (int) (sum[1] / cluster.size()),
-                    (int) (sum[2] / cluster.size()) });
+            partial[1 + 4 * closest] += histogram.counts[i];
+            partial[2 + 4 * closest] += histogram.sumR[i];
+            partial[3 + 4 * closest] += histogram.sumG[i];
+            partial[4 + 4 * closest] += histogram.sumB[i];
         }
-        return newCentroids;
+        return partial;
     }
 
-    private double getDistance(int[] p1, int[] p2) {
-        return Math.sqrt(Math.pow(p1[0] - p2[0], 2) + Math.pow(p1[1] - p2[1], 2) + Math.pow(p1[2] - p2[2], 2));
+    /**
+     * Greedy k-means++: start with the most common color, then repeatedly take the
+     * color with the highest weight times squared distance to the nearest centroid.
+     * Deterministic, unlike random k-means++ sampling.
+     */
+    private Cluster[] seed(Histogram histogram, int k) {
+        int n = histogram.size();
+        Cluster[] clusters = new Cluster[k];
+        float[] nearest = new float[n];
+        Arrays.fill(nearest, Float.MAX_VALUE);
+
+        int next = 0;
+        for (int i = 1; i < n; i++) {
+            if (histogram.counts[i] > histogram.counts[next]) {
+                next = i;
+            }
+        }
+        for (int c = 0; c < k; c++) {
+            Cluster cluster = new Cluster(histogram.r[next], histogram.g[next], histogram.b[next]);
+            clusters[c] = cluster;
+            double best = -1;
+            for (int i = 0; i < n; i++) {
+                nearest[i] = Math.min(nearest[i], histogram.distance(i, cluster.r, cluster.g, cluster.b));
+                double score = (double) histogram.counts[i] * nearest[i];
+                if (score > best) {
+                    best = score;
+                    next = i;
+                }
+            }
+        }
+        return clusters;
     }
-}
\ No newline at end of file
+}
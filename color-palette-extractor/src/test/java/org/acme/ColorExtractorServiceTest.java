@@ -0,0 +1,52 @@
+package org.acme;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+
+class ColorExtractorServiceTest {
+
+    private final ColorExtractorService service = new ColorExtractorService();
+
+    @Test
+    void testDominantColorsFirst() throws Exception {
+        byte[] png = stripes(2000, 1500);
+
+        List<String> palette = service.extractColors(new ByteArrayInputStream(png), 3);
+
+        assertEquals(List.of("#ff0000", "#00ff00", "#0000ff"), palette);
+        assertEquals(palette, service.extractColors(new ByteArrayInputStream(png), 3));
+    }
+
+    @Test
+    void testFewerColorsThanRequested() throws Exception {
+        List<String> palette = service.extractColors(new ByteArrayInputStream(stripes(100, 100)), 6);
+
+        assertEquals(3, palette.size());
+    }
+
+    // 50% red, 30% green, 20% blue
+    private static byte[] stripes(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.RED);
+        g.fillRect(0, 0, width / 2, height);
+        g.setColor(Color.GREEN);
+        g.fillRect(width / 2, 0, width * 3 / 10, height);
+        g.setColor(Color.BLUE);
+        g.fillRect(width * 8 / 10, 0, width - width * 8 / 10, height);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
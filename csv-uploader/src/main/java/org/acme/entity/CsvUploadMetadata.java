@@ -8,5 +8,5 @@ import java.time.LocalDateTime;
 public class CsvUploadMetadata extends PanacheEntity {
     public String tableName;
     public LocalDateTime uploadTime;
-    public int recordCount;
+    public long recordCount;
 }
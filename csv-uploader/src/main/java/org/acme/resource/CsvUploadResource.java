@@ -3,16 +3,21 @@ package org.acme.resource;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.FormParam;
+import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
 import jakarta.ws.rs.core.MediaType;
 import org.acme.entity.CsvUploadMetadata;
 import org.acme.service.CsvUploadService;
+import org.acme.service.UploadProgress;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
 import org.eclipse.microprofile.openapi.annotations.Operation;
 import org.eclipse.microprofile.openapi.annotations.responses.APIResponse;
 
+import java.util.List;
+import java.util.Map;
+
 @Path("/csv")
 public class CsvUploadResource {
 
@@ -27,4 +32,14 @@ public class CsvUploadResource {
     public CsvUploadMetadata uploadCsv(@FormParam("file") FileUpload fileUpload) throws Exception {
         return csvUploadService.uploadCsv(fileUpload);
     }
+
+    @GET
+    @Path("/progress")
+    @Produces(MediaType.APPLICATION_JSON)
+    @Operation(summary = "Progress of running uploads", description = "Returns bytes read, rows written and throughput of every CSV upload that is still running.")
+    public List<Map<String, Object>> uploadProgress() {
+        return csvUploadService.getActiveUploads().stream()
+                .map(UploadProgress::toMap)
+                .toList();
+    }
 }
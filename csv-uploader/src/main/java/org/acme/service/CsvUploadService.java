@@ -1,73 +1,362 @@
 package org.acme.service;
 
+import com.fasterxml.jackson.databind.MappingIterator;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.persistence.EntityManager;
-import jakarta.transaction.Transactional;
 import org.acme.entity.CsvUploadMetadata;
 import org.acme.util.CsvReader;
 import org.acme.util.TypeInference;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
 
+import javax.sql.DataSource;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
+/**
+ * Streams a CSV upload into a new table.
+ * <p>
+ * Rows are parsed one at a time. Column types are inferred from the first
+ * {@code csv.upload.sample-rows} rows, and the rows are written with PostgreSQL
+ * {@code COPY FROM STDIN} (or batched inserts on other connections), committing
+ * every {@code csv.upload.commit-interval} rows. Memory use does not depend on
+ * the file size.
+ * </p>
+ */
 @ApplicationScoped
 public class CsvUploadService {
 
     @Inject
-    EntityManager entityManager;
+    DataSource dataSource;
 
     @Inject
     CsvReader csvReader;
 
-    @Transactional
-    public CsvUploadMetadata uploadCsv(FileUpload fileUpload) throws IOException {
-        List<Map<String, String>> rows = csvReader.parseCsv(fileUpload);
+    @ConfigProperty(name = "csv.upload.sample-rows", defaultValue = "1000")
+    int sampleRows;
 
-        if (rows.isEmpty()) {
-            throw new RuntimeException("Empty CSV file");
-        }
+    @ConfigProperty(name = "csv.upload.batch-size", defaultValue = "1000")
+    int batchSize;
+
+    @ConfigProperty(name = "csv.upload.commit-interval", defaultValue = "50000")
+    int commitInterval;
+
+    @ConfigProperty(name = "csv.upload.use-copy", defaultValue = "true")
+    boolean useCopy;
 
+    private final Map<String, UploadProgress> activeUploads = new ConcurrentHashMap<>();
+
+    public CsvUploadMetadata uploadCsv(FileUpload fileUpload) throws IOException, SQLException {
+        Path file = fileUpload.uploadedFile();
         String tableName = "csv_" + UUID.randomUUID().toString().replace("-", "");
+        UploadProgress progress = new UploadProgress(tableName, fileUpload.fileName(), Files.size(file));
+        activeUploads.put(tableName, progress);
+
+        try (InputStream in = new CountingInputStream(Files.newInputStream(file), progress);
+                MappingIterator<String[]> rows = csvReader.readRows(in);
+                Connection connection = dataSource.getConnection()) {
+
+            if (!rows.hasNext()) {
+                throw new RuntimeException("Empty CSV file");
+            }
+            List<String> columns = header(rows.next());
+
+            // Only the sample is held in memory, the remaining rows are streamed
+            List<String[]> sample = new ArrayList<>();
+            while (sample.size() < sampleRows && rows.hasNext()) {
+                sample.add(rows.next());
+            }
+            if (sample.isEmpty()) {
+                throw new RuntimeException("Empty CSV file");
+            }
+            List<String> types = inferTypes(columns.size(), sample);
+
+            Iterator<String[]> allRows = concat(sample.iterator(), rows);
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                createTable(connection, tableName, columns, types);
+                connection.commit();
+
+                long count = useCopy && connection.isWrapperFor(PGConnection.class)
+                        ? copyRows(connection, tableName, columns, types, allRows, progress)
+                        : insertRows(connection, tableName, columns, types, allRows, progress);
+                connection.commit();
+
+                Log.infof("Uploaded %d rows from %s into %s (%.0f rows/s)",
+                        count, fileUpload.fileName(), tableName, progress.getRowsPerSecond());
+                return QuarkusTransaction.requiringNew().call(() -> {
+                    CsvUploadMetadata metadata = new CsvUploadMetadata();
+                    metadata.tableName = tableName;
+                    metadata.uploadTime = LocalDateTime.now();
+                    metadata.recordCount = count;
+                    metadata.persist();
+                    return metadata;
+                });
+            } catch (Exception e) {
+                try {
+                    connection.rollback();
+                } catch (SQLException rollbackFailure) {
+                    e.addSuppressed(rollbackFailure);
+                }
+                dropTable(connection, tableName);
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } finally {
+            activeUploads.remove(tableName);
+        }
+    }
+
+    /**
+     * Progress of the uploads that are still running
+     */
+    public List<UploadProgress> getActiveUploads() {
+        return List.copyOf(activeUploads.values());
+    }
 
-        Map<String, String> sampleRow = rows.get(0);
-        Map<String, String> columnTypes = new HashMap<>();
-        sampleRow.forEach((key, value) -> {
-            if (key == null || key.trim().isEmpty()) {
+    private List<String> header(String[] header) {
+        Set<String> seen = new HashSet<>();
+        List<String> columns = new ArrayList<>();
+        for (String column : header) {
+            if (column == null || column.trim().isEmpty()) {
                 throw new RuntimeException("Invalid column name detected in CSV header.");
             }
-            columnTypes.put(key, TypeInference.inferType(value));
-        });
+            if (!seen.add(column)) {
+                throw new RuntimeException("Duplicate column name '" + column + "' in CSV header.");
+            }
+            columns.add(column);
+        }
+        return columns;
+    }
 
-        String createTableSql = "CREATE TABLE " + tableName + " (id SERIAL PRIMARY KEY, " +
-                columnTypes.entrySet().stream()
-                        .map(entry -> "\"" + entry.getKey() + "\" " + entry.getValue())
-                        .collect(Collectors.joining(", "))
-                + ")";
-        entityManager.createNativeQuery(createTableSql).executeUpdate();
+    private List<String> inferTypes(int columnCount, List<String[]> sample) {
+        String[] types = new String[columnCount];
+        for (String[] row : sample) {
+            for (int i = 0; i < Math.min(columnCount, row.length); i++) {
+                types[i] = TypeInference.widen(types[i], row[i]);
+            }
+        }
+        // Columns without any value in the sample
+        return Arrays.stream(types).map(type -> type == null ? "TEXT" : type).toList();
+    }
 
-        for (Map<String, String> row : rows) {
-            String columns = row.keySet().stream()
-                    .map(col -> "\"" + col + "\"")
-                    .collect(Collectors.joining(", "));
+    private void createTable(Connection connection, String tableName, List<String> columns, List<String> types)
+            throws SQLException {
+        List<String> definitions = new ArrayList<>();
+        for (int i = 0; i < columns.size(); i++) {
+            definitions.add(quote(columns.get(i)) + " " + types.get(i));
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE " + tableName + " (id SERIAL PRIMARY KEY, "
+                    + String.join(", ", definitions) + ")");
+        }
+    }
 
-            String values = row.values().stream()
-                    .map(value -> value == null ? "NULL" : "'" + value.replace("'", "''") + "'")
-                    .collect(Collectors.joining(", "));
+    private void dropTable(Connection connection, String tableName) {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP TABLE IF EXISTS " + tableName);
+            connection.commit();
+        } catch (SQLException e) {
+            Log.warnf("Could not drop table %s of failed upload: %s", tableName, e.getMessage());
+        }
+    }
 
-            String insertSql = "INSERT INTO " + tableName + " (" + columns + ") VALUES (" + values + ")";
-            entityManager.createNativeQuery(insertSql).executeUpdate();
+    private long copyRows(Connection connection, String tableName, List<String> columns, List<String> types,
+            Iterator<String[]> rows, UploadProgress progress) throws SQLException, IOException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        String sql = "COPY " + tableName + " (" + columnList(columns) + ") FROM STDIN WITH (FORMAT csv)";
+        StringBuilder line = new StringBuilder();
+        long count = 0;
+
+        // One COPY per commit interval, so a long upload does not run in a single transaction
+        while (rows.hasNext()) {
+            PGCopyOutputStream copy = new PGCopyOutputStream(pgConnection, sql, 64 * 1024);
+            try {
+                for (int inChunk = 0; inChunk < commitInterval && rows.hasNext(); inChunk++) {
+                    String[] row = checkWidth(rows.next(), columns.size(), count + 1);
+                    line.setLength(0);
+                    appendCsvLine(line, row, types);
+                    copy.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                    count++;
+                }
+                copy.endCopy();
+            } catch (RuntimeException | SQLException | IOException e) {
+                // Leave COPY mode, or the connection cannot be rolled back
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+                if (e instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new SQLException("COPY into " + tableName + " failed near row " + count + ": "
+                        + e.getMessage(), e);
+            }
+            connection.commit();
+            reportProgress(progress, count);
         }
+        return count;
+    }
+
+    private long insertRows(Connection connection, String tableName, List<String> columns, List<String> types,
+            Iterator<String[]> rows, UploadProgress progress) throws SQLException {
+        String sql = "INSERT INTO " + tableName + " (" + columnList(columns) + ") VALUES ("
+                + columns.stream().map(column -> "?").collect(Collectors.joining(", ")) + ")";
+        long count = 0;
 
-        CsvUploadMetadata metadata = new CsvUploadMetadata();
-        metadata.tableName = tableName;
-        metadata.uploadTime = LocalDateTime.now();
-        metadata.recordCount = rows.size();
-        metadata.persist();
+        try (PreparedStatement insert = connection.prepareStatement(sql)) {
+            while (rows.hasNext()) {
+                String[] row = checkWidth(rows.next(), columns.size(), count + 1);
+                for (int i = 0; i < columns.size(); i++) {
+                    bind(insert, i + 1, types.get(i), i < row.length ? row[i] : null, columns.get(i), count + 1);
+                }
+                insert.addBatch();
+                count++;
 
-        return metadata;
+                if (count % batchSize == 0 || count % commitInterval == 0) {
+                    insert.executeBatch();
+                }
+                if (count % commitInterval == 0) {
+                    connection.commit();
+                    reportProgress(progress, count);
+                }
+            }
+            insert.executeBatch();
+        }
+        reportProgress(progress, count);
+        return count;
+    }
+
+    private void bind(PreparedStatement insert, int index, String type, String value, String column, long row)
+            throws SQLException {
+        boolean blank = value == null || value.isBlank();
+        if ("TEXT".equals(type)) {
+            insert.setString(index, value);
+            return;
+        }
+        try {
+            switch (type) {
+                case "INTEGER" -> {
+                    if (blank) insert.setNull(index, Types.INTEGER);
+                    else insert.setInt(index, Integer.parseInt(value));
+                }
+                case "BIGINT" -> {
+                    if (blank) insert.setNull(index, Types.BIGINT);
+                    else insert.setLong(index, Long.parseLong(value));
+                }
+                case "DOUBLE PRECISION" -> {
+                    if (blank) insert.setNull(index, Types.DOUBLE);
+                    else insert.setDouble(index, Double.parseDouble(value));
+                }
+                default -> {
+                    if (blank) insert.setNull(index, Types.NUMERIC);
+                    else insert.setBigDecimal(index, new BigDecimal(value));
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Row " + row + ": value '" + value + "' of column '" + column
+                    + "' is not " + type + " as inferred from the first " + sampleRows
+                    + " rows. Increase csv.upload.sample-rows.", e);
+        }
+    }
+
+    // Blank numbers are written unquoted, which COPY reads as NULL
+    private static void appendCsvLine(StringBuilder line, String[] row, List<String> types) {
+        for (int i = 0; i < types.size(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            String value = i < row.length ? row[i] : null;
+            if (value == null || (value.isBlank() && !"TEXT".equals(types.get(i)))) {
+                continue;
+            }
+            line.append('"').append(value.replace("\"", "\"\"")).append('"');
+        }
+        line.append('\n');
+    }
+
+    private static String[] checkWidth(String[] row, int columnCount, long rowNumber) {
+        if (row.length > columnCount) {
+            throw new IllegalArgumentException("Row " + rowNumber + " has " + row.length
+                    + " values but the header has " + columnCount + " columns.");
+        }
+        return row;
+    }
+
+    private static void reportProgress(UploadProgress progress, long count) {
+        progress.setRowsWritten(count);
+        Log.debugf("Upload %s: %d rows, %.1f%%", progress.getTableName(), count, progress.getPercent());
+    }
+
+    private static String columnList(List<String> columns) {
+        return columns.stream().map(CsvUploadService::quote).collect(Collectors.joining(", "));
+    }
+
+    private static String quote(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static <T> Iterator<T> concat(Iterator<T> first, Iterator<T> second) {
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return first.hasNext() || second.hasNext();
+            }
+
+            @Override
+            public T next() {
+                return first.hasNext() ? first.next() : second.next();
+            }
+        };
+    }
+
+    /**
+     * Counts the bytes the CSV parser has consumed
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final UploadProgress progress;
+
+        CountingInputStream(InputStream in, UploadProgress progress) {
+            super(new BufferedInputStream(in, 64 * 1024));
+            this.progress = progress;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                progress.addBytesRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                progress.addBytesRead(n);
+            }
+            return n;
+        }
     }
 }
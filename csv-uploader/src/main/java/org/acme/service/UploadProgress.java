@@ -0,0 +1,64 @@
+package org.acme.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * State of a running CSV upload
+ */
+public class UploadProgress {
+
+    private final String tableName;
+    private final String fileName;
+    private final long totalBytes;
+    private final Instant startTime = Instant.now();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+
+    public UploadProgress(String tableName, String fileName, long totalBytes) {
+        this.tableName = tableName;
+        this.fileName = fileName;
+        this.totalBytes = totalBytes;
+    }
+
+    public void addBytesRead(long bytes) {
+        bytesRead.addAndGet(bytes);
+    }
+
+    public void setRowsWritten(long rows) {
+        rowsWritten.set(rows);
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public long getRowsWritten() {
+        return rowsWritten.get();
+    }
+
+    public double getPercent() {
+        return totalBytes > 0 ? Math.min(100.0, 100.0 * bytesRead.get() / totalBytes) : 0.0;
+    }
+
+    public double getRowsPerSecond() {
+        long millis = Duration.between(startTime, Instant.now()).toMillis();
+        return millis > 0 ? rowsWritten.get() * 1000.0 / millis : 0.0;
+    }
+
+    public Map<String, Object> toMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("uid", tableName);
+        map.put("fileName", fileName);
+        map.put("startTime", startTime.toString());
+        map.put("totalBytes", totalBytes);
+        map.put("bytesRead", bytesRead.get());
+        map.put("percent", getPercent());
+        map.put("rowsWritten", rowsWritten.get());
+        map.put("rowsPerSecond", getRowsPerSecond());
+        return map;
+    }
+}
@@ -2,23 +2,25 @@ package org.acme.util;
 
 import com.fasterxml.jackson.databind.MappingIterator;
 import com.fasterxml.jackson.dataformat.csv.CsvMapper;
-import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import com.fasterxml.jackson.dataformat.csv.CsvParser;
 import jakarta.enterprise.context.ApplicationScoped;
-import org.jboss.resteasy.reactive.multipart.FileUpload;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Map;
+import java.io.InputStream;
 
 @ApplicationScoped
 public class CsvReader {
 
-    public List<Map<String, String>> parseCsv(FileUpload fileUpload) throws IOException {
-        CsvMapper mapper = new CsvMapper();
-        CsvSchema schema = CsvSchema.emptySchema().withHeader();
-        MappingIterator<Map<String, String>> it = mapper.readerFor(Map.class)
-                .with(schema)
-                .readValues(fileUpload.uploadedFile().toFile());
-        return it.readAll();
+    private final CsvMapper mapper = CsvMapper.builder()
+            .enable(CsvParser.Feature.WRAP_AS_ARRAY)
+            .enable(CsvParser.Feature.SKIP_EMPTY_LINES)
+            .build();
+
+    /**
+     * Reads the rows of a CSV one at a time, so files of any size can be processed
+     * with constant memory. The first row is the header.
+     */
+    public MappingIterator<String[]> readRows(InputStream inputStream) throws IOException {
+        return mapper.readerFor(String[].class).readValues(inputStream);
     }
 }
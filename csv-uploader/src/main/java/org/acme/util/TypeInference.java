@@ -1,18 +1,47 @@
 package org.acme.util;
 
+import java.util.List;
 import java.util.regex.Pattern;
 
 public class TypeInference {
 
+    private static final Pattern INTEGER_PATTERN = Pattern.compile("-?\\d+");
     private static final Pattern NUMBER_PATTERN = Pattern.compile("-?\\d+(\\.\\d+)?");
 
+    // From the narrowest to the widest type, a column gets the widest type of its values
+    private static final List<String> TYPES = List.of("INTEGER", "BIGINT", "DOUBLE PRECISION", "NUMERIC", "TEXT");
+
     public static String inferType(String value) {
         if (value == null || value.isBlank()) {
             return "TEXT"; // Default fallback
         }
+        if (INTEGER_PATTERN.matcher(value).matches()) {
+            try {
+                long number = Long.parseLong(value);
+                return number == (int) number ? "INTEGER" : "BIGINT";
+            } catch (NumberFormatException e) {
+                return "NUMERIC"; // Too big for a BIGINT
+            }
+        }
         if (NUMBER_PATTERN.matcher(value).matches()) {
-            return value.contains(".") ? "DOUBLE PRECISION" : "INTEGER";
+            return "DOUBLE PRECISION";
         }
         return "TEXT";
     }
+
+    /**
+     * Widens a column type so it also fits the given value. Blank values fit any type.
+     *
+     * @param current the type of the values seen so far, null if none was seen yet
+     */
+    public static String widen(String current, String value) {
+        if (value == null || value.isBlank()) {
+            return current;
+        }
+        String type = inferType(value);
+        if (current == null || TYPES.indexOf(type) > TYPES.indexOf(current)) {
+            return type;
+        }
+        return current;
+    }
 }
@@ -0,0 +1,33 @@
+package com.example.events;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+// Latest snapshot of an aggregate, so loading it does not replay every event
+@Entity
+@Table(name = "aggregate_snapshot")
+public class AggregateSnapshot extends PanacheEntityBase {
+
+    @Id
+    @Column(columnDefinition = "uuid")
+    public UUID aggregateId;
+
+    @Column(nullable = false, length = 64)
+    public String aggregateType;
+
+    // Version of the last event included in the state
+    @Column(nullable = false)
+    public long version;
+
+    @Column(nullable = false, columnDefinition = "text")
+    public String stateData;
+
+    @Column(nullable = false)
+    public Instant timestamp;
+}
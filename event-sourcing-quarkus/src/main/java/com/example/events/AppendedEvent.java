@@ -0,0 +1,11 @@
+package com.example.events;
+
+import java.util.UUID;
+
+// An event with its place in the store: position is global, version per aggregate
+public record AppendedEvent(
+        long position,
+        UUID aggregateId,
+        long version,
+        OrderEvent event) {
+}
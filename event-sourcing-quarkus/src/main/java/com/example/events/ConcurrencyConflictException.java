@@ -0,0 +1,12 @@
+package com.example.events;
+
+import java.util.UUID;
+
+// Another command appended to the aggregate since it was loaded
+public class ConcurrencyConflictException extends RuntimeException {
+
+    public ConcurrencyConflictException(UUID aggregateId, long version, Throwable cause) {
+        super("Aggregate " + aggregateId + " was modified concurrently, version " + version + " already exists",
+                cause);
+    }
+}
@@ -3,39 +3,65 @@ package com.example.events;
 import static jakarta.transaction.Transactional.TxType.SUPPORTS;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
+import org.hibernate.exception.ConstraintViolationException;
+
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
+import jakarta.persistence.PersistenceException;
 import jakarta.transaction.Transactional;
 
 @ApplicationScoped
 public class EventStore {
 
+    static final String VERSION_CONSTRAINT = "uk_event_aggregate_version";
+
     @Inject
     ObjectMapper objectMapper;
 
     @Inject
-    Event<OrderEvent> orderEventBus;
+    Event<AppendedEvent> orderEventBus;
 
+    /**
+     * Appends the event as the version after {@code expectedVersion}.
+     * The unique (aggregateId, version) index makes sure only one of two
+     * commands working on the same version gets in.
+     *
+     * @return the version of the appended event
+     * @throws ConcurrencyConflictException if that version was already appended
+     */
     @Transactional
-    public void append(UUID aggregateId, String aggregateType, OrderEvent event) {
+    public long append(UUID aggregateId, String aggregateType, long expectedVersion, OrderEvent event) {
         StoredEvent stored = new StoredEvent();
         stored.aggregateId = aggregateId;
         stored.aggregateType = aggregateType;
-        stored.version = nextVersion(aggregateId);
+        stored.version = expectedVersion + 1;
         stored.eventType = eventType(event);
         stored.eventData = serialize(event);
         stored.timestamp = event.timestamp();
-        stored.persist();
+        try {
+            stored.persist();
+            // Flush now so a conflict shows up here and not at commit
+            StoredEvent.flush();
+        } catch (PersistenceException e) {
+            if (isVersionConflict(e)) {
+                throw new ConcurrencyConflictException(aggregateId, stored.version, e);
+            }
+            throw e;
+        }
 
-        // Publish CDI event for projections and other listeners
-        orderEventBus.fire(event);
+        // Publish CDI event for listeners, e.g. to wake up the projection runner after commit
+        orderEventBus.fire(new AppendedEvent(stored.position, aggregateId, stored.version, event));
+        return stored.version;
     }
 
     @Transactional(SUPPORTS)
@@ -48,9 +74,116 @@ public class EventStore {
                 .toList();
     }
 
-    private long nextVersion(UUID aggregateId) {
-        long count = StoredEvent.count("aggregateId", aggregateId);
-        return count + 1;
+    /** The events after {@code afterVersion} up to and including {@code upToVersion}. */
+    @Transactional(SUPPORTS)
+    public List<OrderEvent> loadEvents(UUID aggregateId, long afterVersion, long upToVersion) {
+        List<StoredEvent> rows = StoredEvent.list(
+                "aggregateId = ?1 AND version > ?2 AND version <= ?3 ORDER BY version",
+                aggregateId, afterVersion, upToVersion);
+        return rows.stream()
+                .map(this::deserialize)
+                .toList();
+    }
+
+    /** Up to {@code limit} events after the global position, in position order. */
+    @Transactional(SUPPORTS)
+    public List<AppendedEvent> loadAfter(long position, int limit) {
+        List<StoredEvent> rows = StoredEvent.find("position > ?1 ORDER BY position", position)
+                .page(0, limit)
+                .list();
+        return rows.stream()
+                .map(this::appended)
+                .toList();
+    }
+
+    /** The stored events at the given positions, in position order. */
+    @Transactional(SUPPORTS)
+    public List<AppendedEvent> loadPositions(Collection<Long> positions) {
+        List<StoredEvent> rows = StoredEvent.list("position IN ?1 ORDER BY position", positions);
+        return rows.stream()
+                .map(this::appended)
+                .toList();
+    }
+
+    /** Positions of the stored events after {@code after} up to {@code upTo}, in order. */
+    @Transactional(SUPPORTS)
+    public List<Long> positions(long after, long upTo) {
+        return StoredEvent.getEntityManager()
+                .createQuery("SELECT position FROM StoredEvent WHERE position > :after AND position <= :upTo "
+                        + "ORDER BY position", Long.class)
+                .setParameter("after", after)
+                .setParameter("upTo", upTo)
+                .getResultList();
+    }
+
+    /** All events of the given aggregates, ordered by aggregate and version. */
+    @Transactional(SUPPORTS)
+    public List<AppendedEvent> loadEvents(Collection<UUID> aggregateIds) {
+        List<StoredEvent> rows = StoredEvent.list(
+                "aggregateId IN ?1 ORDER BY aggregateId, version",
+                aggregateIds);
+        return rows.stream()
+                .map(this::appended)
+                .toList();
+    }
+
+    @Transactional(SUPPORTS)
+    public List<UUID> aggregateIds() {
+        return StoredEvent.getEntityManager()
+                .createQuery("SELECT DISTINCT aggregateId FROM StoredEvent", UUID.class)
+                .getResultList();
+    }
+
+    /** Position of the last stored event, 0 if there is none. */
+    @Transactional(SUPPORTS)
+    public long lastPosition() {
+        Long position = StoredEvent.getEntityManager()
+                .createQuery("SELECT max(position) FROM StoredEvent", Long.class)
+                .getSingleResult();
+        return position == null ? 0 : position;
+    }
+
+    /** Version of the last event of the aggregate, 0 if it has none. */
+    @Transactional(SUPPORTS)
+    public long currentVersion(UUID aggregateId) {
+        Long version = StoredEvent.getEntityManager()
+                .createQuery("SELECT max(version) FROM StoredEvent WHERE aggregateId = ?1", Long.class)
+                .setParameter(1, aggregateId)
+                .getSingleResult();
+        return version == null ? 0 : version;
+    }
+
+    /** Replaces the snapshot of the aggregate unless the stored one is newer. */
+    @Transactional
+    public void saveSnapshot(UUID aggregateId, String aggregateType, VersionedState state) {
+        AggregateSnapshot snapshot = AggregateSnapshot.findById(aggregateId);
+        if (snapshot == null) {
+            snapshot = new AggregateSnapshot();
+            snapshot.aggregateId = aggregateId;
+            snapshot.aggregateType = aggregateType;
+        } else if (snapshot.version >= state.version()) {
+            return;
+        }
+        snapshot.version = state.version();
+        snapshot.stateData = serialize(state.state());
+        snapshot.timestamp = Instant.now();
+        snapshot.persist();
+    }
+
+    @Transactional(SUPPORTS)
+    public Optional<VersionedState> loadSnapshot(UUID aggregateId) {
+        return AggregateSnapshot.<AggregateSnapshot> findByIdOptional(aggregateId)
+                .map(snapshot -> new VersionedState(deserializeState(snapshot), snapshot.version));
+    }
+
+    private static boolean isVersionConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation.getConstraintName() != null
+                        && violation.getConstraintName().equalsIgnoreCase(VERSION_CONSTRAINT);
+            }
+        }
+        return false;
     }
 
     private String eventType(OrderEvent event) {
@@ -63,11 +196,23 @@ public class EventStore {
         };
     }
 
-    private String serialize(OrderEvent event) {
+    private String serialize(Object value) {
         try {
-            return objectMapper.writeValueAsString(event);
+            return objectMapper.writeValueAsString(value);
         } catch (JsonProcessingException e) {
-            throw new IllegalStateException("Could not serialize event " + event, e);
+            throw new IllegalStateException("Could not serialize " + value, e);
+        }
+    }
+
+    private AppendedEvent appended(StoredEvent stored) {
+        return new AppendedEvent(stored.position, stored.aggregateId, stored.version, deserialize(stored));
+    }
+
+    private OrderState deserializeState(AggregateSnapshot snapshot) {
+        try {
+            return objectMapper.readValue(snapshot.stateData, OrderState.class);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not deserialize snapshot of " + snapshot.aggregateId, e);
         }
     }
 
@@ -88,7 +233,7 @@ public class EventStore {
                     throw new IllegalArgumentException("Unknown event type " + stored.eventType);
             };
         } catch (IOException e) {
-            throw new IllegalStateException("Could not deserialize event " + stored.id, e);
+            throw new IllegalStateException("Could not deserialize event " + stored.position, e);
         }
     }
 }
\ No newline at end of file
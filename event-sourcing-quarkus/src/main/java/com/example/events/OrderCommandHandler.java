@@ -3,7 +3,7 @@ package com.example.events;
 import static jakarta.transaction.Transactional.TxType.SUPPORTS;
 
 import java.time.Instant;
-import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 import com.example.events.Commands.AddItemCommand;
@@ -18,10 +18,8 @@ import jakarta.transaction.Transactional;
 @ApplicationScoped
 public class OrderCommandHandler {
 
-    private static final String AGGREGATE_TYPE = "Order";
-
     @Inject
-    EventStore eventStore;
+    OrderStateStore orders;
 
     @Transactional
     public CommandResult placeOrder(PlaceOrderCommand cmd) {
@@ -34,18 +32,18 @@ public class OrderCommandHandler {
                 orderId,
                 cmd.customerEmail(),
                 Instant.now());
-        eventStore.append(orderId, AGGREGATE_TYPE, event);
+        orders.append(orderId, VersionedState.INITIAL, event);
         return new CommandResult.Success(orderId);
     }
 
     @Transactional
     public CommandResult addItem(AddItemCommand cmd) {
-        List<OrderEvent> events = eventStore.loadEvents(cmd.orderId());
-        if (events.isEmpty()) {
+        Optional<VersionedState> loaded = orders.load(cmd.orderId());
+        if (loaded.isEmpty()) {
             return new CommandResult.NotFound("Order not found: " + cmd.orderId());
         }
 
-        OrderState current = EventProjection.replayEvents(events);
+        OrderState current = loaded.get().state();
         if (current.status() != OrderStatus.DRAFT) {
             return new CommandResult.InvalidState(
                     "Cannot add items to order in status " + current.status());
@@ -61,18 +59,18 @@ public class OrderCommandHandler {
                 cmd.quantity(),
                 cmd.price(),
                 Instant.now());
-        eventStore.append(cmd.orderId(), AGGREGATE_TYPE, event);
+        orders.append(cmd.orderId(), loaded.get(), event);
         return new CommandResult.Success(cmd.orderId());
     }
 
     @Transactional
     public CommandResult shipOrder(ShipOrderCommand cmd) {
-        List<OrderEvent> events = eventStore.loadEvents(cmd.orderId());
-        if (events.isEmpty()) {
+        Optional<VersionedState> loaded = orders.load(cmd.orderId());
+        if (loaded.isEmpty()) {
             return new CommandResult.NotFound("Order not found: " + cmd.orderId());
         }
 
-        OrderState current = EventProjection.replayEvents(events);
+        OrderState current = loaded.get().state();
         if (current.status() != OrderStatus.DRAFT) {
             return new CommandResult.InvalidState(
                     "Only DRAFT orders can be shipped. Current status: " + current.status());
@@ -82,18 +80,18 @@ public class OrderCommandHandler {
                 cmd.orderId(),
                 cmd.trackingNumber(),
                 Instant.now());
-        eventStore.append(cmd.orderId(), AGGREGATE_TYPE, event);
+        orders.append(cmd.orderId(), loaded.get(), event);
         return new CommandResult.Success(cmd.orderId());
     }
 
     @Transactional
     public CommandResult cancelOrder(CancelOrderCommand cmd) {
-        List<OrderEvent> events = eventStore.loadEvents(cmd.orderId());
-        if (events.isEmpty()) {
+        Optional<VersionedState> loaded = orders.load(cmd.orderId());
+        if (loaded.isEmpty()) {
             return new CommandResult.NotFound("Order not found: " + cmd.orderId());
         }
 
-        OrderState current = EventProjection.replayEvents(events);
+        OrderState current = loaded.get().state();
         if (current.status() == OrderStatus.SHIPPED) {
             return new CommandResult.InvalidState("Cannot cancel shipped order");
         }
@@ -102,16 +100,14 @@ public class OrderCommandHandler {
                 cmd.orderId(),
                 cmd.reason(),
                 Instant.now());
-        eventStore.append(cmd.orderId(), AGGREGATE_TYPE, event);
+        orders.append(cmd.orderId(), loaded.get(), event);
         return new CommandResult.Success(cmd.orderId());
     }
 
     @Transactional(SUPPORTS)
     public OrderState loadCurrentState(UUID orderId) {
-        List<OrderEvent> events = eventStore.loadEvents(orderId);
-        if (events.isEmpty()) {
-            return null;
-        }
-        return EventProjection.replayEvents(events);
+        return orders.load(orderId)
+                .map(VersionedState::state)
+                .orElse(null);
     }
 }
\ No newline at end of file
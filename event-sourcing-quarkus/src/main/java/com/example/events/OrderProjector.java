@@ -1,37 +1,79 @@
 package com.example.events;
 
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import jakarta.enterprise.context.ApplicationScoped;
-import jakarta.enterprise.event.Observes;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 
+/**
+ * Maintains {@link OrderReadModel}. Called by the {@link ProjectionRunner},
+ * outside the command transaction.
+ */
 @ApplicationScoped
 public class OrderProjector {
 
     @Inject
-    EventStore eventStore;
+    OrderStateStore orders;
 
+    /**
+     * Applies a batch of events, in order, with one query for the read models
+     * involved. Events a read model already has are skipped. If events before
+     * one are missing, that read model is rebuilt from the current state of
+     * the order instead.
+     */
     @Transactional
-    void on(@Observes OrderEvent event) {
-        UUID orderId = event.orderId();
+    public void project(List<AppendedEvent> events) {
+        Set<UUID> orderIds = events.stream()
+                .map(AppendedEvent::aggregateId)
+                .collect(Collectors.toSet());
+        Map<UUID, OrderReadModel> readModels = OrderReadModel.<OrderReadModel> list("orderId IN ?1", orderIds)
+                .stream()
+                .collect(Collectors.toMap(readModel -> readModel.orderId, Function.identity()));
 
-        // Recompute current state from all events for this order
-        List<OrderEvent> events = eventStore.loadEvents(orderId);
-        OrderState state = EventProjection.replayEvents(events);
+        for (AppendedEvent appended : events) {
+            OrderReadModel readModel = readModels.computeIfAbsent(appended.aggregateId(), orderId -> {
+                OrderReadModel created = new OrderReadModel();
+                created.orderId = orderId;
+                return created;
+            });
+            apply(readModel, appended);
+        }
+        for (OrderReadModel readModel : readModels.values()) {
+            if (!readModel.isPersistent()) {
+                readModel.persist();
+            }
+        }
+    }
 
-        OrderReadModel readModel = OrderReadModel.findByOrderId(orderId);
-        if (readModel == null) {
-            readModel = new OrderReadModel();
-            readModel.orderId = orderId;
+    private void apply(OrderReadModel readModel, AppendedEvent appended) {
+        long applied = readModel.version;
+        if (appended.version() <= applied) {
+            return;
         }
+        if (appended.version() == applied + 1) {
+            // The read model has no lines, which the totals do not need
+            OrderState current = applied == 0
+                    ? OrderState.empty()
+                    : new OrderState(readModel.orderId, readModel.customerEmail, List.of(),
+                            OrderStatus.valueOf(readModel.status), readModel.total);
+            update(readModel, EventProjection.apply(current, appended.event()), appended.version());
+        } else {
+            VersionedState state = orders.load(readModel.orderId).orElseThrow();
+            update(readModel, state.state(), state.version());
+        }
+        readModel.lastUpdated = appended.event().timestamp();
+    }
 
+    private static void update(OrderReadModel readModel, OrderState state, long version) {
         readModel.customerEmail = state.customerEmail();
         readModel.status = state.status().name();
         readModel.total = state.total();
-        readModel.lastUpdated = event.timestamp();
-        readModel.persist();
+        readModel.version = version;
     }
-}
\ No newline at end of file
+}
@@ -28,6 +28,10 @@ public class OrderReadModel extends PanacheEntity {
     @Column(nullable = false)
     public Instant lastUpdated;
 
+    // Version of the last event applied
+    @Column(nullable = false)
+    public long version;
+
     public static OrderReadModel findByOrderId(UUID orderId) {
         return find("orderId", orderId).firstResult();
     }
@@ -10,6 +10,8 @@ import com.example.events.Commands.CancelOrderCommand;
 import com.example.events.Commands.PlaceOrderCommand;
 import com.example.events.Commands.ShipOrderCommand;
 
+import org.jboss.resteasy.reactive.server.ServerExceptionMapper;
+
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.GET;
@@ -129,6 +131,14 @@ public class OrderResource {
         return Response.ok(readModel).build();
     }
 
+    // Another command changed the order between loading and appending
+    @ServerExceptionMapper
+    public Response concurrencyConflict(ConcurrencyConflictException e) {
+        return Response.status(Response.Status.CONFLICT)
+                .entity(new CommandResult.InvalidState(e.getMessage()))
+                .build();
+    }
+
     // DTOs for the REST layer
 
     public record PlaceOrderRequest(
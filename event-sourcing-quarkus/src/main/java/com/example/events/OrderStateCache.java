@@ -0,0 +1,32 @@
+package com.example.events;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+// Least recently used order states, the newest version of an order wins
+public class OrderStateCache {
+
+    private final Map<UUID, VersionedState> states;
+
+    public OrderStateCache(int maxSize) {
+        this.states = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<UUID, VersionedState> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public synchronized VersionedState get(UUID orderId) {
+        return states.get(orderId);
+    }
+
+    public synchronized void put(UUID orderId, VersionedState state) {
+        states.merge(orderId, state, (old, next) -> next.version() >= old.version() ? next : old);
+    }
+
+    public synchronized int size() {
+        return states.size();
+    }
+}
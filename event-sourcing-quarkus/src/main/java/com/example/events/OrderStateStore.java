@@ -0,0 +1,113 @@
+package com.example.events;
+
+import static jakarta.transaction.Transactional.TxType.SUPPORTS;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
+import jakarta.transaction.Transactional;
+
+/**
+ * Loads and appends to orders without replaying their whole history.
+ * <p>
+ * A load first reads the current version of the order. If the cache holds
+ * that version nothing else is read; otherwise only the events after the
+ * cached state or the latest snapshot are folded on top of it. Every
+ * {@code orders.snapshot-interval} events the state is snapshotted in the
+ * same transaction as the event. The cache is only updated after commit, so
+ * it never holds a state that was rolled back.
+ * </p>
+ */
+@ApplicationScoped
+public class OrderStateStore {
+
+    static final String AGGREGATE_TYPE = "Order";
+
+    @Inject
+    EventStore eventStore;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    @ConfigProperty(name = "orders.snapshot-interval", defaultValue = "20")
+    int snapshotInterval;
+
+    @ConfigProperty(name = "orders.state-cache.max-size", defaultValue = "10000")
+    int cacheSize;
+
+    private OrderStateCache cache;
+
+    @PostConstruct
+    void init() {
+        cache = new OrderStateCache(cacheSize);
+    }
+
+    @Transactional(SUPPORTS)
+    public Optional<VersionedState> load(UUID orderId) {
+        long version = eventStore.currentVersion(orderId);
+        if (version == 0) {
+            return Optional.empty();
+        }
+        VersionedState cached = cache.get(orderId);
+        if (cached != null && cached.version() == version) {
+            return Optional.of(cached);
+        }
+
+        VersionedState base = cached != null && cached.version() < version
+                ? cached
+                : eventStore.loadSnapshot(orderId)
+                        .filter(snapshot -> snapshot.version() <= version)
+                        .orElse(VersionedState.INITIAL);
+        OrderState state = base.state();
+        for (OrderEvent event : eventStore.loadEvents(orderId, base.version(), version)) {
+            state = EventProjection.apply(state, event);
+        }
+
+        VersionedState loaded = new VersionedState(state, version);
+        cacheAfterCommit(orderId, loaded);
+        return Optional.of(loaded);
+    }
+
+    /**
+     * Appends the event on top of {@code current}.
+     *
+     * @throws ConcurrencyConflictException if the order changed since {@code current} was loaded
+     */
+    @Transactional
+    public VersionedState append(UUID orderId, VersionedState current, OrderEvent event) {
+        long version = eventStore.append(orderId, AGGREGATE_TYPE, current.version(), event);
+        VersionedState next = new VersionedState(EventProjection.apply(current.state(), event), version);
+        if (version % snapshotInterval == 0) {
+            eventStore.saveSnapshot(orderId, AGGREGATE_TYPE, next);
+        }
+        cacheAfterCommit(orderId, next);
+        return next;
+    }
+
+    private void cacheAfterCommit(UUID orderId, VersionedState state) {
+        if (txRegistry.getTransactionKey() == null) {
+            cache.put(orderId, state);
+            return;
+        }
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    cache.put(orderId, state);
+                }
+            }
+        });
+    }
+}
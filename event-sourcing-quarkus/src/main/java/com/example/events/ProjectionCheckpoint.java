@@ -0,0 +1,39 @@
+package com.example.events;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
+import jakarta.persistence.CollectionTable;
+import jakarta.persistence.Column;
+import jakarta.persistence.ElementCollection;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.JoinColumn;
+import jakarta.persistence.MapKeyColumn;
+import jakarta.persistence.Table;
+
+// Position in the event store up to which a projection has been applied
+@Entity
+@Table(name = "projection_checkpoint")
+public class ProjectionCheckpoint extends PanacheEntityBase {
+
+    @Id
+    @Column(length = 64)
+    public String projection;
+
+    @Column(nullable = false)
+    public long position;
+
+    @Column(nullable = false)
+    public Instant updatedAt;
+
+    // Positions before the checkpoint that had no event yet when they were
+    // passed, with the time they were passed. Checked again for late commits.
+    @ElementCollection
+    @CollectionTable(name = "projection_skipped_position", joinColumns = @JoinColumn(name = "projection"))
+    @MapKeyColumn(name = "position")
+    @Column(name = "skipped_at", nullable = false)
+    public Map<Long, Instant> skipped = new HashMap<>();
+}
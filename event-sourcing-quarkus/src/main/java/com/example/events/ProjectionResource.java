@@ -0,0 +1,21 @@
+package com.example.events;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+
+@Path("/projections")
+@Produces(MediaType.APPLICATION_JSON)
+public class ProjectionResource {
+
+    @Inject
+    ProjectionRunner runner;
+
+    @POST
+    @Path("/order-read-model/rebuild")
+    public ProjectionRunner.RebuildResult rebuildOrderReadModel() throws InterruptedException {
+        return runner.rebuild();
+    }
+}
@@ -0,0 +1,276 @@
+package com.example.events;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+import jakarta.persistence.LockModeType;
+
+/**
+ * Runs {@link OrderProjector} asynchronously, so commands do not wait for
+ * the read model.
+ * <p>
+ * A single thread tails the event store by position in batches. Each batch
+ * and the checkpoint after it are written in one transaction, so a restart
+ * continues where the last batch stopped. The runner wakes up after every
+ * committed append and also polls, which picks up events from other nodes.
+ * </p>
+ * <p>
+ * Positions come from a sequence, one value at a time on every node, and are
+ * taken before commit, so a missing position can be an event that is not
+ * committed yet. The runner stops in front of such a gap until the event
+ * shows up, or until {@code orders.projection.gap-timeout} has passed. It
+ * then moves on, but keeps the skipped positions with the checkpoint and
+ * looks them up again on every pass, so the event of a slower append is
+ * projected late rather than lost. A skipped position is given up after
+ * {@code orders.projection.skipped-retention}, which must be longer than any
+ * append transaction.
+ * </p>
+ */
+@ApplicationScoped
+public class ProjectionRunner {
+
+    static final String ORDER_READ_MODEL = "order-read-model";
+
+    // Orders per transaction during a rebuild
+    private static final int REBUILD_CHUNK = 500;
+
+    @Inject
+    EventStore eventStore;
+
+    @Inject
+    OrderProjector projector;
+
+    @ConfigProperty(name = "orders.projection.batch-size", defaultValue = "500")
+    int batchSize;
+
+    @ConfigProperty(name = "orders.projection.poll-interval", defaultValue = "1s")
+    Duration pollInterval;
+
+    @ConfigProperty(name = "orders.projection.gap-timeout", defaultValue = "2s")
+    Duration gapTimeout;
+
+    @ConfigProperty(name = "orders.projection.skipped-retention", defaultValue = "10m")
+    Duration skippedRetention;
+
+    @ConfigProperty(name = "orders.projection.rebuild-threads", defaultValue = "4")
+    int rebuildThreads;
+
+    private final AtomicBoolean wakeUpPending = new AtomicBoolean();
+
+    private ScheduledExecutorService runner;
+
+    // Only touched by the runner thread
+    private long gapPosition;
+    private Instant gapSince;
+
+    public record RebuildResult(
+            int orders,
+            long position,
+            long millis) {
+    }
+
+    void start(@Observes StartupEvent event) {
+        QuarkusTransaction.requiringNew().run(() -> {
+            if (ProjectionCheckpoint.findById(ORDER_READ_MODEL) == null) {
+                ProjectionCheckpoint checkpoint = new ProjectionCheckpoint();
+                checkpoint.projection = ORDER_READ_MODEL;
+                checkpoint.updatedAt = Instant.now();
+                checkpoint.persist();
+            }
+        });
+        runner = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "order-projection"));
+        runner.scheduleWithFixedDelay(this::catchUp, 0, pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    void stop(@Observes ShutdownEvent event) {
+        if (runner != null) {
+            runner.shutdownNow();
+        }
+    }
+
+    void onAppended(@Observes(during = TransactionPhase.AFTER_SUCCESS) AppendedEvent appended) {
+        // Appends arriving while a wake-up is queued are covered by it
+        if (runner != null && wakeUpPending.compareAndSet(false, true)) {
+            runner.execute(() -> {
+                wakeUpPending.set(false);
+                catchUp();
+            });
+        }
+    }
+
+    /**
+     * Rebuilds the read model from all events, with the orders partitioned
+     * over {@code orders.projection.rebuild-threads}. Tailing waits until
+     * the rebuild is done and then continues from the position it started at;
+     * events appended meanwhile are skipped by version if already applied.
+     * Positions up to there that had no event when the rebuild started are
+     * checked again like skipped gaps, as their appends may still commit.
+     */
+    public RebuildResult rebuild() throws InterruptedException {
+        try {
+            return runner.submit(this::rebuildNow).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rebuild of " + ORDER_READ_MODEL + " failed", e.getCause());
+        }
+    }
+
+    private void catchUp() {
+        try {
+            while (projectBatch() == batchSize) {
+                // a full batch, there may be more
+            }
+        } catch (RuntimeException e) {
+            // Retried on the next poll
+            Log.errorf(e, "Projection %s failed", ORDER_READ_MODEL);
+        }
+    }
+
+    private int projectBatch() {
+        return QuarkusTransaction.requiringNew().call(() -> {
+            // Locked so only one node tails at a time
+            ProjectionCheckpoint checkpoint = ProjectionCheckpoint.findById(ORDER_READ_MODEL,
+                    LockModeType.PESSIMISTIC_WRITE);
+            List<AppendedEvent> late = lateEvents(checkpoint);
+            List<AppendedEvent> batch = eventStore.loadAfter(checkpoint.position, batchSize);
+            List<AppendedEvent> ready = batch.subList(0, readyEvents(batch, checkpoint));
+            if (!late.isEmpty() || !ready.isEmpty()) {
+                // Late events have lower positions, so they go first
+                List<AppendedEvent> events = new ArrayList<>(late.size() + ready.size());
+                events.addAll(late);
+                events.addAll(ready);
+                projector.project(events);
+                if (!ready.isEmpty()) {
+                    checkpoint.position = ready.get(ready.size() - 1).position();
+                }
+                checkpoint.updatedAt = Instant.now();
+            }
+            return ready.size() == batch.size() ? batch.size() : 0;
+        });
+    }
+
+    // Number of events before the first gap that may still be filled
+    private int readyEvents(List<AppendedEvent> batch, ProjectionCheckpoint checkpoint) {
+        long expected = checkpoint.position + 1;
+        for (int i = 0; i < batch.size(); i++) {
+            long next = batch.get(i).position();
+            if (next != expected) {
+                if (!gapTimedOut(expected)) {
+                    return i;
+                }
+                skip(checkpoint, expected, next);
+            }
+            expected = next + 1;
+        }
+        return batch.size();
+    }
+
+    // Remembers the positions from (inclusive) to (exclusive), passed without an event
+    private static void skip(ProjectionCheckpoint checkpoint, long from, long to) {
+        Instant now = Instant.now();
+        for (long position = from; position < to; position++) {
+            checkpoint.skipped.put(position, now);
+        }
+    }
+
+    // Events that committed after their position was skipped
+    private List<AppendedEvent> lateEvents(ProjectionCheckpoint checkpoint) {
+        Instant expired = Instant.now().minus(skippedRetention);
+        checkpoint.skipped.values().removeIf(skippedAt -> skippedAt.isBefore(expired));
+        if (checkpoint.skipped.isEmpty()) {
+            return List.of();
+        }
+        List<AppendedEvent> late = eventStore.loadPositions(new ArrayList<>(checkpoint.skipped.keySet()));
+        for (AppendedEvent event : late) {
+            checkpoint.skipped.remove(event.position());
+        }
+        return late;
+    }
+
+    private boolean gapTimedOut(long position) {
+        if (gapSince == null || gapPosition != position) {
+            gapPosition = position;
+            gapSince = Instant.now();
+        }
+        return Instant.now().isAfter(gapSince.plus(gapTimeout));
+    }
+
+    private RebuildResult rebuildNow() throws InterruptedException, ExecutionException {
+        long start = System.nanoTime();
+        long from = QuarkusTransaction.requiringNew().call(
+                () -> ProjectionCheckpoint.<ProjectionCheckpoint> findById(ORDER_READ_MODEL).position);
+        long position = eventStore.lastPosition();
+        // Read before the events: an append that commits during the rebuild can be missed by it,
+        // so its position is checked again afterwards
+        List<Long> existing = eventStore.positions(from, position);
+        List<UUID> orderIds = eventStore.aggregateIds();
+        QuarkusTransaction.requiringNew().run(() -> OrderReadModel.deleteAll());
+
+        List<List<UUID>> partitions = new ArrayList<>();
+        for (int i = 0; i < rebuildThreads; i++) {
+            partitions.add(new ArrayList<>());
+        }
+        for (UUID orderId : orderIds) {
+            partitions.get(Math.floorMod(orderId.hashCode(), rebuildThreads)).add(orderId);
+        }
+
+        ExecutorService workers = Executors.newFixedThreadPool(rebuildThreads);
+        try {
+            List<Callable<Void>> tasks = partitions.stream()
+                    .<Callable<Void>> map(partition -> () -> {
+                        for (int from = 0; from < partition.size(); from += REBUILD_CHUNK) {
+                            List<UUID> chunk = partition.subList(from, Math.min(partition.size(), from + REBUILD_CHUNK));
+                            QuarkusTransaction.requiringNew().run(() -> projector.project(eventStore.loadEvents(chunk)));
+                        }
+                        return null;
+                    })
+                    .toList();
+            for (Future<Void> done : workers.invokeAll(tasks)) {
+                done.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        QuarkusTransaction.requiringNew().run(() -> {
+            ProjectionCheckpoint checkpoint = ProjectionCheckpoint.findById(ORDER_READ_MODEL,
+                    LockModeType.PESSIMISTIC_WRITE);
+            // Another node may have tailed past the rebuild meanwhile
+            long expected = Math.max(from, checkpoint.position) + 1;
+            for (long next : existing) {
+                if (next >= expected) {
+                    skip(checkpoint, expected, next);
+                    expected = next + 1;
+                }
+            }
+            skip(checkpoint, expected, position + 1);
+            checkpoint.position = Math.max(checkpoint.position, position);
+            checkpoint.updatedAt = Instant.now();
+        });
+        gapSince = null;
+
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        Log.infof("Rebuilt %s for %d orders in %d ms", ORDER_READ_MODEL, orderIds.size(), millis);
+        return new RebuildResult(orderIds.size(), position, millis);
+    }
+}
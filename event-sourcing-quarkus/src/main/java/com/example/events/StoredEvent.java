@@ -3,17 +3,29 @@ package com.example.events;
 import java.time.Instant;
 import java.util.UUID;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.Id;
 import jakarta.persistence.Index;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 @Entity
 @Table(name = "event_store", indexes = {
-        @Index(name = "idx_event_aggregate", columnList = "aggregateId, version")
+        // One event per version: concurrent appends of the same version fail
+        @Index(name = EventStore.VERSION_CONSTRAINT, columnList = "aggregateId, version", unique = true)
 })
-public class StoredEvent extends PanacheEntity {
+public class StoredEvent extends PanacheEntityBase {
+
+    // Global position. Taken one at a time: with pooled blocks every node
+    // would hand out its own range, and the projection could skip a range
+    // behind a gap for good.
+    @Id
+    @SequenceGenerator(name = "event_position_seq", sequenceName = "event_position_seq", allocationSize = 1)
+    @GeneratedValue(generator = "event_position_seq")
+    public Long position;
 
     @Column(nullable = false, columnDefinition = "uuid")
     public UUID aggregateId;
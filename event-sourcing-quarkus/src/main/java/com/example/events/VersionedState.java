@@ -0,0 +1,10 @@
+package com.example.events;
+
+// An order's state after the event with the given version
+public record VersionedState(
+        OrderState state,
+        long version) {
+
+    // Before the first event
+    public static final VersionedState INITIAL = new VersionedState(OrderState.empty(), 0);
+}
@@ -3,7 +3,10 @@ package com.example;
 import io.quarkus.test.junit.QuarkusTest;
 import org.junit.jupiter.api.Test;
 
+import java.time.Duration;
+
 import static io.restassured.RestAssured.given;
+import static org.awaitility.Awaitility.await;
 import static org.hamcrest.CoreMatchers.*;
 
 @QuarkusTest
@@ -73,8 +76,8 @@ class OrderResourceTest {
                 .body("[2].orderId", equalTo(orderId))
                 .body("[2].timestamp", notNullValue());
         
-        // 6. Inspect Read model
-        given()
+        // 6. Inspect Read model - projected asynchronously after commit
+        await().atMost(Duration.ofSeconds(10)).untilAsserted(() -> given()
                 .when()
                 .get("/orders/" + orderId + "/read-model")
                 .then()
@@ -83,6 +86,6 @@ class OrderResourceTest {
                 .body("customerEmail", equalTo("alice@example.com"))
                 .body("status", equalTo("SHIPPED"))
                 .body("total", equalTo(1499.00f))
-                .body("lastUpdated", notNullValue());
+                .body("lastUpdated", notNullValue()));
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.example.events;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+public class OrderStateCacheTest {
+
+    @Test
+    void testNewerVersionWins() {
+        OrderStateCache cache = new OrderStateCache(10);
+        UUID orderId = UUID.randomUUID();
+
+        cache.put(orderId, new VersionedState(OrderState.empty(), 3));
+        cache.put(orderId, new VersionedState(OrderState.empty(), 2));
+        assertEquals(3, cache.get(orderId).version());
+
+        cache.put(orderId, new VersionedState(OrderState.empty(), 4));
+        assertEquals(4, cache.get(orderId).version());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        OrderStateCache cache = new OrderStateCache(2);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        cache.put(first, VersionedState.INITIAL);
+        cache.put(second, VersionedState.INITIAL);
+        cache.get(first);
+        cache.put(third, VersionedState.INITIAL);
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(second));
+        assertEquals(VersionedState.INITIAL, cache.get(first));
+    }
+}
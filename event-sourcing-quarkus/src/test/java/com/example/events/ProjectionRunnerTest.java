@@ -0,0 +1,180 @@
+package com.example.events;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+public class ProjectionRunnerTest {
+
+    @Inject
+    EventStore eventStore;
+
+    @Inject
+    ProjectionRunner runner;
+
+    @Test
+    void testSkipsRolledBackPosition() {
+        UUID rolledBack = UUID.randomUUID();
+        QuarkusTransaction.requiringNew().run(() -> {
+            place(rolledBack);
+            QuarkusTransaction.setRollbackOnly();
+        });
+        UUID orderId = UUID.randomUUID();
+        place(orderId);
+
+        // Projected once the gap left by the rolled back append has timed out
+        await().atMost(Duration.ofSeconds(10)).until(() -> readModel(orderId) != null);
+        assertNull(readModel(rolledBack));
+    }
+
+    @Test
+    void testWaitsForSlowerAppend() throws Exception {
+        UUID slow = UUID.randomUUID();
+        UUID fast = UUID.randomUUID();
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // Takes the lower position but commits after the fast append
+            Future<?> slowAppend = executor.submit(() -> QuarkusTransaction.requiringNew().run(() -> {
+                place(slow);
+                appended.countDown();
+                block(release);
+            }));
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+            place(fast);
+
+            // Well within the gap timeout, so the runner is still waiting in front of the slow append
+            Thread.sleep(500);
+            assertNull(readModel(fast));
+
+            release.countDown();
+            slowAppend.get(10, TimeUnit.SECONDS);
+            await().atMost(Duration.ofSeconds(10)).until(() -> readModel(slow) != null && readModel(fast) != null);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testProjectsAppendSlowerThanGapTimeout() throws Exception {
+        UUID slow = UUID.randomUUID();
+        UUID fast = UUID.randomUUID();
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowAppend = executor.submit(() -> QuarkusTransaction.requiringNew().run(() -> {
+                place(slow);
+                appended.countDown();
+                block(release);
+            }));
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+            place(fast);
+
+            // The runner passes the slow append's position once the gap has timed out
+            await().atMost(Duration.ofSeconds(10)).until(() -> readModel(fast) != null);
+            assertNull(readModel(slow));
+
+            release.countDown();
+            slowAppend.get(10, TimeUnit.SECONDS);
+            await().atMost(Duration.ofSeconds(10)).until(() -> readModel(slow) != null);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRebuildKeepsAppendInFlight() throws Exception {
+        UUID slow = UUID.randomUUID();
+        UUID fast = UUID.randomUUID();
+        CountDownLatch appended = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> slowAppend = executor.submit(() -> QuarkusTransaction.requiringNew().run(() -> {
+                place(slow);
+                appended.countDown();
+                block(release);
+            }));
+            assertTrue(appended.await(10, TimeUnit.SECONDS));
+            place(fast);
+
+            // The checkpoint moves past the position of the uncommitted append
+            ProjectionRunner.RebuildResult result = runner.rebuild();
+            assertTrue(result.position() >= QuarkusTransaction.requiringNew().call(
+                    () -> StoredEvent.<StoredEvent> find("aggregateId", fast).firstResult().position));
+            assertNull(readModel(slow));
+
+            release.countDown();
+            slowAppend.get(10, TimeUnit.SECONDS);
+            await().atMost(Duration.ofSeconds(10)).until(() -> readModel(slow) != null);
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void testRebuild() throws InterruptedException {
+        UUID orderId = UUID.randomUUID();
+        place(orderId);
+        eventStore.append(orderId, OrderStateStore.AGGREGATE_TYPE, 1,
+                new OrderEvent.ItemAdded(orderId, "Laptop", 2, new BigDecimal("10.00"), Instant.now()));
+        await().atMost(Duration.ofSeconds(10)).until(() -> {
+            OrderReadModel readModel = readModel(orderId);
+            return readModel != null && readModel.version == 2;
+        });
+        QuarkusTransaction.requiringNew().run(() -> OrderReadModel.delete("orderId", orderId));
+
+        ProjectionRunner.RebuildResult result = runner.rebuild();
+
+        assertTrue(result.orders() >= 1);
+        assertEquals(eventStore.lastPosition(), result.position());
+        long checkpoint = QuarkusTransaction.requiringNew().call(
+                () -> ProjectionCheckpoint.<ProjectionCheckpoint> findById(ProjectionRunner.ORDER_READ_MODEL).position);
+        assertEquals(result.position(), checkpoint);
+
+        OrderReadModel rebuilt = readModel(orderId);
+        assertEquals(2, rebuilt.version);
+        assertEquals("DRAFT", rebuilt.status);
+        assertEquals(0, new BigDecimal("20.00").compareTo(rebuilt.total));
+    }
+
+    private void place(UUID orderId) {
+        eventStore.append(orderId, OrderStateStore.AGGREGATE_TYPE, 0,
+                new OrderEvent.OrderPlaced(orderId, "alice@example.com", Instant.now()));
+    }
+
+    private static OrderReadModel readModel(UUID orderId) {
+        return QuarkusTransaction.requiringNew().call(() -> OrderReadModel.findByOrderId(orderId));
+    }
+
+    private static void block(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -10,8 +10,10 @@ import com.example.domain.ReinsuranceLayer;
 import com.example.domain.Vehicle;
 import com.example.repo.FleetPolicyRepo;
 import com.example.repo.ReinsuranceLayerRepo;
+import com.example.service.PolicyRiskIndex;
 import com.example.service.PremiumCalculator;
 
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.ws.rs.POST;
@@ -39,6 +41,8 @@ public class BootstrapResource {
     ReinsuranceLayerRepo layerRepo;
     @Inject
     PremiumCalculator calculator;
+    @Inject
+    Event<PolicyRiskIndex.MembershipChanged> membershipChanged;
 
     /**
      * Creates a complete demo fleet policy with associated data.
@@ -97,6 +101,7 @@ public class BootstrapResource {
             pv.effectiveFrom = p.effectiveFrom;
             pv.persist();
         }
+        membershipChanged.fire(new PolicyRiskIndex.MembershipChanged(p.id));
 
         // Historical snapshots: one per month
         for (int m = 5; m >= 0; m--) {
@@ -118,6 +123,6 @@ public class BootstrapResource {
         l.name = name;
         l.lowerBound = new BigDecimal(low);
         l.upperBound = new BigDecimal(high);
-        layerRepo.persist(l);
+        layerRepo.save(l);
     }
 }
\ No newline at end of file
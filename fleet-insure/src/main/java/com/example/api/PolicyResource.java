@@ -10,8 +10,10 @@ import com.example.domain.Vehicle;
 import com.example.repo.FleetPolicyRepo;
 import com.example.repo.PolicyVehicleRepo;
 import com.example.repo.VehicleRepo;
+import com.example.service.PolicyRiskIndex;
 import com.example.service.PremiumCalculator;
 
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
@@ -38,6 +40,8 @@ public class PolicyResource {
     PolicyVehicleRepo pvRepo;
     @Inject
     PremiumCalculator calculator;
+    @Inject
+    Event<PolicyRiskIndex.MembershipChanged> membershipChanged;
 
     @GET
     @Path("/{id}")
@@ -77,6 +81,7 @@ public class PolicyResource {
         pv.vehicle = v;
         pv.effectiveFrom = req.effectiveFrom;
         pv.persist();
+        membershipChanged.fire(new PolicyRiskIndex.MembershipChanged(policyId));
 
         calculator.recalc(policyId, "VEHICLE_ADDED vin=" + v.vin, req.effectiveFrom);
         return Response.status(Response.Status.CREATED).entity(v).build();
@@ -3,10 +3,12 @@ package com.example.api;
 import java.time.LocalDate;
 
 import com.example.api.dto.RiskScoreUpdateRequest;
+import com.example.domain.RecalcJob;
 import com.example.domain.Vehicle;
-import com.example.domain.VehicleShare;
-import com.example.service.PremiumCalculator;
+import com.example.repo.PolicyVehicleRepo;
+import com.example.service.PolicyRiskIndex;
 
+import jakarta.enterprise.event.Event;
 import jakarta.inject.Inject;
 import jakarta.transaction.Transactional;
 import jakarta.validation.Valid;
@@ -24,7 +26,9 @@ import jakarta.ws.rs.core.MediaType;
 public class VehicleResource {
 
     @Inject
-    PremiumCalculator calculator;
+    PolicyVehicleRepo pvRepo;
+    @Inject
+    Event<PolicyRiskIndex.RiskChanged> riskChanged;
 
     @POST
     @Path("/{id}/risk")
@@ -34,13 +38,17 @@ public class VehicleResource {
         if (v == null)
             throw new NotFoundException();
         v.currentRiskScore = req.newRiskScore;
+        riskChanged.fire(new PolicyRiskIndex.RiskChanged(v));
 
         // For demo, recalc today's state. In real systems, use event time.
-        // Trigger recomputation for all policies this vehicle belongs to (simplified)
-        // For tutorial, find policy by a recent snapshot that references this vehicle
-        VehicleShare snap = VehicleShare.find("vehicle.id", id).firstResult();
-        if (snap != null) {
-            calculator.recalc(snap.snapshot.policy.id, "RISK_SCORE_UPDATED vehicle=" + id, LocalDate.now());
+        // Queue a recalculation for every policy the vehicle belongs to today. Bulk
+        // updates of many vehicles coalesce into one run per policy.
+        for (Long policyId : pvRepo.policyIdsOf(id, LocalDate.now())) {
+            RecalcJob j = new RecalcJob();
+            j.policyId = policyId;
+            j.trigger = "RISK_SCORE_UPDATED vehicle=" + id;
+            j.status = RecalcJob.Status.QUEUED;
+            j.persist();
         }
         return v;
     }
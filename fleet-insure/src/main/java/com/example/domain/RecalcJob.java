@@ -30,5 +30,7 @@ public class RecalcJob extends PanacheEntityBase {
     public Status status;
 
     public OffsetDateTime createdAt = OffsetDateTime.now();
+    // When the job was last claimed, used to re-queue jobs of a worker that died
+    public OffsetDateTime startedAt;
     public OffsetDateTime finishedAt;
 }
\ No newline at end of file
@@ -6,13 +6,39 @@ import java.util.List;
 import com.example.domain.PolicyVehicle;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
+import io.quarkus.hibernate.orm.panache.common.ProjectedFieldName;
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class PolicyVehicleRepo implements PanacheRepository<PolicyVehicle> {
 
+    /** A membership with the vehicle's risk score, without loading the entities. */
+    public record MembershipRow(
+            @ProjectedFieldName("vehicle.id") long vehicleId,
+            @ProjectedFieldName("vehicle.version") int vehicleVersion,
+            @ProjectedFieldName("vehicle.currentRiskScore") int riskScore,
+            LocalDate effectiveFrom,
+            LocalDate effectiveTo) {
+    }
+
     public List<PolicyVehicle> activeOn(long policyId, LocalDate date) {
         return find("policy.id = ?1 and effectiveFrom <= ?2 and (effectiveTo is null or effectiveTo >= ?2)",
                 policyId, date).list();
     }
-}
\ No newline at end of file
+
+    /** All memberships of a policy, past and future included. */
+    public List<MembershipRow> membershipRows(long policyId) {
+        return find("policy.id", policyId).project(MembershipRow.class).list();
+    }
+
+    /** Ids of the policies the vehicle belongs to on the given date. */
+    public List<Long> policyIdsOf(long vehicleId, LocalDate date) {
+        return getEntityManager().createQuery(
+                "select distinct pv.policy.id from PolicyVehicle pv where pv.vehicle.id = ?1"
+                        + " and pv.effectiveFrom <= ?2 and (pv.effectiveTo is null or pv.effectiveTo >= ?2)",
+                Long.class)
+                .setParameter(1, vehicleId)
+                .setParameter(2, date)
+                .getResultList();
+    }
+}
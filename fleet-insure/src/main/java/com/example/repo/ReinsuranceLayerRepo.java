@@ -1,10 +1,58 @@
 package com.example.repo;
 
+import java.math.BigDecimal;
+import java.util.Comparator;
+import java.util.List;
+
 import com.example.domain.ReinsuranceLayer;
 
 import io.quarkus.hibernate.orm.panache.PanacheRepository;
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 
 @ApplicationScoped
 public class ReinsuranceLayerRepo implements PanacheRepository<ReinsuranceLayer> {
-}
\ No newline at end of file
+
+    /** Immutable copy of a layer, safe to share between transactions. */
+    public record Band(long id, BigDecimal lowerBound, BigDecimal upperBound) {
+    }
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
+    private volatile List<Band> bands;
+
+    /**
+     * All layers sorted by lower bound. Layers change rarely, so they are read
+     * once and kept until a layer is saved with {@link #save(ReinsuranceLayer)}.
+     */
+    public List<Band> bands() {
+        List<Band> cached = bands;
+        if (cached == null) {
+            cached = listAll().stream()
+                    .map(l -> new Band(l.id, l.lowerBound, l.upperBound))
+                    .sorted(Comparator.comparing(Band::lowerBound))
+                    .toList();
+            bands = cached;
+        }
+        return cached;
+    }
+
+    public void save(ReinsuranceLayer layer) {
+        persist(layer);
+        bands = null;
+        // Drop again once the transaction ends, in case another thread read the old layers meanwhile
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                bands = null;
+            }
+        });
+    }
+}
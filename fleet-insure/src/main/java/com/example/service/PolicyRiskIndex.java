@@ -0,0 +1,148 @@
+package com.example.service;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.example.domain.Vehicle;
+import com.example.repo.PolicyVehicleRepo;
+import com.example.repo.PolicyVehicleRepo.MembershipRow;
+
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+import jakarta.enterprise.event.TransactionPhase;
+import jakarta.inject.Inject;
+
+/**
+ * In-memory risk aggregates per policy, so a recalculation does not reload
+ * every membership and vehicle.
+ * - Memberships of a policy are read once, then kept until a
+ * {@link MembershipChanged} event for the policy. They are not kept while a
+ * transaction changing them is open, that transaction reads its own rows.
+ * - Risk scores are updated one vehicle at a time from {@link RiskChanged}
+ * events, the newer vehicle version wins
+ *
+ * The index is per JVM. Changes made by other nodes are only seen after the
+ * policy's memberships are invalidated.
+ */
+@ApplicationScoped
+public class PolicyRiskIndex {
+
+    /** Fire after changing {@link Vehicle#currentRiskScore}. Applied once the transaction commits. */
+    public record RiskChanged(Vehicle vehicle) {
+    }
+
+    /**
+     * Fire after adding or ending a membership of the policy, before the
+     * transaction recalculates it. Applied right away and again once the
+     * transaction ends.
+     */
+    public record MembershipChanged(long policyId) {
+    }
+
+    /**
+     * Vehicles of a policy on a date, sorted by vehicle id. A vehicle appears
+     * once per active membership.
+     */
+    public record RiskVector(long[] vehicleIds, int[] riskScores, long totalRisk) {
+
+        public int size() {
+            return vehicleIds.length;
+        }
+    }
+
+    private record Membership(long vehicleId, LocalDate effectiveFrom, LocalDate effectiveTo) {
+
+        boolean activeOn(LocalDate date) {
+            return !effectiveFrom.isAfter(date) && (effectiveTo == null || !effectiveTo.isBefore(date));
+        }
+    }
+
+    private record Score(int version, int riskScore) {
+
+        static Score newer(Score a, Score b) {
+            return b.version >= a.version ? b : a;
+        }
+    }
+
+    @Inject
+    PolicyVehicleRepo policyVehicleRepo;
+
+    // Sorted by vehicle id
+    private final ConcurrentHashMap<Long, List<Membership>> memberships = new ConcurrentHashMap<>();
+    // Bumped on every invalidation, so a load that raced with a change is not kept
+    private final ConcurrentHashMap<Long, Long> generations = new ConcurrentHashMap<>();
+    // Open transactions that changed the policy's memberships, absent if none
+    private final ConcurrentHashMap<Long, Integer> changing = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, Score> scores = new ConcurrentHashMap<>();
+
+    /** Must be called inside a transaction, the memberships are loaded on first use. */
+    public RiskVector activeOn(long policyId, LocalDate asOf) {
+        List<Membership> members = memberships.get(policyId);
+        if (members == null) {
+            members = load(policyId);
+        }
+
+        long[] vehicleIds = new long[members.size()];
+        int[] riskScores = new int[members.size()];
+        int count = 0;
+        long totalRisk = 0;
+        for (Membership m : members) {
+            if (m.activeOn(asOf)) {
+                int score = scores.get(m.vehicleId()).riskScore();
+                vehicleIds[count] = m.vehicleId();
+                riskScores[count] = score;
+                totalRisk += score;
+                count++;
+            }
+        }
+        return new RiskVector(Arrays.copyOf(vehicleIds, count), Arrays.copyOf(riskScores, count), totalRisk);
+    }
+
+    void onRiskChanged(@Observes(during = TransactionPhase.AFTER_SUCCESS) RiskChanged event) {
+        Vehicle v = event.vehicle();
+        scores.merge(v.id, new Score(v.version, v.currentRiskScore), Score::newer);
+    }
+
+    // The changing transaction recalculates before it commits, so it must not see the cached memberships
+    void onMembershipChanging(@Observes(during = TransactionPhase.IN_PROGRESS) MembershipChanged event) {
+        invalidate(event.policyId(), 1);
+    }
+
+    // Also after a rollback: the change is no longer pending either way
+    void onMembershipChanged(@Observes(during = TransactionPhase.AFTER_COMPLETION) MembershipChanged event) {
+        invalidate(event.policyId(), -1);
+    }
+
+    private void invalidate(long policyId, int changingDelta) {
+        generations.compute(policyId, (id, generation) -> {
+            memberships.remove(id);
+            changing.merge(id, changingDelta, (a, b) -> a + b == 0 ? null : a + b);
+            return generation == null ? 1 : generation + 1;
+        });
+    }
+
+    private List<Membership> load(long policyId) {
+        long generation = generations.getOrDefault(policyId, 0L);
+        List<MembershipRow> rows = policyVehicleRepo.membershipRows(policyId);
+
+        for (MembershipRow row : rows) {
+            scores.merge(row.vehicleId(), new Score(row.vehicleVersion(), row.riskScore()), Score::newer);
+        }
+        List<Membership> members = rows.stream()
+                .map(row -> new Membership(row.vehicleId(), row.effectiveFrom(), row.effectiveTo()))
+                .sorted(Comparator.comparingLong(Membership::vehicleId))
+                .toList();
+
+        // Not kept while a change is open, it may include uncommitted memberships
+        generations.compute(policyId, (id, current) -> {
+            if ((current == null ? generation == 0 : current == generation) && !changing.containsKey(id)) {
+                memberships.put(id, members);
+            }
+            return current;
+        });
+        return members;
+    }
+}
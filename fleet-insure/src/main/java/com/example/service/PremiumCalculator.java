@@ -9,11 +9,10 @@ import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
-import java.util.stream.Collectors;
+
+import org.hibernate.Hibernate;
 
 import com.example.domain.AuditEntry;
 import com.example.domain.FleetPolicy;
@@ -23,11 +22,13 @@ import com.example.domain.SnapshotReinsuranceAllocation;
 import com.example.domain.Vehicle;
 import com.example.domain.VehicleShare;
 import com.example.repo.FleetPolicyRepo;
-import com.example.repo.PolicyVehicleRepo;
 import com.example.repo.ReinsuranceLayerRepo;
+import com.example.repo.ReinsuranceLayerRepo.Band;
+import com.example.service.PolicyRiskIndex.RiskVector;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.persistence.EntityManager;
 import jakarta.transaction.Transactional;
 
 /**
@@ -35,6 +36,8 @@ import jakarta.transaction.Transactional;
  * - Creates immutable snapshots with vehicle shares and reinsurance allocations
  * - Dedupes only when (same asOf + same risk vector)
  * - Records an audit entry for each computation
+ * - Reads risk scores from {@link PolicyRiskIndex} and layers from the cached
+ * {@link ReinsuranceLayerRepo#bands()}
  */
 @ApplicationScoped
 public class PremiumCalculator {
@@ -42,16 +45,16 @@ public class PremiumCalculator {
     @Inject
     FleetPolicyRepo policyRepo;
     @Inject
-    PolicyVehicleRepo policyVehicleRepo;
-    @Inject
     ReinsuranceLayerRepo layerRepo;
+    @Inject
+    PolicyRiskIndex riskIndex;
 
     private static final MathContext MC = new MathContext(20, RoundingMode.HALF_UP);
     /**
-     * Demo rate: currency units per risk point per day. Replace with your actuarial
-     * model.
+     * Demo rate: 1.25 currency units per risk point per day, in cents. Replace with
+     * your actuarial model.
      */
-    private static final BigDecimal RATE_PER_RISK_POINT_PER_DAY = new BigDecimal("1.25");
+    private static final long RATE_CENTS_PER_RISK_POINT_PER_DAY = 125;
 
     @Transactional
     public FleetPremiumSnapshot recalc(long policyId, String trigger, LocalDate asOf) {
@@ -59,15 +62,11 @@ public class PremiumCalculator {
         if (policy == null)
             throw new IllegalArgumentException("Policy not found: " + policyId);
 
-        // 1) Determine active vehicles for the as-of date
-        var memberships = policyVehicleRepo.activeOn(policyId, asOf);
-        var vehicles = memberships.stream().map(m -> m.vehicle).collect(Collectors.toList());
+        // 1) Risk vector of the vehicles active on the as-of date, from the in-memory index
+        RiskVector risk = riskIndex.activeOn(policyId, asOf);
 
-        // 2) Build a stable risk vector and hash it
-        Map<Long, Integer> riskMap = new TreeMap<>();
-        for (Vehicle v : vehicles)
-            riskMap.put(v.id, v.currentRiskScore);
-        String riskHash = hashRisk(riskMap);
+        // 2) Hash the stable risk vector
+        String riskHash = hashRisk(risk);
 
         // 3) Find the previous snapshot to decide dedupe and set "previousSnapshot"
         // link
@@ -81,32 +80,34 @@ public class PremiumCalculator {
             return previous;
         }
 
-        // 4) Premium math
-        int totalRisk = vehicles.stream().mapToInt(v -> v.currentRiskScore).sum();
-        totalRisk = Math.max(totalRisk, 0);
+        // 4) Premium math, exact in cents
+        long totalRisk = Math.max(risk.totalRisk(), 0);
+        BigDecimal totalRiskDecimal = BigDecimal.valueOf(totalRisk);
 
         long remainingDays = daysRemaining(policy, asOf);
-        BigDecimal totalPremium = BigDecimal.ZERO;
-        List<VehicleShare> shares = new ArrayList<>(vehicles.size());
+        long totalPremiumCents = 0;
+        List<VehicleShare> shares = new ArrayList<>(risk.size());
+        EntityManager em = policyRepo.getEntityManager();
 
-        for (Vehicle v : vehicles) {
+        for (int i = 0; i < risk.size(); i++) {
+            int score = risk.riskScores()[i];
             BigDecimal pct = totalRisk == 0
                     ? BigDecimal.ZERO
-                    : new BigDecimal(v.currentRiskScore).divide(new BigDecimal(totalRisk), 6, RoundingMode.HALF_UP);
+                    : BigDecimal.valueOf(score).divide(totalRiskDecimal, 6, RoundingMode.HALF_UP);
 
-            BigDecimal daily = new BigDecimal(v.currentRiskScore).multiply(RATE_PER_RISK_POINT_PER_DAY, MC);
-            BigDecimal contribution = daily.multiply(new BigDecimal(remainingDays), MC);
+            long contributionCents = score * RATE_CENTS_PER_RISK_POINT_PER_DAY * remainingDays;
 
             VehicleShare s = new VehicleShare();
-            s.vehicle = v;
-            s.riskScore = v.currentRiskScore;
+            // A reference is enough for the foreign key, the vehicle is not loaded
+            s.vehicle = em.getReference(Vehicle.class, risk.vehicleIds()[i]);
+            s.riskScore = score;
             s.fleetPercentage = pct;
-            s.premiumContribution = contribution.setScale(2, RoundingMode.HALF_UP);
-            s.exposureUnits = new BigDecimal(v.currentRiskScore).setScale(4, RoundingMode.HALF_UP);
+            s.premiumContribution = BigDecimal.valueOf(contributionCents, 2);
+            s.exposureUnits = BigDecimal.valueOf(score).setScale(4);
             s.effectiveFromDate = LocalDateTime.of(asOf, LocalTime.NOON);
             shares.add(s);
 
-            totalPremium = totalPremium.add(contribution, MC);
+            totalPremiumCents += contributionCents;
         }
 
         // 5) Create the snapshot aggregate
@@ -116,7 +117,7 @@ public class PremiumCalculator {
         snap.calculationDate = LocalDateTime.now();
         snap.calculationTrigger = trigger;
         snap.previousSnapshot = previous;
-        snap.totalPremium = totalPremium.setScale(2, RoundingMode.HALF_UP);
+        snap.totalPremium = BigDecimal.valueOf(totalPremiumCents, 2);
         snap.riskHash = riskHash;
 
         for (VehicleShare s : shares)
@@ -124,39 +125,41 @@ public class PremiumCalculator {
         snap.vehicleShares = shares;
 
         // Attribute exposure to the snapshot month (using asOf, not "now")
-        BigDecimal exposureSum = shares.stream()
-                .map(vs -> vs.exposureUnits)
-                .reduce(BigDecimal.ZERO, BigDecimal::add)
-                .setScale(4, RoundingMode.HALF_UP);
+        BigDecimal exposureSum = BigDecimal.valueOf(risk.totalRisk()).setScale(4);
         snap.exposureUnitsByMonth = Map.of(asOf.getMonth(), exposureSum);
 
         // 6) Reinsurance allocations for each layer based on total premium
-        List<ReinsuranceLayer> layers = layerRepo.listAll().stream()
-                .sorted(Comparator.comparing(l -> l.lowerBound))
-                .toList();
+        List<Band> layers = layerRepo.bands();
 
         List<SnapshotReinsuranceAllocation> allocations = new ArrayList<>(layers.size());
-        for (ReinsuranceLayer layer : layers) {
+        for (Band layer : layers) {
             BigDecimal alloc = allocationForLayer(layer, snap.totalPremium).setScale(2, RoundingMode.HALF_UP);
             SnapshotReinsuranceAllocation a = new SnapshotReinsuranceAllocation();
             a.snapshot = snap;
-            a.layer = layer;
+            a.layer = em.getReference(ReinsuranceLayer.class, layer.id());
             a.allocatedAmount = alloc;
             allocations.add(a);
         }
         snap.reinsuranceAllocations = allocations;
 
-        // 7) Persist via owning aggregate (policy has cascade = ALL)
-        policy.snapshots = policy.snapshots == null ? new ArrayList<>() : policy.snapshots;
-        policy.snapshots.add(snap);
+        // 7) Persist the snapshot directly (cascades to shares and allocations).
+        // Adding it through policy.snapshots would load every earlier snapshot.
+        snap.persist();
+        if (policy.snapshots == null)
+            policy.snapshots = new ArrayList<>();
+        if (Hibernate.isInitialized(policy.snapshots))
+            policy.snapshots.add(snap);
 
         // 8) Audit entry
         AuditEntry ae = new AuditEntry();
         ae.policy = policy;
         ae.reason = "Recalculation";
         ae.trigger = trigger + " asOf=" + asOf;
-        policy.auditEntries = policy.auditEntries == null ? new ArrayList<>() : policy.auditEntries;
-        policy.auditEntries.add(ae);
+        ae.persist();
+        if (policy.auditEntries == null)
+            policy.auditEntries = new ArrayList<>();
+        if (Hibernate.isInitialized(policy.auditEntries))
+            policy.auditEntries.add(ae);
 
         return snap;
     }
@@ -172,18 +175,23 @@ public class PremiumCalculator {
         // inclusive of policy end date
     }
 
-    private static BigDecimal allocationForLayer(ReinsuranceLayer layer, BigDecimal total) {
+    private static BigDecimal allocationForLayer(Band layer, BigDecimal total) {
         // amount covered in this band = max(min(total, upper) - lower, 0)
-        BigDecimal capped = total.min(layer.upperBound);
-        BigDecimal raw = capped.subtract(layer.lowerBound, MC);
+        BigDecimal capped = total.min(layer.upperBound());
+        BigDecimal raw = capped.subtract(layer.lowerBound(), MC);
         return raw.max(BigDecimal.ZERO);
     }
 
-    private static String hashRisk(Map<Long, Integer> riskMap) {
+    private static String hashRisk(RiskVector risk) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-256");
             StringBuilder sb = new StringBuilder();
-            riskMap.forEach((id, score) -> sb.append(id).append(':').append(score).append(';'));
+            // Sorted by vehicle id; a vehicle with two active memberships is hashed once
+            for (int i = 0; i < risk.size(); i++) {
+                if (i > 0 && risk.vehicleIds()[i] == risk.vehicleIds()[i - 1])
+                    continue;
+                sb.append(risk.vehicleIds()[i]).append(':').append(risk.riskScores()[i]).append(';');
+            }
             byte[] hash = md.digest(sb.toString().getBytes());
             StringBuilder hex = new StringBuilder();
             for (byte b : hash)
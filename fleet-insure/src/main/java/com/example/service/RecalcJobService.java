@@ -1,44 +1,135 @@
 package com.example.service;
 
+import java.time.Duration;
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 import com.example.domain.RecalcJob;
 
-import io.quarkus.hibernate.orm.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
 import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
-import jakarta.transaction.Transactional;
 
+/**
+ * Runs queued {@link RecalcJob}s.
+ * - All queued jobs of a policy are coalesced into one recalculation
+ * - Different policies are recalculated in parallel, each in its own transaction,
+ * so one failing policy does not roll back the others
+ * - Jobs still RUNNING after {@code fleet.recalc.stale-after} were claimed by a
+ * process that died before finishing them, and are queued again
+ */
 @ApplicationScoped
 public class RecalcJobService {
 
     @Inject
     PremiumCalculator calc;
 
+    @ConfigProperty(name = "fleet.recalc.parallelism", defaultValue = "4")
+    int parallelism;
+
+    @ConfigProperty(name = "fleet.recalc.max-jobs-per-run", defaultValue = "10000")
+    int maxJobsPerRun;
+
+    @ConfigProperty(name = "fleet.recalc.stale-after", defaultValue = "10m")
+    Duration staleAfter;
+
+    private ExecutorService workers;
+
+    /** The queued jobs of one policy, claimed by a poll. */
+    private record PolicyRun(long policyId, String trigger, List<Long> jobIds) {
+    }
+
+    @PostConstruct
+    void start() {
+        workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("premium-recalc-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void stop() {
+        workers.shutdownNow();
+    }
+
     // In a real system use a queue. For the tutorial, a simple poller is enough.
 
-    @Scheduled(every = "10s")
-    @Transactional
+    @Scheduled(every = "${fleet.recalc.poll-interval:10s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
     void runJobs() {
-        List<RecalcJob> queued = RecalcJob.find("status", RecalcJob.Status.QUEUED).list();
+        List<PolicyRun> runs = QuarkusTransaction.requiringNew().call(this::claimQueued);
+        if (runs.isEmpty()) {
+            return;
+        }
+
+        LocalDate asOf = LocalDate.now();
+        CompletableFuture.allOf(runs.stream()
+                .map(run -> CompletableFuture.runAsync(() -> recalc(run, asOf), workers))
+                .toArray(CompletableFuture[]::new))
+                .join();
+        Log.infof("Recalculated %d policies for %d queued jobs", runs.size(),
+                runs.stream().mapToInt(run -> run.jobIds().size()).sum());
+    }
+
+    /** Marks the oldest queued jobs RUNNING and groups them by policy. */
+    private List<PolicyRun> claimQueued() {
+        OffsetDateTime now = OffsetDateTime.now();
+        int requeued = RecalcJob.update("status = ?1 where status = ?2 and (startedAt is null or startedAt < ?3)",
+                RecalcJob.Status.QUEUED, RecalcJob.Status.RUNNING, now.minus(staleAfter));
+        if (requeued > 0) {
+            Log.warnf("Queued %d jobs again that were RUNNING for more than %s", requeued, staleAfter);
+        }
+
+        List<RecalcJob> queued = RecalcJob.find("status = ?1 order by id", RecalcJob.Status.QUEUED)
+                .page(0, maxJobsPerRun)
+                .list();
+        Map<Long, List<RecalcJob>> byPolicy = new LinkedHashMap<>();
         for (var job : queued) {
             job.status = RecalcJob.Status.RUNNING;
-            try {
-                // Call calc in a new tx for isolation
-                Panache.getEntityManager().flush();
-                // Use CDI to obtain PremiumCalculator
-                // PremiumCalculator calc =
-                // io.quarkus.arc.Arc.container().instance(PremiumCalculator.class).get();
-                calc.recalc(job.policyId, job.trigger + " [async]", java.time.LocalDate.now());
-                job.status = RecalcJob.Status.DONE;
-                job.message = "Completed";
-            } catch (Exception e) {
-                job.status = RecalcJob.Status.FAILED;
-                job.message = e.getMessage();
+            job.startedAt = now;
+            byPolicy.computeIfAbsent(job.policyId, id -> new ArrayList<>()).add(job);
+        }
+
+        List<PolicyRun> runs = new ArrayList<>(byPolicy.size());
+        byPolicy.forEach((policyId, jobs) -> {
+            // The first job names the run, the others are counted
+            String trigger = jobs.get(0).trigger;
+            if (jobs.size() > 1) {
+                trigger += " (+" + (jobs.size() - 1) + " coalesced)";
             }
-            job.finishedAt = OffsetDateTime.now();
+            runs.add(new PolicyRun(policyId, trigger + " [async]", jobs.stream().map(j -> j.id).toList()));
+        });
+        return runs;
+    }
+
+    private void recalc(PolicyRun run, LocalDate asOf) {
+        String completed = run.jobIds().size() == 1
+                ? "Completed"
+                : "Completed (coalesced " + run.jobIds().size() + " jobs)";
+        try {
+            // The snapshot and the job status are committed together
+            QuarkusTransaction.requiringNew().run(() -> {
+                calc.recalc(run.policyId(), run.trigger(), asOf);
+                finish(run, RecalcJob.Status.DONE, completed);
+            });
+        } catch (Exception e) {
+            Log.warnf("Recalculation of policy %d failed: %s", run.policyId(), e.getMessage());
+            QuarkusTransaction.requiringNew().run(() -> finish(run, RecalcJob.Status.FAILED, e.getMessage()));
         }
     }
-}
\ No newline at end of file
+
+    private static void finish(PolicyRun run, RecalcJob.Status status, String message) {
+        RecalcJob.update("status = ?1, message = ?2, finishedAt = ?3 where id in ?4",
+                status, message, OffsetDateTime.now(), run.jobIds());
+    }
+}
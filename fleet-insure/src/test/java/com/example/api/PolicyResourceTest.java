@@ -0,0 +1,52 @@
+package com.example.api;
+
+import static io.restassured.RestAssured.given;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.domain.FleetPremiumSnapshot;
+import com.example.service.PremiumCalculator;
+
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.test.junit.QuarkusTest;
+import jakarta.inject.Inject;
+
+@QuarkusTest
+public class PolicyResourceTest {
+
+    // Vehicle VINs are at most 17 characters
+    private static final AtomicLong VINS = new AtomicLong();
+
+    @Inject
+    BootstrapResource bootstrap;
+    @Inject
+    PremiumCalculator calculator;
+
+    @Test
+    void testAddVehicleChangesPremium() {
+        long policyId = bootstrap.create().id;
+        LocalDate today = LocalDate.now();
+        // Loads the memberships into the risk index
+        BigDecimal before = calculator.recalc(policyId, "TEST", today).totalPremium;
+
+        given()
+                .contentType("application/json")
+                .body("{\"vin\": \"" + String.format("T%016d", VINS.incrementAndGet()) + "\", \"makeModel\": \"Van\", \"riskScore\": 80,"
+                        + " \"effectiveFrom\": \"" + today + "\"}")
+                .when()
+                .post("/policies/" + policyId + "/vehicles")
+                .then()
+                .statusCode(201);
+
+        FleetPremiumSnapshot latest = QuarkusTransaction.requiringNew().call(() -> FleetPremiumSnapshot
+                .<FleetPremiumSnapshot> find("policy.id = ?1 order by id desc", policyId)
+                .firstResult());
+        assertTrue(latest.calculationTrigger.startsWith("VEHICLE_ADDED"), latest.calculationTrigger);
+        assertTrue(latest.totalPremium.compareTo(before) > 0, latest.totalPremium + " <= " + before);
+    }
+}
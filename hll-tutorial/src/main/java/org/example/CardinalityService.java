@@ -1,35 +1,125 @@
 package org.example;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import io.quarkus.scheduler.Scheduled;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class CardinalityService {
-    // p=10 for ~2.4% error, uses 1KB memory
-    private final HyperLogLog dailyUsers = new HyperLogLog(10);
-    // p=12 for ~1.2% error, uses 4KB memory
-    private final HyperLogLog weeklyRepos = new HyperLogLog(12);
+    // p=10 for ~3.2% error, at most ~770 bytes per bucket once dense
+    private static final int USER_PRECISION = 10;
+    // p=12 for ~1.6% error, at most ~3KB per bucket once dense
+    private static final int REPO_PRECISION = 12;
+
+    public static final Duration DAY = Duration.ofHours(24);
+    public static final Duration WEEK = Duration.ofDays(7);
+
+    @ConfigProperty(name = "hll.window.bucket-width", defaultValue = "1h")
+    Duration bucketWidth;
+
+    @ConfigProperty(name = "hll.window.buckets", defaultValue = "168")
+    int bucketCount;
+
+    // Directory for the memory-mapped bucket files; unset keeps the buckets in memory only
+    @ConfigProperty(name = "hll.window.dir")
+    Optional<Path> storageDir;
+
+    private SlidingCardinalityStore users;
+    private SlidingCardinalityStore repos;
+
+    @PostConstruct
+    void init() {
+        try {
+            users = new SlidingCardinalityStore(USER_PRECISION, bucketWidth, bucketCount,
+                    storageDir.map(dir -> dir.resolve("users.hll")).orElse(null), Clock.systemUTC());
+            repos = new SlidingCardinalityStore(REPO_PRECISION, bucketWidth, bucketCount,
+                    storageDir.map(dir -> dir.resolve("repos.hll")).orElse(null), Clock.systemUTC());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open cardinality buckets", e);
+        }
+    }
+
+    @PreDestroy
+    void close() throws IOException {
+        users.close();
+        repos.close();
+    }
+
+    @Scheduled(every = "{hll.window.flush-interval}")
+    void flush() {
+        users.flush();
+        repos.flush();
+    }
+
+    // Empty sketches compatible with the buckets kept here, e.g. for per-thread ingestion
+    public HyperLogLogPlusPlus newUserSketch() {
+        return new HyperLogLogPlusPlus(USER_PRECISION);
+    }
+
+    public HyperLogLogPlusPlus newRepoSketch() {
+        return new HyperLogLogPlusPlus(REPO_PRECISION);
+    }
 
     public void trackUser(String userId) {
         if (userId != null) {
-            dailyUsers.add(userId);
+            users.add(userId);
         }
     }
 
     public void trackRepo(String repoName) {
         if (repoName != null) {
-            weeklyRepos.add(repoName);
+            repos.add(repoName);
         }
     }
 
+    // Sketches built elsewhere (other shards, other hours) are folded into the current bucket
+    public void mergeDailyUsers(HyperLogLogPlusPlus sketch) {
+        users.merge(sketch);
+    }
+
+    public void mergeWeeklyRepos(HyperLogLogPlusPlus sketch) {
+        repos.merge(sketch);
+    }
+
+    public byte[] exportDailyUsers() {
+        return users.rollup(DAY).toBytes();
+    }
+
+    public byte[] exportWeeklyRepos() {
+        return repos.rollup(WEEK).toBytes();
+    }
+
+    public double getUserEstimate(Duration window) {
+        return users.estimate(window);
+    }
+
+    public double getRepoEstimate(Duration window) {
+        return repos.estimate(window);
+    }
+
     public double getDailyUserEstimate() {
-        return dailyUsers.estimate();
+        return getUserEstimate(DAY);
     }
 
     public double getWeeklyRepoEstimate() {
-        return weeklyRepos.estimate();
+        return getRepoEstimate(WEEK);
+    }
+
+    public Duration getRetention() {
+        return users.retention();
     }
 
     public long getMemoryUsageBytes() {
-        return dailyUsers.getMemoryUsageBytes() + weeklyRepos.getMemoryUsageBytes();
+        return users.getMemoryUsageBytes() + repos.getMemoryUsageBytes();
     }
 }
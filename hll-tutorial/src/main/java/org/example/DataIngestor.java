@@ -2,10 +2,29 @@ package org.example;
 
 import java.io.BufferedReader;
 import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 import java.util.zip.GZIPInputStream;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
@@ -15,12 +34,20 @@ import jakarta.inject.Inject;
 @ApplicationScoped
 public class DataIngestor {
 
+    private static final int BATCH_SIZE = 1024;
+    // Marks the end of input for a parser thread; compared by identity
+    private static final List<String> END_OF_INPUT = new ArrayList<>();
+
     @Inject
     CardinalityService cardinalityService;
 
     @Inject
     ObjectMapper mapper;
 
+    // 0 means one parser thread per available core
+    @ConfigProperty(name = "hll.ingest.threads", defaultValue = "0")
+    int ingestThreads;
+
     public long processGhArchiveFile(Path filePath) throws Exception {
         long linesProcessed = 0;
         try (
@@ -46,4 +73,186 @@ public class DataIngestor {
         }
         return linesProcessed;
     }
-}
\ No newline at end of file
+
+    /**
+     * Streaming ingestion of a single .json.gz file or a directory of hourly files.
+     * Files are decompressed concurrently, lines are handed out in batches to parser threads
+     * that each own a private pair of sketches, and the sketches are merged once at the end.
+     */
+    public IngestionReport processGhArchiveStreaming(Path path) throws Exception {
+        List<Path> files;
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> listing = Files.list(path)) {
+                files = listing.filter(p -> p.getFileName().toString().endsWith(".gz")).sorted().toList();
+            }
+        } else {
+            files = List.of(path);
+        }
+
+        int parserCount = ingestThreads > 0 ? ingestThreads : Runtime.getRuntime().availableProcessors();
+        int readerCount = Math.max(1, Math.min(files.size(), Math.max(1, parserCount / 2)));
+        BlockingQueue<List<String>> queue = new ArrayBlockingQueue<>(parserCount * 4);
+        AtomicLong bytes = new AtomicLong();
+        JsonFactory factory = mapper.getFactory();
+
+        long start = System.nanoTime();
+        ExecutorService parsers = Executors.newFixedThreadPool(parserCount);
+        ExecutorService readers = Executors.newFixedThreadPool(readerCount);
+        try {
+            List<Future<ParserResult>> parserResults = new ArrayList<>();
+            for (int i = 0; i < parserCount; i++) {
+                parserResults.add(parsers.submit(() -> parseBatches(queue, factory)));
+            }
+
+            List<Future<?>> readerResults = new ArrayList<>();
+            for (Path file : files) {
+                readerResults.add(readers.submit(() -> {
+                    readBatches(file, queue, bytes);
+                    return null;
+                }));
+            }
+
+            Exception readerFailure = null;
+            for (Future<?> readerResult : readerResults) {
+                try {
+                    readerResult.get();
+                } catch (Exception e) {
+                    readerFailure = readerFailure == null ? e : readerFailure;
+                }
+            }
+            for (int i = 0; i < parserCount; i++) {
+                queue.put(END_OF_INPUT);
+            }
+
+            long lines = 0;
+            long malformed = 0;
+            for (Future<ParserResult> parserResult : parserResults) {
+                ParserResult result = parserResult.get();
+                cardinalityService.mergeDailyUsers(result.users());
+                cardinalityService.mergeWeeklyRepos(result.repos());
+                lines += result.lines();
+                malformed += result.malformed();
+            }
+            if (readerFailure != null) {
+                throw readerFailure;
+            }
+
+            long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+            return new IngestionReport(files.size(), lines, malformed, bytes.get(), elapsedMillis);
+        } finally {
+            readers.shutdownNow();
+            parsers.shutdownNow();
+        }
+    }
+
+    private void readBatches(Path file, BlockingQueue<List<String>> queue, AtomicLong bytes)
+            throws IOException, InterruptedException {
+        try (
+                CountingInputStream counting = new CountingInputStream(
+                        new GZIPInputStream(new FileInputStream(file.toFile()), 64 * 1024));
+                BufferedReader bufferedReader = new BufferedReader(
+                        new InputStreamReader(counting, StandardCharsets.UTF_8), 64 * 1024)) {
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            String line;
+            while ((line = bufferedReader.readLine()) != null) {
+                batch.add(line);
+                if (batch.size() == BATCH_SIZE) {
+                    queue.put(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                queue.put(batch);
+            }
+            bytes.addAndGet(counting.count);
+        }
+    }
+
+    private ParserResult parseBatches(BlockingQueue<List<String>> queue, JsonFactory factory)
+            throws InterruptedException {
+        HyperLogLogPlusPlus users = cardinalityService.newUserSketch();
+        HyperLogLogPlusPlus repos = cardinalityService.newRepoSketch();
+        long lines = 0;
+        long malformed = 0;
+        while (true) {
+            List<String> batch = queue.take();
+            if (batch == END_OF_INPUT) {
+                return new ParserResult(users, repos, lines, malformed);
+            }
+            for (String line : batch) {
+                try (JsonParser parser = factory.createParser(line)) {
+                    extractFields(parser, users, repos);
+                } catch (IOException e) {
+                    malformed++;
+                }
+                lines++;
+            }
+        }
+    }
+
+    // Pulls actor.login and repo.name without building a tree; payload and other fields are skipped
+    private static void extractFields(JsonParser parser, HyperLogLogPlusPlus users, HyperLogLogPlusPlus repos)
+            throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return;
+        }
+        int found = 0;
+        while (found < 2 && parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && "actor".equals(field)) {
+                users.add(readStringField(parser, "login"));
+                found++;
+            } else if (value == JsonToken.START_OBJECT && "repo".equals(field)) {
+                repos.add(readStringField(parser, "name"));
+                found++;
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // Reads one string field of the current object and leaves the parser at its END_OBJECT
+    private static String readStringField(JsonParser parser, String name) throws IOException {
+        String result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_STRING && name.equals(field)) {
+                result = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result;
+    }
+
+    private record ParserResult(HyperLogLogPlusPlus users, HyperLogLogPlusPlus repos, long lines, long malformed) {
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package org.example;
 
+import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.Map;
 
 import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DefaultValue;
 import jakarta.ws.rs.GET;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
 import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
 import jakarta.ws.rs.core.MediaType;
 import jakarta.ws.rs.core.Response;
 
@@ -23,13 +28,50 @@ public class HllResource {
     @Produces(MediaType.APPLICATION_JSON)
     public Response ingest(Map<String, String> input) {
         try {
-            long count = ingestor.processGhArchiveFile(Paths.get(input.get("path")));
+            java.nio.file.Path path = Paths.get(input.get("path"));
+            if ("streaming".equals(input.get("mode")) || Files.isDirectory(path)) {
+                IngestionReport report = ingestor.processGhArchiveStreaming(path);
+                return Response.ok(Map.of(
+                        "status", "ok",
+                        "files", report.files(),
+                        "lines", report.lines(),
+                        "malformedLines", report.malformedLines(),
+                        "bytes", report.bytes(),
+                        "elapsedMillis", report.elapsedMillis(),
+                        "linesPerSecond", report.linesPerSecond(),
+                        "bytesPerSecond", report.bytesPerSecond())).build();
+            }
+            long count = ingestor.processGhArchiveFile(path);
             return Response.ok(Map.of("status", "ok", "lines", count)).build();
         } catch (Exception e) {
             return Response.serverError().entity(Map.of("error", e.getMessage())).build();
         }
     }
 
+    @GET
+    @Path("/stats/unique-users")
+    public Response usersInRange(@QueryParam("hours") @DefaultValue("24") int hours) {
+        if (hours < 1 || Duration.ofHours(hours).compareTo(service.getRetention()) > 0) {
+            return outOfRange();
+        }
+        return Response.ok(Map.of("hours", hours, "estimate", service.getUserEstimate(Duration.ofHours(hours)))).build();
+    }
+
+    @GET
+    @Path("/stats/unique-repos")
+    public Response reposInRange(@QueryParam("hours") @DefaultValue("168") int hours) {
+        if (hours < 1 || Duration.ofHours(hours).compareTo(service.getRetention()) > 0) {
+            return outOfRange();
+        }
+        return Response.ok(Map.of("hours", hours, "estimate", service.getRepoEstimate(Duration.ofHours(hours)))).build();
+    }
+
+    private Response outOfRange() {
+        return Response.status(Response.Status.BAD_REQUEST)
+                .entity(Map.of("error", "hours must be between 1 and " + service.getRetention().toHours()))
+                .build();
+    }
+
     @GET
     @Path("/stats/unique-users/today")
     public Response users() {
@@ -47,4 +89,44 @@ public class HllResource {
     public Response mem() {
         return Response.ok(Map.of("bytes", service.getMemoryUsageBytes())).build();
     }
+
+    @GET
+    @Path("/sketches/users")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public byte[] exportUsers() {
+        return service.exportDailyUsers();
+    }
+
+    @GET
+    @Path("/sketches/repos")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public byte[] exportRepos() {
+        return service.exportWeeklyRepos();
+    }
+
+    @POST
+    @Path("/sketches/users")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response mergeUsers(byte[] sketch) {
+        try {
+            service.mergeDailyUsers(HyperLogLogPlusPlus.fromBytes(sketch));
+            return Response.ok(Map.of("estimate", service.getDailyUserEstimate())).build();
+        } catch (RuntimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", String.valueOf(e.getMessage()))).build();
+        }
+    }
+
+    @POST
+    @Path("/sketches/repos")
+    @Consumes(MediaType.APPLICATION_OCTET_STREAM)
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response mergeRepos(byte[] sketch) {
+        try {
+            service.mergeWeeklyRepos(HyperLogLogPlusPlus.fromBytes(sketch));
+            return Response.ok(Map.of("estimate", service.getWeeklyRepoEstimate())).build();
+        } catch (RuntimeException e) {
+            return Response.status(Response.Status.BAD_REQUEST).entity(Map.of("error", String.valueOf(e.getMessage()))).build();
+        }
+    }
 }
@@ -0,0 +1,346 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * HyperLogLog++ sketch (Heule, Nunkesser, Hall 2013).
+ *
+ * Compared to {@link HyperLogLog} this version:
+ * - hashes with 64-bit Murmur3, so there is no large range correction and no hashCode() bias
+ * - starts in a sparse encoding (p' = 25) that is exact-ish for small cardinalities
+ * - switches to dense 6-bit packed registers once the sparse list would be larger
+ * - can be merged with other sketches of the same precision and serialized to bytes
+ *
+ * Instances are not thread-safe. Use one sketch per thread and {@link #merge} them.
+ */
+public class HyperLogLogPlusPlus {
+
+    private static final int SPARSE_P = 25;
+    private static final int REGISTER_BITS = 6;
+    private static final int REGISTER_MASK = (1 << REGISTER_BITS) - 1;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte MODE_SPARSE = 0;
+    private static final byte MODE_DENSE = 1;
+
+    private final int p; // Precision
+    private final int m; // Number of registers, m = 2^p
+    private final double alphaM;
+
+    // Sparse mode: sorted, de-duplicated entries of (index25 << 6 | rank25)
+    private int[] sparse;
+    private int sparseSize;
+    // Unsorted insert buffer, folded into 'sparse' when full
+    private int[] buffer;
+    private int bufferSize;
+    private final int sparseLimit;
+
+    // Dense mode: m registers of 6 bits each (null while sparse)
+    private byte[] dense;
+
+    public HyperLogLogPlusPlus(int p) {
+        if (p < 4 || p > 18) {
+            throw new IllegalArgumentException("Precision p must be between 4 and 18.");
+        }
+        this.p = p;
+        this.m = 1 << p;
+        this.alphaM = getAlpha(m);
+        // Switch to dense once the sparse ints would use more memory than the packed registers
+        this.sparseLimit = sparseLimit(m);
+        this.sparse = new int[16];
+        this.buffer = new int[Math.min(256, sparseLimit)];
+    }
+
+    private static int sparseLimit(int m) {
+        return Math.max(16, denseByteSize(m) / Integer.BYTES);
+    }
+
+    /**
+     * Upper bound of {@link #toBytes()} for a given precision, useful for fixed-size storage slots.
+     */
+    public static int maxSerializedSize(int p) {
+        int m = 1 << p;
+        return 3 + Math.max(denseByteSize(m), Integer.BYTES + sparseLimit(m) * 5);
+    }
+
+    private static int denseByteSize(int m) {
+        // One extra byte so a register can always be read as a 16-bit window
+        return (m * REGISTER_BITS + 7) / 8 + 1;
+    }
+
+    private static double getAlpha(int m) {
+        switch (m) {
+            case 16:
+                return 0.673;
+            case 32:
+                return 0.697;
+            case 64:
+                return 0.709;
+            default:
+                return 0.7213 / (1 + 1.079 / m);
+        }
+    }
+
+    public int getPrecision() {
+        return p;
+    }
+
+    public boolean isSparse() {
+        return dense == null;
+    }
+
+    public long getMemoryUsageBytes() {
+        if (dense != null) {
+            return dense.length;
+        }
+        return (long) (sparse.length + buffer.length) * Integer.BYTES;
+    }
+
+    public void add(String value) {
+        if (value != null) {
+            addHash(Murmur3.hash64(value));
+        }
+    }
+
+    public void addHash(long hash) {
+        if (dense != null) {
+            int index = (int) (hash >>> (Long.SIZE - p));
+            int rank = Math.min(Long.numberOfLeadingZeros(hash << p) + 1, Long.SIZE - p + 1);
+            setMax(index, rank);
+            return;
+        }
+        int index = (int) (hash >>> (Long.SIZE - SPARSE_P));
+        int rank = Math.min(Long.numberOfLeadingZeros(hash << SPARSE_P) + 1, Long.SIZE - SPARSE_P + 1);
+        buffer[bufferSize++] = index << REGISTER_BITS | rank;
+        if (bufferSize == buffer.length) {
+            flushBuffer();
+        }
+    }
+
+    /**
+     * Folds another sketch into this one. Both sketches must use the same precision.
+     */
+    public void merge(HyperLogLogPlusPlus other) {
+        if (other.p != p) {
+            throw new IllegalArgumentException("Cannot merge sketches with precision " + p + " and " + other.p);
+        }
+        // Flushing can promote either sketch to dense, so the modes are checked afterwards
+        other.flushBuffer();
+        flushBuffer();
+        if (other.dense == null) {
+            if (dense == null) {
+                mergeSorted(other.sparse, other.sparseSize);
+            } else {
+                for (int i = 0; i < other.sparseSize; i++) {
+                    setMaxFromSparse(other.sparse[i]);
+                }
+            }
+            return;
+        }
+        toDense();
+        for (int i = 0; i < m; i++) {
+            int rank = other.get(i);
+            if (rank > 0) {
+                setMax(i, rank);
+            }
+        }
+    }
+
+    /**
+     * Returns a new sketch that counts the union of both inputs. The inputs are left untouched.
+     */
+    public static HyperLogLogPlusPlus union(HyperLogLogPlusPlus a, HyperLogLogPlusPlus b) {
+        HyperLogLogPlusPlus result = a.copy();
+        result.merge(b);
+        return result;
+    }
+
+    public HyperLogLogPlusPlus copy() {
+        HyperLogLogPlusPlus copy = new HyperLogLogPlusPlus(p);
+        copy.merge(this);
+        return copy;
+    }
+
+    public double estimate() {
+        flushBuffer();
+        if (dense == null) {
+            // Linear counting at sparse precision is accurate well past the sparse limit
+            long mPrime = 1L << SPARSE_P;
+            long zeroRegisters = mPrime - sparseSize;
+            return Math.round(mPrime * Math.log((double) mPrime / zeroRegisters));
+        }
+
+        double sum = 0.0;
+        int zeroRegisters = 0;
+        for (int i = 0; i < m; i++) {
+            int registerValue = get(i);
+            if (registerValue == 0) {
+                zeroRegisters++;
+            }
+            sum += Double.longBitsToDouble((1023L - registerValue) << 52); // 2^(-R_j)
+        }
+
+        double rawEstimate = alphaM * m * m / sum;
+
+        // With a 64-bit hash only the small range correction is needed.
+        // The empirical bias tables of the paper are omitted; linear counting covers the low range.
+        if (rawEstimate <= 2.5 * m && zeroRegisters > 0) {
+            return Math.round(m * Math.log((double) m / zeroRegisters));
+        }
+        return Math.round(rawEstimate);
+    }
+
+    /**
+     * Compact wire format:
+     * version(1) precision(1) mode(1) then either
+     * sparse: count(4) followed by varint-encoded deltas of the sorted entries, or
+     * dense: the packed 6-bit registers.
+     */
+    public byte[] toBytes() {
+        flushBuffer();
+        if (dense != null) {
+            ByteBuffer out = ByteBuffer.allocate(3 + dense.length);
+            out.put(FORMAT_VERSION).put((byte) p).put(MODE_DENSE).put(dense);
+            return out.array();
+        }
+        ByteBuffer out = ByteBuffer.allocate(3 + Integer.BYTES + sparseSize * 5);
+        out.put(FORMAT_VERSION).put((byte) p).put(MODE_SPARSE).putInt(sparseSize);
+        int previous = 0;
+        for (int i = 0; i < sparseSize; i++) {
+            int delta = sparse[i] - previous;
+            previous = sparse[i];
+            while ((delta & ~0x7f) != 0) {
+                out.put((byte) ((delta & 0x7f) | 0x80));
+                delta >>>= 7;
+            }
+            out.put((byte) delta);
+        }
+        return Arrays.copyOf(out.array(), out.position());
+    }
+
+    public static HyperLogLogPlusPlus fromBytes(byte[] bytes) {
+        ByteBuffer in = ByteBuffer.wrap(bytes);
+        byte version = in.get();
+        if (version != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported sketch format version " + version);
+        }
+        HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus(in.get());
+        byte mode = in.get();
+        if (mode == MODE_DENSE) {
+            sketch.dense = new byte[denseByteSize(sketch.m)];
+            in.get(sketch.dense);
+            sketch.sparse = null;
+            sketch.buffer = null;
+            return sketch;
+        }
+        int count = in.getInt();
+        sketch.sparse = new int[Math.max(16, count)];
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = in.get();
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            value += delta;
+            sketch.sparse[i] = value;
+        }
+        sketch.sparseSize = count;
+        if (count > sketch.sparseLimit) {
+            sketch.toDense();
+        }
+        return sketch;
+    }
+
+    private void flushBuffer() {
+        if (dense != null || bufferSize == 0) {
+            return;
+        }
+        Arrays.sort(buffer, 0, bufferSize);
+        mergeSorted(buffer, bufferSize);
+        bufferSize = 0;
+    }
+
+    // Merges a sorted run into 'sparse', keeping the max rank per index
+    private void mergeSorted(int[] other, int otherSize) {
+        int[] result = new int[Math.max(sparse.length, sparseSize + otherSize)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < sparseSize || j < otherSize) {
+            int next;
+            if (j >= otherSize || (i < sparseSize && sparse[i] <= other[j])) {
+                next = sparse[i++];
+            } else {
+                next = other[j++];
+            }
+            // Entries are ordered by index then rank, so a later entry for the same index wins
+            if (n > 0 && result[n - 1] >>> REGISTER_BITS == next >>> REGISTER_BITS) {
+                result[n - 1] = next;
+            } else {
+                result[n++] = next;
+            }
+        }
+        sparse = result;
+        sparseSize = n;
+        if (sparseSize > sparseLimit) {
+            toDense();
+        }
+    }
+
+    private void toDense() {
+        if (dense != null) {
+            return;
+        }
+        int[] pendingBuffer = buffer;
+        int pendingBufferSize = bufferSize;
+        dense = new byte[denseByteSize(m)];
+        for (int i = 0; i < sparseSize; i++) {
+            setMaxFromSparse(sparse[i]);
+        }
+        for (int i = 0; i < pendingBufferSize; i++) {
+            setMaxFromSparse(pendingBuffer[i]);
+        }
+        sparse = null;
+        buffer = null;
+        sparseSize = 0;
+        bufferSize = 0;
+    }
+
+    // Translates a sparse (p' = 25) entry to the dense register at precision p
+    private void setMaxFromSparse(int entry) {
+        int index25 = entry >>> REGISTER_BITS;
+        int rank25 = entry & REGISTER_MASK;
+        int extraBits = SPARSE_P - p;
+        int index = index25 >>> extraBits;
+        int low = index25 & ((1 << extraBits) - 1);
+        int rank = low != 0
+                ? Integer.numberOfLeadingZeros(low) - (Integer.SIZE - extraBits) + 1
+                : extraBits + rank25;
+        setMax(index, rank);
+    }
+
+    private int get(int index) {
+        int bitPos = index * REGISTER_BITS;
+        int bytePos = bitPos >>> 3;
+        int window = (dense[bytePos] & 0xff) | (dense[bytePos + 1] & 0xff) << 8;
+        return (window >>> (bitPos & 7)) & REGISTER_MASK;
+    }
+
+    private void setMax(int index, int rank) {
+        int bitPos = index * REGISTER_BITS;
+        int bytePos = bitPos >>> 3;
+        int shift = bitPos & 7;
+        int window = (dense[bytePos] & 0xff) | (dense[bytePos + 1] & 0xff) << 8;
+        if (((window >>> shift) & REGISTER_MASK) >= rank) {
+            return;
+        }
+        window = (window & ~(REGISTER_MASK << shift)) | rank << shift;
+        dense[bytePos] = (byte) window;
+        dense[bytePos + 1] = (byte) (window >>> 8);
+    }
+}
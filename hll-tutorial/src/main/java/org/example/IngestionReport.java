@@ -0,0 +1,17 @@
+package org.example;
+
+public record IngestionReport(
+        int files,
+        long lines,
+        long malformedLines,
+        long bytes,
+        long elapsedMillis) {
+
+    public double linesPerSecond() {
+        return elapsedMillis == 0 ? lines : lines * 1000.0 / elapsedMillis;
+    }
+
+    public double bytesPerSecond() {
+        return elapsedMillis == 0 ? bytes : bytes * 1000.0 / elapsedMillis;
+    }
+}
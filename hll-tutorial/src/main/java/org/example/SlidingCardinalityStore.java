@@ -0,0 +1,215 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * A ring of fixed-width HyperLogLog++ buckets (e.g. one per hour) covering a bounded retention window.
+ *
+ * Writes go to the bucket of the current time slot; a slot is reset when the ring wraps around to it,
+ * so memory never exceeds bucketCount sketches. Range queries merge the buckets on demand.
+ *
+ * When a file is given, every bucket has a fixed-size slot in a memory-mapped file and dirty buckets
+ * are written back on {@link #flush()}, so a restart picks up where it left off.
+ */
+public class SlidingCardinalityStore implements AutoCloseable {
+
+    private static final int MAGIC = 0x484c4c57; // "HLLW"
+    // magic(4) precision(4) bucketCount(4) slotSize(4) bucketSeconds(8)
+    private static final int HEADER_BYTES = 24;
+    // bucketId(8) length(4) followed by the serialized sketch
+    private static final int SLOT_HEADER_BYTES = 12;
+    private static final long EMPTY = Long.MIN_VALUE;
+
+    private final int precision;
+    private final long bucketSeconds;
+    private final int bucketCount;
+    private final Clock clock;
+
+    private final long[] bucketIds;
+    private final HyperLogLogPlusPlus[] buckets;
+    private final boolean[] dirty;
+
+    private final int slotSize;
+    private final FileChannel channel;
+    private final MappedByteBuffer mapped;
+
+    public SlidingCardinalityStore(int precision, Duration bucketWidth, int bucketCount, Path file, Clock clock)
+            throws IOException {
+        if (bucketWidth.getSeconds() < 1 || bucketCount < 1) {
+            throw new IllegalArgumentException("Bucket width must be at least 1s and bucket count at least 1.");
+        }
+        this.precision = precision;
+        this.bucketSeconds = bucketWidth.getSeconds();
+        this.bucketCount = bucketCount;
+        this.clock = clock;
+        this.bucketIds = new long[bucketCount];
+        this.buckets = new HyperLogLogPlusPlus[bucketCount];
+        this.dirty = new boolean[bucketCount];
+        Arrays.fill(bucketIds, EMPTY);
+
+        this.slotSize = SLOT_HEADER_BYTES + HyperLogLogPlusPlus.maxSerializedSize(precision);
+        if (file == null) {
+            this.channel = null;
+            this.mapped = null;
+            return;
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = HEADER_BYTES + (long) bucketCount * slotSize;
+        this.mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (!load()) {
+            writeHeader();
+        }
+    }
+
+    public synchronized void add(String value) {
+        add(value, clock.instant());
+    }
+
+    public synchronized void add(String value, Instant timestamp) {
+        HyperLogLogPlusPlus bucket = bucketFor(timestamp);
+        if (bucket != null) {
+            bucket.add(value);
+        }
+    }
+
+    /**
+     * Folds a sketch into the bucket of the current time slot.
+     */
+    public synchronized void merge(HyperLogLogPlusPlus sketch) {
+        bucketFor(clock.instant()).merge(sketch);
+    }
+
+    /**
+     * Merges the buckets covering the given window, ending with the current bucket.
+     * Windows longer than the retention are clamped to it.
+     */
+    public synchronized HyperLogLogPlusPlus rollup(Duration window) {
+        long current = bucketId(clock.instant());
+        long span = Math.min(bucketCount, Math.max(1, (window.getSeconds() + bucketSeconds - 1) / bucketSeconds));
+        HyperLogLogPlusPlus result = new HyperLogLogPlusPlus(precision);
+        for (int slot = 0; slot < bucketCount; slot++) {
+            long id = bucketIds[slot];
+            if (id != EMPTY && id <= current && id > current - span) {
+                result.merge(buckets[slot]);
+            }
+        }
+        return result;
+    }
+
+    public double estimate(Duration window) {
+        return rollup(window).estimate();
+    }
+
+    public Duration retention() {
+        return Duration.ofSeconds(bucketSeconds * bucketCount);
+    }
+
+    public synchronized long getMemoryUsageBytes() {
+        long bytes = 0;
+        for (HyperLogLogPlusPlus bucket : buckets) {
+            if (bucket != null) {
+                bytes += bucket.getMemoryUsageBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes dirty buckets back to the memory-mapped file. No-op for in-memory stores.
+     */
+    public synchronized void flush() {
+        if (mapped == null) {
+            return;
+        }
+        boolean wrote = false;
+        for (int slot = 0; slot < bucketCount; slot++) {
+            if (dirty[slot]) {
+                byte[] bytes = buckets[slot].toBytes();
+                int offset = HEADER_BYTES + slot * slotSize;
+                mapped.putLong(offset, bucketIds[slot]);
+                mapped.putInt(offset + 8, bytes.length);
+                mapped.put(offset + SLOT_HEADER_BYTES, bytes);
+                dirty[slot] = false;
+                wrote = true;
+            }
+        }
+        if (wrote) {
+            mapped.force();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private long bucketId(Instant timestamp) {
+        return Math.floorDiv(timestamp.getEpochSecond(), bucketSeconds);
+    }
+
+    // Returns the bucket for the timestamp, resetting a stale slot; null if it is older than the ring
+    private HyperLogLogPlusPlus bucketFor(Instant timestamp) {
+        long id = bucketId(timestamp);
+        int slot = (int) Math.floorMod(id, (long) bucketCount);
+        if (bucketIds[slot] != id) {
+            if (bucketIds[slot] != EMPTY && bucketIds[slot] > id) {
+                return null;
+            }
+            bucketIds[slot] = id;
+            buckets[slot] = new HyperLogLogPlusPlus(precision);
+        }
+        dirty[slot] = true;
+        return buckets[slot];
+    }
+
+    private boolean load() {
+        if (mapped.getInt(0) != MAGIC
+                || mapped.getInt(4) != precision
+                || mapped.getInt(8) != bucketCount
+                || mapped.getInt(12) != slotSize
+                || mapped.getLong(16) != bucketSeconds) {
+            return false;
+        }
+        for (int slot = 0; slot < bucketCount; slot++) {
+            int offset = HEADER_BYTES + slot * slotSize;
+            long id = mapped.getLong(offset);
+            int length = mapped.getInt(offset + 8);
+            if (id == EMPTY || length <= 0 || length > slotSize - SLOT_HEADER_BYTES) {
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            mapped.get(offset + SLOT_HEADER_BYTES, bytes);
+            bucketIds[slot] = id;
+            buckets[slot] = HyperLogLogPlusPlus.fromBytes(bytes);
+        }
+        return true;
+    }
+
+    private void writeHeader() {
+        for (int slot = 0; slot < bucketCount; slot++) {
+            mapped.putLong(HEADER_BYTES + slot * slotSize, EMPTY);
+        }
+        mapped.putInt(0, MAGIC);
+        mapped.putInt(4, precision);
+        mapped.putInt(8, bucketCount);
+        mapped.putInt(12, slotSize);
+        mapped.putLong(16, bucketSeconds);
+        mapped.force();
+    }
+}
@@ -0,0 +1,84 @@
+package org.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class HyperLogLogPlusPlusTest {
+
+    // At p = 12 the sketch turns dense at 768 sparse entries
+    private static final int P = 12;
+    private static final int FROM = 600;
+    private static final int TO = 1500;
+
+    private static HyperLogLogPlusPlus sketch(int from, int to) {
+        HyperLogLogPlusPlus sketch = new HyperLogLogPlusPlus(P);
+        for (int i = from; i < to; i++) {
+            sketch.add("user-" + i);
+        }
+        return sketch;
+    }
+
+    private static void assertClose(int expected, double estimate) {
+        assertTrue(Math.abs(estimate - expected) <= expected * 0.05,
+                "estimate " + estimate + " for " + expected + " distinct values");
+    }
+
+    @Test
+    void testEstimateAcrossDensePromotion() {
+        boolean sawSparse = false;
+        boolean sawDense = false;
+        for (int n = FROM; n <= TO; n++) {
+            HyperLogLogPlusPlus sketch = sketch(0, n);
+            assertClose(n, sketch.estimate());
+            sawSparse |= sketch.isSparse();
+            sawDense |= !sketch.isSparse();
+        }
+        assertTrue(sawSparse && sawDense);
+    }
+
+    @Test
+    void testBytesRoundTripAcrossDensePromotion() {
+        for (int n = FROM; n <= TO; n++) {
+            HyperLogLogPlusPlus sketch = sketch(0, n);
+            HyperLogLogPlusPlus restored = HyperLogLogPlusPlus.fromBytes(sketch(0, n).toBytes());
+            assertClose(n, restored.estimate());
+            assertEquals(sketch.estimate(), restored.estimate(), "n = " + n);
+        }
+    }
+
+    @Test
+    void testMergeAcrossDensePromotion() {
+        for (int n = FROM; n <= TO; n++) {
+            HyperLogLogPlusPlus merged = sketch(0, n / 2);
+            merged.merge(sketch(n / 2, n));
+            assertEquals(sketch(0, n).estimate(), merged.estimate(), "n = " + n);
+
+            HyperLogLogPlusPlus union = HyperLogLogPlusPlus.union(sketch(0, n / 3), sketch(n / 3, n));
+            assertEquals(sketch(0, n).estimate(), union.estimate(), "n = " + n);
+        }
+    }
+
+    @Test
+    void testCopyAcrossDensePromotion() {
+        for (int n = FROM; n <= TO; n++) {
+            HyperLogLogPlusPlus copy = sketch(0, n).copy();
+            assertClose(n, copy.estimate());
+            assertEquals(sketch(0, n).estimate(), copy.estimate(), "n = " + n);
+        }
+    }
+
+    @Test
+    void testMergeDenseIntoSparse() {
+        HyperLogLogPlusPlus sparse = sketch(0, 100);
+        HyperLogLogPlusPlus dense = sketch(100, 5000);
+        dense.estimate();
+        assertFalse(dense.isSparse());
+
+        sparse.merge(dense);
+        assertFalse(sparse.isSparse());
+        assertClose(5000, sparse.estimate());
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.embeddings;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Images per second of {@link OnnxClipEmbeddingModel} for different batch sizes.
+ * Each invocation embeds {@value #IMAGES} synthetic JPEGs, so the score is in images/s.
+ *
+ * The model is read from the {@code clip.model.path} system property.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ClipBatchBenchmark {
+
+    private static final int IMAGES = 32;
+
+    @Param({ "1", "4", "8", "16", "32" })
+    public int maxBatchSize;
+
+    private OnnxClipEmbeddingModel model;
+    private List<byte[]> images;
+
+    @Setup
+    public void setup() throws Exception {
+        String modelPath = System.getProperty("clip.model.path", "src/main/resources/models/clip_vision_fp32.onnx");
+        model = new OnnxClipEmbeddingModel(modelPath, 0, 0, maxBatchSize, Duration.ofMillis(2), 0);
+        images = new ArrayList<>();
+        Random random = new Random(42);
+        for (int i = 0; i < IMAGES; i++) {
+            images.add(syntheticJpeg(random));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        model.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(IMAGES)
+    public void embedImages(Blackhole blackhole) {
+        blackhole.consume(model.embedAllImages(images));
+    }
+
+    private static byte[] syntheticJpeg(Random random) throws IOException {
+        BufferedImage image = new BufferedImage(640, 480, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        for (int i = 0; i < 50; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(640), random.nextInt(480), 20 + random.nextInt(200), 20 + random.nextInt(200));
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpg", out);
+        return out.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ClipBatchBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
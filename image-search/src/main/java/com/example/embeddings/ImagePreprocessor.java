@@ -1,8 +1,11 @@
 package com.example.embeddings;
 
+import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.FloatBuffer;
 
 public class ImagePreprocessor {
 
@@ -13,40 +16,73 @@ public class ImagePreprocessor {
     private static final float[] MEAN = { 0.48145466f, 0.4578275f, 0.40821073f };
     private static final float[] STD = { 0.26862954f, 0.26130258f, 0.27577711f };
 
+    // Normalized value of every 8-bit sample, per channel
+    private static final float[][] NORMALIZED = new float[3][256];
+
+    static {
+        for (int c = 0; c < 3; c++) {
+            for (int v = 0; v < 256; v++) {
+                NORMALIZED[c][v] = (v / 255f - MEAN[c]) / STD[c];
+            }
+        }
+    }
+
+    // Per thread, so several images can be preprocessed in parallel without allocating
+    private final ThreadLocal<BufferedImage> resizeTarget;
+    private final ThreadLocal<float[]> scratch;
+
     public ImagePreprocessor(int width, int height) {
         this.width = width;
         this.height = height;
+        this.resizeTarget = ThreadLocal.withInitial(
+                () -> new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB));
+        this.scratch = ThreadLocal.withInitial(() -> new float[3 * width * height]);
     }
 
-    public float[] process(BufferedImage image) {
-        BufferedImage resized = resize(image);
-
-        float[] out = new float[3 * width * height];
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
+    /**
+     * Number of floats of one preprocessed image
+     */
+    public int size() {
+        return 3 * width * height;
+    }
 
-                int rgb = resized.getRGB(x, y);
-                int r = (rgb >> 16) & 0xFF;
-                int g = (rgb >> 8) & 0xFF;
-                int b = rgb & 0xFF;
+    public float[] process(BufferedImage image) {
+        float[] out = new float[size()];
+        process(image, FloatBuffer.wrap(out), 0);
+        return out;
+    }
 
-                int idx = y * width + x;
+    /**
+     * Resize and normalize an image straight into an NCHW tensor buffer.
+     * Only the image's own range is written with absolute puts, so several
+     * threads can fill different images of the same batch buffer.
+     *
+     * @param target tensor buffer, e.g. a direct buffer shared by a whole batch
+     * @param offset index of the image's first float in the buffer
+     */
+    public void process(BufferedImage image, FloatBuffer target, int offset) {
+        BufferedImage resized = resize(image);
+        // TYPE_INT_RGB raster: one 0xRRGGBB int per pixel, no per-pixel getRGB calls
+        int[] pixels = ((DataBufferInt) resized.getRaster().getDataBuffer()).getData();
+        float[] out = scratch.get();
+        int plane = width * height;
 
-                out[idx] = (r / 255f - MEAN[0]) / STD[0];
-                out[idx + width * height] = (g / 255f - MEAN[1]) / STD[1];
-                out[idx + 2 * width * height] = (b / 255f - MEAN[2]) / STD[2];
-            }
+        for (int idx = 0; idx < plane; idx++) {
+            int rgb = pixels[idx];
+            out[idx] = NORMALIZED[0][(rgb >> 16) & 0xFF];
+            out[idx + plane] = NORMALIZED[1][(rgb >> 8) & 0xFF];
+            out[idx + 2 * plane] = NORMALIZED[2][rgb & 0xFF];
         }
-        return out;
+        target.put(offset, out, 0, out.length);
     }
 
     private BufferedImage resize(BufferedImage original) {
-        BufferedImage out = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        BufferedImage out = resizeTarget.get();
         Graphics2D g = out.createGraphics();
         g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-        g.drawImage(original, 0, 0, width, height, null);
+        // The target is reused, so transparent pixels are drawn over black like on a fresh image
+        g.drawImage(original, 0, 0, width, height, Color.BLACK, null);
         g.dispose();
         return out;
     }
-}
\ No newline at end of file
+}
@@ -2,9 +2,20 @@ package com.example.embeddings;
 
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
@@ -19,20 +30,76 @@ import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
+import io.quarkus.logging.Log;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 
+/**
+ * CLIP image embeddings with ONNX Runtime.
+ *
+ * Image requests are micro-batched: a dispatcher thread collects the requests
+ * that arrive within {@code clip.batch.max-wait}, up to
+ * {@code clip.batch.max-size}, decodes and preprocesses them in parallel into
+ * one reused direct buffer and runs them as a single {@code [N,3,224,224]}
+ * tensor. Concurrent {@link #embed(byte[])} calls and {@link #embedAllImages(List)}
+ * share the batches.
+ */
 @ApplicationScoped
 public class OnnxClipEmbeddingModel implements EmbeddingModel {
 
+    private static final int IMAGE_SIZE = 224;
+
     private final OrtEnvironment env;
     private final OrtSession session;
     private final ImagePreprocessor preprocess;
 
+    private final int maxBatchSize;
+    private final long maxBatchWaitNanos;
+    private final BlockingQueue<PendingImage> pending = new LinkedBlockingQueue<>();
+    private final ExecutorService preprocessPool;
+    private final Thread dispatcher;
+    // NCHW input of the current batch, only used by the dispatcher thread
+    private final FloatBuffer batchBuffer;
+    private volatile boolean running = true;
+
+    private record PendingImage(byte[] imageBytes, CompletableFuture<Embedding> result) {
+    }
+
     public OnnxClipEmbeddingModel(
-            @ConfigProperty(name = "clip.model.path") String modelPath) throws OrtException {
+            @ConfigProperty(name = "clip.model.path") String modelPath,
+            @ConfigProperty(name = "clip.session.intra-op-threads", defaultValue = "0") int intraOpThreads,
+            @ConfigProperty(name = "clip.session.inter-op-threads", defaultValue = "0") int interOpThreads,
+            @ConfigProperty(name = "clip.batch.max-size", defaultValue = "16") int maxBatchSize,
+            @ConfigProperty(name = "clip.batch.max-wait", defaultValue = "2ms") Duration maxBatchWait,
+            @ConfigProperty(name = "clip.preprocess.threads", defaultValue = "0") int preprocessThreads)
+            throws OrtException {
         this.env = OrtEnvironment.getEnvironment();
-        this.session = env.createSession(modelPath, new OrtSession.SessionOptions());
-        this.preprocess = new ImagePreprocessor(224, 224);
+        try (OrtSession.SessionOptions options = new OrtSession.SessionOptions()) {
+            options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+            // 0 keeps the ONNX Runtime default (one thread per physical core)
+            if (intraOpThreads > 0) {
+                options.setIntraOpNumThreads(intraOpThreads);
+            }
+            if (interOpThreads > 0) {
+                options.setInterOpNumThreads(interOpThreads);
+                options.setExecutionMode(OrtSession.SessionOptions.ExecutionMode.PARALLEL);
+            }
+            this.session = env.createSession(modelPath, options);
+        }
+        this.preprocess = new ImagePreprocessor(IMAGE_SIZE, IMAGE_SIZE);
+
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchWaitNanos = maxBatchWait.toNanos();
+        this.batchBuffer = ByteBuffer
+                .allocateDirect(this.maxBatchSize * preprocess.size() * Float.BYTES)
+                .order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        int threads = preprocessThreads > 0 ? preprocessThreads : Runtime.getRuntime().availableProcessors();
+        this.preprocessPool = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("clip-preprocess-", 0).daemon().factory());
+        this.dispatcher = Thread.ofPlatform().name("clip-batcher").daemon().start(this::dispatchBatches);
+        Log.infof("CLIP model loaded, batches of up to %d images, %d preprocessing threads",
+                this.maxBatchSize, threads);
     }
 
     @Override
@@ -49,41 +116,152 @@ public class OnnxClipEmbeddingModel implements EmbeddingModel {
     }
 
     public Response<Embedding> embed(byte[] imageBytes) {
+        return Response.from(await(submit(imageBytes)));
+    }
+
+    /**
+     * Embed many images, e.g. for a catalog import. The images are run in batches
+     * together with any concurrent requests.
+     *
+     * @return the embeddings in the order of the images
+     */
+    public Response<List<Embedding>> embedAllImages(List<byte[]> images) {
+        List<CompletableFuture<Embedding>> results = images.stream()
+                .map(this::submit)
+                .toList();
+        return Response.from(results.stream().map(this::await).toList());
+    }
+
+    @PreDestroy
+    void close() {
+        running = false;
+        dispatcher.interrupt();
         try {
-            BufferedImage img = ImageIO.read(new ByteArrayInputStream(imageBytes));
-
-            float[] pixels = preprocess.process(img);
-
-            long[] shape = { 1, 3, 224, 224 }; // NCHW
-            OnnxTensor input = OnnxTensor.createTensor(env, FloatBuffer.wrap(pixels), shape);
-
-            OrtSession.Result result = session.run(Map.of("pixel_values", input));
-
-            Object outputValue = result.get(0).getValue();
-            float[] vector;
-
-            // Handle different output shapes
-            if (outputValue instanceof float[][][]) {
-                // 3D array: [batch, 1, features] or similar
-                float[][][] output3d = (float[][][]) outputValue;
-                vector = output3d[0][0];
-            } else if (outputValue instanceof float[][]) {
-                // 2D array: [batch, features]
-                float[][] output2d = (float[][]) outputValue;
-                vector = output2d[0];
-            } else if (outputValue instanceof float[]) {
-                // 1D array: [features]
-                vector = (float[]) outputValue;
-            } else {
-                throw new RuntimeException("Unexpected output type: " + outputValue.getClass());
+            dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        preprocessPool.shutdownNow();
+        failPending(new IllegalStateException("CLIP model is shut down"));
+        try {
+            session.close();
+        } catch (OrtException e) {
+            Log.warnf("Could not close ONNX session: %s", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Embedding> submit(byte[] imageBytes) {
+        if (!running) {
+            throw new IllegalStateException("CLIP model is shut down");
+        }
+        PendingImage image = new PendingImage(imageBytes, new CompletableFuture<>());
+        pending.add(image);
+        return image.result();
+    }
+
+    private Embedding await(CompletableFuture<Embedding> result) {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            throw new RuntimeException("Embedding failed", e.getCause());
+        }
+    }
+
+    private void dispatchBatches() {
+        List<PendingImage> batch = new ArrayList<>(maxBatchSize);
+        while (running) {
+            try {
+                batch.add(pending.take());
+                // Take what is already queued, then wait for stragglers until the deadline
+                long deadline = System.nanoTime() + maxBatchWaitNanos;
+                while (batch.size() < maxBatchSize) {
+                    if (pending.drainTo(batch, maxBatchSize - batch.size()) > 0) {
+                        continue;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    PendingImage next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                runBatch(batch);
+            } catch (InterruptedException e) {
+                batch.forEach(image -> image.result().completeExceptionally(e));
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                batch.forEach(image -> image.result().completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void runBatch(List<PendingImage> batch) throws OrtException {
+        int count = batch.size();
+        int imageSize = preprocess.size();
+        batchBuffer.clear().limit(count * imageSize);
+
+        // Decode and preprocess in parallel, each image into its own slice of the batch buffer.
+        // A slot whose image fails keeps stale data, its result is discarded.
+        CompletableFuture<?>[] prepared = new CompletableFuture<?>[count];
+        for (int i = 0; i < count; i++) {
+            PendingImage image = batch.get(i);
+            int offset = i * imageSize;
+            prepared[i] = CompletableFuture.runAsync(() -> {
+                try {
+                    BufferedImage img = ImageIO.read(new ByteArrayInputStream(image.imageBytes()));
+                    if (img == null) {
+                        throw new IllegalArgumentException("Unsupported image format");
+                    }
+                    preprocess.process(img, batchBuffer, offset);
+                } catch (Exception e) {
+                    image.result().completeExceptionally(e);
+                }
+            }, preprocessPool);
+        }
+        CompletableFuture.allOf(prepared).join();
+
+        long[] shape = { count, 3, IMAGE_SIZE, IMAGE_SIZE }; // NCHW
+        // A direct buffer in native order is handed to ONNX Runtime without a copy
+        try (OnnxTensor input = OnnxTensor.createTensor(env, batchBuffer, shape);
+                OrtSession.Result result = session.run(Map.of("pixel_values", input))) {
+            float[][] vectors = batchVectors(result.get(0).getValue(), count);
+            for (int i = 0; i < count; i++) {
+                normalize(vectors[i]);
+                batch.get(i).result().complete(Embedding.from(vectors[i]));
             }
+        }
+    }
 
-            normalize(vector);
+    private float[][] batchVectors(Object outputValue, int count) {
+        float[][] vectors = new float[count][];
 
-            return Response.from(Embedding.from(vector));
+        // Handle different output shapes
+        if (outputValue instanceof float[][][] output3d) {
+            // 3D array: [batch, 1, features] or similar
+            for (int i = 0; i < count; i++) {
+                vectors[i] = output3d[i][0];
+            }
+        } else if (outputValue instanceof float[][] output2d) {
+            // 2D array: [batch, features]
+            for (int i = 0; i < count; i++) {
+                vectors[i] = output2d[i];
+            }
+        } else if (outputValue instanceof float[] output1d && count == 1) {
+            // 1D array: [features]
+            vectors[0] = output1d;
+        } else {
+            throw new RuntimeException("Unexpected output type: " + outputValue.getClass());
+        }
+        return vectors;
+    }
 
-        } catch (Exception e) {
-            throw new RuntimeException("Embedding failed", e);
+    private void failPending(Exception cause) {
+        PendingImage image;
+        while ((image = pending.poll()) != null) {
+            image.result().completeExceptionally(cause);
         }
     }
 
@@ -95,4 +273,4 @@ public class OnnxClipEmbeddingModel implements EmbeddingModel {
         for (int i = 0; i < v.length; i++)
             v[i] /= norm;
     }
-}
\ No newline at end of file
+}
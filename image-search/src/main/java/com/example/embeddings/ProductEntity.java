@@ -20,6 +20,10 @@ public class ProductEntity extends PanacheEntity {
     @JsonIgnore
     public byte[] imageData;
 
+    // SHA-256 of imageData, used as the image's ETag
+    @Column(length = 64)
+    public String imageHash;
+
     @Column(nullable = false)
     public LocalDateTime createdAt;
 
@@ -1,63 +1,171 @@
 package com.example.embeddings;
 
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import dev.langchain4j.data.document.Metadata;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
 import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
 import dev.langchain4j.store.embedding.EmbeddingStore;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CompositeCacheKey;
+import io.quarkus.hibernate.orm.panache.Panache;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
 
 @ApplicationScoped
 public class ProductImageService {
 
+    private static final String SEGMENT_PREFIX = "product:";
+
     @Inject
     OnnxClipEmbeddingModel clipModel;
 
     @Inject
     EmbeddingStore<TextSegment> vectorStore;
 
+    // Keyed by the SHA-256 of the query image
+    @Inject
+    @CacheName("query-embeddings")
+    Cache queryEmbeddings;
+
+    // Keyed by image hash and limit, cleared when a product is added
+    @Inject
+    @CacheName("search-results")
+    Cache searchResults;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
+
     @Transactional
     public ProductEntity addProduct(String name, byte[] imageBytes) {
 
         ProductEntity p = new ProductEntity();
         p.name = name;
         p.imageData = imageBytes;
+        p.imageHash = contentHash(imageBytes);
         p.persist();
 
         var response = clipModel.embed(imageBytes);
         Embedding embedding = response.content();
 
         TextSegment segment = TextSegment.from(
-                "product:" + p.id,
+                SEGMENT_PREFIX + p.id,
                 Metadata.from(Map.of("name", name)));
 
         vectorStore.add(embedding, segment);
 
+        // A new product can be a match for any earlier query
+        invalidateSearchResultsAfterCommit();
+
         return p;
     }
 
     public List<ProductMatch> findSimilar(byte[] query, int limit) {
-        var response = clipModel.embed(query);
+        String hash = contentHash(query);
+        return searchResults.get(new CompositeCacheKey(hash, limit),
+                key -> search(hash, query, limit))
+                .await().indefinitely();
+    }
+
+    /**
+     * SHA-256 of the stored image, without loading the image.
+     * Empty if the product does not exist or was stored without a hash.
+     */
+    public Optional<String> findImageHash(long id) {
+        return Panache.getEntityManager()
+                .createQuery("select p.imageHash from ProductEntity p where p.id = :id", String.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .filter(Objects::nonNull)
+                .findFirst();
+    }
+
+    /**
+     * The stored image, loaded in full. Empty if the product does not exist.
+     */
+    public Optional<byte[]> findImageData(long id) {
+        return Panache.getEntityManager()
+                .createQuery("select p.imageData from ProductEntity p where p.id = :id", byte[].class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst();
+    }
+
+    public static String contentHash(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private List<ProductMatch> search(String hash, byte[] query, int limit) {
+        Embedding queryEmbedding = queryEmbeddings.get(hash,
+                key -> clipModel.embed(query).content())
+                .await().indefinitely();
 
         EmbeddingSearchRequest req = EmbeddingSearchRequest.builder()
-                .queryEmbedding(response.content())
+                .queryEmbedding(queryEmbedding)
                 .maxResults(limit)
                 .minScore(0.75)
                 .build();
 
-        var result = vectorStore.search(req);
+        List<EmbeddingMatch<TextSegment>> matches = vectorStore.search(req).matches();
+        if (matches.isEmpty()) {
+            return List.of();
+        }
+
+        // One query for all matches, projected so the image blobs are not loaded
+        List<Long> ids = matches.stream().map(ProductImageService::productId).toList();
+        Map<Long, ProductSummary> products = ProductEntity.find("id in ?1", ids)
+                .project(ProductSummary.class)
+                .list()
+                .stream()
+                .collect(Collectors.toMap(ProductSummary::id, Function.identity()));
 
-        return result.matches().stream()
+        // Keep the score order; skip vectors whose product was deleted
+        return matches.stream()
+                .filter(match -> products.containsKey(productId(match)))
                 .map(match -> {
-                    long id = Long.parseLong(
-                            match.embedded().text().replace("product:", ""));
-                    return new ProductMatch(ProductEntity.findById(id), match.score());
+                    long id = productId(match);
+                    return new ProductMatch(products.get(id), match.score(), "/api/products/" + id + "/image");
                 })
                 .toList();
     }
+
+    // Only once committed, so a search in between cannot cache results
+    // that still lack the product
+    private void invalidateSearchResultsAfterCommit() {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    searchResults.invalidateAll().await().indefinitely();
+                }
+            }
+        });
+    }
+
+    private static long productId(EmbeddingMatch<TextSegment> match) {
+        return Long.parseLong(match.embedded().text().replace(SEGMENT_PREFIX, ""));
+    }
 }
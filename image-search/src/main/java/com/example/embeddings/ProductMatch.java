@@ -1,6 +1,7 @@
 package com.example.embeddings;
 
 public record ProductMatch(
-        com.example.embeddings.ProductEntity product,
-        double similarityScore) {
+        ProductSummary product,
+        double similarityScore,
+        String imageUrl) {
 }
@@ -1,9 +1,12 @@
 package com.example.embeddings;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.net.URLConnection;
 import java.nio.file.Files;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import org.jboss.resteasy.reactive.RestForm;
 import org.jboss.resteasy.reactive.multipart.FileUpload;
@@ -11,10 +14,17 @@ import org.jboss.resteasy.reactive.multipart.FileUpload;
 import jakarta.inject.Inject;
 import jakarta.ws.rs.Consumes;
 import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.NotFoundException;
 import jakarta.ws.rs.POST;
 import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
 import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.core.CacheControl;
+import jakarta.ws.rs.core.Context;
+import jakarta.ws.rs.core.EntityTag;
 import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Request;
 import jakarta.ws.rs.core.Response;
 
 @Path("/api/products")
@@ -43,4 +53,46 @@ public class ProductResource {
         byte[] bytes = Files.readAllBytes(file.uploadedFile());
         return service.findSimilar(bytes, limit);
     }
-}
\ No newline at end of file
+
+    /**
+     * Serve a product image. The ETag is the image's content hash, so a client
+     * revalidating a cached image gets a 304 without the image being loaded.
+     * Otherwise the image is read into memory in full and then written out;
+     * it is a bytea column, which the driver does not stream.
+     */
+    @GET
+    @Path("/{id}/image")
+    public Response image(@PathParam("id") long id, @Context Request request) {
+        Optional<String> hash = service.findImageHash(id);
+        if (hash.isPresent()) {
+            EntityTag etag = new EntityTag(hash.get());
+            Response.ResponseBuilder notModified = request.evaluatePreconditions(etag);
+            if (notModified != null) {
+                return notModified.cacheControl(imageCacheControl()).build();
+            }
+        }
+
+        byte[] image = service.findImageData(id).orElseThrow(NotFoundException::new);
+        // Products stored before hashes were kept
+        EntityTag etag = new EntityTag(hash.orElseGet(() -> ProductImageService.contentHash(image)));
+        return Response.ok(image, contentType(image))
+                .tag(etag)
+                .cacheControl(imageCacheControl())
+                .build();
+    }
+
+    private static CacheControl imageCacheControl() {
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setMaxAge(86400);
+        return cacheControl;
+    }
+
+    private static String contentType(byte[] image) {
+        try {
+            String type = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(image));
+            return type != null ? type : MediaType.APPLICATION_OCTET_STREAM;
+        } catch (IOException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.embeddings;
+
+import java.time.LocalDateTime;
+
+/**
+ * Product columns needed for search results, without the image blob
+ */
+public record ProductSummary(
+        Long id,
+        String name,
+        LocalDateTime createdAt,
+        String metadata) {
+}
@@ -1,58 +1,106 @@
 package org.example.moderation;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
-import java.util.List;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
+import io.quarkus.logging.Log;
+import io.quarkus.scheduler.Scheduled;
 import jakarta.annotation.PostConstruct;
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class BloomFilterService {
 
-    private static final List<String> PROHIBITED_PHRASES = List.of(
-            "buy illegal items",
-            "secret cheat codes",
-            "prohibited substance",
-            "malicious download link");
+    private static final String DEFAULT_PHRASES = "prohibited-phrases.txt";
 
-    private static final int N_GRAM_SIZE = 3;
-    private BloomFilter<CharSequence> filter;
+    // One line per phrase; falls back to the bundled list when not set
+    @ConfigProperty(name = "moderation.phrases.file")
+    Optional<Path> phrasesFile;
+
+    @ConfigProperty(name = "moderation.bloom.initial-capacity", defaultValue = "100000")
+    int initialCapacity;
+
+    @ConfigProperty(name = "moderation.bloom.fpp", defaultValue = "0.001")
+    double fpp;
+
+    private record LoadedFilter(ScalableBloomFilter filter, int maxWords, long lastModified) {
+    }
+
+    // Swapped atomically on reload, so checks never see a half-built filter
+    private volatile LoadedFilter current;
 
     @PostConstruct
     void initialize() {
-        filter = BloomFilter.create(
-                Funnels.stringFunnel(StandardCharsets.UTF_8),
-                1000,
-                0.01);
+        current = load();
+    }
 
-        PROHIBITED_PHRASES.forEach(phrase -> filter.put(phrase.toLowerCase()));
+    @Scheduled(every = "{moderation.phrases.reload-interval}")
+    void reloadIfChanged() {
+        if (phrasesFile.isEmpty()) {
+            return;
+        }
+        try {
+            if (Files.getLastModifiedTime(phrasesFile.get()).toMillis() != current.lastModified()) {
+                current = load();
+            }
+        } catch (IOException | UncheckedIOException e) {
+            Log.warnf("Keeping the current phrase list, reload of %s failed: %s", phrasesFile.get(), e.getMessage());
+        }
     }
 
     public boolean mightContainProblematicNgram(String content) {
         if (content == null || content.isBlank())
             return false;
 
-        String[] words = content.toLowerCase().trim().split("\\s+");
-
-        if (words.length < N_GRAM_SIZE) {
-            return filter.mightContain(String.join(" ", words));
-        }
+        LoadedFilter loaded = current;
+        return PhraseHasher.anyPhraseMatches(content, loaded.maxWords(), loaded.filter());
+    }
 
-        for (int i = 0; i <= words.length - N_GRAM_SIZE; i++) {
-            StringBuilder ngramBuilder = new StringBuilder();
-            for (int j = 0; j < N_GRAM_SIZE; j++) {
-                ngramBuilder.append(words[i + j]).append(" ");
+    private LoadedFilter load() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(initialCapacity, fpp);
+        int maxWords = 1;
+        long lastModified = 0;
+        try (BufferedReader reader = openPhrases()) {
+            if (phrasesFile.isPresent()) {
+                lastModified = Files.getLastModifiedTime(phrasesFile.get()).toMillis();
             }
-            String ngram = ngramBuilder.toString().trim();
-
-            if (filter.mightContain(ngram)) {
-                return true;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                long hash = PhraseHasher.phraseHash(line);
+                if (hash == 0) {
+                    Log.warnf("Skipping phrase with more than %d words: %s", PhraseHasher.MAX_WORDS, line);
+                    continue;
+                }
+                filter.put(hash);
+                maxWords = Math.max(maxWords, PhraseHasher.wordCount(line));
             }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load prohibited phrases", e);
         }
+        Log.infof("Loaded %d prohibited phrases (up to %d words) into %d Bloom filter stage(s), %d KB",
+                filter.count(), maxWords, filter.stageCount(), filter.bitSize() / 8 / 1024);
+        return new LoadedFilter(filter, maxWords, lastModified);
+    }
 
-        return false;
+    private BufferedReader openPhrases() throws IOException {
+        InputStream in = phrasesFile.isPresent()
+                ? Files.newInputStream(phrasesFile.get())
+                : Thread.currentThread().getContextClassLoader().getResourceAsStream(DEFAULT_PHRASES);
+        if (in == null) {
+            throw new IOException("Missing classpath resource " + DEFAULT_PHRASES);
+        }
+        return new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package org.example.moderation;
+
+/**
+ * Allocation-free phrase hashing over a {@link CharSequence}.
+ *
+ * Text is split into words of letters and digits, lower-cased on the fly. Each word gets a
+ * 64-bit FNV-1a hash and a phrase of words w0..wL-1 hashes to sum(w_i * P^(L-1-i)), finalized
+ * with a Murmur3 mixer. Because the phrase hash is a polynomial, the hashes of all phrases
+ * ending at a word can be rolled from the previous word hashes without building any strings.
+ */
+final class PhraseHasher {
+
+    static final int MAX_WORDS = 16;
+
+    private static final long PRIME = 0x100000001b3L;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long[] POWERS = new long[MAX_WORDS];
+    // ASCII fast path: lower-cased letter or digit, or 0 for a separator
+    private static final char[] ASCII_WORD_CHARS = new char[128];
+
+    static {
+        POWERS[0] = 1;
+        for (int i = 1; i < MAX_WORDS; i++) {
+            POWERS[i] = POWERS[i - 1] * PRIME;
+        }
+        for (char c = 0; c < 128; c++) {
+            ASCII_WORD_CHARS[c] = Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+        }
+    }
+
+    private PhraseHasher() {
+    }
+
+    /**
+     * Hash of a whole phrase, or 0 if the phrase has no words or more than {@link #MAX_WORDS}.
+     * Also used for insertion, so it must produce the same value as {@link #anyPhraseMatches}.
+     */
+    static long phraseHash(CharSequence phrase) {
+        long hash = 0;
+        int words = 0;
+        int i = 0;
+        int length = phrase.length();
+        while (i < length) {
+            while (i < length && wordChar(phrase.charAt(i)) == 0) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long word = FNV_OFFSET;
+            char c;
+            while (i < length && (c = wordChar(phrase.charAt(i))) != 0) {
+                word = (word ^ c) * PRIME;
+                i++;
+            }
+            hash = hash * PRIME + word;
+            words++;
+        }
+        return words == 0 || words > MAX_WORDS ? 0 : fmix64(hash);
+    }
+
+    static int wordCount(CharSequence phrase) {
+        int words = 0;
+        boolean inWord = false;
+        for (int i = 0; i < phrase.length(); i++) {
+            boolean letter = wordChar(phrase.charAt(i)) != 0;
+            if (letter && !inWord) {
+                words++;
+            }
+            inWord = letter;
+        }
+        return words;
+    }
+
+    /**
+     * Checks every phrase of 1..maxWords consecutive words in the text against the filter.
+     */
+    static boolean anyPhraseMatches(CharSequence text, int maxWords, ScalableBloomFilter filter) {
+        // Ring of the last maxWords word hashes
+        long[] recent = new long[maxWords];
+        int seen = 0;
+        int i = 0;
+        int length = text.length();
+        while (i < length) {
+            while (i < length && wordChar(text.charAt(i)) == 0) {
+                i++;
+            }
+            if (i == length) {
+                break;
+            }
+            long word = FNV_OFFSET;
+            char c;
+            while (i < length && (c = wordChar(text.charAt(i))) != 0) {
+                word = (word ^ c) * PRIME;
+                i++;
+            }
+            recent[seen % maxWords] = word;
+            seen++;
+
+            // Phrases ending at this word, growing backwards: h += w[end - len + 1] * P^(len - 1)
+            long hash = 0;
+            int available = Math.min(seen, maxWords);
+            for (int len = 1; len <= available; len++) {
+                hash += recent[(seen - len) % maxWords] * POWERS[len - 1];
+                if (filter.mightContain(fmix64(hash))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Lower-cased word character, or 0 if the char separates words
+    private static char wordChar(char c) {
+        if (c < 128) {
+            return ASCII_WORD_CHARS[c];
+        }
+        return Character.isLetterOrDigit(c) ? Character.toLowerCase(c) : 0;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xff51afd7ed558ccdL;
+        k ^= k >>> 33;
+        k *= 0xc4ceb9fe1a85ec53L;
+        k ^= k >>> 33;
+        return k;
+    }
+}
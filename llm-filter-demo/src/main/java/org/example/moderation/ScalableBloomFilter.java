@@ -0,0 +1,131 @@
+package org.example.moderation;
+
+import java.util.Arrays;
+
+/**
+ * Scalable Bloom filter (Almeida et al. 2007) over pre-computed 64-bit hashes.
+ *
+ * The filter is a chain of partitioned Bloom filters. When the newest stage reaches its
+ * capacity a new stage with twice the capacity and a tighter error rate is appended, so the
+ * filter grows without rebuilding and the compound false positive rate stays below 2 * fpp.
+ *
+ * Writes are serialized; reads are lock-free. A reader racing with a write may miss a bit
+ * that is being set, which is harmless for a pre-filter that is filled before it is published.
+ */
+public class ScalableBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private final double fpp;
+    private volatile Stage[] stages;
+    private long count;
+
+    public ScalableBloomFilter(int initialCapacity, double fpp) {
+        if (initialCapacity < 1 || fpp <= 0 || fpp >= 1) {
+            throw new IllegalArgumentException("Capacity must be positive and fpp between 0 and 1.");
+        }
+        this.fpp = fpp;
+        this.stages = new Stage[] { new Stage(initialCapacity, fpp * (1 - TIGHTENING_RATIO)) };
+    }
+
+    /**
+     * @return false if the hash was (probably) present already
+     */
+    public synchronized boolean put(long hash) {
+        if (mightContain(hash)) {
+            return false;
+        }
+        Stage[] current = stages;
+        Stage last = current[current.length - 1];
+        if (last.count >= last.capacity) {
+            last = new Stage(last.capacity * GROWTH_FACTOR, last.fpp * TIGHTENING_RATIO);
+            Stage[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = last;
+            stages = grown;
+        }
+        last.put(hash);
+        count++;
+        return true;
+    }
+
+    public boolean mightContain(long hash) {
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public int stageCount() {
+        return stages.length;
+    }
+
+    public long bitSize() {
+        long bits = 0;
+        for (Stage stage : stages) {
+            bits += stage.bitSize();
+        }
+        return bits;
+    }
+
+    public double targetFpp() {
+        return fpp;
+    }
+
+    /**
+     * One partitioned Bloom filter: k hash functions, each owning its own slice of m/k bits.
+     */
+    private static final class Stage {
+        final int capacity;
+        final double fpp;
+        final int hashCount;
+        final int partitionBits;
+        final long[] bits;
+        int count;
+
+        Stage(int capacity, double fpp) {
+            this.capacity = capacity;
+            this.fpp = fpp;
+            this.hashCount = Math.max(1, (int) Math.ceil(-Math.log(fpp) / Math.log(2)));
+            long totalBits = (long) Math.ceil(capacity * -Math.log(fpp) / (Math.log(2) * Math.log(2)));
+            this.partitionBits = (int) Math.max(64, Math.min(Integer.MAX_VALUE, totalBits / hashCount + 1));
+            this.bits = new long[(int) (((long) partitionBits * hashCount + 63) >>> 6)];
+        }
+
+        long bitSize() {
+            return (long) partitionBits * hashCount;
+        }
+
+        void put(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = bitIndex(i, h1 + i * h2);
+                bits[(int) (bit >>> 6)] |= 1L << bit;
+            }
+            count++;
+        }
+
+        boolean mightContain(long hash) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = bitIndex(i, h1 + i * h2);
+                if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private long bitIndex(int partition, int combinedHash) {
+            return (long) partition * partitionBits + (combinedHash & Integer.MAX_VALUE) % partitionBits;
+        }
+    }
+}
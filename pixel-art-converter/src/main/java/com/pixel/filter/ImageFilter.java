@@ -3,7 +3,11 @@ package com.pixel.filter;
 import java.awt.image.BufferedImage;
 
 public interface ImageFilter {
-    BufferedImage apply(BufferedImage image);
+    PixelRaster apply(PixelRaster raster);
+
+    default BufferedImage apply(BufferedImage image) {
+        return apply(PixelRaster.from(image)).toImage();
+    }
 
     String getName();
-}
\ No newline at end of file
+}
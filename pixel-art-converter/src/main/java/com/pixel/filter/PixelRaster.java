@@ -0,0 +1,72 @@
+package com.pixel.filter;
+
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+
+/**
+ * Image as packed 0xRRGGBB ints, row by row.
+ * Filters read a raster and return a new one, they never modify their input.
+ */
+public record PixelRaster(int width, int height, int[] pixels) {
+
+    private static final int[] RGB_MASKS = { 0xFF0000, 0xFF00, 0xFF };
+    private static final DirectColorModel RGB_MODEL = new DirectColorModel(24, 0xFF0000, 0xFF00, 0xFF);
+
+    public PixelRaster {
+        if (pixels.length != width * height) {
+            throw new IllegalArgumentException("Expected " + width * height + " pixels, got " + pixels.length);
+        }
+    }
+
+    public PixelRaster(int width, int height) {
+        this(width, height, new int[width * height]);
+    }
+
+    /**
+     * Packed pixels of an image. A TYPE_INT_RGB image is used as is, other
+     * types are converted once.
+     */
+    public static PixelRaster from(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        if (image.getType() == BufferedImage.TYPE_INT_RGB && isPlain(image.getRaster(), w, h)) {
+            return new PixelRaster(w, h, ((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+        }
+        BufferedImage rgb = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = rgb.createGraphics();
+        g.drawImage(image, 0, 0, null);
+        g.dispose();
+        return new PixelRaster(w, h, ((DataBufferInt) rgb.getRaster().getDataBuffer()).getData());
+    }
+
+    /**
+     * TYPE_INT_RGB image backed by this raster's pixels, without copying them
+     */
+    public BufferedImage toImage() {
+        WritableRaster raster = Raster.createPackedRaster(
+                new DataBufferInt(pixels, pixels.length), width, height, width, RGB_MASKS, new Point());
+        return new BufferedImage(RGB_MODEL, raster, false, null);
+    }
+
+    public int get(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    // One array holding exactly the image's pixels, no offset, padding or sub-image
+    private static boolean isPlain(WritableRaster raster, int w, int h) {
+        return raster.getParent() == null
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel sampleModel
+                && sampleModel.getScanlineStride() == w
+                && raster.getSampleModelTranslateX() == 0
+                && raster.getSampleModelTranslateY() == 0
+                && raster.getDataBuffer().getNumBanks() == 1
+                && raster.getDataBuffer().getOffset() == 0
+                && raster.getDataBuffer().getSize() == w * h;
+    }
+}
@@ -0,0 +1,42 @@
+package com.pixel.filter;
+
+import java.util.stream.IntStream;
+
+/**
+ * Runs per-row work in parallel, in bands of rows.
+ * For filters where every output pixel only depends on the input raster.
+ */
+public final class Tiles {
+
+    // Small enough to balance the load, big enough to keep the per-task overhead negligible
+    private static final int BAND_PIXELS = 64 * 1024;
+    // Below this the fork/join overhead outweighs the work
+    private static final int PARALLEL_THRESHOLD = 128 * 1024;
+
+    @FunctionalInterface
+    public interface RowRange {
+        void process(int fromRow, int toRow);
+    }
+
+    private Tiles() {
+    }
+
+    /**
+     * @param rows     number of output rows
+     * @param rowWidth pixels per output row
+     * @param work     called with disjoint [fromRow, toRow) ranges covering all rows
+     */
+    public static void forEachBand(int rows, int rowWidth, RowRange work) {
+        long pixels = (long) rows * rowWidth;
+        if (pixels < PARALLEL_THRESHOLD || rows < 2) {
+            work.process(0, rows);
+            return;
+        }
+        int bandRows = Math.max(1, BAND_PIXELS / Math.max(1, rowWidth));
+        int bands = (rows + bandRows - 1) / bandRows;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int from = band * bandRows;
+            work.process(from, Math.min(rows, from + bandRows));
+        });
+    }
+}
@@ -1,8 +1,8 @@
 package com.pixel.filter.impl;
 
-import java.awt.image.BufferedImage;
-
 import com.pixel.filter.ImageFilter;
+import com.pixel.filter.PixelRaster;
+import com.pixel.filter.Tiles;
 
 public class DownsampleFilter implements ImageFilter {
     private final int blockSize;
@@ -12,18 +12,24 @@ public class DownsampleFilter implements ImageFilter {
     }
 
     @Override
-    public BufferedImage apply(BufferedImage img) {
-        int w = Math.max(1, img.getWidth() / blockSize);
-        int h = Math.max(1, img.getHeight() / blockSize);
-
-        BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int rgb = img.getRGB(x * blockSize, y * blockSize);
-                result.setRGB(x, y, rgb);
+    public PixelRaster apply(PixelRaster img) {
+        int w = Math.max(1, img.width() / blockSize);
+        int h = Math.max(1, img.height() / blockSize);
+        int[] src = img.pixels();
+        int srcWidth = img.width();
+
+        PixelRaster result = new PixelRaster(w, h);
+        int[] dst = result.pixels();
+
+        Tiles.forEachBand(h, w, (fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                int srcRow = y * blockSize * srcWidth;
+                int dstRow = y * w;
+                for (int x = 0; x < w; x++) {
+                    dst[dstRow + x] = src[srcRow + x * blockSize];
+                }
             }
-        }
+        });
         return result;
     }
 
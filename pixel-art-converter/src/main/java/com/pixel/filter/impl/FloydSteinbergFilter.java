@@ -1,84 +1,189 @@
 package com.pixel.filter.impl;
 
-import java.awt.image.BufferedImage;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
 
 import com.pixel.filter.ImageFilter;
-
+import com.pixel.filter.PixelRaster;
+
+/**
+ * Floyd-Steinberg dithering to 32 levels per channel.
+ * <p>
+ * Large images are dithered as a wavefront: rows are spread over worker
+ * threads, and each row follows the row above it a few columns behind, which
+ * is when all error it receives from that row has arrived. The result is
+ * identical to dithering row by row.
+ * </p>
+ */
 public class FloydSteinbergFilter implements ImageFilter {
 
-    private static final int RED = 0;
-    private static final int GREEN = 1;
-    private static final int BLUE = 2;
+    private static final int FACTOR = 32;
+    // Columns a row dithers between two progress updates
+    private static final int CHUNK = 64;
+    private static final int PARALLEL_THRESHOLD = 256 * 1024;
+    private static final int SPINS_BEFORE_YIELD = 128;
+
+    private final int workers;
+
+    public FloydSteinbergFilter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param workers maximum number of threads, 1 to always dither row by row
+     */
+    public FloydSteinbergFilter(int workers) {
+        this.workers = Math.max(1, workers);
+    }
 
     @Override
-    public BufferedImage apply(BufferedImage img) {
-        int w = img.getWidth();
-        int h = img.getHeight();
-
-        int[][][] buffer = new int[w][h][3];
-
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int rgb = img.getRGB(x, y);
-                buffer[x][y][RED] = (rgb >> 16) & 0xFF;
-                buffer[x][y][GREEN] = (rgb >> 8) & 0xFF;
-                buffer[x][y][BLUE] = rgb & 0xFF;
+    public PixelRaster apply(PixelRaster img) {
+        int w = img.width();
+        int h = img.height();
+        int[] src = img.pixels();
+
+        // One plane per channel, accumulating the diffused error
+        int[] red = new int[src.length];
+        int[] green = new int[src.length];
+        int[] blue = new int[src.length];
+        for (int i = 0; i < src.length; i++) {
+            int rgb = src[i];
+            red[i] = (rgb >> 16) & 0xFF;
+            green[i] = (rgb >> 8) & 0xFF;
+            blue[i] = rgb & 0xFF;
+        }
+
+        PixelRaster result = new PixelRaster(w, h);
+        Rows rows = new Rows(red, green, blue, result.pixels(), w, h);
+
+        int threads = src.length < PARALLEL_THRESHOLD ? 1 : Math.min(workers, h);
+        if (threads == 1) {
+            for (int y = 0; y < h; y++) {
+                rows.dither(y, 0, w);
+            }
+        } else {
+            rows.ditherWavefront(threads);
+        }
+        return result;
+    }
+
+    private static final class Rows {
+        final int[] red;
+        final int[] green;
+        final int[] blue;
+        final int[] out;
+        final int w;
+        final int h;
+        // Columns of each row that are dithered
+        final AtomicIntegerArray progress;
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        Rows(int[] red, int[] green, int[] blue, int[] out, int w, int h) {
+            this.red = red;
+            this.green = green;
+            this.blue = blue;
+            this.out = out;
+            this.w = w;
+            this.h = h;
+            this.progress = new AtomicIntegerArray(h);
+        }
+
+        void ditherWavefront(int threads) {
+            Thread[] workers = new Thread[threads];
+            for (int t = 0; t < threads; t++) {
+                int firstRow = t;
+                workers[t] = Thread.ofVirtual().name("dither-" + t).start(() -> {
+                    try {
+                        for (int y = firstRow; y < h; y += threads) {
+                            ditherRow(y);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+            }
+            boolean interrupted = false;
+            for (Thread worker : workers) {
+                while (worker.isAlive()) {
+                    try {
+                        worker.join();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            Throwable cause = failure.get();
+            if (cause != null) {
+                throw new IllegalStateException("Dithering failed", cause);
             }
         }
 
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int oldR = buffer[x][y][RED];
-                int oldG = buffer[x][y][GREEN];
-                int oldB = buffer[x][y][BLUE];
-
-                int factor = 32;
-                int newR = Math.round(factor * Math.round(oldR / (float) factor));
-                int newG = Math.round(factor * Math.round(oldG / (float) factor));
-                int newB = Math.round(factor * Math.round(oldB / (float) factor));
-
-                newR = Math.min(255, Math.max(0, newR));
-                newG = Math.min(255, Math.max(0, newG));
-                newB = Math.min(255, Math.max(0, newB));
-
-                buffer[x][y][RED] = newR;
-                buffer[x][y][GREEN] = newG;
-                buffer[x][y][BLUE] = newB;
-
-                int errR = oldR - newR;
-                int errG = oldG - newG;
-                int errB = oldB - newB;
-
-                distributeError(buffer, x + 1, y, errR, errG, errB, 7.0 / 16);
-                distributeError(buffer, x - 1, y + 1, errR, errG, errB, 3.0 / 16);
-                distributeError(buffer, x, y + 1, errR, errG, errB, 5.0 / 16);
-                distributeError(buffer, x + 1, y + 1, errR, errG, errB, 1.0 / 16);
+        private void ditherRow(int y) {
+            for (int from = 0; from < w; from += CHUNK) {
+                int to = Math.min(w, from + CHUNK);
+                if (y > 0) {
+                    // Column x receives error from columns x-1..x+1 of the row above, and that
+                    // row writes column x+1 of this row while at x+2: stay 3 columns behind
+                    awaitProgress(y - 1, Math.min(w, to + 2));
+                }
+                dither(y, from, to);
+                progress.set(y, to);
             }
         }
 
-        BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                int r = buffer[x][y][RED];
-                int g = buffer[x][y][GREEN];
-                int b = buffer[x][y][BLUE];
-                result.setRGB(x, y, (r << 16) | (g << 8) | b);
+        private void awaitProgress(int row, int columns) {
+            int spins = 0;
+            while (progress.get(row) < columns) {
+                if (failure.get() != null) {
+                    throw new IllegalStateException("Other dithering worker failed");
+                }
+                if (++spins < SPINS_BEFORE_YIELD) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
             }
         }
-        return result;
-    }
 
-    private void distributeError(int[][][] buffer, int x, int y,
-            int er, int eg, int eb, double weight) {
-        if (x < 0 || x >= buffer.length || y < 0 || y >= buffer[0].length)
-            return;
-        buffer[x][y][RED] += (int) (er * weight);
-        buffer[x][y][GREEN] += (int) (eg * weight);
-        buffer[x][y][BLUE] += (int) (eb * weight);
+        void dither(int y, int from, int to) {
+            boolean lastRow = y == h - 1;
+            for (int x = from; x < to; x++) {
+                int i = y * w + x;
+                int r = quantize(red, i, x, lastRow);
+                int g = quantize(green, i, x, lastRow);
+                int b = quantize(blue, i, x, lastRow);
+                out[i] = (r << 16) | (g << 8) | b;
+            }
+        }
+
+        private int quantize(int[] channel, int i, int x, boolean lastRow) {
+            int old = channel[i];
+            int q = Math.min(255, Math.max(0, FACTOR * Math.round(old / (float) FACTOR)));
+            int err = old - q;
+
+            boolean hasRight = x + 1 < w;
+            if (hasRight) {
+                channel[i + 1] += err * 7 / 16;
+            }
+            if (!lastRow) {
+                int below = i + w;
+                if (x > 0) {
+                    channel[below - 1] += err * 3 / 16;
+                }
+                channel[below] += err * 5 / 16;
+                if (hasRight) {
+                    channel[below + 1] += err / 16;
+                }
+            }
+            return q;
+        }
     }
 
     @Override
     public String getName() {
         return "dither";
     }
-}
\ No newline at end of file
+}
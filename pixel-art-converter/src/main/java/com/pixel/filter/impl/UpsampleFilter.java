@@ -1,10 +1,8 @@
 package com.pixel.filter.impl;
 
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
-import java.awt.image.BufferedImage;
-
 import com.pixel.filter.ImageFilter;
+import com.pixel.filter.PixelRaster;
+import com.pixel.filter.Tiles;
 
 public class UpsampleFilter implements ImageFilter {
     private final int scale;
@@ -14,17 +12,32 @@ public class UpsampleFilter implements ImageFilter {
     }
 
     @Override
-    public BufferedImage apply(BufferedImage img) {
-        int w = img.getWidth() * scale;
-        int h = img.getHeight() * scale;
-
-        BufferedImage result = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
-        Graphics2D g = result.createGraphics();
-        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
-                RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
-        g.drawImage(img, 0, 0, w, h, null);
-        g.dispose();
-
+    public PixelRaster apply(PixelRaster img) {
+        int srcWidth = img.width();
+        int w = srcWidth * scale;
+        int h = img.height() * scale;
+        int[] src = img.pixels();
+
+        PixelRaster result = new PixelRaster(w, h);
+        int[] dst = result.pixels();
+
+        // Nearest neighbor: expand each source row once, then copy it to the other rows of its block
+        Tiles.forEachBand(img.height(), w * scale, (fromRow, toRow) -> {
+            for (int sy = fromRow; sy < toRow; sy++) {
+                int srcRow = sy * srcWidth;
+                int firstRow = sy * scale * w;
+                for (int sx = 0; sx < srcWidth; sx++) {
+                    int rgb = src[srcRow + sx];
+                    int start = firstRow + sx * scale;
+                    for (int i = 0; i < scale; i++) {
+                        dst[start + i] = rgb;
+                    }
+                }
+                for (int i = 1; i < scale; i++) {
+                    System.arraycopy(dst, firstRow, dst, firstRow + i * w, w);
+                }
+            }
+        });
         return result;
     }
 
@@ -32,4 +45,4 @@ public class UpsampleFilter implements ImageFilter {
     public String getName() {
         return "upsample";
     }
-}
\ No newline at end of file
+}
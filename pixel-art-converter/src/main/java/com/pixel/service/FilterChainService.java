@@ -4,17 +4,22 @@ import java.awt.image.BufferedImage;
 import java.util.List;
 
 import com.pixel.filter.ImageFilter;
+import com.pixel.filter.PixelRaster;
 
 import jakarta.enterprise.context.ApplicationScoped;
 
 @ApplicationScoped
 public class FilterChainService {
 
+    /**
+     * Runs the filters on packed pixel arrays; the image is only converted
+     * at the start and wrapped at the end.
+     */
     public BufferedImage applyChain(BufferedImage input, List<ImageFilter> filters) {
-        BufferedImage current = input;
+        PixelRaster current = PixelRaster.from(input);
         for (ImageFilter f : filters) {
             current = f.apply(current);
         }
-        return current;
+        return current.toImage();
     }
-}
\ No newline at end of file
+}
@@ -4,12 +4,16 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
 import java.util.HashSet;
+import java.util.Random;
 import java.util.Set;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
+import com.pixel.filter.PixelRaster;
+import com.pixel.filter.impl.DownsampleFilter;
 import com.pixel.filter.impl.FloydSteinbergFilter;
+import com.pixel.filter.impl.UpsampleFilter;
 
 class FilterComparisonTest {
 
@@ -34,4 +38,43 @@ class FilterComparisonTest {
         Assertions.assertTrue(colors.size() > 1,
                 "Dithering should create variance");
     }
-}
\ No newline at end of file
+
+    @Test
+    void testParallelDitheringMatchesSequential() {
+        PixelRaster src = noise(1200, 900);
+
+        PixelRaster sequential = new FloydSteinbergFilter(1).apply(src);
+        PixelRaster parallel = new FloydSteinbergFilter(8).apply(src);
+
+        Assertions.assertArrayEquals(sequential.pixels(), parallel.pixels(),
+                "Wavefront dithering should match row by row dithering");
+    }
+
+    @Test
+    void testDownsampleAndUpsample() {
+        PixelRaster src = noise(1000, 700);
+
+        PixelRaster small = new DownsampleFilter(8).apply(src);
+        Assertions.assertEquals(125, small.width());
+        Assertions.assertEquals(87, small.height());
+        Assertions.assertEquals(src.get(16, 24), small.get(2, 3));
+
+        PixelRaster big = new UpsampleFilter(8).apply(small);
+        Assertions.assertEquals(1000, big.width());
+        Assertions.assertEquals(696, big.height());
+        for (int y = 0; y < big.height(); y++) {
+            for (int x = 0; x < big.width(); x++) {
+                Assertions.assertEquals(small.get(x / 8, y / 8), big.get(x, y));
+            }
+        }
+    }
+
+    private static PixelRaster noise(int width, int height) {
+        Random random = new Random(7);
+        PixelRaster raster = new PixelRaster(width, height);
+        for (int i = 0; i < raster.pixels().length; i++) {
+            raster.pixels()[i] = random.nextInt(0x1000000);
+        }
+        return raster;
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.wordcloud.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.example.wordcloud.core.WordCloudRenderer.CloudConfig;
+
+/**
+ * Time to lay out and paint a cloud of {@code words} distinct words with
+ * Zipf-like frequencies on a 4K canvas.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Djava.awt.headless=true")
+public class LayoutBenchmark {
+
+    @Param({ "60", "250", "500", "1000" })
+    public int words;
+
+    private List<String> tokens;
+    private CloudConfig cfg;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(7);
+        tokens = new ArrayList<>();
+        for (int i = 0; i < words; i++) {
+            StringBuilder word = new StringBuilder();
+            int length = 3 + random.nextInt(8);
+            for (int k = 0; k < length; k++) {
+                word.append((char) ('a' + random.nextInt(26)));
+            }
+            for (int count = Math.max(1, 400 / (i + 1)); count > 0; count--) {
+                tokens.add(word.toString());
+            }
+        }
+
+        cfg = new CloudConfig();
+        cfg.width = 3840;
+        cfg.height = 2160;
+        cfg.maxWords = words;
+        cfg.minFont = 12;
+        cfg.maxFont = 270;
+        cfg.rotateSome = true;
+        cfg.rotateProb = 0.25;
+        cfg.localRewordle = true;
+        cfg.seed = 42L;
+    }
+
+    @Benchmark
+    public Object render() {
+        return WordCloudRenderer.renderPng(tokens, cfg);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LayoutBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
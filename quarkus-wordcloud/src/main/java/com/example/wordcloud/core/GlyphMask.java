@@ -0,0 +1,131 @@
+package com.example.wordcloud.core;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * Bitmap of the cells a rendered word covers, one bit per {@link #CELL} x
+ * {@link #CELL} pixels, packed 64 cells to a long per row.
+ *
+ * A cell is set if the glyph outline touches it at all, and the mask is
+ * grown by {@link #PAD} cells on every side. Positions are rounded down to
+ * whole cells when two masks are compared; the padding covers that rounding,
+ * so an overlap of actual pixels is never missed.
+ */
+final class GlyphMask {
+
+    static final int CELL = 2;
+    static final int PAD = 1;
+
+    // Offset of cell (0, 0) from the word's position, in cells
+    final int originCol;
+    final int originRow;
+    final int cols;
+    final int rows;
+    private final int words;
+    private final long[] bits;
+
+    private GlyphMask(int originCol, int originRow, int cols, int rows) {
+        this.originCol = originCol;
+        this.originRow = originRow;
+        this.cols = cols;
+        this.rows = rows;
+        this.words = (cols + 63) >>> 6;
+        this.bits = new long[words * rows];
+    }
+
+    /** Rasterizes the outline, given relative to the word's position. */
+    static GlyphMask of(Shape outline) {
+        Rectangle2D bounds = outline.getBounds2D();
+        int minCol = (int) Math.floor(bounds.getMinX() / CELL);
+        int minRow = (int) Math.floor(bounds.getMinY() / CELL);
+        int maxCol = (int) Math.ceil(bounds.getMaxX() / CELL);
+        int maxRow = (int) Math.ceil(bounds.getMaxY() / CELL);
+        int innerCols = Math.max(1, maxCol - minCol);
+        int innerRows = Math.max(1, maxRow - minRow);
+
+        // Antialiased, so partly covered cells come out non-zero
+        BufferedImage raster = new BufferedImage(innerCols, innerRows, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = raster.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.scale(1.0 / CELL, 1.0 / CELL);
+        g.translate(-minCol * CELL, -minRow * CELL);
+        g.setColor(Color.WHITE);
+        g.fill(outline);
+        g.dispose();
+
+        GlyphMask mask = new GlyphMask(minCol - PAD, minRow - PAD, innerCols + 2 * PAD, innerRows + 2 * PAD);
+        Raster data = raster.getData();
+        int[] row = new int[innerCols];
+        for (int y = 0; y < innerRows; y++) {
+            data.getSamples(0, y, innerCols, 1, 0, row);
+            for (int x = 0; x < innerCols; x++) {
+                if (row[x] != 0) {
+                    for (int dy = 0; dy <= 2 * PAD; dy++) {
+                        for (int dx = 0; dx <= 2 * PAD; dx++) {
+                            mask.set(x + dx, y + dy);
+                        }
+                    }
+                }
+            }
+        }
+        return mask;
+    }
+
+    private void set(int col, int row) {
+        bits[row * words + (col >>> 6)] |= 1L << (col & 63);
+    }
+
+    /** Canvas cell of the mask's first column for a word centered at {@code x}. */
+    int colAt(double x) {
+        return (int) Math.floor(x / CELL) + originCol;
+    }
+
+    /** Canvas cell of the mask's first row for a word centered at {@code y}. */
+    int rowAt(double y) {
+        return (int) Math.floor(y / CELL) + originRow;
+    }
+
+    /**
+     * Whether this mask with its first cell at canvas cell (col, row) overlaps
+     * {@code other} with its first cell at (otherCol, otherRow).
+     */
+    boolean overlaps(int col, int row, GlyphMask other, int otherCol, int otherRow) {
+        int fromX = Math.max(col, otherCol);
+        int toX = Math.min(col + cols, otherCol + other.cols);
+        int fromY = Math.max(row, otherRow);
+        int toY = Math.min(row + rows, otherRow + other.rows);
+        if (fromX >= toX || fromY >= toY) {
+            return false;
+        }
+        for (int y = fromY; y < toY; y++) {
+            for (int x = fromX; x < toX; x += 64) {
+                long a = bitsAt(y - row, x - col);
+                long b = other.bitsAt(y - otherRow, x - otherCol);
+                int n = toX - x;
+                long valid = n >= 64 ? -1L : (1L << n) - 1;
+                if ((a & b & valid) != 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // The 64 cells of a row starting at the given column
+    private long bitsAt(int row, int col) {
+        int word = col >>> 6;
+        int shift = col & 63;
+        int base = row * words;
+        long value = bits[base + word] >>> shift;
+        if (shift != 0 && word + 1 < words) {
+            value |= bits[base + word + 1] << (64 - shift);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.wordcloud.core;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * Uniform grid over the canvas holding the ids of the words whose box
+ * touches each cell. Boxes reaching outside the canvas are kept in the
+ * border cells.
+ *
+ * Queries only read the grid, so they can run in parallel as long as
+ * nothing is inserted or removed at the same time.
+ */
+final class SpatialGrid {
+
+    private final double cellSize;
+    private final int cols;
+    private final int rows;
+    private final int[][] cells;
+    private final int[] cellSizes;
+    // Cell range of every inserted id, -1 if not inserted
+    private final int[] minCol;
+    private final int[] minRow;
+    private final int[] maxCol;
+    private final int[] maxRow;
+
+    SpatialGrid(int width, int height, double cellSize, int capacity) {
+        this.cellSize = cellSize;
+        this.cols = Math.max(1, (int) Math.ceil(width / cellSize));
+        this.rows = Math.max(1, (int) Math.ceil(height / cellSize));
+        this.cells = new int[cols * rows][];
+        this.cellSizes = new int[cols * rows];
+        this.minCol = new int[capacity];
+        this.minRow = new int[capacity];
+        this.maxCol = new int[capacity];
+        this.maxRow = new int[capacity];
+        Arrays.fill(minCol, -1);
+    }
+
+    /** About one word per cell, but no smaller than 16 pixels. */
+    static SpatialGrid forCanvas(int width, int height, int words) {
+        double cellSize = Math.max(16, Math.sqrt((double) width * height / Math.max(1, words)));
+        return new SpatialGrid(width, height, cellSize, words);
+    }
+
+    void insert(int id, Rectangle2D box) {
+        int c0 = col(box.getMinX());
+        int c1 = col(box.getMaxX());
+        int r0 = row(box.getMinY());
+        int r1 = row(box.getMaxY());
+        minCol[id] = c0;
+        maxCol[id] = c1;
+        minRow[id] = r0;
+        maxRow[id] = r1;
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                add(r * cols + c, id);
+            }
+        }
+    }
+
+    void remove(int id) {
+        if (minCol[id] < 0) {
+            return;
+        }
+        for (int r = minRow[id]; r <= maxRow[id]; r++) {
+            for (int c = minCol[id]; c <= maxCol[id]; c++) {
+                int cell = r * cols + c;
+                int[] ids = cells[cell];
+                int size = cellSizes[cell];
+                for (int i = 0; i < size; i++) {
+                    if (ids[i] == id) {
+                        ids[i] = ids[size - 1];
+                        cellSizes[cell] = size - 1;
+                        break;
+                    }
+                }
+            }
+        }
+        minCol[id] = -1;
+    }
+
+    void clear() {
+        Arrays.fill(cellSizes, 0);
+        Arrays.fill(minCol, -1);
+    }
+
+    /**
+     * Calls the visitor once for every id whose cells overlap the box's cells,
+     * until it returns true.
+     *
+     * @return whether the visitor returned true
+     */
+    boolean anyNear(double minX, double minY, double maxX, double maxY, IntPredicate visitor) {
+        int c0 = col(minX);
+        int c1 = col(maxX);
+        int r0 = row(minY);
+        int r1 = row(maxY);
+        for (int r = r0; r <= r1; r++) {
+            for (int c = c0; c <= c1; c++) {
+                int cell = r * cols + c;
+                int[] ids = cells[cell];
+                for (int i = 0, size = cellSizes[cell]; i < size; i++) {
+                    int id = ids[i];
+                    // An id shares several cells with the box; only visit it in the first one
+                    if (c == Math.max(c0, minCol[id]) && r == Math.max(r0, minRow[id]) && visitor.test(id)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void add(int cell, int id) {
+        int[] ids = cells[cell];
+        int size = cellSizes[cell];
+        if (ids == null) {
+            ids = cells[cell] = new int[4];
+        } else if (size == ids.length) {
+            ids = cells[cell] = Arrays.copyOf(ids, size * 2);
+        }
+        ids[size] = id;
+        cellSizes[cell] = size + 1;
+    }
+
+    private int col(double x) {
+        return Math.max(0, Math.min(cols - 1, (int) Math.floor(x / cellSize)));
+    }
+
+    private int row(double y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor(y / cellSize)));
+    }
+}
@@ -8,6 +8,8 @@ import java.awt.image.BufferedImage;
 import java.io.InputStream;
 import java.util.*;
 import java.util.List;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
 
 import org.jboss.logging.Logger;
 
@@ -20,6 +22,13 @@ import org.jboss.logging.Logger;
  * - Canvas-fit checks on placement
  * - Physics keeps bodies inside canvas
  * - Slight bounds inflation for big fonts (ascent/descent safety)
+ *
+ * Layout cost:
+ * - Words are measured once per font size, moving a word only shifts its bounds
+ * - Collisions are looked up in a {@link SpatialGrid} instead of against every word
+ * - Big words collide on their {@link GlyphMask} instead of their letter boxes
+ * - Spiral candidates are tested in parallel chunks, the first free one wins
+ * - Physics forces are computed in parallel, without per-pair allocations
  */
 public class WordCloudRenderer {
 
@@ -29,6 +38,12 @@ public class WordCloudRenderer {
     private static final double BIGGEST_WORD_HEIGHT_FRACTION = 0.25; // 25%
     private static final double SAFETY_MARGIN = 5.0;
 
+    // Spiral candidates tested one by one before switching to parallel chunks
+    private static final int SEQUENTIAL_CANDIDATES = 64;
+    private static final int CANDIDATE_CHUNK = 1024;
+    // Fewer words than this are not worth splitting the physics forces for
+    private static final int PARALLEL_FORCES_MIN_WORDS = 128;
+
     // Font cache: key = "family:size", value = Font instance
     private static final Map<String, Font> FONT_CACHE = new HashMap<>();
     private static final Object FONT_CACHE_LOCK = new Object();
@@ -189,7 +204,7 @@ public class WordCloudRenderer {
 
             double rot = (cfg.rotateSome && rnd.nextDouble() < cfg.rotateProb) ? Math.PI / 2d : 0d;
             Color col = palette[i % palette.length];
-            bodies.add(new Body(e.getKey(), e.getValue(), f, rot, col, cfg.fontFamily));
+            bodies.add(new Body(i, e.getKey(), e.getValue(), f, rot, col, cfg.fontFamily));
         }
 
         // 4.1 proportional downscale if biggest font still too tall (extra safety when
@@ -198,46 +213,32 @@ public class WordCloudRenderer {
 
         // 5) initial spiral placement (Wordle-style) with canvas-fit check
         Point2D center = new Point2D.Double(cfg.width / 2.0, cfg.height / 2.0);
+        // prevent infinite search if a word is still too big
+        Spiral spiral = Spiral.upTo(Math.max(cfg.width, cfg.height) * 1.5);
+        SpatialGrid grid = SpatialGrid.forCanvas(cfg.width, cfg.height, bodies.size());
         for (Body b : bodies) {
             if (cancellation != null && cancellation.isCancelled()) {
                 throw new IllegalStateException("Rendering was cancelled during spiral placement");
             }
             b.updateBounds(g2d);
-            boolean placed = false;
-            double angle = 0, radius = 0;
-            // prevent infinite search if a word is still too big
-            double maxRadius = Math.max(cfg.width, cfg.height) * 1.5;
-
-            while (!placed && radius < maxRadius) {
-                double x = center.getX() + radius * Math.cos(angle);
-                double y = center.getY() + radius * Math.sin(angle);
-                b.position = new Point2D.Double(x, y);
-                b.updateBounds(g2d);
-
-                if (!collides(b, bodies) && fitsInCanvas(b, cfg)) {
-                    placed = true;
-                }
-
-                angle += 0.30;
-                if (angle > 2 * Math.PI) {
-                    angle = 0;
-                    radius += 5;
-                }
-            }
-
-            // If we failed to place (super rare with caps), pin to center safely
-            if (!placed) {
+            int candidate = firstFreeCandidate(b, center, spiral, bodies, grid, cfg);
+            if (candidate >= 0) {
+                b.position = new Point2D.Double(center.getX() + spiral.dx[candidate],
+                        center.getY() + spiral.dy[candidate]);
+            } else {
+                // If we failed to place (super rare with caps), pin to center safely
                 b.position = center;
-                b.updateBounds(g2d);
             }
+            b.updateBounds(g2d);
+            grid.insert(b.id, b.wordBox);
         }
 
         // 6) physics compaction (EdWordle-style), with in-bounds clamping
-        Physics.simulate(bodies, cfg, center, cancellation);
+        Physics.simulate(bodies, cfg, center, grid, cancellation);
 
         // 7) optional local boundary re-layout to close gaps
         if (cfg.localRewordle)
-            LocalRewordle.compactBoundary(bodies, cfg, center, g2d);
+            LocalRewordle.compactBoundary(bodies, cfg, center, grid, g2d);
 
         // 8) final recenter
         recenter(bodies, cfg, g2d);
@@ -252,31 +253,56 @@ public class WordCloudRenderer {
 
     // ==== helpers ====
 
-    private static boolean collides(Body b, List<Body> bodies) {
-        for (Body o : bodies) {
-            if (o == b || o.wordBox == null || b.wordBox == null)
-                continue;
-            if (!b.wordBox.intersects(o.wordBox))
-                continue;
-            if (b.twoLevel && o.twoLevel && b.letterBoxes != null && o.letterBoxes != null) {
-                for (Rectangle2D r1 : b.letterBoxes)
-                    for (Rectangle2D r2 : o.letterBoxes)
-                        if (r1.intersects(r2))
-                            return true;
-                continue;
-            }
+    /**
+     * Index of the first spiral candidate where the word fits, or -1. Candidates
+     * are tested in parallel chunks; the grid is not changed meanwhile, so the
+     * result is the same as testing them in order.
+     */
+    private static int firstFreeCandidate(Body b, Point2D center, Spiral spiral, List<Body> bodies,
+            SpatialGrid grid, CloudConfig cfg) {
+        IntPredicate free = i -> {
+            double x = center.getX() + spiral.dx[i];
+            double y = center.getY() + spiral.dy[i];
+            return fitsInCanvas(b, x, y, cfg) && !collides(b, x, y, bodies, grid);
+        };
+        int n = spiral.size();
+        int sequential = Math.min(n, SEQUENTIAL_CANDIDATES);
+        for (int i = 0; i < sequential; i++) {
+            if (free.test(i))
+                return i;
+        }
+        for (int from = sequential; from < n; from += CANDIDATE_CHUNK) {
+            OptionalInt hit = IntStream.range(from, Math.min(n, from + CANDIDATE_CHUNK))
+                    .parallel()
+                    .filter(free)
+                    .findFirst();
+            if (hit.isPresent())
+                return hit.getAsInt();
+        }
+        return -1;
+    }
+
+    // Whether b centered at (x, y) overlaps any word in the grid
+    private static boolean collides(Body b, double x, double y, List<Body> bodies, SpatialGrid grid) {
+        double minX = x - b.halfW, minY = y - b.halfH;
+        double w = 2 * b.halfW, h = 2 * b.halfH;
+        int col = b.mask != null ? b.mask.colAt(x) : 0;
+        int row = b.mask != null ? b.mask.rowAt(y) : 0;
+        return grid.anyNear(minX, minY, minX + w, minY + h, id -> {
+            Body o = bodies.get(id);
+            if (o == b || !o.wordBox.intersects(minX, minY, w, h))
+                return false;
+            if (b.mask != null && o.mask != null)
+                return b.mask.overlaps(col, row, o.mask, o.maskCol, o.maskRow);
             return true;
-        }
-        return false;
+        });
     }
 
-    private static boolean fitsInCanvas(Body b, CloudConfig cfg) {
-        if (b.wordBox == null)
-            return false;
-        return b.wordBox.getMinX() >= SAFETY_MARGIN &&
-                b.wordBox.getMinY() >= SAFETY_MARGIN &&
-                b.wordBox.getMaxX() <= cfg.width - SAFETY_MARGIN &&
-                b.wordBox.getMaxY() <= cfg.height - SAFETY_MARGIN;
+    private static boolean fitsInCanvas(Body b, double x, double y, CloudConfig cfg) {
+        return x - b.halfW >= SAFETY_MARGIN &&
+                y - b.halfH >= SAFETY_MARGIN &&
+                x + b.halfW <= cfg.width - SAFETY_MARGIN &&
+                y + b.halfH <= cfg.height - SAFETY_MARGIN;
     }
 
     private static void recenter(List<Body> bodies, CloudConfig cfg, Graphics2D g) {
@@ -333,8 +359,47 @@ public class WordCloudRenderer {
         public long seed;
     }
 
+    // ==== spiral ====
+    /** Offsets from the center of the Wordle spiral, the same for every word. */
+    static final class Spiral {
+        final double[] dx;
+        final double[] dy;
+
+        private Spiral(double[] dx, double[] dy) {
+            this.dx = dx;
+            this.dy = dy;
+        }
+
+        static Spiral upTo(double maxRadius) {
+            int perTurn = 0;
+            for (double angle = 0; angle <= 2 * Math.PI; angle += 0.30)
+                perTurn++;
+            int size = (int) Math.ceil(maxRadius / 5) * perTurn;
+            double[] dx = new double[size];
+            double[] dy = new double[size];
+            double angle = 0, radius = 0;
+            int n = 0;
+            while (radius < maxRadius && n < size) {
+                dx[n] = radius * Math.cos(angle);
+                dy[n] = radius * Math.sin(angle);
+                n++;
+                angle += 0.30;
+                if (angle > 2 * Math.PI) {
+                    angle = 0;
+                    radius += 5;
+                }
+            }
+            return new Spiral(Arrays.copyOf(dx, n), Arrays.copyOf(dy, n));
+        }
+
+        int size() {
+            return dx.length;
+        }
+    }
+
     // ==== body (word) ====
     static class Body {
+        final int id; // index in the body list and the spatial grid
         final String text;
         final int frequency;
         double fontSize; // mutable to allow proportional rescaling
@@ -342,13 +407,19 @@ public class WordCloudRenderer {
         final Color color;
         final String fontFamily;
         Point2D position = new Point2D.Double(0, 0);
-        Rectangle2D wordBox;
-        List<Rectangle2D> letterBoxes;
+        Rectangle2D.Double wordBox; // reused, moved by updateBounds
+        GlyphMask mask; // pixel-accurate shape for two-level words
+        int maskCol, maskRow; // canvas cell of the mask at the current position
         boolean twoLevel;
         double mass = 1;
-        Vec2 v = new Vec2(0, 0);
+        double vx, vy;
 
-        Body(String text, int freq, double fontSize, double rotation, Color color, String fontFamily) {
+        // Shape at measuredSize, relative to the position
+        private int measuredSize = -1;
+        double halfW, halfH;
+
+        Body(int id, String text, int freq, double fontSize, double rotation, Color color, String fontFamily) {
+            this.id = id;
             this.text = text;
             this.frequency = freq;
             this.fontSize = fontSize;
@@ -360,7 +431,22 @@ public class WordCloudRenderer {
         }
 
         void updateBounds(Graphics2D g) {
-            Font f = getFont(fontFamily, (int) Math.round(fontSize));
+            int size = (int) Math.round(fontSize);
+            if (size != measuredSize)
+                measure(g, size);
+            double x = position.getX(), y = position.getY();
+            if (wordBox == null)
+                wordBox = new Rectangle2D.Double();
+            wordBox.setRect(x - halfW, y - halfH, 2 * halfW, 2 * halfH);
+            if (mask != null) {
+                maskCol = mask.colAt(x);
+                maskRow = mask.rowAt(y);
+            }
+        }
+
+        // Text layout and glyph rasterization only happen when the font size changes
+        private void measure(Graphics2D g, int size) {
+            Font f = getFont(fontFamily, size);
             FontRenderContext frc = g.getFontRenderContext();
             TextLayout tl = new TextLayout(text, f, frc);
             Rectangle2D b = tl.getBounds();
@@ -377,20 +463,18 @@ public class WordCloudRenderer {
                 w = rw;
                 h = rh;
             }
-            wordBox = new Rectangle2D.Double(position.getX() - w / 2, position.getY() - h / 2, w, h);
+            halfW = w / 2;
+            halfH = h / 2;
 
-            letterBoxes = null;
+            mask = null;
             if (twoLevel) {
-                letterBoxes = new ArrayList<>();
+                // Same placement as render(): baseline centered, rotated around the position
                 FontMetrics fm = g.getFontMetrics(f);
-                double x = position.getX() - w / 2;
-                double lh = h;
-                for (char ch : text.toCharArray()) {
-                    double cw = fm.charWidth(ch) + inflate * 0.05;
-                    letterBoxes.add(new Rectangle2D.Double(x, position.getY() - lh / 2, cw, lh));
-                    x += cw;
-                }
+                AffineTransform at = AffineTransform.getRotateInstance(rotation);
+                at.translate(-fm.stringWidth(text) / 2.0, fm.getAscent() / 2.0 - fm.getDescent());
+                mask = GlyphMask.of(tl.getOutline(at));
             }
+            measuredSize = size;
         }
 
         void render(Graphics2D g) {
@@ -409,74 +493,100 @@ public class WordCloudRenderer {
 
     // ==== physics (neighbors + central force, damping) ====
     static class Physics {
-        static void simulate(List<Body> bodies, CloudConfig cfg, Point2D center, CancellationFlag cancellation) {
+        static void simulate(List<Body> bodies, CloudConfig cfg, Point2D center, SpatialGrid grid,
+                CancellationFlag cancellation) {
             final int maxIt = 80;
             final double alpha = 0.1; // central pull weight
             final double beta = 1.0; // attenuation numerator
             final double lambda = 0.8;// velocity damping
             final double convergenceThreshold = 0.5; // early termination threshold
             final int convergenceCheckInterval = 5; // check every N iterations
-            
-            for (int t = 0; t < maxIt; t++) {
-                if (cancellation != null && cancellation.isCancelled()) {
-                    throw new IllegalStateException("Rendering was cancelled during physics simulation");
-                }
-                
-                double maxVelocity = 0.0;
-                
-                for (Body b : bodies) {
-                    Vec2 f = neighborForce(b, bodies).add(centralForce(b, center).scale(alpha));
+
+            int n = bodies.size();
+            double[] fx = new double[n];
+            double[] fy = new double[n];
+            IntList overlapping = new IntList();
+            BufferedImage m = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+            Graphics2D gm = m.createGraphics();
+            gm.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+            try {
+                for (int t = 0; t < maxIt; t++) {
+                    if (cancellation != null && cancellation.isCancelled()) {
+                        throw new IllegalStateException("Rendering was cancelled during physics simulation");
+                    }
+
+                    // Forces only read positions, so every body can be done on its own
+                    IntStream indexes = IntStream.range(0, n);
+                    if (n >= PARALLEL_FORCES_MIN_WORDS)
+                        indexes = indexes.parallel();
+                    indexes.forEach(i -> force(bodies, i, center, alpha, fx, fy));
+
+                    double maxVelocity = 0.0;
                     double g = beta / (t + 1.0);
-                    b.v = b.v.add(f.scale(g / b.mass));
-                    b.v = b.v.scale(lambda);
-                    maxVelocity = Math.max(maxVelocity, b.v.mag());
-                }
-                
-                for (Body b : bodies) {
-                    if (b.v.mag() > 0.1) {
-                        b.position = new Point2D.Double(b.position.getX() + b.v.x, b.position.getY() + b.v.y);
+                    for (int i = 0; i < n; i++) {
+                        Body b = bodies.get(i);
+                        b.vx = (b.vx + fx[i] * (g / b.mass)) * lambda;
+                        b.vy = (b.vy + fy[i] * (g / b.mass)) * lambda;
+                        maxVelocity = Math.max(maxVelocity, Math.hypot(b.vx, b.vy));
                     }
-                }
 
-                // keep bodies inside canvas after each iteration
-                clampInsideCanvas(bodies, cfg);
+                    for (Body b : bodies) {
+                        if (Math.hypot(b.vx, b.vy) > 0.1) {
+                            b.position = new Point2D.Double(b.position.getX() + b.vx, b.position.getY() + b.vy);
+                        }
+                    }
 
-                // refresh bounds for next iteration
-                BufferedImage m = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
-                Graphics2D gm = m.createGraphics();
-                gm.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-                for (Body b : bodies)
-                    b.updateBounds(gm);
-                gm.dispose();
+                    // keep bodies inside canvas after each iteration
+                    clampInsideCanvas(bodies, cfg);
 
-                // simple separation if overlapping
-                boolean hasOverlaps = false;
-                for (int i = 0; i < bodies.size(); i++) {
-                    Body a = bodies.get(i);
-                    for (int j = i + 1; j < bodies.size(); j++) {
-                        Body c = bodies.get(j);
-                        if (a.wordBox != null && c.wordBox != null && a.wordBox.intersects(c.wordBox)) {
+                    // refresh bounds for next iteration
+                    grid.clear();
+                    for (Body b : bodies) {
+                        b.updateBounds(gm);
+                        grid.insert(b.id, b.wordBox);
+                    }
+
+                    // simple separation if overlapping; pairs are taken from the boxes before
+                    // any separation and handled in index order
+                    boolean hasOverlaps = false;
+                    for (int i = 0; i < n; i++) {
+                        Body a = bodies.get(i);
+                        int self = i;
+                        overlapping.clear();
+                        Rectangle2D box = a.wordBox;
+                        grid.anyNear(box.getMinX(), box.getMinY(), box.getMaxX(), box.getMaxY(), j -> {
+                            if (j > self && box.intersects(bodies.get(j).wordBox))
+                                overlapping.add(j);
+                            return false;
+                        });
+                        overlapping.sort();
+                        for (int k = 0; k < overlapping.size(); k++) {
+                            Body c = bodies.get(overlapping.get(k));
                             hasOverlaps = true;
                             double dx = c.position.getX() - a.position.getX();
                             double dy = c.position.getY() - a.position.getY();
                             double d = Math.hypot(dx, dy);
                             if (d > 0) {
-                                Vec2 sep = new Vec2(dx / d, dy / d).scale(5.0);
-                                a.position = new Point2D.Double(a.position.getX() - sep.x, a.position.getY() - sep.y);
-                                c.position = new Point2D.Double(c.position.getX() + sep.x, c.position.getY() + sep.y);
+                                double sepX = dx / d * 5.0;
+                                double sepY = dy / d * 5.0;
+                                a.position = new Point2D.Double(a.position.getX() - sepX, a.position.getY() - sepY);
+                                c.position = new Point2D.Double(c.position.getX() + sepX, c.position.getY() + sepY);
                             }
                         }
                     }
-                }
-                
-                // Early termination: check convergence periodically, but only if no overlaps
-                // Also require minimum iterations to ensure proper separation
-                if (t >= 20 && t > 0 && t % convergenceCheckInterval == 0 && maxVelocity < convergenceThreshold && !hasOverlaps) {
-                    if (LOG.isDebugEnabled()) {
-                        LOG.debug(String.format("Physics simulation converged early at iteration %d (max velocity: %.3f)", t, maxVelocity));
+
+                    // Early termination: check convergence periodically, but only if no overlaps
+                    // Also require minimum iterations to ensure proper separation
+                    if (t >= 20 && t > 0 && t % convergenceCheckInterval == 0 && maxVelocity < convergenceThreshold && !hasOverlaps) {
+                        if (LOG.isDebugEnabled()) {
+                            LOG.debug(String.format("Physics simulation converged early at iteration %d (max velocity: %.3f)", t, maxVelocity));
+                        }
+                        break;
                     }
-                    break;
                 }
+            } finally {
+                gm.dispose();
             }
         }
 
@@ -500,31 +610,41 @@ public class WordCloudRenderer {
             }
         }
 
-        static Vec2 neighborForce(Body b, List<Body> all) {
-            Vec2 total = new Vec2(0, 0);
-            for (Body n : all) {
+        // Neighbor attraction plus weighted central pull on body i
+        static void force(List<Body> bodies, int i, Point2D center, double alpha, double[] fx, double[] fy) {
+            Body b = bodies.get(i);
+            double bx = b.position.getX(), by = b.position.getY();
+            double nx = 0, ny = 0;
+            for (Body n : bodies) {
                 if (n == b)
                     continue;
-                double dx = n.position.getX() - b.position.getX();
-                double dy = n.position.getY() - b.position.getY();
+                double dx = n.position.getX() - bx;
+                double dy = n.position.getY() - by;
                 double dist2 = dx * dx + dy * dy + 1.0;
                 double mag = (b.mass * n.mass) / dist2;
-                Vec2 dir = new Vec2(dx, dy).norm();
-                total = total.add(dir.scale(mag * 0.001));
+                // sqrt, not hypot: no overflow risk at canvas scale and much cheaper in the n^2 loop
+                double d = Math.sqrt(dx * dx + dy * dy);
+                nx += (d > 0 ? dx / d : 0) * (mag * 0.001);
+                ny += (d > 0 ? dy / d : 0) * (mag * 0.001);
             }
-            return total;
-        }
 
-        static Vec2 centralForce(Body b, Point2D center) {
-            double dx = center.getX() - b.position.getX();
-            double dy = center.getY() - b.position.getY();
+            double dx = center.getX() - bx;
+            double dy = center.getY() - by;
             double dist2 = dx * dx + dy * dy;
-            return new Vec2(dx, dy).norm().scale(b.mass * dist2 * 0.00001);
+            double d = Math.hypot(dx, dy);
+            double pull = b.mass * dist2 * 0.00001;
+            fx[i] = nx + (d > 0 ? dx / d : 0) * pull * alpha;
+            fy[i] = ny + (d > 0 ? dy / d : 0) * pull * alpha;
         }
     }
 
     static class LocalRewordle {
-        static void compactBoundary(List<Body> bodies, CloudConfig cfg, Point2D center, Graphics2D g) {
+        static void compactBoundary(List<Body> bodies, CloudConfig cfg, Point2D center, SpatialGrid grid,
+                Graphics2D g) {
+            grid.clear();
+            for (Body b : bodies)
+                grid.insert(b.id, b.wordBox);
+
             double bw = bboxWidth(bodies), bh = bboxHeight(bodies);
             double radius = 0.8 * Math.min(bw, bh) / 2.0;
             List<Body> boundary = new ArrayList<>();
@@ -541,22 +661,17 @@ public class WordCloudRenderer {
                 double angle = 0, step = 0.25, rad = 0;
                 Point2D best = null;
                 int bestScore = -1;
+                b.updateBounds(g);
                 for (int i = 0; i < k; i++) {
                     double x = start.getX() + rad * Math.cos(angle);
                     double y = start.getY() + rad * Math.sin(angle);
-                    Point2D p = new Point2D.Double(x, y);
-                    Point2D old = b.position;
-                    b.position = p;
-                    b.updateBounds(g);
-                    if (!collides(b, bodies)) {
-                        int score = neighborCount(b, bodies);
+                    if (!collides(b, x, y, bodies, grid)) {
+                        int score = neighborCount(b, x, y, bodies, grid);
                         if (score > bestScore) {
                             bestScore = score;
-                            best = p;
+                            best = new Point2D.Double(x, y);
                         }
                     }
-                    b.position = old;
-                    b.updateBounds(g);
                     angle += step;
                     if (angle > 2 * Math.PI) {
                         angle = 0;
@@ -567,18 +682,23 @@ public class WordCloudRenderer {
                     b.position = best;
                     b.updateBounds(g);
                 }
+                grid.remove(b.id);
+                grid.insert(b.id, b.wordBox);
             }
         }
 
-        static int neighborCount(Body b, List<Body> all) {
-            int n = 0;
-            for (Body o : all) {
-                if (o == b)
-                    continue;
-                if (b.wordBox.intersects(o.wordBox))
-                    n++;
-            }
-            return n;
+        // Words whose box touches b's box when b is centered at (x, y)
+        static int neighborCount(Body b, double x, double y, List<Body> all, SpatialGrid grid) {
+            double minX = x - b.halfW, minY = y - b.halfH;
+            double w = 2 * b.halfW, h = 2 * b.halfH;
+            int[] n = { 0 };
+            grid.anyNear(minX, minY, minX + w, minY + h, id -> {
+                Body o = all.get(id);
+                if (o != b && o.wordBox.intersects(minX, minY, w, h))
+                    n[0]++;
+                return false;
+            });
+            return n[0];
         }
 
         static double bboxWidth(List<Body> bodies) {
@@ -606,30 +726,31 @@ public class WordCloudRenderer {
         }
     }
 
-    // ==== tiny vec ====
-    static class Vec2 {
-        final double x, y;
+    // ==== growable int list ====
+    static final class IntList {
+        private int[] values = new int[16];
+        private int size;
 
-        Vec2(double x, double y) {
-            this.x = x;
-            this.y = y;
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
         }
 
-        Vec2 add(Vec2 o) {
-            return new Vec2(x + o.x, y + o.y);
+        int get(int index) {
+            return values[index];
         }
 
-        Vec2 scale(double f) {
-            return new Vec2(x * f, y * f);
+        int size() {
+            return size;
         }
 
-        double mag() {
-            return Math.hypot(x, y);
+        void sort() {
+            Arrays.sort(values, 0, size);
         }
 
-        Vec2 norm() {
-            double m = mag();
-            return m > 0 ? new Vec2(x / m, y / m) : new Vec2(0, 0);
+        void clear() {
+            size = 0;
         }
     }
 
@@ -0,0 +1,92 @@
+package com.example.wordcloud.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Font;
+import java.awt.Shape;
+import java.awt.font.FontRenderContext;
+import java.awt.font.TextLayout;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Area;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class GlyphMaskTest {
+
+    private static final FontRenderContext FRC = new FontRenderContext(null, true, true);
+
+    @Test
+    void testNeverMissesOverlap() {
+        Shape[] outlines = {
+                outline("worldly", 60, 0),
+                outline("Tyj", 60, Math.PI / 2),
+                outline("i", 14, 0),
+                outline("WAVE", 36, Math.PI / 6),
+        };
+        Random random = new Random(1);
+        int overlapping = 0;
+        int conservative = 0;
+        for (int trial = 0; trial < 4000; trial++) {
+            Shape a = outlines[random.nextInt(outlines.length)];
+            Shape b = outlines[random.nextInt(outlines.length)];
+            GlyphMask maskA = GlyphMask.of(a);
+            GlyphMask maskB = GlyphMask.of(b);
+            double ax = random.nextDouble() * 300;
+            double ay = random.nextDouble() * 300;
+            double bx = random.nextDouble() * 300;
+            double by = random.nextDouble() * 300;
+
+            Area exact = new Area(AffineTransform.getTranslateInstance(ax, ay).createTransformedShape(a));
+            exact.intersect(new Area(AffineTransform.getTranslateInstance(bx, by).createTransformedShape(b)));
+            boolean overlaps = maskA.overlaps(maskA.colAt(ax), maskA.rowAt(ay), maskB, maskB.colAt(bx), maskB.rowAt(by));
+
+            if (!exact.isEmpty()) {
+                overlapping++;
+                assertTrue(overlaps, "missed overlap at " + ax + "," + ay + " and " + bx + "," + by);
+            } else if (overlaps) {
+                conservative++;
+            }
+            // The same answer from either side
+            assertEquals(overlaps, maskB.overlaps(maskB.colAt(bx), maskB.rowAt(by), maskA, maskA.colAt(ax), maskA.rowAt(ay)));
+        }
+        assertTrue(overlapping > 100, "too few overlapping samples: " + overlapping);
+        // The padding only adds a thin margin around the glyphs
+        assertTrue(conservative < 4000 / 10, "too many false overlaps: " + conservative);
+    }
+
+    @Test
+    void testWideMasksAcrossWordBoundaries() {
+        // More than 64 cells per row, shifted by amounts that are not multiples of 64
+        Shape wide = outline("abcdefghijklmnopqrstuvwxyz", 48, 0);
+        Shape dot = outline(".", 48, 0);
+        GlyphMask wideMask = GlyphMask.of(wide);
+        GlyphMask dotMask = GlyphMask.of(dot);
+        assertTrue(wideMask.cols > 128);
+
+        double width = wide.getBounds2D().getWidth();
+        for (double x = 0; x < width; x += 3) {
+            Area exact = new Area(wide);
+            exact.intersect(new Area(AffineTransform.getTranslateInstance(x, -10).createTransformedShape(dot)));
+            if (!exact.isEmpty()) {
+                assertTrue(wideMask.overlaps(wideMask.colAt(0), wideMask.rowAt(0), dotMask, dotMask.colAt(x),
+                        dotMask.rowAt(-10)), "missed overlap at " + x);
+            }
+        }
+    }
+
+    @Test
+    void testDistantMasksDoNotOverlap() {
+        GlyphMask mask = GlyphMask.of(outline("cloud", 40, 0));
+        assertTrue(mask.overlaps(mask.colAt(0), mask.rowAt(0), mask, mask.colAt(0), mask.rowAt(0)));
+        assertFalse(mask.overlaps(mask.colAt(0), mask.rowAt(0), mask, mask.colAt(500), mask.rowAt(0)));
+        assertFalse(mask.overlaps(mask.colAt(0), mask.rowAt(0), mask, mask.colAt(0), mask.rowAt(500)));
+    }
+
+    private static Shape outline(String text, int size, double angle) {
+        return new TextLayout(text, new Font(Font.DIALOG, Font.BOLD, size), FRC)
+                .getOutline(AffineTransform.getRotateInstance(angle));
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.wordcloud.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class SpatialGridTest {
+
+    @Test
+    void testAnyNearVisitsEveryIntersectingBoxOnce() {
+        Random random = new Random(1);
+        int words = 50;
+        for (int trial = 0; trial < 500; trial++) {
+            SpatialGrid grid = SpatialGrid.forCanvas(800, 600, words);
+            Rectangle2D[] boxes = new Rectangle2D[words];
+            // Some boxes reach outside the canvas
+            for (int id = 0; id < words; id++) {
+                boxes[id] = randomBox(random, 150, 60);
+                grid.insert(id, boxes[id]);
+            }
+            // Moved boxes, and removed ones which must not show up again
+            boolean[] removed = new boolean[words];
+            for (int i = 0; i < 20; i++) {
+                int id = random.nextInt(words);
+                grid.remove(id);
+                removed[id] = random.nextBoolean();
+                if (!removed[id]) {
+                    boxes[id] = randomBox(random, 150, 60);
+                    grid.insert(id, boxes[id]);
+                }
+            }
+
+            Rectangle2D query = randomBox(random, 200, 80);
+            int[] visits = new int[words];
+            boolean stopped = grid.anyNear(query.getMinX(), query.getMinY(), query.getMaxX(), query.getMaxY(), id -> {
+                visits[id]++;
+                return false;
+            });
+
+            assertFalse(stopped);
+            for (int id = 0; id < words; id++) {
+                assertTrue(visits[id] <= 1, "visited " + id + " " + visits[id] + " times");
+                if (removed[id]) {
+                    assertEquals(0, visits[id], "visited removed " + id);
+                } else if (boxes[id].intersects(query)) {
+                    assertEquals(1, visits[id], "missed " + id);
+                }
+            }
+        }
+    }
+
+    @Test
+    void testAnyNearStopsAtFirstMatch() {
+        SpatialGrid grid = new SpatialGrid(100, 100, 10, 3);
+        for (int id = 0; id < 3; id++) {
+            grid.insert(id, new Rectangle2D.Double(0, 0, 50, 50));
+        }
+        int[] visits = new int[1];
+        assertTrue(grid.anyNear(20, 20, 30, 30, id -> ++visits[0] == 2));
+        assertEquals(2, visits[0]);
+    }
+
+    @Test
+    void testClear() {
+        SpatialGrid grid = new SpatialGrid(100, 100, 10, 2);
+        grid.insert(0, new Rectangle2D.Double(10, 10, 20, 20));
+        grid.insert(1, new Rectangle2D.Double(60, 60, 20, 20));
+        grid.clear();
+        assertFalse(grid.anyNear(0, 0, 100, 100, id -> true));
+
+        grid.insert(1, new Rectangle2D.Double(60, 60, 20, 20));
+        assertTrue(grid.anyNear(0, 0, 100, 100, id -> id == 1));
+    }
+
+    private static Rectangle2D randomBox(Random random, int maxWidth, int maxHeight) {
+        return new Rectangle2D.Double(random.nextInt(900) - 50, random.nextInt(700) - 50,
+                5 + random.nextInt(maxWidth), 5 + random.nextInt(maxHeight));
+    }
+}
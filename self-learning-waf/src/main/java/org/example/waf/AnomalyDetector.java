@@ -0,0 +1,160 @@
+package org.example.waf;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
+import org.nd4j.linalg.api.ndarray.INDArray;
+import org.nd4j.linalg.dataset.DataSet;
+import org.nd4j.linalg.factory.Nd4j;
+
+/**
+ * Autoencoder scoring and training off the request thread.
+ *
+ * Requests hand their features to a bounded queue and return at once; when the
+ * queue is full the sample is dropped, never waited for. A dedicated thread
+ * drains whatever is queued, up to a batch size, and scores it with one
+ * forward pass. Scored samples go into a fixed-size training ring. Training
+ * fits a copy of the model and then swaps it in, so scoring never waits for
+ * training and the network is never used by two threads at once.
+ */
+final class AnomalyDetector {
+
+    interface Listener {
+        void scored(Sample sample, double reconstructionError);
+    }
+
+    private static final Logger logger = Logger.getLogger(AnomalyDetector.class.getName());
+    private static final int MIN_TRAINING_SAMPLES = 100;
+
+    private final int inputSize;
+    private final int maxBatchSize;
+    private final BlockingQueue<Sample> pending;
+    private final Listener listener;
+    private final Thread worker;
+    private volatile MultiLayerNetwork model;
+
+    // Oldest samples are overwritten, guarded by trainingRing
+    private final double[][] trainingRing;
+    private int trainingNext;
+    private int trainingCount;
+
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicInteger trainingCycle = new AtomicInteger();
+
+    AnomalyDetector(MultiLayerNetwork model, int inputSize, int queueSize, int maxBatchSize, int trainingSamples,
+            Listener listener) {
+        this.model = model;
+        this.inputSize = inputSize;
+        this.maxBatchSize = maxBatchSize;
+        this.pending = new ArrayBlockingQueue<>(queueSize);
+        this.trainingRing = new double[trainingSamples][];
+        this.listener = listener;
+        this.worker = Thread.ofPlatform().name("waf-inference").daemon().start(this::scoreBatches);
+    }
+
+    /** Queues the sample for scoring. Never blocks. */
+    void submit(Sample sample) {
+        if (!pending.offer(sample)) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    void train() {
+        double[][] data;
+        synchronized (trainingRing) {
+            if (trainingCount < MIN_TRAINING_SAMPLES) {
+                logger.info("Skipping training cycle, not enough data.");
+                return; // Don't train on too few samples
+            }
+            data = new double[trainingCount][];
+            System.arraycopy(trainingRing, 0, data, 0, trainingCount);
+        }
+
+        try {
+            INDArray trainingData = Nd4j.create(data);
+            logger.info("Starting incremental training cycle #" + trainingCycle.incrementAndGet() + " with "
+                    + data.length + " samples.");
+            MultiLayerNetwork next = model.clone();
+            next.fit(new DataSet(trainingData, trainingData));
+            model = next;
+            logger.info("Training complete.");
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Error during incremental training", e);
+        }
+    }
+
+    void close() {
+        worker.interrupt();
+        try {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    int queuedSamples() {
+        return pending.size();
+    }
+
+    long droppedSamples() {
+        return dropped.get();
+    }
+
+    int trainingSamples() {
+        synchronized (trainingRing) {
+            return trainingCount;
+        }
+    }
+
+    int trainingCycles() {
+        return trainingCycle.get();
+    }
+
+    private void scoreBatches() {
+        List<Sample> batch = new ArrayList<>(maxBatchSize);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(pending.take());
+                pending.drainTo(batch, maxBatchSize - 1);
+                score(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                logger.log(Level.WARNING, "Error scoring requests", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void score(List<Sample> batch) {
+        double[][] rows = new double[batch.size()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = batch.get(i).features();
+        }
+
+        INDArray input = Nd4j.create(rows);
+        INDArray reconstructed = model.output(input);
+        // Per row: sum((x - x') * x) / inputSize
+        INDArray errors = input.sub(reconstructed).muli(input).sum(1).divi(inputSize);
+        for (int i = 0; i < rows.length; i++) {
+            listener.scored(batch.get(i), errors.getDouble(i));
+        }
+
+        synchronized (trainingRing) {
+            for (double[] row : rows) {
+                trainingRing[trainingNext] = row;
+                trainingNext = (trainingNext + 1) % trainingRing.length;
+                trainingCount = Math.min(trainingCount + 1, trainingRing.length);
+            }
+        }
+    }
+}
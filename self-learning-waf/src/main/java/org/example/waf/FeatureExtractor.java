@@ -0,0 +1,252 @@
+package org.example.waf;
+
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Turns a request into the autoencoder's feature vector in a single pass over
+ * the path and query. No regexes, no lower-cased or concatenated copies of the
+ * URL and no boxed character counts, so the request thread allocates nothing
+ * here beyond the output array.
+ *
+ * The checks match the patterns the filter used to run as regexes, except that
+ * a line break in the URL no longer hides a pattern.
+ */
+final class FeatureExtractor {
+
+    static final int SIZE = 25;
+
+    private static final int SPECIAL_CHARS = 1;
+    private static final int SQL_KEYWORDS = 1 << 1;
+    private static final int XSS_PATTERNS = 1 << 2;
+    private static final int PATH_TRAVERSAL = 1 << 3;
+    private static final int COMMAND_INJECTION = 1 << 4;
+    private static final int ENCODED_PAYLOAD = 1 << 5;
+
+    private static final String[] COMMANDS = { "cat", "ls", "pwd", "whoami" };
+    private static final String[] SCANNERS = { "sqlmap", "nikto", "nessus", "burp" };
+
+    /** Per-thread character histogram for the entropy. Slots are reset after every use. */
+    private static final class Scratch {
+        final int[] counts = new int[256];
+        final char[] seen = new char[256];
+        int distinct;
+        boolean wide;
+        int slashes;
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    private FeatureExtractor() {
+    }
+
+    static void extract(RestRequestInfo request, double[] features) {
+        String path = request.path() == null ? "" : request.path();
+        String query = request.query();
+        int urlLength = path.length() + (query != null ? 1 + query.length() : 0);
+
+        Scratch scratch = SCRATCH.get();
+        scratch.slashes = 0;
+        int flags = scan(path, scratch);
+        int pathDepth = scratch.slashes;
+        if (query != null) {
+            countChar(scratch, '?');
+            flags |= scan(query, scratch);
+        }
+        double entropy = entropy(scratch, path, query, urlLength);
+
+        features[0] = Math.min(urlLength / 250.0, 1.0);
+        features[1] = Math.min(countParams(query) / 20.0, 1.0);
+        features[2] = flag(flags, SPECIAL_CHARS);
+        features[3] = flag(flags, SQL_KEYWORDS);
+        features[4] = flag(flags, XSS_PATTERNS);
+        features[5] = flag(flags, PATH_TRAVERSAL);
+        features[6] = flag(flags, COMMAND_INJECTION);
+        // Method (one-hot encoding)
+        features[7] = request.method().equals("GET") ? 1.0 : 0.0;
+        features[8] = request.method().equals("POST") ? 1.0 : 0.0;
+        // Header features
+        features[12] = Math.min(request.headerCount() / 30.0, 1.0);
+        features[13] = hasSuspiciousUserAgent(request.userAgent()) ? 1.0 : 0.0;
+        // Content features
+        features[14] = Math.min(request.contentLength() / 10000.0, 1.0);
+        // Advanced features
+        features[22] = entropy;
+        features[23] = flag(flags, ENCODED_PAYLOAD);
+        features[24] = Math.min(pathDepth / 10.0, 1.0);
+    }
+
+    /** SQL, XSS, path traversal, command injection or a known scanner. */
+    static boolean isObviousAttack(double[] features) {
+        return features[3] > 0 || features[4] > 0 || features[5] > 0 || features[6] > 0 || features[13] > 0;
+    }
+
+    private static int scan(String s, Scratch scratch) {
+        int flags = 0;
+        int length = s.length();
+        for (int i = 0; i < length; i++) {
+            char c = s.charAt(i);
+            countChar(scratch, c);
+            switch (c) {
+                case '<' -> {
+                    flags |= SPECIAL_CHARS;
+                    if (s.regionMatches(true, i, "<script", 0, 7)) {
+                        flags |= XSS_PATTERNS;
+                    }
+                }
+                case '>', '\'', '"', '(', ')' -> flags |= SPECIAL_CHARS;
+                case '%' -> {
+                    flags |= SPECIAL_CHARS;
+                    if (i + 2 < length && isHex(s.charAt(i + 1)) && isHex(s.charAt(i + 2))) {
+                        flags |= ENCODED_PAYLOAD;
+                    }
+                }
+                case '+' -> flags |= SPECIAL_CHARS | ENCODED_PAYLOAD;
+                case ';' -> {
+                    flags |= SPECIAL_CHARS;
+                    if (commandAt(s, i + 1)) {
+                        flags |= COMMAND_INJECTION;
+                    }
+                }
+                case '&' -> {
+                    flags |= SPECIAL_CHARS;
+                    if (i + 1 < length && s.charAt(i + 1) == '&' && commandAt(s, i + 2)) {
+                        flags |= COMMAND_INJECTION;
+                    }
+                }
+                case '|' -> {
+                    int next = i + 1 < length && s.charAt(i + 1) == '|' ? i + 2 : i + 1;
+                    if (commandAt(s, next)) {
+                        flags |= COMMAND_INJECTION;
+                    }
+                }
+                case '/' -> scratch.slashes++;
+                case '.' -> {
+                    if (s.startsWith("../", i)) {
+                        flags |= PATH_TRAVERSAL;
+                    }
+                }
+                default -> flags |= keywordAt(s, i, c);
+            }
+        }
+        return flags;
+    }
+
+    // Only the letters a keyword can start with are looked at further
+    private static int keywordAt(String s, int i, char c) {
+        return switch (c | 0x20) {
+            case 's' -> matches(s, i, "select") || matches(s, i, "script") ? SQL_KEYWORDS : 0;
+            case 'i' -> matches(s, i, "insert") ? SQL_KEYWORDS : 0;
+            case 'u' -> matches(s, i, "union") ? SQL_KEYWORDS : 0;
+            case 'e' -> matches(s, i, "exec") ? SQL_KEYWORDS : 0;
+            case 'd' -> matches(s, i, "drop") ? SQL_KEYWORDS : 0;
+            case 'j' -> matches(s, i, "javascript:") ? XSS_PATTERNS : 0;
+            case 'o' -> matches(s, i, "onload=") || matches(s, i, "onerror=") ? XSS_PATTERNS : 0;
+            default -> 0;
+        };
+    }
+
+    // A shell command after optional whitespace
+    private static boolean commandAt(String s, int i) {
+        while (i < s.length() && isWhitespace(s.charAt(i))) {
+            i++;
+        }
+        for (String command : COMMANDS) {
+            if (matches(s, i, command)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSuspiciousUserAgent(String ua) {
+        if (ua == null) {
+            return false;
+        }
+        for (int i = 0; i < ua.length(); i++) {
+            for (String scanner : SCANNERS) {
+                if (matches(ua, i, scanner)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matches(String s, int i, String keyword) {
+        return s.regionMatches(true, i, keyword, 0, keyword.length());
+    }
+
+    private static boolean isHex(char c) {
+        return (c >= '0' && c <= '9') || ((c | 0x20) >= 'a' && (c | 0x20) <= 'f');
+    }
+
+    // Same characters as \s in a regex
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static double flag(int flags, int bit) {
+        return (flags & bit) != 0 ? 1.0 : 0.0;
+    }
+
+    // Like String.split("&").length: trailing empty parameters are not counted
+    private static int countParams(String query) {
+        if (query == null) {
+            return 0;
+        }
+        if (query.isEmpty()) {
+            return 1;
+        }
+        int params = 0;
+        int segment = 0;
+        int segmentStart = 0;
+        for (int i = 0; i <= query.length(); i++) {
+            if (i == query.length() || query.charAt(i) == '&') {
+                if (i > segmentStart) {
+                    params = segment + 1;
+                }
+                segment++;
+                segmentStart = i + 1;
+            }
+        }
+        return params;
+    }
+
+    private static void countChar(Scratch scratch, char c) {
+        if (c >= 256) {
+            scratch.wide = true;
+        } else if (scratch.counts[c]++ == 0) {
+            scratch.seen[scratch.distinct++] = c;
+        }
+    }
+
+    /** Shannon entropy of the URL characters, normalized to 0..1. Resets the scratch histogram. */
+    private static double entropy(Scratch scratch, String path, String query, int length) {
+        double entropy = 0;
+        for (int i = 0; i < scratch.distinct; i++) {
+            char c = scratch.seen[i];
+            if (!scratch.wide) {
+                double p = (double) scratch.counts[c] / length;
+                entropy -= p * (Math.log(p) / Math.log(2));
+            }
+            scratch.counts[c] = 0;
+        }
+        scratch.distinct = 0;
+        if (scratch.wide) {
+            // Rare: non Latin-1 characters in the URL, count them the slow way
+            scratch.wide = false;
+            entropy = wideEntropy(query != null ? path + "?" + query : path);
+        }
+        return length == 0 ? 0.0 : Math.min(entropy / 8.0, 1.0);
+    }
+
+    private static double wideEntropy(String text) {
+        return text.chars().boxed()
+                .collect(Collectors.groupingBy(Function.identity(), Collectors.counting()))
+                .values().stream()
+                .mapToDouble(count -> (double) count / text.length())
+                .map(p -> -p * (Math.log(p) / Math.log(2)))
+                .sum();
+    }
+}
@@ -2,14 +2,12 @@ package org.example.waf;
 
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -20,9 +18,6 @@ import org.deeplearning4j.nn.conf.layers.OutputLayer;
 import org.deeplearning4j.nn.multilayer.MultiLayerNetwork;
 import org.deeplearning4j.nn.weights.WeightInit;
 import org.nd4j.linalg.activations.Activation;
-import org.nd4j.linalg.api.ndarray.INDArray;
-import org.nd4j.linalg.dataset.DataSet;
-import org.nd4j.linalg.factory.Nd4j;
 import org.nd4j.linalg.learning.config.Adam;
 import org.nd4j.linalg.lossfunctions.LossFunctions;
 
@@ -38,6 +33,16 @@ import jakarta.ws.rs.core.Context;
 import jakarta.ws.rs.core.Response;
 import jakarta.ws.rs.ext.Provider;
 
+/**
+ * Checks every request before it is matched to a resource.
+ *
+ * On the request thread only the cheap checks run: the sliding window rate
+ * limit, clients blocked after earlier anomalies, and the known attack
+ * patterns, all on features from a single pass over the URL. Autoencoder
+ * scoring and training run on background threads ({@link AnomalyDetector}).
+ * A high-confidence anomaly therefore blocks the client's following requests,
+ * not the request that was scored.
+ */
 @Provider
 @ApplicationScoped
 @PreMatching
@@ -49,38 +54,51 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
     @Context
     HttpServerRequest vertxRequest;
 
+    private static final WAFDecision RATE_LIMITED = new WAFDecision(true, WAFAction.RATE_LIMIT, 1.0, -1,
+            "Rate limit exceeded");
+    private static final WAFDecision KNOWN_ATTACK = new WAFDecision(true, WAFAction.BLOCK, 1.0, -1,
+            "Known attack pattern detected");
+    private static final WAFDecision BLOCKED_CLIENT = new WAFDecision(true, WAFAction.BLOCK, 1.0, -1,
+            "Client blocked after anomalous requests");
+    // The reconstruction error is not known yet when the request is let through
+    private static final WAFDecision ALLOWED = new WAFDecision(false, WAFAction.ALLOW, 0.0, -1, "Request allowed");
+
     // Model and configuration
-    private MultiLayerNetwork autoEncoder;
-    private final int inputSize = 25; // Size of our feature vector
+    private final int inputSize = FeatureExtractor.SIZE; // Size of our feature vector
     private volatile double anomalyThreshold = 0.15;
 
-    // Thread-safe collections for tracking and training
-    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
-    private final Map<String, AtomicLong> lastRequestTime = new ConcurrentHashMap<>();
-    private final Queue<double[]> trainingBuffer = new ConcurrentLinkedQueue<>();
-    private final Queue<WAFLogEntry> auditLog = new ConcurrentLinkedQueue<>();
-
     // WAF parameters
     private final int bufferSize = 2000; // Max requests to hold for training
     private final int maxAuditLogSize = 10000;
     private final long rateLimitWindow = 60000; // 1 minute
+    private final int rateLimitBuckets = 6; // 10 second buckets
     private final int maxRequestsPerWindow = 100;
+    private final int inferenceQueueSize = 8192; // Samples waiting for scoring, more are dropped
+    private final int inferenceBatchSize = 64;
+    private final long anomalyBlockMillis = 300000; // 5 minutes
+
+    // Thread-safe collections for tracking
+    private final Map<String, Long> blockedUntil = new ConcurrentHashMap<>();
+    private final BlockingQueue<WAFLogEntry> auditLog = new ArrayBlockingQueue<>(maxAuditLogSize);
+    private SlidingWindowRateLimiter rateLimiter;
+    private AnomalyDetector detector;
 
     // Scheduler for background tasks
     private ScheduledExecutorService scheduler;
-    private final AtomicInteger trainingCycle = new AtomicInteger(0);
 
     @PostConstruct
     public void init() {
         logger.info("Initializing Self-Learning WAF Filter...");
-        initializeModel();
+        rateLimiter = new SlidingWindowRateLimiter(rateLimitWindow, rateLimitBuckets, maxRequestsPerWindow);
+        detector = new AnomalyDetector(initializeModel(), inputSize, inferenceQueueSize, inferenceBatchSize,
+                bufferSize, this::onScored);
         scheduler = Executors.newScheduledThreadPool(2);
 
         // Schedule periodic training to run every 5 minutes
-        scheduler.scheduleAtFixedRate(this::performIncrementalTraining, 5, 5, TimeUnit.MINUTES);
+        scheduler.scheduleAtFixedRate(detector::train, 5, 5, TimeUnit.MINUTES);
 
-        // Schedule data cleanup to run every hour
-        scheduler.scheduleAtFixedRate(this::cleanupOldData, 1, 1, TimeUnit.HOURS);
+        // Schedule data cleanup to run every minute
+        scheduler.scheduleAtFixedRate(this::cleanupOldData, 1, 1, TimeUnit.MINUTES);
 
         logger.info("Self-Learning WAF Filter initialized successfully.");
     }
@@ -91,11 +109,14 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
         if (scheduler != null) {
             scheduler.shutdownNow();
         }
+        if (detector != null) {
+            detector.close();
+        }
     }
 
     @Override
     public void filter(ContainerRequestContext requestContext) {
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
         try {
             // 1. Extract request info
             RestRequestInfo requestInfo = extractRequestInfo(requestContext);
@@ -104,7 +125,7 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
             WAFDecision decision = analyzeRequest(requestInfo);
 
             // 3. Log the outcome
-            logDecision(requestInfo, decision, System.currentTimeMillis() - startTime);
+            logDecision(requestInfo, decision, (System.nanoTime() - startTime) / 1000);
 
             // 4. Act on the decision
             switch (decision.action()) {
@@ -127,7 +148,7 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
         }
     }
 
-    private void initializeModel() {
+    private MultiLayerNetwork initializeModel() {
         MultiLayerConfiguration conf = new NeuralNetConfiguration.Builder()
                 .seed(12345)
                 .weightInit(WeightInit.XAVIER)
@@ -144,17 +165,12 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
                         .nIn(20).nOut(inputSize).activation(Activation.SIGMOID).build())
                 .build();
 
-        autoEncoder = new MultiLayerNetwork(conf);
+        MultiLayerNetwork autoEncoder = new MultiLayerNetwork(conf);
         autoEncoder.init();
+        return autoEncoder;
     }
 
     private RestRequestInfo extractRequestInfo(ContainerRequestContext context) {
-        Map<String, String> headers = new HashMap<>();
-        context.getHeaders().forEach((key, values) -> {
-            if (!values.isEmpty())
-                headers.put(key, values.get(0));
-        });
-
         String contentLength = context.getHeaderString("Content-Length");
 
         return new RestRequestInfo(
@@ -163,14 +179,16 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
                 context.getUriInfo().getRequestUri().getQuery(),
                 getClientIP(context.getHeaderString("X-Forwarded-For")),
                 System.currentTimeMillis(),
-                headers,
+                context.getHeaders().size(),
+                context.getHeaderString("User-Agent"),
                 context.getMediaType() != null ? context.getMediaType().toString() : "",
                 contentLength != null ? Integer.parseInt(contentLength) : 0);
     }
 
     private String getClientIP(String xForwardedFor) {
         if (xForwardedFor != null && !xForwardedFor.isBlank()) {
-            return xForwardedFor.split(",")[0].trim();
+            int comma = xForwardedFor.indexOf(',');
+            return (comma < 0 ? xForwardedFor : xForwardedFor.substring(0, comma)).trim();
         }
         // Fallback to Vert.x request's remote address
         return vertxRequest.remoteAddress().host();
@@ -178,106 +196,44 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
 
     private WAFDecision analyzeRequest(RestRequestInfo request) {
         // 1. Check for rate limiting first
-        if (isRateLimited(request.clientIP(), request.timestamp())) {
-            return new WAFDecision(true, WAFAction.RATE_LIMIT, 1.0, -1, "Rate limit exceeded");
+        if (rateLimiter.isLimited(request.clientIP(), request.timestamp())) {
+            return RATE_LIMITED;
         }
 
-        // 2. Check for obvious, rule-based attack patterns
-        if (isObviousAttack(request)) {
-            return new WAFDecision(true, WAFAction.BLOCK, 1.0, -1, "Known attack pattern detected");
+        // 2. Clients whose earlier requests were high-confidence anomalies
+        Long until = blockedUntil.get(request.clientIP());
+        if (until != null && until > request.timestamp()) {
+            return BLOCKED_CLIENT;
         }
 
-        // 3. Use the Autoencoder for anomaly detection
-        double[] features = extractFeatures(request);
-        addToTrainingBuffer(features); // Add to buffer for future training
-
-        INDArray input = Nd4j.create(features).reshape(1, inputSize);
-        INDArray reconstructed = autoEncoder.output(input);
-        double error = input.sub(reconstructed).mul(input).sumNumber().doubleValue() / inputSize;
-
-        boolean isAnomaly = error > anomalyThreshold;
-        double confidence = Math.min(error / anomalyThreshold, 2.0); // Cap confidence at 2.0
-
-        if (isAnomaly) {
-            String reason = "High-confidence anomaly. Error: " + String.format("%.4f", error);
-            // Block if confidence is very high, otherwise just log it
-            WAFAction action = (confidence > 1.5) ? WAFAction.BLOCK : WAFAction.LOG_ONLY;
-            return new WAFDecision(true, action, confidence, error, reason);
-        }
-
-        // 4. If nothing is suspicious, allow the request
-        return new WAFDecision(false, WAFAction.ALLOW, 0.0, error, "Request allowed");
-    }
-
-    private double[] extractFeatures(RestRequestInfo request) {
+        // 3. Check for obvious, rule-based attack patterns
         double[] features = new double[inputSize];
-        String fullUrl = request.path() + (request.query() != null ? "?" + request.query() : "");
-        Map<String, String> headers = request.headers();
-
-        // Basic features
-        features[0] = Math.min(fullUrl.length() / 250.0, 1.0);
-        features[1] = Math.min(countParams(request.query()) / 20.0, 1.0);
-        features[2] = hasSpecialChars(fullUrl) ? 1.0 : 0.0;
-        features[3] = hasSqlKeywords(fullUrl) ? 1.0 : 0.0;
-        features[4] = hasXssPatterns(fullUrl) ? 1.0 : 0.0;
-        features[5] = hasPathTraversal(fullUrl) ? 1.0 : 0.0;
-        features[6] = hasCommandInjection(fullUrl) ? 1.0 : 0.0;
-        // Method (one-hot encoding)
-        features[7] = request.method().equals("GET") ? 1.0 : 0.0;
-        features[8] = request.method().equals("POST") ? 1.0 : 0.0;
-        // Header features
-        features[12] = Math.min(headers.size() / 30.0, 1.0);
-        features[13] = hasSuspiciousUserAgent(headers.get("User-Agent")) ? 1.0 : 0.0;
-        // Content features
-        features[14] = Math.min(request.contentLength() / 10000.0, 1.0);
-        // Advanced features
-        features[22] = getEntropyScore(fullUrl);
-        features[23] = hasEncodedPayload(fullUrl) ? 1.0 : 0.0;
-        features[24] = Math.min(getPathDepth(request.path()) / 10.0, 1.0);
-
-        return features;
-    }
-
-    private boolean isObviousAttack(RestRequestInfo request) {
-        String fullUrl = request.path() + (request.query() != null ? "?" + request.query() : "");
-        String userAgent = request.headers().get("User-Agent");
-        return hasSqlKeywords(fullUrl) || hasXssPatterns(fullUrl) || hasPathTraversal(fullUrl)
-                || hasCommandInjection(fullUrl) || hasSuspiciousUserAgent(userAgent);
-    }
-
-    private boolean isRateLimited(String clientIP, long timestamp) {
-        long now = System.currentTimeMillis();
-        lastRequestTime.put(clientIP, new AtomicLong(now));
-        AtomicInteger count = requestCounts.computeIfAbsent(clientIP, k -> new AtomicInteger(0));
-
-        // This is a simplified sliding window check
-        if (now - lastRequestTime.get(clientIP).get() > rateLimitWindow) {
-            count.set(1); // Reset count for new window
-            return false;
+        FeatureExtractor.extract(request, features);
+        if (FeatureExtractor.isObviousAttack(features)) {
+            return KNOWN_ATTACK;
         }
 
-        return count.incrementAndGet() > maxRequestsPerWindow;
+        // 4. Hand the request to the autoencoder, see onScored
+        detector.submit(new Sample(request, features, System.nanoTime()));
+        return ALLOWED;
     }
 
-    private void performIncrementalTraining() {
-        if (trainingBuffer.size() < 100) {
-            logger.info("Skipping training cycle, not enough data.");
-            return; // Don't train on too few samples
+    // Called on the inference thread
+    private void onScored(Sample sample, double error) {
+        boolean isAnomaly = error > anomalyThreshold;
+        if (!isAnomaly) {
+            return;
         }
 
-        try {
-            double[][] data = trainingBuffer.toArray(new double[0][]);
-            INDArray trainingData = Nd4j.create(data);
-            DataSet dataSet = new DataSet(trainingData, trainingData);
-
-            logger.info("Starting incremental training cycle #" + trainingCycle.incrementAndGet() + " with "
-                    + data.length + " samples.");
-            autoEncoder.fit(dataSet);
-            logger.info("Training complete. Current anomaly threshold: " + anomalyThreshold);
-
-        } catch (Exception e) {
-            logger.log(Level.WARNING, "Error during incremental training", e);
+        double confidence = Math.min(error / anomalyThreshold, 2.0); // Cap confidence at 2.0
+        String reason = "High-confidence anomaly. Error: " + String.format("%.4f", error);
+        // Block the client if confidence is very high, otherwise just log it
+        WAFAction action = (confidence > 1.5) ? WAFAction.BLOCK : WAFAction.LOG_ONLY;
+        if (action == WAFAction.BLOCK) {
+            blockedUntil.put(sample.request().clientIP(), System.currentTimeMillis() + anomalyBlockMillis);
         }
+        logDecision(sample.request(), new WAFDecision(true, action, confidence, error, reason),
+                (System.nanoTime() - sample.receivedNanos()) / 1000);
     }
 
     // Utility methods for aborting, logging, cleanup, and pattern matching
@@ -291,88 +247,36 @@ public class SelfLearningWAFFilter implements ContainerRequestFilter {
         context.abortWith(response);
     }
 
-    private void logDecision(RestRequestInfo request, WAFDecision decision, long processingTime) {
+    private void logDecision(RestRequestInfo request, WAFDecision decision, long processingMicros) {
         WAFLogEntry logEntry = new WAFLogEntry(System.currentTimeMillis(), request.clientIP(), request.method(),
-                request.path(), decision.action(), decision.reconstructionError(), processingTime, decision.reason());
-        if (auditLog.size() >= maxAuditLogSize)
+                request.path(), decision.action(), decision.reconstructionError(), processingMicros, decision.reason());
+        // Bounded ring: drop the oldest entry when full
+        while (!auditLog.offer(logEntry))
             auditLog.poll();
-        auditLog.offer(logEntry);
 
         if (decision.action() != WAFAction.ALLOW) {
             logger.info("WAF Decision: " + logEntry);
         }
     }
 
-    private void addToTrainingBuffer(double[] features) {
-        if (trainingBuffer.size() >= bufferSize)
-            trainingBuffer.poll();
-        trainingBuffer.offer(features);
-    }
-
     private void cleanupOldData() {
-        long oneHourAgo = System.currentTimeMillis() - 3_600_000;
-        lastRequestTime.entrySet().removeIf(entry -> entry.getValue().get() < oneHourAgo);
-        requestCounts.keySet().retainAll(lastRequestTime.keySet());
-        logger.info("Cleanup complete. Tracking " + requestCounts.size() + " active clients.");
-    }
-
-    // --- Pattern Matching Helpers ---
-    private boolean hasSpecialChars(String s) {
-        return s != null && s.matches(".*[<>'\"%;()&+].*");
-    }
-
-    private boolean hasSqlKeywords(String s) {
-        return s != null && s.toLowerCase().matches(".*(select|insert|union|script|exec|drop).*");
-    }
-
-    private boolean hasXssPatterns(String s) {
-        return s != null && s.toLowerCase().matches(".*(<script|javascript:|onload=|onerror=).*");
-    }
-
-    private boolean hasPathTraversal(String s) {
-        return s != null && s.contains("../");
-    }
-
-    private boolean hasCommandInjection(String s) {
-        return s != null && s.toLowerCase().matches(".*(;|\\|\\|?|&&)\\s*(cat|ls|pwd|whoami).*");
-    }
-
-    private boolean hasSuspiciousUserAgent(String ua) {
-        return ua != null && ua.toLowerCase().matches(".*(sqlmap|nikto|nessus|burp).*");
-    }
-
-    private boolean hasEncodedPayload(String s) {
-        return s != null && s.matches(".*(%[0-9a-fA-F]{2}|\\+).*");
-    }
-
-    private int countParams(String q) {
-        return q == null ? 0 : q.split("&").length;
-    }
-
-    private double getPathDepth(String p) {
-        return p == null ? 0 : p.chars().filter(ch -> ch == '/').count();
-    }
-
-    private double getEntropyScore(String text) {
-        if (text == null || text.isEmpty())
-            return 0.0;
-        Map<Character, Integer> freq = new HashMap<>();
-        text.chars().forEach(c -> freq.put((char) c, freq.getOrDefault((char) c, 0) + 1));
-        double entropy = freq.values().stream()
-                .mapToDouble(count -> (double) count / text.length())
-                .map(p -> -p * (Math.log(p) / Math.log(2)))
-                .sum();
-        return Math.min(entropy / 8.0, 1.0); // Normalize
+        long now = System.currentTimeMillis();
+        rateLimiter.evictIdle(now);
+        blockedUntil.values().removeIf(until -> until <= now);
+        logger.fine("Cleanup complete. Tracking " + rateLimiter.trackedClients() + " active clients.");
     }
 
     // Public accessors for management endpoint
     public Map<String, Object> getStatistics() {
         Map<String, Object> stats = new HashMap<>();
-        stats.put("trackedClients", requestCounts.size());
-        stats.put("trainingBufferSize", trainingBuffer.size());
+        stats.put("trackedClients", rateLimiter.trackedClients());
+        stats.put("blockedClients", blockedUntil.size());
+        stats.put("trainingBufferSize", detector.trainingSamples());
+        stats.put("inferenceQueueSize", detector.queuedSamples());
+        stats.put("droppedSamples", detector.droppedSamples());
         stats.put("auditLogSize", auditLog.size());
         stats.put("anomalyThreshold", anomalyThreshold);
-        stats.put("trainingCycles", trainingCycle.get());
+        stats.put("trainingCycles", detector.trainingCycles());
         return stats;
     }
 
@@ -0,0 +1,82 @@
+package org.example.waf;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Per-client sliding window rate limit.
+ *
+ * The window is split into time buckets. Each client has a few counter
+ * stripes per bucket, picked by thread, so concurrent requests of one client
+ * rarely hit the same cell. A cell packs the bucket number with its count in
+ * one long: a cell left over from an earlier bucket is reset and counted with
+ * a single CAS. A request of a known client takes no lock and allocates nothing.
+ */
+final class SlidingWindowRateLimiter {
+
+    private static final int COUNT_BITS = 24;
+    private static final long COUNT_MASK = (1L << COUNT_BITS) - 1;
+
+    private final long bucketMillis;
+    private final int buckets;
+    private final int stripes;
+    private final int maxRequests;
+    private final ConcurrentHashMap<String, AtomicLongArray> clients = new ConcurrentHashMap<>();
+
+    SlidingWindowRateLimiter(long windowMillis, int buckets, int maxRequests) {
+        this.bucketMillis = Math.max(1, windowMillis / buckets);
+        this.buckets = buckets;
+        // Power of two, so the stripe is a mask of the thread id
+        this.stripes = Integer.highestOneBit(Math.min(Runtime.getRuntime().availableProcessors(), 8));
+        this.maxRequests = maxRequests;
+    }
+
+    /** Counts the request and tells whether the client went over the limit. */
+    boolean isLimited(String client, long nowMillis) {
+        AtomicLongArray cells = clients.get(client);
+        if (cells == null) {
+            cells = clients.computeIfAbsent(client, k -> new AtomicLongArray(buckets * stripes));
+        }
+
+        long bucket = nowMillis / bucketMillis;
+        int cell = (int) (bucket % buckets) * stripes + (int) (Thread.currentThread().threadId() & (stripes - 1));
+        long current;
+        long next;
+        do {
+            current = cells.get(cell);
+            if ((current >>> COUNT_BITS) != bucket) {
+                next = (bucket << COUNT_BITS) | 1;
+            } else if ((current & COUNT_MASK) < COUNT_MASK) {
+                next = current + 1;
+            } else {
+                break;
+            }
+        } while (!cells.compareAndSet(cell, current, next));
+
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            long value = cells.get(i);
+            if (bucket - (value >>> COUNT_BITS) < buckets) {
+                total += value & COUNT_MASK;
+            }
+        }
+        return total > maxRequests;
+    }
+
+    /** Forgets clients without a request in the current window. */
+    void evictIdle(long nowMillis) {
+        long bucket = nowMillis / bucketMillis;
+        clients.values().removeIf(cells -> {
+            for (int i = 0; i < cells.length(); i++) {
+                if (bucket - (cells.get(i) >>> COUNT_BITS) < buckets) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    int trackedClients() {
+        return clients.size();
+    }
+}
@@ -1,7 +1,5 @@
 package org.example.waf;
 
-import java.util.Map;
-
 enum WAFAction {
     ALLOW, BLOCK, RATE_LIMIT, LOG_ONLY
 }
@@ -12,11 +10,19 @@ record RestRequestInfo(
         String query,
         String clientIP,
         long timestamp,
-        Map<String, String> headers,
+        int headerCount,
+        String userAgent,
         String contentType,
         int contentLength) {
 }
 
+// A request waiting to be scored by the autoencoder
+record Sample(
+        RestRequestInfo request,
+        double[] features,
+        long receivedNanos) {
+}
+
 record WAFDecision(
         boolean isAnomaly,
         WAFAction action,
@@ -32,6 +38,6 @@ record WAFLogEntry(
         String path,
         WAFAction action,
         double reconstructionError,
-        long processingTime,
+        long processingMicros,
         String reason) {
 }
\ No newline at end of file
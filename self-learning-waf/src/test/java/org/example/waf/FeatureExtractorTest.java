@@ -0,0 +1,111 @@
+package org.example.waf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class FeatureExtractorTest {
+
+    // Path, query, user agent
+    private static final String[][] REQUESTS = {
+            { "/api/orders", null, "Mozilla/5.0" },
+            { "/api/orders", "", null },
+            { "/api/orders", "page=2&size=20", "curl/8.4" },
+            { "/api/orders", "a=1&&b=2&", "curl/8.4" },
+            { "/search", "q=1||cat /etc/passwd", null },
+            { "/search", "q=1|cat", null },
+            { "/search", "q=1| \tls", null },
+            { "/search", "q=1|||whoami", null },
+            { "/search", "q=1;  PWD", null },
+            { "/search", "q=a&&whoami", null },
+            { "/search", "q=a&&&ls", null },
+            { "/search", "q=a|b", null },
+            { "/files/%2F..%2Fetc", null, null },
+            { "/files", "name=%2f&x=%G1&y=%4", null },
+            { "/files", "name=a+b", null },
+            { "/static/../../etc/passwd", null, null },
+            { "/static/..", "x=./.../", null },
+            { "/search", "q=1 UNION SELECT password FROM users", null },
+            { "/search", "q=DROP table", null },
+            { "/search", "q=<ScRiPt>alert(1)</script>", null },
+            { "/search", "q=javascript:alert('x')", null },
+            { "/img", "src=x onerror=alert(1)", null },
+            { "/", null, "sqlmap/1.7" },
+            { "/", null, "Mozilla/5.0 (compatible; Nikto)" },
+            { "/suche", "q=grüße", null },
+            { "/検索", "q=東京タワー&lang=日本語", null },
+            { "/emoji/😀", "x=😀😀", null },
+            { "", null, null },
+    };
+
+    @Test
+    void testMatchesRegexChecks() {
+        for (String[] request : REQUESTS) {
+            String path = request[0];
+            String query = request[1];
+            String userAgent = request[2];
+            double[] features = extract(path, query, userAgent);
+            String fullUrl = path + (query != null ? "?" + query : "");
+            String message = fullUrl + " / " + userAgent;
+
+            assertEquals(Math.min(fullUrl.length() / 250.0, 1.0), features[0], message);
+            assertEquals(Math.min((query == null ? 0 : query.split("&").length) / 20.0, 1.0), features[1], message);
+            assertEquals(flag(fullUrl.matches(".*[<>'\"%;()&+].*")), features[2], message);
+            assertEquals(flag(fullUrl.toLowerCase().matches(".*(select|insert|union|script|exec|drop).*")),
+                    features[3], message);
+            assertEquals(flag(fullUrl.toLowerCase().matches(".*(<script|javascript:|onload=|onerror=).*")),
+                    features[4], message);
+            assertEquals(flag(fullUrl.contains("../")), features[5], message);
+            assertEquals(flag(fullUrl.toLowerCase().matches(".*(;|\\|\\|?|&&)\\s*(cat|ls|pwd|whoami).*")),
+                    features[6], message);
+            assertEquals(flag(userAgent != null && userAgent.toLowerCase().matches(".*(sqlmap|nikto|nessus|burp).*")),
+                    features[13], message);
+            assertEquals(entropy(fullUrl), features[22], 1e-12, message);
+            assertEquals(flag(fullUrl.matches(".*(%[0-9a-fA-F]{2}|\\+).*")), features[23], message);
+            assertEquals(Math.min(path.chars().filter(c -> c == '/').count() / 10.0, 1.0), features[24], message);
+        }
+    }
+
+    @Test
+    void testEntropyAfterNonLatin1Request() {
+        // The histogram is reused per thread, a wide request must not leave counts behind
+        double before = extract("/api/orders", "page=2", null)[22];
+        extract("/検索", "q=東京", null);
+        assertEquals(before, extract("/api/orders", "page=2", null)[22]);
+    }
+
+    @Test
+    void testLineBreakDoesNotHidePattern() {
+        double[] features = extract("/search", "q=x%0A\n;cat /etc/passwd", null);
+        assertEquals(1.0, features[6]);
+        assertEquals(true, FeatureExtractor.isObviousAttack(features));
+    }
+
+    private static double[] extract(String path, String query, String userAgent) {
+        double[] features = new double[FeatureExtractor.SIZE];
+        FeatureExtractor.extract(new RestRequestInfo("GET", path, query, "10.0.0.1", 0, 5, userAgent, null, 0),
+                features);
+        return features;
+    }
+
+    private static double flag(boolean value) {
+        return value ? 1.0 : 0.0;
+    }
+
+    // The filter's former entropy score
+    private static double entropy(String text) {
+        if (text.isEmpty()) {
+            return 0.0;
+        }
+        Map<Character, Integer> freq = new HashMap<>();
+        text.chars().forEach(c -> freq.put((char) c, freq.getOrDefault((char) c, 0) + 1));
+        double entropy = freq.values().stream()
+                .mapToDouble(count -> (double) count / text.length())
+                .map(p -> -p * (Math.log(p) / Math.log(2)))
+                .sum();
+        return Math.min(entropy / 8.0, 1.0);
+    }
+}
@@ -0,0 +1,94 @@
+package org.example.waf;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+public class SlidingWindowRateLimiterTest {
+
+    // Window of 1000 ms in buckets of 100 ms
+    private static final long START = 1_000_000;
+
+    @Test
+    void testLimit() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1000, 10, 5);
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.isLimited("a", START + i));
+        }
+        assertTrue(limiter.isLimited("a", START + 5));
+        // Other clients have their own count
+        assertFalse(limiter.isLimited("b", START + 5));
+    }
+
+    @Test
+    void testBucketRollover() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1000, 10, 5);
+        for (int i = 0; i < 4; i++) {
+            limiter.isLimited("a", START);
+        }
+        // Still in the window: 5 and 6 requests
+        assertFalse(limiter.isLimited("a", START + 900));
+        assertTrue(limiter.isLimited("a", START + 999));
+        // The first bucket's slot is reused, its 4 requests no longer count
+        assertFalse(limiter.isLimited("a", START + 1000));
+        // Only the request of this bucket is left
+        assertFalse(limiter.isLimited("a", START + 2000));
+        for (int i = 0; i < 4; i++) {
+            limiter.isLimited("a", START + 2000);
+        }
+        assertTrue(limiter.isLimited("a", START + 2000));
+    }
+
+    @Test
+    void testConcurrentRequestsAreAllCounted() throws Exception {
+        int threads = 8;
+        int requests = 10_000;
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1000, 10, threads * requests);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                done.add(executor.submit(() -> {
+                    for (int i = 0; i < requests; i++) {
+                        limiter.isLimited("a", START);
+                    }
+                }));
+            }
+            for (Future<?> future : done) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(limiter.isLimited("a", START));
+    }
+
+    @Test
+    void testEvictIdle() {
+        SlidingWindowRateLimiter limiter = new SlidingWindowRateLimiter(1000, 10, 5);
+        limiter.isLimited("a", START);
+        limiter.isLimited("b", START + 900);
+        assertEquals(2, limiter.trackedClients());
+
+        limiter.evictIdle(START + 999);
+        assertEquals(2, limiter.trackedClients());
+
+        limiter.evictIdle(START + 1000);
+        assertEquals(1, limiter.trackedClients());
+        // The evicted client starts over
+        for (int i = 0; i < 5; i++) {
+            assertFalse(limiter.isLimited("a", START + 1000));
+        }
+
+        limiter.evictIdle(START + 3000);
+        assertEquals(0, limiter.trackedClients());
+    }
+}
@@ -62,7 +62,7 @@ public class CustomerSupportResource {
     @DELETE
     @Path("/cache/clear")
     public void clearCache() {
-        cacheFactory.getCacheStore().clear();
+        cacheFactory.clear();
     }
 
 }
\ No newline at end of file
@@ -7,16 +7,31 @@ import java.util.concurrent.atomic.AtomicLong;
 /**
  * Thread-safe statistics tracker for semantic cache operations.
  * Provides metrics on cache hits, misses, and performance characteristics.
+ * Hits are tracked per tier (in-memory L1, PgVector L2) and latencies are
+ * recorded in histograms so tail latencies stay visible.
  */
 public class CacheStatistics {
 
+    /**
+     * Cache tier that served a lookup
+     */
+    public enum Tier {
+        L1, // In-memory front tier
+        L2 // PgVector store
+    }
+
     private final AtomicLong totalHits = new AtomicLong(0);
     private final AtomicLong totalMisses = new AtomicLong(0);
     private final AtomicLong exactMatchHits = new AtomicLong(0);
     private final AtomicLong semanticMatchHits = new AtomicLong(0);
+    private final AtomicLong l1Hits = new AtomicLong(0);
+    private final AtomicLong l2Hits = new AtomicLong(0);
+    private final AtomicLong coalescedRequests = new AtomicLong(0);
+    private final AtomicLong nearDuplicateCoalesced = new AtomicLong(0);
     private final AtomicLong totalEntries = new AtomicLong(0);
-    private final AtomicLong totalLookupTimeMs = new AtomicLong(0);
-    private final AtomicLong totalStoreTimeMs = new AtomicLong(0);
+    private final LatencyHistogram l1LookupLatency = new LatencyHistogram();
+    private final LatencyHistogram l2LookupLatency = new LatencyHistogram();
+    private final LatencyHistogram storeLatency = new LatencyHistogram();
     private final Instant startTime;
 
     public CacheStatistics() {
@@ -30,10 +45,16 @@ public class CacheStatistics {
     /**
      * Record a cache hit
      * 
+     * @param tier       the tier that served the hit
      * @param exactMatch true if it was an exact match, false if semantic match
      */
-    public void recordHit(boolean exactMatch) {
+    public void recordHit(Tier tier, boolean exactMatch) {
         totalHits.incrementAndGet();
+        if (tier == Tier.L1) {
+            l1Hits.incrementAndGet();
+        } else {
+            l2Hits.incrementAndGet();
+        }
         if (exactMatch) {
             exactMatchHits.incrementAndGet();
         } else {
@@ -48,22 +69,36 @@ public class CacheStatistics {
         totalMisses.incrementAndGet();
     }
 
+    /**
+     * Record a request that waited for an in-flight LLM call instead of making its own
+     * 
+     * @param nearDuplicate true if it joined a call for a near-duplicate prompt,
+     *                      false for an identical prompt
+     */
+    public void recordCoalesced(boolean nearDuplicate) {
+        coalescedRequests.incrementAndGet();
+        if (nearDuplicate) {
+            nearDuplicateCoalesced.incrementAndGet();
+        }
+    }
+
     /**
      * Record lookup execution time
      * 
-     * @param durationMs duration in milliseconds
+     * @param tier          the tier that was consulted
+     * @param durationNanos duration in nanoseconds
      */
-    public void recordLookupTime(long durationMs) {
-        totalLookupTimeMs.addAndGet(durationMs);
+    public void recordLookupTime(Tier tier, long durationNanos) {
+        (tier == Tier.L1 ? l1LookupLatency : l2LookupLatency).record(durationNanos);
     }
 
     /**
      * Record store execution time
      * 
-     * @param durationMs duration in milliseconds
+     * @param durationNanos duration in nanoseconds
      */
-    public void recordStoreTime(long durationMs) {
-        totalStoreTimeMs.addAndGet(durationMs);
+    public void recordStoreTime(long durationNanos) {
+        storeLatency.record(durationNanos);
     }
 
     /**
@@ -109,6 +144,22 @@ public class CacheStatistics {
         return semanticMatchHits.get();
     }
 
+    public long getL1Hits() {
+        return l1Hits.get();
+    }
+
+    public long getL2Hits() {
+        return l2Hits.get();
+    }
+
+    public long getCoalescedRequests() {
+        return coalescedRequests.get();
+    }
+
+    public long getNearDuplicateCoalesced() {
+        return nearDuplicateCoalesced.get();
+    }
+
     public long getTotalEntries() {
         return totalEntries.get();
     }
@@ -117,14 +168,16 @@ public class CacheStatistics {
         return totalHits.get() + totalMisses.get();
     }
 
-    public long getAverageLookupTimeMs() {
-        long requests = getTotalRequests();
-        return requests == 0 ? 0 : totalLookupTimeMs.get() / requests;
+    public LatencyHistogram getL1LookupLatency() {
+        return l1LookupLatency;
     }
 
-    public long getAverageStoreTimeMs() {
-        long hits = totalMisses.get(); // Stores happen on misses
-        return hits == 0 ? 0 : totalStoreTimeMs.get() / hits;
+    public LatencyHistogram getL2LookupLatency() {
+        return l2LookupLatency;
+    }
+
+    public LatencyHistogram getStoreLatency() {
+        return storeLatency;
     }
 
     public Instant getStartTime() {
@@ -187,6 +240,16 @@ public class CacheStatistics {
         return hits == 0 ? 0.0 : (double) semanticMatchHits.get() / hits;
     }
 
+    /**
+     * Calculate percentage of hits served by the in-memory L1 tier
+     * 
+     * @return percentage (0.0 to 1.0)
+     */
+    public double getL1HitRate() {
+        long hits = totalHits.get();
+        return hits == 0 ? 0.0 : (double) l1Hits.get() / hits;
+    }
+
     /**
      * Calculate requests per second since cache start
      * 
@@ -209,8 +272,13 @@ public class CacheStatistics {
         totalMisses.set(0);
         exactMatchHits.set(0);
         semanticMatchHits.set(0);
-        totalLookupTimeMs.set(0);
-        totalStoreTimeMs.set(0);
+        l1Hits.set(0);
+        l2Hits.set(0);
+        coalescedRequests.set(0);
+        nearDuplicateCoalesced.set(0);
+        l1LookupLatency.reset();
+        l2LookupLatency.reset();
+        storeLatency.reset();
         // Note: totalEntries and startTime are not reset
     }
 
@@ -225,10 +293,15 @@ public class CacheStatistics {
                 totalMisses.get(),
                 exactMatchHits.get(),
                 semanticMatchHits.get(),
+                l1Hits.get(),
+                l2Hits.get(),
+                coalescedRequests.get(),
+                nearDuplicateCoalesced.get(),
                 totalEntries.get(),
                 getHitRate(),
-                getAverageLookupTimeMs(),
-                getAverageStoreTimeMs(),
+                l1LookupLatency.getSummary(),
+                l2LookupLatency.getSummary(),
+                storeLatency.getSummary(),
                 startTime,
                 getUptime());
     }
@@ -240,17 +313,23 @@ public class CacheStatistics {
     public String toString() {
         return String.format(
                 "CacheStatistics{requests=%d, hits=%d (%.1f%%), misses=%d, " +
+                        "l1Hits=%d, l2Hits=%d, coalesced=%d (nearDuplicate=%d), " +
                         "exactMatches=%d, semanticMatches=%d, entries=%d, " +
-                        "avgLookupMs=%d, avgStoreMs=%d, uptime=%s}",
+                        "l1Lookup=%s, l2Lookup=%s, store=%s, uptime=%s}",
                 getTotalRequests(),
                 totalHits.get(),
                 getHitRatePercent(),
                 totalMisses.get(),
+                l1Hits.get(),
+                l2Hits.get(),
+                coalescedRequests.get(),
+                nearDuplicateCoalesced.get(),
                 exactMatchHits.get(),
                 semanticMatchHits.get(),
                 totalEntries.get(),
-                getAverageLookupTimeMs(),
-                getAverageStoreTimeMs(),
+                l1LookupLatency.getSummary(),
+                l2LookupLatency.getSummary(),
+                storeLatency.getSummary(),
                 formatDuration(getUptime()));
     }
 
@@ -280,10 +359,15 @@ public class CacheStatistics {
         private final long totalMisses;
         private final long exactMatchHits;
         private final long semanticMatchHits;
+        private final long l1Hits;
+        private final long l2Hits;
+        private final long coalescedRequests;
+        private final long nearDuplicateCoalesced;
         private final long totalEntries;
         private final double hitRate;
-        private final long averageLookupTimeMs;
-        private final long averageStoreTimeMs;
+        private final LatencyHistogram.Summary l1LookupLatency;
+        private final LatencyHistogram.Summary l2LookupLatency;
+        private final LatencyHistogram.Summary storeLatency;
         private final Instant startTime;
         private final Duration uptime;
 
@@ -292,20 +376,30 @@ public class CacheStatistics {
                 long totalMisses,
                 long exactMatchHits,
                 long semanticMatchHits,
+                long l1Hits,
+                long l2Hits,
+                long coalescedRequests,
+                long nearDuplicateCoalesced,
                 long totalEntries,
                 double hitRate,
-                long averageLookupTimeMs,
-                long averageStoreTimeMs,
+                LatencyHistogram.Summary l1LookupLatency,
+                LatencyHistogram.Summary l2LookupLatency,
+                LatencyHistogram.Summary storeLatency,
                 Instant startTime,
                 Duration uptime) {
             this.totalHits = totalHits;
             this.totalMisses = totalMisses;
             this.exactMatchHits = exactMatchHits;
             this.semanticMatchHits = semanticMatchHits;
+            this.l1Hits = l1Hits;
+            this.l2Hits = l2Hits;
+            this.coalescedRequests = coalescedRequests;
+            this.nearDuplicateCoalesced = nearDuplicateCoalesced;
             this.totalEntries = totalEntries;
             this.hitRate = hitRate;
-            this.averageLookupTimeMs = averageLookupTimeMs;
-            this.averageStoreTimeMs = averageStoreTimeMs;
+            this.l1LookupLatency = l1LookupLatency;
+            this.l2LookupLatency = l2LookupLatency;
+            this.storeLatency = storeLatency;
             this.startTime = startTime;
             this.uptime = uptime;
         }
@@ -327,6 +421,22 @@ public class CacheStatistics {
             return semanticMatchHits;
         }
 
+        public long getL1Hits() {
+            return l1Hits;
+        }
+
+        public long getL2Hits() {
+            return l2Hits;
+        }
+
+        public long getCoalescedRequests() {
+            return coalescedRequests;
+        }
+
+        public long getNearDuplicateCoalesced() {
+            return nearDuplicateCoalesced;
+        }
+
         public long getTotalEntries() {
             return totalEntries;
         }
@@ -335,12 +445,16 @@ public class CacheStatistics {
             return hitRate;
         }
 
-        public long getAverageLookupTimeMs() {
-            return averageLookupTimeMs;
+        public LatencyHistogram.Summary getL1LookupLatency() {
+            return l1LookupLatency;
+        }
+
+        public LatencyHistogram.Summary getL2LookupLatency() {
+            return l2LookupLatency;
         }
 
-        public long getAverageStoreTimeMs() {
-            return averageStoreTimeMs;
+        public LatencyHistogram.Summary getStoreLatency() {
+            return storeLatency;
         }
 
         public Instant getStartTime() {
@@ -359,11 +473,14 @@ public class CacheStatistics {
         public String toString() {
             return String.format(
                     "StatisticsSnapshot{requests=%d, hits=%d (%.1f%%), misses=%d, " +
-                            "exactMatches=%d, semanticMatches=%d, entries=%d}",
+                            "l1Hits=%d, l2Hits=%d, coalesced=%d, exactMatches=%d, semanticMatches=%d, entries=%d}",
                     getTotalRequests(),
                     totalHits,
                     hitRate * 100.0,
                     totalMisses,
+                    l1Hits,
+                    l2Hits,
+                    coalescedRequests,
                     exactMatchHits,
                     semanticMatchHits,
                     totalEntries);
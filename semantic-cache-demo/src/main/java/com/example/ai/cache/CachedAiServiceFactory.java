@@ -1,19 +1,44 @@
 package com.example.ai.cache;
 
 import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
+import com.example.ai.cache.proxy.RequestCoalescer;
 import com.example.ai.cache.proxy.SemanticCacheInvocationHandler;
+import com.example.ai.cache.store.L1SemanticCache;
 import com.example.ai.cache.store.SemanticCacheStore;
 
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 @ApplicationScoped
 public class CachedAiServiceFactory {
 
+    // Bounded write-through queue; when full, the caller writes synchronously
+    private static final int WRITE_QUEUE_CAPACITY = 1000;
+
     @Inject
     SemanticCacheStore cacheStore;
 
+    private final List<L1SemanticCache> l1Caches = new CopyOnWriteArrayList<>();
+
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    private final ThreadPoolExecutor writeExecutor = new ThreadPoolExecutor(
+            2, 2, 0L, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(WRITE_QUEUE_CAPACITY),
+            runnable -> {
+                Thread thread = new Thread(runnable, "semantic-cache-write");
+                thread.setDaemon(true);
+                return thread;
+            },
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
     /**
      * Wrap an AI service with semantic caching
      */
@@ -27,10 +52,17 @@ public class CachedAiServiceFactory {
                     "AI service must implement at least one interface");
         }
 
+        L1SemanticCache l1Cache = null;
+        if (config.getL1MaxEntries() > 0) {
+            l1Cache = new L1SemanticCache(config.getL1MaxEntries());
+            l1Caches.add(l1Cache);
+        }
+
         return (T) Proxy.newProxyInstance(
                 serviceClass.getClassLoader(),
                 interfaces,
-                new SemanticCacheInvocationHandler(aiService, cacheStore, config));
+                new SemanticCacheInvocationHandler(aiService, cacheStore, l1Cache, writeExecutor, coalescer,
+                        config));
     }
 
     /**
@@ -66,6 +98,14 @@ public class CachedAiServiceFactory {
         return cacheStore;
     }
 
+    /**
+     * Clear the in-memory L1 tiers and the backing store
+     */
+    public void clear() {
+        l1Caches.forEach(L1SemanticCache::clear);
+        cacheStore.clear();
+    }
+
     /**
      * Get cache statistics
      */
@@ -73,4 +113,11 @@ public class CachedAiServiceFactory {
         return cacheStore.getStatistics();
     }
 
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        // Let pending write-through entries reach the store
+        writeExecutor.shutdown();
+        writeExecutor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package com.example.ai.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe, fixed-size latency histogram with log-linear buckets.
+ * Each power of two is split into 16 sub-buckets, so recorded values keep
+ * a relative precision of about 6% from nanoseconds up to several minutes.
+ * Recording is lock-free and allocation-free.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // ~18 minutes in nanoseconds
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record one duration
+     *
+     * @param durationNanos duration in nanoseconds
+     */
+    public void record(long durationNanos) {
+        long value = Math.min(Math.max(durationNanos, 0), MAX_VALUE);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Get the value below which the given fraction of recorded durations fall
+     *
+     * @param percentile fraction between 0.0 and 1.0
+     * @return upper bound of the matching bucket in nanoseconds, 0 if empty
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(percentile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(bucketUpperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Reset all buckets to zero
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        max.set(0);
+    }
+
+    /**
+     * Get the common percentiles in microseconds
+     */
+    public Summary getSummary() {
+        return new Summary(
+                getCount(),
+                toMicros(getValueAtPercentile(0.50)),
+                toMicros(getValueAtPercentile(0.90)),
+                toMicros(getValueAtPercentile(0.99)),
+                toMicros(getValueAtPercentile(0.999)),
+                toMicros(max.get()));
+    }
+
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+    private static long toMicros(long nanos) {
+        return nanos / 1_000;
+    }
+
+    /**
+     * Latency percentiles in microseconds
+     */
+    public record Summary(long count, long p50Micros, long p90Micros, long p99Micros,
+            long p999Micros, long maxMicros) {
+
+        @Override
+        public String toString() {
+            return String.format("{n=%d, p50=%dus, p90=%dus, p99=%dus, max=%dus}",
+                    count, p50Micros, p90Micros, p99Micros, maxMicros);
+        }
+    }
+}
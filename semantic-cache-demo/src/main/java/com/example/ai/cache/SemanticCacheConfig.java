@@ -8,6 +8,8 @@ public class SemanticCacheConfig {
     private final Duration ttl;
     private final String embeddingModelName;
     private final CacheStrategy strategy;
+    private final int l1MaxEntries;
+    private final Duration coalescingWindow;
 
     private SemanticCacheConfig(Builder builder) {
         this.enabled = builder.enabled;
@@ -15,6 +17,8 @@ public class SemanticCacheConfig {
         this.ttl = builder.ttl;
         this.embeddingModelName = builder.embeddingModelName;
         this.strategy = builder.strategy;
+        this.l1MaxEntries = builder.l1MaxEntries;
+        this.coalescingWindow = builder.coalescingWindow;
     }
 
     public static Builder builder() {
@@ -41,12 +45,22 @@ public class SemanticCacheConfig {
         return strategy;
     }
 
+    public int getL1MaxEntries() {
+        return l1MaxEntries;
+    }
+
+    public Duration getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
     public static class Builder {
         private boolean enabled = true;
         private double similarityThreshold = 0.85;
         private Duration ttl = Duration.ofHours(1);
         private String embeddingModelName = "default";
         private CacheStrategy strategy = CacheStrategy.SEMANTIC_ONLY;
+        private int l1MaxEntries = 1000;
+        private Duration coalescingWindow = Duration.ofSeconds(30);
 
         public Builder enabled(boolean enabled) {
             this.enabled = enabled;
@@ -73,6 +87,24 @@ public class SemanticCacheConfig {
             return this;
         }
 
+        /**
+         * Maximum number of responses kept in the in-memory L1 tier, 0 disables it
+         */
+        public Builder l1MaxEntries(int maxEntries) {
+            this.l1MaxEntries = maxEntries;
+            return this;
+        }
+
+        /**
+         * How long after an LLM call started concurrent requests for the same or
+         * a near-duplicate prompt may still join it, {@link Duration#ZERO} disables
+         * request coalescing
+         */
+        public Builder coalescingWindow(Duration window) {
+            this.coalescingWindow = window;
+            return this;
+        }
+
         public SemanticCacheConfig build() {
             return new SemanticCacheConfig(this);
         }
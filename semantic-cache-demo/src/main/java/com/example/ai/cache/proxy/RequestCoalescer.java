@@ -0,0 +1,176 @@
+package com.example.ai.cache.proxy;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
+
+/**
+ * Single-flight registry of cache misses in progress.
+ *
+ * Concurrent requests for the same normalized prompt share one flight: the
+ * first request becomes the leader and computes the embedding and the LLM
+ * response, later requests wait for its result. Once the leader has its
+ * embedding, it also registers the flight by embedding, so a request with a
+ * different but near-duplicate prompt can join it instead of calling the
+ * LLM again. Flights can only be joined within the coalescing window after
+ * they started.
+ */
+public class RequestCoalescer {
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    /**
+     * One in-flight LLM call and the requests waiting for it
+     */
+    public static final class Flight {
+        private final String key;
+        private final String llmString;
+        private final long startedNanos = System.nanoTime();
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+        private float[] embedding; // normalized, guarded by the registry list
+
+        private Flight(String key, String llmString) {
+            this.key = key;
+            this.llmString = llmString;
+        }
+
+        private boolean startedWithin(Duration window) {
+            return !result.isDone() && System.nanoTime() - startedNanos <= window.toNanos();
+        }
+    }
+
+    /**
+     * Result of joining: the flight and whether the caller leads it
+     */
+    public record Join(Flight flight, boolean leader) {
+    }
+
+    private final Map<String, Flight> byPrompt = new ConcurrentHashMap<>();
+    private final List<Flight> byEmbedding = new ArrayList<>();
+
+    /**
+     * Join the flight for this prompt, or start one if none started within the window
+     */
+    public Join join(String prompt, String llmString, Duration window) {
+        String key = llmString + '\u0000' + normalize(prompt);
+        Flight candidate = new Flight(key, llmString);
+        Flight flight = byPrompt.compute(key,
+                (k, existing) -> existing != null && existing.startedWithin(window) ? existing : candidate);
+        return new Join(flight, flight == candidate);
+    }
+
+    /**
+     * Find a flight for a near-duplicate prompt, or register this flight's embedding
+     * so later near-duplicates can join it
+     *
+     * @param flight              the flight led by the caller
+     * @param embedding           the prompt embedding
+     * @param similarityThreshold minimum cosine similarity of a near-duplicate
+     * @return the flight to wait for, or null if the caller should proceed
+     */
+    public Flight joinSimilar(Flight flight, float[] embedding, double similarityThreshold, Duration window) {
+        float[] normalized = normalize(embedding);
+        if (normalized == null) {
+            return null;
+        }
+        // Search and registration are atomic: a registered flight never waits for
+        // another one, so flights cannot wait for each other in a cycle
+        synchronized (byEmbedding) {
+            Flight best = null;
+            double bestSimilarity = similarityThreshold;
+            for (Flight other : byEmbedding) {
+                if (other == flight || !other.llmString.equals(flight.llmString)
+                        || other.embedding.length != normalized.length || !other.startedWithin(window)) {
+                    continue;
+                }
+                double similarity = dot(normalized, other.embedding);
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    best = other;
+                }
+            }
+            if (best == null) {
+                flight.embedding = normalized;
+                byEmbedding.add(flight);
+            }
+            return best;
+        }
+    }
+
+    /**
+     * Complete a flight and hand the response to all waiting requests
+     */
+    public void complete(Flight flight, Object response) {
+        unregister(flight);
+        flight.result.complete(response);
+    }
+
+    /**
+     * Fail a flight, waiting requests see the same error
+     */
+    public void fail(Flight flight, Throwable error) {
+        unregister(flight);
+        flight.result.completeExceptionally(error);
+    }
+
+    /**
+     * Wait for the response of a flight led by another request
+     */
+    public Object await(Flight flight) throws Throwable {
+        try {
+            return flight.result.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        }
+    }
+
+    public int getInFlightCount() {
+        return byPrompt.size();
+    }
+
+    private void unregister(Flight flight) {
+        byPrompt.remove(flight.key, flight);
+        if (flight.embedding != null) {
+            synchronized (byEmbedding) {
+                byEmbedding.remove(flight);
+            }
+        }
+    }
+
+    private static String normalize(String prompt) {
+        return WHITESPACE.matcher(prompt.strip().toLowerCase(Locale.ROOT)).replaceAll(" ");
+    }
+
+    private static float[] normalize(float[] vector) {
+        if (vector == null) {
+            return null;
+        }
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
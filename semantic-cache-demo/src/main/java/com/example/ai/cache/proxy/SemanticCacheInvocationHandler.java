@@ -4,26 +4,52 @@ import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
 import java.lang.reflect.Parameter;
 import java.lang.reflect.Proxy;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
+import com.example.ai.cache.CacheStatistics;
+import com.example.ai.cache.CacheStatistics.Tier;
+import com.example.ai.cache.CachedResponse;
 import com.example.ai.cache.SemanticCacheConfig;
+import com.example.ai.cache.store.L1SemanticCache;
 import com.example.ai.cache.store.SemanticCacheStore;
 
 import io.quarkus.logging.Log;
 
+/**
+ * Caches AI service calls in two tiers: the in-memory {@link L1SemanticCache}
+ * is consulted first, then the {@link SemanticCacheStore} (L2). L2 hits are
+ * promoted to L1, and new responses are written to L1 immediately and to L2
+ * asynchronously, so the caller never waits for the database write.
+ * Concurrent misses for the same or a near-duplicate prompt are coalesced
+ * by the {@link RequestCoalescer} into one LLM call.
+ */
 public class SemanticCacheInvocationHandler implements InvocationHandler {
 
     private final Object target;
     private final SemanticCacheStore cacheStore;
+    private final L1SemanticCache l1Cache;
+    private final Executor writeExecutor;
+    private final RequestCoalescer coalescer;
     private final SemanticCacheConfig config;
+    private volatile CacheStatistics statistics;
 
     public SemanticCacheInvocationHandler(
             Object target,
             SemanticCacheStore cacheStore,
+            L1SemanticCache l1Cache,
+            Executor writeExecutor,
+            RequestCoalescer coalescer,
             SemanticCacheConfig config) {
         this.target = target;
         this.cacheStore = cacheStore;
+        this.l1Cache = l1Cache;
+        this.writeExecutor = writeExecutor;
+        this.coalescer = coalescer;
         this.config = config;
     }
 
@@ -42,13 +68,76 @@ public class SemanticCacheInvocationHandler implements InvocationHandler {
         Log.debugf("Cache lookup for method %s with prompt: %s",
                 method.getName(), prompt);
 
-        // Try cache lookup
-        var cached = cacheStore.lookup(prompt, llmString, config);
+        // L1: exact prompt match in memory
+        Optional<CachedResponse> cached = lookupL1(prompt, llmString, null);
+        if (cached.isPresent()) {
+            return cached.get().getResponse();
+        }
+
+        Duration window = config.getCoalescingWindow();
+        if (!config.isEnabled() || window.isZero()) {
+            return lookupOrInvoke(method, args, prompt, llmString, null);
+        }
+
+        // Single flight: concurrent requests for the same prompt share one
+        // embedding computation and one LLM call
+        RequestCoalescer.Join join = coalescer.join(prompt, llmString, window);
+        if (!join.leader()) {
+            statistics().recordCoalesced(false);
+            Log.debugf("Coalesced request for method %s with an in-flight identical prompt", method.getName());
+            return coalescer.await(join.flight());
+        }
+
+        try {
+            Object response = lookupOrInvoke(method, args, prompt, llmString, join.flight());
+            coalescer.complete(join.flight(), response);
+            return response;
+        } catch (Throwable t) {
+            coalescer.fail(join.flight(), t);
+            throw t;
+        }
+    }
+
+    /**
+     * Semantic L1 lookup, L2 lookup and, on a miss, the actual AI service call
+     *
+     * @param flight the flight led by this request, null if coalescing is off
+     */
+    private Object lookupOrInvoke(Method method, Object[] args, String prompt, String llmString,
+            RequestCoalescer.Flight flight) throws Throwable {
+        // The embedding is computed once and shared by L1, L2 and the write-through
+        float[] embedding = null;
+        if (config.isEnabled() && config.getStrategy() != SemanticCacheConfig.CacheStrategy.EXACT_MATCH_ONLY) {
+            embedding = cacheStore.embed(prompt, config);
+            Optional<CachedResponse> cached = lookupL1(prompt, llmString, embedding);
+            if (cached.isPresent()) {
+                return cached.get().getResponse();
+            }
+
+            // Join an in-flight call for a near-duplicate prompt
+            if (flight != null && embedding != null) {
+                RequestCoalescer.Flight similar = coalescer.joinSimilar(flight, embedding,
+                        config.getSimilarityThreshold(), config.getCoalescingWindow());
+                if (similar != null) {
+                    statistics().recordCoalesced(true);
+                    Log.debugf("Coalesced request for method %s with an in-flight similar prompt",
+                            method.getName());
+                    return coalescer.await(similar);
+                }
+            }
+        }
+
+        // L2: PgVector store
+        Optional<CachedResponse> cached = cacheStore.lookup(prompt, llmString, embedding, config);
         if (cached.isPresent()) {
             Log.infof("Cache hit (similarity: %.3f, exact: %b) for method %s",
                     cached.get().getSimilarityScore(),
                     cached.get().isExactMatch(),
                     method.getName());
+            if (l1Cache != null) {
+                l1Cache.put(prompt, llmString, embedding, cached.get().getResponse(),
+                        cached.get().getCreatedAt(), config.getTtl());
+            }
             return cached.get().getResponse();
         }
 
@@ -60,12 +149,49 @@ public class SemanticCacheInvocationHandler implements InvocationHandler {
         Method targetMethod = findTargetMethod(method);
         Object response = targetMethod.invoke(target, args);
 
-        // Store in cache
-        cacheStore.store(prompt, llmString, response, config);
+        // Store in L1 now and write through to L2 in the background
+        if (config.isEnabled()) {
+            if (l1Cache != null) {
+                l1Cache.put(prompt, llmString, embedding, response, Instant.now(), config.getTtl());
+            }
+            float[] storeEmbedding = embedding;
+            writeExecutor.execute(() -> cacheStore.store(prompt, llmString, storeEmbedding, response, config));
+        }
 
         return response;
     }
 
+    /**
+     * Look up the L1 tier, by exact prompt if no embedding is given, semantically otherwise
+     */
+    private Optional<CachedResponse> lookupL1(String prompt, String llmString, float[] embedding) {
+        if (l1Cache == null || !config.isEnabled()) {
+            return Optional.empty();
+        }
+        long startTime = System.nanoTime();
+        Optional<CachedResponse> cached = embedding == null
+                ? l1Cache.getExact(prompt, llmString)
+                : l1Cache.getSimilar(embedding, llmString, config.getSimilarityThreshold());
+        CacheStatistics stats = statistics();
+        stats.recordLookupTime(Tier.L1, System.nanoTime() - startTime);
+        if (cached.isPresent()) {
+            stats.recordHit(Tier.L1, cached.get().isExactMatch());
+            Log.debugf("L1 cache hit (similarity: %.3f, exact: %b)",
+                    cached.get().getSimilarityScore(), cached.get().isExactMatch());
+        }
+        return cached;
+    }
+
+    // Resolved on first use, the store refreshes its entry count from the database
+    private CacheStatistics statistics() {
+        CacheStatistics stats = statistics;
+        if (stats == null) {
+            stats = cacheStore.getStatistics();
+            statistics = stats;
+        }
+        return stats;
+    }
+
     private String extractPrompt(Method method, Object[] args) {
         if (args == null || args.length == 0) {
             return "";
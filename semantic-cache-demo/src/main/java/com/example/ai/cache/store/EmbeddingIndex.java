@@ -0,0 +1,285 @@
+package com.example.ai.cache.store;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Small in-memory HNSW graph (hierarchical navigable small world) over
+ * unit-length prompt embeddings. The L1 tier uses it to find semantically
+ * similar prompts without a database round trip.
+ *
+ * Nodes are identified by insertion order. Removed nodes are tombstoned:
+ * they still route searches but are never returned. The owner rebuilds the
+ * index once tombstones dominate. Not thread-safe.
+ */
+final class EmbeddingIndex {
+
+    private static final int MAX_CONNECTIONS = 12;
+    private static final int MAX_CONNECTIONS_LEVEL_0 = 2 * MAX_CONNECTIONS;
+    private static final int EF_CONSTRUCTION = 64;
+    private static final double LEVEL_MULTIPLIER = 1.0 / Math.log(MAX_CONNECTIONS);
+
+    private final int dimensions;
+    private final Random random = new Random(42);
+
+    private float[][] vectors = new float[16][];
+    // links[node][level] = {count, neighbor...}
+    private int[][][] links = new int[16][][];
+    private boolean[] deleted = new boolean[16];
+    private int size;
+    private int deletedCount;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    // Search scratch space: similarity of each node visited in the current search
+    private float[] similarities = new float[16];
+    private int[] visitedStamps = new int[16];
+    private int stamp;
+
+    EmbeddingIndex(int dimensions) {
+        this.dimensions = dimensions;
+    }
+
+    int dimensions() {
+        return dimensions;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int deletedCount() {
+        return deletedCount;
+    }
+
+    /**
+     * Add a normalized vector to the graph
+     *
+     * @return the node id
+     */
+    int add(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                    "Expected " + dimensions + " dimensions but got " + vector.length);
+        }
+        if (size == vectors.length) {
+            int capacity = size * 2;
+            vectors = Arrays.copyOf(vectors, capacity);
+            links = Arrays.copyOf(links, capacity);
+            deleted = Arrays.copyOf(deleted, capacity);
+            similarities = Arrays.copyOf(similarities, capacity);
+            visitedStamps = Arrays.copyOf(visitedStamps, capacity);
+        }
+
+        int node = size++;
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * LEVEL_MULTIPLIER);
+        vectors[node] = vector;
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[(l == 0 ? MAX_CONNECTIONS_LEVEL_0 : MAX_CONNECTIONS) + 1];
+        }
+
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return node;
+        }
+
+        int current = greedyDescend(vector, level);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            int[] candidates = searchLayer(vector, current, EF_CONSTRUCTION, l);
+            float[] candidateSimilarities = new float[candidates.length];
+            for (int i = 0; i < candidates.length; i++) {
+                candidateSimilarities[i] = similarities[candidates[i]];
+            }
+            for (int neighbor : selectNeighbors(candidates, candidateSimilarities, links[node][l].length - 1)) {
+                connect(node, neighbor, l);
+                connect(neighbor, node, l);
+            }
+            current = candidates[0];
+        }
+
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+        return node;
+    }
+
+    /**
+     * Tombstone a node so it is no longer returned
+     */
+    void remove(int node) {
+        if (node >= 0 && node < size && !deleted[node]) {
+            deleted[node] = true;
+            deletedCount++;
+        }
+    }
+
+    /**
+     * Find the live nodes closest to a normalized query vector
+     *
+     * @param query normalized query vector
+     * @param k     maximum number of results
+     * @param ef    size of the candidate list
+     * @return node ids ordered by descending similarity
+     */
+    int[] search(float[] query, int k, int ef) {
+        if (entryPoint < 0 || query.length != dimensions) {
+            return new int[0];
+        }
+        int current = greedyDescend(query, 0);
+        // Tombstones take up candidate slots, widen the beam by their share
+        int beam = Math.max(ef, k);
+        if (deletedCount > 0) {
+            beam = (int) Math.min(size, (long) beam * size / Math.max(1, size - deletedCount));
+        }
+        int[] candidates = searchLayer(query, current, beam, 0);
+
+        int[] results = new int[Math.min(k, candidates.length)];
+        int count = 0;
+        for (int i = 0; i < candidates.length && count < results.length; i++) {
+            if (!deleted[candidates[i]]) {
+                results[count++] = candidates[i];
+            }
+        }
+        return count == results.length ? results : Arrays.copyOf(results, count);
+    }
+
+    static float dot(float[] a, float[] b) {
+        float sum = 0f;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    // Greedy walk from the entry point down to the given level
+    private int greedyDescend(float[] query, int targetLevel) {
+        int current = entryPoint;
+        float best = dot(query, vectors[current]);
+        for (int l = maxLevel; l > targetLevel; l--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                int[] neighbors = links[current][l];
+                for (int i = 1; i <= neighbors[0]; i++) {
+                    float similarity = dot(query, vectors[neighbors[i]]);
+                    if (similarity > best) {
+                        best = similarity;
+                        current = neighbors[i];
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    // Beam search on one level, returns up to ef nodes ordered by descending similarity
+    private int[] searchLayer(float[] query, int start, int ef, int level) {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(visitedStamps, 0);
+            stamp = 1;
+        }
+        PriorityQueue<Integer> candidates = new PriorityQueue<>(
+                (a, b) -> Float.compare(similarities[b], similarities[a]));
+        PriorityQueue<Integer> results = new PriorityQueue<>(
+                (a, b) -> Float.compare(similarities[a], similarities[b]));
+
+        visit(start, query);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            int candidate = candidates.poll();
+            if (results.size() >= ef && similarities[candidate] < similarities[results.peek()]) {
+                break;
+            }
+            int[] neighbors = links[candidate][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visitedStamps[neighbor] == stamp) {
+                    continue;
+                }
+                visit(neighbor, query);
+                if (results.size() < ef || similarities[neighbor] > similarities[results.peek()]) {
+                    candidates.add(neighbor);
+                    results.add(neighbor);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        int[] ordered = new int[results.size()];
+        for (int i = ordered.length - 1; i >= 0; i--) {
+            ordered[i] = results.poll();
+        }
+        return ordered;
+    }
+
+    private void visit(int node, float[] query) {
+        visitedStamps[node] = stamp;
+        similarities[node] = dot(query, vectors[node]);
+    }
+
+    // Keep a candidate only if it is closer to the node than to any selected
+    // neighbor, then fill up with the closest remaining candidates. Candidates
+    // are ordered by descending similarity to the node.
+    private int[] selectNeighbors(int[] candidates, float[] candidateSimilarities, int max) {
+        int[] selected = new int[Math.min(max, candidates.length)];
+        boolean[] taken = new boolean[candidates.length];
+        int count = 0;
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            boolean diverse = true;
+            for (int j = 0; j < count; j++) {
+                if (dot(vectors[candidates[i]], vectors[selected[j]]) > candidateSimilarities[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[count++] = candidates[i];
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < candidates.length && count < selected.length; i++) {
+            if (!taken[i]) {
+                selected[count++] = candidates[i];
+            }
+        }
+        return selected;
+    }
+
+    private void connect(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        int max = neighbors.length - 1;
+        if (neighbors[0] < max) {
+            neighbors[++neighbors[0]] = to;
+            return;
+        }
+        // Full: select again from the current neighbors and the new one. Dropping only
+        // the furthest neighbor would cut the long links between clusters.
+        int[] candidates = new int[max + 1];
+        float[] candidateSimilarities = new float[max + 1];
+        for (int i = 0; i <= max; i++) {
+            int candidate = i < max ? neighbors[i + 1] : to;
+            float similarity = dot(vectors[from], vectors[candidate]);
+            // Insertion sort, the lists are short
+            int j = i;
+            while (j > 0 && candidateSimilarities[j - 1] < similarity) {
+                candidates[j] = candidates[j - 1];
+                candidateSimilarities[j] = candidateSimilarities[j - 1];
+                j--;
+            }
+            candidates[j] = candidate;
+            candidateSimilarities[j] = similarity;
+        }
+        int[] selected = selectNeighbors(candidates, candidateSimilarities, max);
+        System.arraycopy(selected, 0, neighbors, 1, selected.length);
+        neighbors[0] = selected.length;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.ai.cache.store;
+
+/**
+ * Count-min sketch with 4-bit counters estimating how often a key was
+ * requested recently, used as the TinyLFU admission filter of the L1 tier.
+ *
+ * Each key maps to four counters in a table of longs (16 counters per long).
+ * After {@code 10 * capacity} increments all counters are halved, so old
+ * popularity ages out and the sketch follows the current workload.
+ * Not thread-safe.
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final int[] SEEDS = { 0x97cb3127, 0xb492b66f, 0x9ae16a3b, 0x5f356495 };
+    private static final int MAX_COUNT = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int capacity) {
+        int size = Integer.highestOneBit(Math.max(8, capacity) - 1) << 1;
+        this.table = new long[size];
+        this.tableMask = size - 1;
+        this.sampleSize = 10 * Math.max(1, capacity);
+    }
+
+    /**
+     * Estimated number of recent requests for a key (0 to 15)
+     */
+    int frequency(int keyHash) {
+        int hash = spread(keyHash);
+        int frequency = MAX_COUNT;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            int counter = counterHash(hash, depth);
+            int shift = (counter >>> 28) << 2;
+            frequency = Math.min(frequency, (int) ((table[counter & tableMask] >>> shift) & 0xF));
+        }
+        return frequency;
+    }
+
+    /**
+     * Count one request for a key
+     */
+    void increment(int keyHash) {
+        int hash = spread(keyHash);
+        boolean added = false;
+        for (int depth = 0; depth < SEEDS.length; depth++) {
+            int counter = counterHash(hash, depth);
+            int index = counter & tableMask;
+            int shift = (counter >>> 28) << 2;
+            if (((table[index] >>> shift) & 0xF) < MAX_COUNT) {
+                table[index] += 1L << shift;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    // Halve all counters so the sketch forgets old popularity
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private static int counterHash(int hash, int depth) {
+        int h = hash * SEEDS[depth];
+        return h ^ (h >>> 15);
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+}
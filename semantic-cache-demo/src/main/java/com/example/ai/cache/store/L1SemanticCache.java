@@ -0,0 +1,394 @@
+package com.example.ai.cache.store;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import com.example.ai.cache.CachedResponse;
+
+/**
+ * In-memory front tier (L1) of the semantic cache.
+ *
+ * Holds the hottest responses in the JVM so repeated prompts are answered
+ * without a PgVector round trip:
+ * <ul>
+ * <li>an exact-prompt hash map keyed by LLM string and prompt</li>
+ * <li>a small HNSW index per LLM string over the embeddings of the resident
+ * entries, for semantic matches</li>
+ * </ul>
+ *
+ * Size is bounded with W-TinyLFU: new entries enter a small LRU window
+ * (1% of the capacity). Entries leaving the window compete with the oldest
+ * entry of the main segmented LRU and are only admitted if their estimated
+ * request frequency is higher, so one-off prompts cannot flush popular
+ * ones. The main area is split into probation (20%) and protected (80%)
+ * segments; a hit in probation promotes the entry to protected.
+ *
+ * All operations take the instance lock; they are in-memory and cheap
+ * compared to an embedding call or a database query.
+ */
+public class L1SemanticCache {
+
+    private static final int SEARCH_CANDIDATES = 4;
+    private static final int SEARCH_EF = 32;
+
+    private enum Segment {
+        WINDOW, PROBATION, PROTECTED
+    }
+
+    private static final class Node {
+        final String key;
+        final String prompt;
+        final String llmString;
+        final Object response;
+        final Instant createdAt;
+        final Instant expiresAt;
+        float[] embedding;
+        int indexNode = -1;
+        Segment segment;
+        Node previous;
+        Node next;
+
+        Node(String key, String prompt, String llmString, Object response,
+                Instant createdAt, Instant expiresAt) {
+            this.key = key;
+            this.prompt = prompt;
+            this.llmString = llmString;
+            this.response = response;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Intrusive LRU list, eldest first
+     */
+    private static final class AccessOrder {
+        private Node head;
+        private Node tail;
+        private int size;
+
+        void addLast(Node node) {
+            node.previous = tail;
+            node.next = null;
+            if (tail == null) {
+                head = node;
+            } else {
+                tail.next = node;
+            }
+            tail = node;
+            size++;
+        }
+
+        void remove(Node node) {
+            if (node.previous == null) {
+                head = node.next;
+            } else {
+                node.previous.next = node.next;
+            }
+            if (node.next == null) {
+                tail = node.previous;
+            } else {
+                node.next.previous = node.previous;
+            }
+            node.previous = null;
+            node.next = null;
+            size--;
+        }
+
+        void moveToLast(Node node) {
+            if (node != tail) {
+                remove(node);
+                addLast(node);
+            }
+        }
+
+        Node first() {
+            return head;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            size = 0;
+        }
+    }
+
+    /**
+     * HNSW index of one LLM string and the cache entries of its nodes
+     */
+    private static final class SemanticIndex {
+        final EmbeddingIndex index;
+        Node[] nodes = new Node[16];
+
+        SemanticIndex(int dimensions) {
+            this.index = new EmbeddingIndex(dimensions);
+        }
+    }
+
+    private final int maximumSize;
+    private final int windowMaximum;
+    private final int protectedMaximum;
+
+    private final Map<String, Node> entries = new HashMap<>();
+    private final Map<String, SemanticIndex> indexes = new HashMap<>();
+    private final AccessOrder window = new AccessOrder();
+    private final AccessOrder probation = new AccessOrder();
+    private final AccessOrder protectedSegment = new AccessOrder();
+    private final FrequencySketch sketch;
+    private long evictionCount;
+
+    public L1SemanticCache(int maximumSize) {
+        if (maximumSize <= 0) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        this.maximumSize = maximumSize;
+        this.windowMaximum = Math.max(1, maximumSize / 100);
+        this.protectedMaximum = (int) ((maximumSize - windowMaximum) * 0.8);
+        this.sketch = new FrequencySketch(maximumSize);
+    }
+
+    /**
+     * Look up a response for exactly this prompt
+     */
+    public synchronized Optional<CachedResponse> getExact(String prompt, String llmString) {
+        String key = key(prompt, llmString);
+        sketch.increment(key.hashCode());
+        Node node = entries.get(key);
+        if (node == null || isExpired(node, Instant.now())) {
+            if (node != null) {
+                removeNode(node);
+            }
+            return Optional.empty();
+        }
+        onHit(node);
+        return Optional.of(new CachedResponse(node.response, node.createdAt, 1.0, node.prompt, true));
+    }
+
+    /**
+     * Look up the response of the most similar resident prompt
+     *
+     * @param embedding           prompt embedding
+     * @param llmString           LLM string the response must belong to
+     * @param similarityThreshold minimum cosine similarity
+     */
+    public synchronized Optional<CachedResponse> getSimilar(
+            float[] embedding,
+            String llmString,
+            double similarityThreshold) {
+        SemanticIndex semanticIndex = indexes.get(llmString);
+        if (semanticIndex == null || embedding == null
+                || embedding.length != semanticIndex.index.dimensions()) {
+            return Optional.empty();
+        }
+        float[] query = normalize(embedding);
+        if (query == null) {
+            return Optional.empty();
+        }
+
+        Instant now = Instant.now();
+        for (int indexNode : semanticIndex.index.search(query, SEARCH_CANDIDATES, SEARCH_EF)) {
+            Node node = semanticIndex.nodes[indexNode];
+            if (node == null || isExpired(node, now)) {
+                continue;
+            }
+            double similarity = EmbeddingIndex.dot(query, node.embedding);
+            // Candidates are ordered by similarity, the rest are below the threshold too
+            if (similarity < similarityThreshold) {
+                break;
+            }
+            sketch.increment(node.key.hashCode());
+            onHit(node);
+            return Optional.of(new CachedResponse(node.response, node.createdAt, similarity, node.prompt, false));
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Add or replace a response, evicting by W-TinyLFU when full
+     *
+     * @param embedding prompt embedding, null if only exact lookups are needed
+     * @param createdAt when the response was produced, the TTL counts from here
+     */
+    public synchronized void put(
+            String prompt,
+            String llmString,
+            float[] embedding,
+            Object response,
+            Instant createdAt,
+            Duration ttl) {
+        String key = key(prompt, llmString);
+        Node existing = entries.get(key);
+        if (existing != null) {
+            removeNode(existing);
+        }
+
+        Node node = new Node(key, prompt, llmString, response, createdAt,
+                ttl != null ? createdAt.plus(ttl) : null);
+        entries.put(key, node);
+        node.segment = Segment.WINDOW;
+        window.addLast(node);
+        indexNode(node, embedding);
+        evictIfNeeded();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        indexes.clear();
+        window.clear();
+        probation.clear();
+        protectedSegment.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    private void onHit(Node node) {
+        switch (node.segment) {
+            case WINDOW -> window.moveToLast(node);
+            case PROBATION -> {
+                probation.remove(node);
+                node.segment = Segment.PROTECTED;
+                protectedSegment.addLast(node);
+                // Demote the eldest protected entries back to probation
+                while (protectedSegment.size > protectedMaximum) {
+                    Node demoted = protectedSegment.first();
+                    protectedSegment.remove(demoted);
+                    demoted.segment = Segment.PROBATION;
+                    probation.addLast(demoted);
+                }
+            }
+            case PROTECTED -> protectedSegment.moveToLast(node);
+        }
+    }
+
+    private void evictIfNeeded() {
+        while (window.size > windowMaximum) {
+            Node candidate = window.first();
+            window.remove(candidate);
+            candidate.segment = Segment.PROBATION;
+            probation.addLast(candidate);
+
+            if (entries.size() > maximumSize) {
+                Node victim = probation.first() != candidate ? probation.first() : protectedSegment.first();
+                if (victim == null) {
+                    victim = candidate;
+                }
+                // TinyLFU admission: the candidate replaces the victim only if it is more popular
+                Node evicted = sketch.frequency(candidate.key.hashCode()) > sketch.frequency(victim.key.hashCode())
+                        ? victim
+                        : candidate;
+                removeNode(evicted);
+                evictionCount++;
+            }
+        }
+        // Entries can only exceed the maximum through the window, but keep the bound strict
+        while (entries.size() > maximumSize) {
+            Node victim = probation.first() != null ? probation.first() : protectedSegment.first();
+            if (victim == null) {
+                victim = window.first();
+            }
+            removeNode(victim);
+            evictionCount++;
+        }
+    }
+
+    private void indexNode(Node node, float[] embedding) {
+        float[] normalized = embedding != null ? normalize(embedding) : null;
+        if (normalized == null) {
+            return;
+        }
+        SemanticIndex semanticIndex = indexes.computeIfAbsent(node.llmString,
+                llm -> new SemanticIndex(normalized.length));
+        if (semanticIndex.index.dimensions() != normalized.length) {
+            // Embedding model changed, start a fresh index for this LLM string
+            semanticIndex = new SemanticIndex(normalized.length);
+            indexes.put(node.llmString, semanticIndex);
+            detachAll(node.llmString);
+        }
+        node.embedding = normalized;
+        node.indexNode = semanticIndex.index.add(normalized);
+        if (node.indexNode >= semanticIndex.nodes.length) {
+            semanticIndex.nodes = Arrays.copyOf(semanticIndex.nodes, semanticIndex.nodes.length * 2);
+        }
+        semanticIndex.nodes[node.indexNode] = node;
+    }
+
+    private void removeNode(Node node) {
+        entries.remove(node.key);
+        switch (node.segment) {
+            case WINDOW -> window.remove(node);
+            case PROBATION -> probation.remove(node);
+            case PROTECTED -> protectedSegment.remove(node);
+        }
+        if (node.indexNode >= 0) {
+            SemanticIndex semanticIndex = indexes.get(node.llmString);
+            if (semanticIndex != null && semanticIndex.nodes[node.indexNode] == node) {
+                semanticIndex.index.remove(node.indexNode);
+                semanticIndex.nodes[node.indexNode] = null;
+                compactIfNeeded(node.llmString, semanticIndex);
+            }
+            node.indexNode = -1;
+        }
+    }
+
+    // Rebuild an index from its live entries once most of its nodes are tombstones
+    private void compactIfNeeded(String llmString, SemanticIndex semanticIndex) {
+        EmbeddingIndex index = semanticIndex.index;
+        if (index.deletedCount() < 64 || index.deletedCount() * 2 < index.size()) {
+            return;
+        }
+        SemanticIndex rebuilt = new SemanticIndex(index.dimensions());
+        indexes.put(llmString, rebuilt);
+        for (Node live : semanticIndex.nodes) {
+            if (live != null) {
+                live.indexNode = rebuilt.index.add(live.embedding);
+                if (live.indexNode >= rebuilt.nodes.length) {
+                    rebuilt.nodes = Arrays.copyOf(rebuilt.nodes, rebuilt.nodes.length * 2);
+                }
+                rebuilt.nodes[live.indexNode] = live;
+            }
+        }
+    }
+
+    private void detachAll(String llmString) {
+        for (Node other : entries.values()) {
+            if (other.llmString.equals(llmString)) {
+                other.indexNode = -1;
+                other.embedding = null;
+            }
+        }
+    }
+
+    private static boolean isExpired(Node node, Instant now) {
+        return node.expiresAt != null && node.expiresAt.isBefore(now);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0.0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        if (norm == 0.0) {
+            return null;
+        }
+        float scale = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = vector[i] * scale;
+        }
+        return normalized;
+    }
+
+    private static String key(String prompt, String llmString) {
+        return llmString + '\u0000' + prompt;
+    }
+}
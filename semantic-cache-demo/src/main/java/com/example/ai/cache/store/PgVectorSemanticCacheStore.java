@@ -10,11 +10,11 @@ import java.util.Optional;
 import org.apache.commons.codec.digest.DigestUtils;
 
 import com.example.ai.cache.CacheStatistics;
+import com.example.ai.cache.CacheStatistics.Tier;
 import com.example.ai.cache.CachedResponse;
 import com.example.ai.cache.SemanticCacheConfig;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
-import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import io.agroal.api.AgroalDataSource;
 import io.quarkus.logging.Log;
@@ -44,11 +44,20 @@ public class PgVectorSemanticCacheStore implements SemanticCacheStore {
             String prompt,
             String llmString,
             SemanticCacheConfig config) {
+        return lookup(prompt, llmString, null, config);
+    }
+
+    @Override
+    public Optional<CachedResponse> lookup(
+            String prompt,
+            String llmString,
+            float[] embedding,
+            SemanticCacheConfig config) {
         if (!config.isEnabled()) {
             return Optional.empty();
         }
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         try {
             // Try exact match first for HYBRID strategy
@@ -57,34 +66,34 @@ public class PgVectorSemanticCacheStore implements SemanticCacheStore {
 
                 Optional<CachedResponse> exactMatch = lookupExact(prompt, llmString, config);
                 if (exactMatch.isPresent()) {
-                    statistics.recordHit(true);
-                    statistics.recordLookupTime(System.currentTimeMillis() - startTime);
+                    statistics.recordHit(Tier.L2, true);
+                    statistics.recordLookupTime(Tier.L2, System.nanoTime() - startTime);
                     return exactMatch;
                 }
 
                 if (config.getStrategy() == SemanticCacheConfig.CacheStrategy.EXACT_MATCH_ONLY) {
                     statistics.recordMiss();
-                    statistics.recordLookupTime(System.currentTimeMillis() - startTime);
+                    statistics.recordLookupTime(Tier.L2, System.nanoTime() - startTime);
                     return Optional.empty();
                 }
             }
 
             // Semantic search
-            Optional<CachedResponse> semanticMatch = lookupSemantic(prompt, llmString, config);
+            Optional<CachedResponse> semanticMatch = lookupSemantic(prompt, llmString, embedding, config);
             if (semanticMatch.isPresent()) {
-                statistics.recordHit(false);
-                statistics.recordLookupTime(System.currentTimeMillis() - startTime);
+                statistics.recordHit(Tier.L2, false);
+                statistics.recordLookupTime(Tier.L2, System.nanoTime() - startTime);
                 return semanticMatch;
             }
 
             statistics.recordMiss();
-            statistics.recordLookupTime(System.currentTimeMillis() - startTime);
+            statistics.recordLookupTime(Tier.L2, System.nanoTime() - startTime);
             return Optional.empty();
 
         } catch (Exception e) {
             Log.error("Error looking up cache entry", e);
             statistics.recordMiss();
-            statistics.recordLookupTime(System.currentTimeMillis() - startTime);
+            statistics.recordLookupTime(Tier.L2, System.nanoTime() - startTime);
             return Optional.empty();
         }
     }
@@ -133,17 +142,14 @@ public class PgVectorSemanticCacheStore implements SemanticCacheStore {
     private Optional<CachedResponse> lookupSemantic(
             String prompt,
             String llmString,
+            float[] embedding,
             SemanticCacheConfig config) throws SQLException {
-        EmbeddingModel embeddingModel = embeddingModels.get(config.getEmbeddingModelName());
-        if (embeddingModel == null) {
-            Log.warn("Embedding model not found: " + config.getEmbeddingModelName());
+        // Generate embedding for the prompt unless the caller already did
+        float[] promptEmbedding = embedding != null ? embedding : embed(prompt, config);
+        if (promptEmbedding == null) {
             return Optional.empty();
         }
 
-        // Generate embedding for the prompt
-        Embedding embedding = embeddingModel.embed(prompt).content();
-        float[] promptEmbedding = embedding.vector();
-
         // Use cosine similarity (1 - cosine distance)
         // Optimized: use CTE to bind vector once and reference it multiple times
         String sql = """
@@ -197,20 +203,27 @@ public class PgVectorSemanticCacheStore implements SemanticCacheStore {
             String llmString,
             Object response,
             SemanticCacheConfig config) {
+        store(prompt, llmString, null, response, config);
+    }
+
+    @Override
+    public void store(
+            String prompt,
+            String llmString,
+            float[] promptEmbedding,
+            Object response,
+            SemanticCacheConfig config) {
         if (!config.isEnabled()) {
             return;
         }
 
-        long startTime = System.currentTimeMillis();
+        long startTime = System.nanoTime();
 
         try {
-            EmbeddingModel embeddingModel = embeddingModels.get(config.getEmbeddingModelName());
-            if (embeddingModel == null) {
-                Log.warn("Embedding model not found: " + config.getEmbeddingModelName());
+            float[] embedding = promptEmbedding != null ? promptEmbedding : embed(prompt, config);
+            if (embedding == null) {
                 return;
             }
-
-            float[] embedding = embeddingModel.embed(prompt).content().vector();
             String promptHash = computeHash(prompt, llmString);
             String responseJson = serializeResponse(response);
 
@@ -238,12 +251,22 @@ public class PgVectorSemanticCacheStore implements SemanticCacheStore {
                 statistics.incrementEntryCount();
             }
 
-            statistics.recordStoreTime(System.currentTimeMillis() - startTime);
+            statistics.recordStoreTime(System.nanoTime() - startTime);
 
         } catch (Exception e) {
             Log.error("Error storing cache entry", e);
-            statistics.recordStoreTime(System.currentTimeMillis() - startTime);
+            statistics.recordStoreTime(System.nanoTime() - startTime);
+        }
+    }
+
+    @Override
+    public float[] embed(String prompt, SemanticCacheConfig config) {
+        EmbeddingModel embeddingModel = embeddingModels.get(config.getEmbeddingModelName());
+        if (embeddingModel == null) {
+            Log.warn("Embedding model not found: " + config.getEmbeddingModelName());
+            return null;
         }
+        return embeddingModel.embed(prompt).content().vector();
     }
 
     @Override
@@ -16,6 +16,18 @@ public interface SemanticCacheStore {
                         String llmString,
                         SemanticCacheConfig config);
 
+        /**
+         * Look up a cached response, reusing an embedding the caller already
+         * computed for the prompt (null to compute it on demand)
+         */
+        default Optional<CachedResponse> lookup(
+                        String prompt,
+                        String llmString,
+                        float[] embedding,
+                        SemanticCacheConfig config) {
+                return lookup(prompt, llmString, config);
+        }
+
         /**
          * Store a response in the cache
          */
@@ -25,6 +37,28 @@ public interface SemanticCacheStore {
                         Object response,
                         SemanticCacheConfig config);
 
+        /**
+         * Store a response in the cache, reusing an embedding the caller already
+         * computed for the prompt (null to compute it on demand)
+         */
+        default void store(
+                        String prompt,
+                        String llmString,
+                        float[] embedding,
+                        Object response,
+                        SemanticCacheConfig config) {
+                store(prompt, llmString, response, config);
+        }
+
+        /**
+         * Compute the prompt embedding with the configured embedding model
+         *
+         * @return the embedding, or null if no embedding model is available
+         */
+        default float[] embed(String prompt, SemanticCacheConfig config) {
+                return null;
+        }
+
         /**
          * Clear all cache entries
          */
@@ -0,0 +1,158 @@
+package com.example.ai.cache.store;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.ai.cache.CachedResponse;
+
+class L1SemanticCacheTest {
+
+    private static final String LLM = "CustomerSupportAgent.chat";
+    private static final Duration TTL = Duration.ofMinutes(30);
+
+    @Test
+    void exactHitReturnsStoredResponse() {
+        L1SemanticCache cache = new L1SemanticCache(100);
+        cache.put("How do I reset my password?", LLM, null, "Use the reset link", Instant.now(), TTL);
+
+        Optional<CachedResponse> hit = cache.getExact("How do I reset my password?", LLM);
+
+        assertTrue(hit.isPresent());
+        assertTrue(hit.get().isExactMatch());
+        assertEquals("Use the reset link", hit.get().getResponse());
+        assertFalse(cache.getExact("How do I reset my password?", "OtherAgent.chat").isPresent());
+    }
+
+    @Test
+    void similarEmbeddingHitsAboveThreshold() {
+        L1SemanticCache cache = new L1SemanticCache(100);
+        Random random = new Random(7);
+        float[][] embeddings = new float[50][];
+        for (int i = 0; i < embeddings.length; i++) {
+            embeddings[i] = randomVector(random, 64);
+            cache.put("prompt " + i, LLM, embeddings[i], "answer " + i, Instant.now(), TTL);
+        }
+
+        float[] query = embeddings[17].clone();
+        query[0] += 0.01f;
+        Optional<CachedResponse> hit = cache.getSimilar(query, LLM, 0.95);
+
+        assertTrue(hit.isPresent());
+        assertFalse(hit.get().isExactMatch());
+        assertEquals("answer 17", hit.get().getResponse());
+        assertFalse(cache.getSimilar(randomVector(random, 64), LLM, 0.95).isPresent());
+    }
+
+    @Test
+    void expiredEntriesAreNotReturned() {
+        L1SemanticCache cache = new L1SemanticCache(100);
+        cache.put("old prompt", LLM, null, "old answer", Instant.now().minus(Duration.ofHours(1)), TTL);
+
+        assertFalse(cache.getExact("old prompt", LLM).isPresent());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void frequentEntriesSurviveScan() {
+        L1SemanticCache cache = new L1SemanticCache(100);
+        for (int i = 0; i < 50; i++) {
+            cache.put("popular " + i, LLM, null, "answer", Instant.now(), TTL);
+        }
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                cache.getExact("popular " + i, LLM);
+            }
+        }
+
+        // A scan of one-off prompts must not flush the popular ones
+        for (int i = 0; i < 1000; i++) {
+            cache.getExact("one-off " + i, LLM);
+            cache.put("one-off " + i, LLM, null, "answer", Instant.now(), TTL);
+        }
+
+        int survivors = 0;
+        for (int i = 0; i < 50; i++) {
+            if (cache.getExact("popular " + i, LLM).isPresent()) {
+                survivors++;
+            }
+        }
+        assertEquals(100, cache.size());
+        assertTrue(survivors >= 45, "only " + survivors + " popular entries survived");
+    }
+
+    @Test
+    void similarLookupFindsWhatLinearScanFinds() {
+        for (int clusters : new int[] { 5, 20 }) {
+            Random random = new Random(clusters);
+            L1SemanticCache cache = new L1SemanticCache(2000);
+            float[][] embeddings = clustered(random, clusters, 1000, 384);
+            for (int i = 0; i < embeddings.length; i++) {
+                cache.put("prompt " + i, LLM, embeddings[i], "answer " + i, Instant.now(), TTL);
+            }
+
+            int expectedHits = 0;
+            int misses = 0;
+            for (int q = 0; q < 500; q++) {
+                float[] query = embeddings[random.nextInt(embeddings.length)].clone();
+                for (int i = 0; i < query.length; i++) {
+                    query[i] += (float) random.nextGaussian() * 0.02f;
+                }
+                normalize(query);
+                double best = Double.NEGATIVE_INFINITY;
+                for (float[] embedding : embeddings) {
+                    best = Math.max(best, EmbeddingIndex.dot(query, embedding));
+                }
+                if (best >= 0.85) {
+                    expectedHits++;
+                    if (cache.getSimilar(query, LLM, 0.85).isEmpty()) {
+                        misses++;
+                    }
+                }
+            }
+            assertTrue(expectedHits >= 250, "only " + expectedHits + " queries above the threshold");
+            assertTrue(misses <= expectedHits / 100,
+                    misses + " of " + expectedHits + " false misses with " + clusters + " clusters");
+        }
+    }
+
+    // Normalized embeddings scattered around random centers
+    private static float[][] clustered(Random random, int clusters, int count, int dimensions) {
+        float[][] centers = new float[clusters][];
+        for (int c = 0; c < clusters; c++) {
+            centers[c] = normalize(randomVector(random, dimensions));
+        }
+        float[][] embeddings = new float[count][];
+        for (int i = 0; i < count; i++) {
+            float[] embedding = centers[i % clusters].clone();
+            for (int d = 0; d < dimensions; d++) {
+                embedding[d] += (float) random.nextGaussian() * 0.03f;
+            }
+            embeddings[i] = normalize(embedding);
+        }
+        return embeddings;
+    }
+
+    private static float[] normalize(float[] vector) {
+        float norm = (float) Math.sqrt(EmbeddingIndex.dot(vector, vector));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] /= norm;
+        }
+        return vector;
+    }
+
+    private static float[] randomVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.Session;
+
+import io.quarkus.hibernate.orm.panache.Panache;
+import io.quarkus.logging.Log;
+import io.quarkus.narayana.jta.QuarkusTransaction;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.scheduler.Scheduled;
+import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.enterprise.event.Observes;
+
+/**
+ * Write-behind for click counts. Redirects only bump an in-memory counter, the
+ * counts are added to the database in one JDBC batch per flush.
+ * Counts not yet flushed are lost if the process dies.
+ */
+@ApplicationScoped
+public class ClickCounter {
+
+    private final ConcurrentHashMap<Long, Long> pending = new ConcurrentHashMap<>();
+
+    public void record(long linkId) {
+        pending.merge(linkId, 1L, Long::sum);
+    }
+
+    @Scheduled(every = "${shortener.clicks.flush-interval:5s}", concurrentExecution = Scheduled.ConcurrentExecution.SKIP)
+    void flush() {
+        // remove() is atomic per key, so a click is either in this batch or stays pending
+        List<Map.Entry<Long, Long>> batch = new ArrayList<>(pending.size());
+        for (Long id : pending.keySet()) {
+            Long clicks = pending.remove(id);
+            if (clicks != null) {
+                batch.add(Map.entry(id, clicks));
+            }
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            QuarkusTransaction.requiringNew().run(() -> write(batch));
+        } catch (RuntimeException e) {
+            // Keep the counts for the next flush
+            batch.forEach(entry -> pending.merge(entry.getKey(), entry.getValue(), Long::sum));
+            Log.warnf("Could not write %d click counts: %s", batch.size(), e.getMessage());
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        flush();
+    }
+
+    private static void write(List<Map.Entry<Long, Long>> batch) {
+        Panache.getEntityManager().unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement update = connection.prepareStatement(
+                    "update ShortLink set clicks = clicks + ? where id = ?")) {
+                for (Map.Entry<Long, Long> entry : batch) {
+                    update.setLong(1, entry.getValue());
+                    update.setLong(2, entry.getKey());
+                    update.addBatch();
+                }
+                update.executeBatch();
+            }
+        });
+    }
+}
@@ -0,0 +1,44 @@
+package com.example;
+
+/**
+ * Short keys are the base62 form of the link id. Ids come from a sequence, so
+ * keys never collide and a key can be turned back into an id without a lookup.
+ */
+public final class ShortKeys {
+
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
+    private static final int BASE = ALPHABET.length();
+
+    private ShortKeys() {
+    }
+
+    public static String encode(long id) {
+        if (id < 0) {
+            throw new IllegalArgumentException("Negative id: " + id);
+        }
+        StringBuilder sb = new StringBuilder();
+        do {
+            sb.append(ALPHABET.charAt((int) (id % BASE)));
+            id /= BASE;
+        } while (id > 0);
+        return sb.reverse().toString();
+    }
+
+    /**
+     * @return the id, or -1 if the key is not a canonical encoding of an id
+     */
+    public static long decode(String key) {
+        if (key == null || key.isEmpty() || (key.length() > 1 && key.charAt(0) == ALPHABET.charAt(0))) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = 0; i < key.length(); i++) {
+            int digit = ALPHABET.indexOf(key.charAt(i));
+            if (digit < 0 || id > (Long.MAX_VALUE - digit) / BASE) {
+                return -1;
+            }
+            id = id * BASE + digit;
+        }
+        return id;
+    }
+}
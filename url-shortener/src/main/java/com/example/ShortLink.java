@@ -1,19 +1,42 @@
 package com.example;
 
-import io.quarkus.hibernate.orm.panache.PanacheEntity;
+import io.quarkus.hibernate.orm.panache.PanacheEntityBase;
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Transient;
 
 @Entity
-public class ShortLink extends PanacheEntity {
+public class ShortLink extends PanacheEntityBase {
 
-    @Column(unique = true, nullable = false)
+    // Ids are reserved in blocks of 100, so most links get one without a database round trip
+    @Id
+    @SequenceGenerator(name = "short_link_seq", sequenceName = "short_link_seq", allocationSize = 100)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "short_link_seq")
+    public Long id;
+
+    // Derived from the id, see ShortKeys
+    @Transient
     public String key;
 
     @Column(nullable = false, length = 2048)
     public String originalUrl;
 
+    // Updated in batches by ClickCounter
+    @Column(nullable = false)
+    public long clicks;
+
     public static ShortLink findByKey(String key) {
-        return find("key", key).firstResult();
+        long id = ShortKeys.decode(key);
+        return id < 0 ? null : findById(id);
+    }
+
+    @PostLoad
+    void deriveKey() {
+        key = ShortKeys.encode(id);
     }
-}
\ No newline at end of file
+}
@@ -1,44 +1,75 @@
 package com.example;
 
 import jakarta.enterprise.context.ApplicationScoped;
+import jakarta.inject.Inject;
+import jakarta.transaction.Status;
+import jakarta.transaction.Synchronization;
+import jakarta.transaction.TransactionSynchronizationRegistry;
 import jakarta.transaction.Transactional;
-import java.security.SecureRandom;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
-import io.quarkus.cache.CacheResult;
+import io.quarkus.cache.Cache;
+import io.quarkus.cache.CacheName;
+import io.quarkus.cache.CaffeineCache;
 
 @ApplicationScoped
 public class ShortenerService {
 
-    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
-    private static final int KEY_LENGTH = 6;
-    private static final SecureRandom RANDOM = new SecureRandom();
+    // Key -> original URL, Optional.empty() for unknown keys
+    @Inject
+    @CacheName("urls")
+    Cache urls;
+
+    @Inject
+    ClickCounter clicks;
+
+    @Inject
+    TransactionSynchronizationRegistry txRegistry;
 
     @Transactional
     public ShortLink createShortLink(String originalUrl) {
-        String key;
-        do {
-            key = generateKey();
-        } while (ShortLink.findByKey(key) != null);
-
         ShortLink link = new ShortLink();
         link.originalUrl = originalUrl;
-        link.key = key;
         link.persist();
+        // The sequence id is assigned on persist, the key needs no uniqueness check
+        link.key = ShortKeys.encode(link.id);
+
+        cacheAfterCommit(link.key, originalUrl);
         return link;
     }
 
-    @CacheResult(cacheName = "urls")
+    /**
+     * Resolves a key from the cache, going to the database only on a miss, and
+     * counts the click.
+     */
     public Optional<String> getOriginalUrl(String key) {
-        return Optional.ofNullable(ShortLink.findByKey(key))
-                .map(link -> link.originalUrl);
+        long id = ShortKeys.decode(key);
+        if (id < 0) {
+            // Not a key we could have issued, not worth a cache entry
+            return Optional.empty();
+        }
+        Optional<String> url = urls.<String, Optional<String>> get(key,
+                k -> ShortLink.<ShortLink> findByIdOptional(id).map(link -> link.originalUrl))
+                .await().indefinitely();
+        url.ifPresent(u -> clicks.record(id));
+        return url;
     }
 
-    private String generateKey() {
-        StringBuilder sb = new StringBuilder(KEY_LENGTH);
-        for (int i = 0; i < KEY_LENGTH; i++) {
-            sb.append(ALPHABET.charAt(RANDOM.nextInt(ALPHABET.length())));
-        }
-        return sb.toString();
+    // Replaces an "unknown" entry if the key was requested before it existed.
+    // Only once committed, so a rolled back link is never redirected.
+    private void cacheAfterCommit(String key, String originalUrl) {
+        txRegistry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status == Status.STATUS_COMMITTED) {
+                    urls.as(CaffeineCache.class).put(key, CompletableFuture.completedFuture(Optional.of(originalUrl)));
+                }
+            }
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,26 @@
+package com.example;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+class ShortKeysTest {
+
+    @Test
+    void testRoundTrip() {
+        for (long id : new long[] { 0, 1, 61, 62, 3843, 3844, 56_800_235_583L, Long.MAX_VALUE }) {
+            assertEquals(id, ShortKeys.decode(ShortKeys.encode(id)));
+        }
+        assertEquals("b", ShortKeys.encode(1));
+        assertEquals("ba", ShortKeys.encode(62));
+    }
+
+    @Test
+    void testRejectsKeysThatAreNotIssued() {
+        assertEquals(-1, ShortKeys.decode(""));
+        assertEquals(-1, ShortKeys.decode("ab"));
+        assertEquals(-1, ShortKeys.decode("a-b"));
+        // Larger than Long.MAX_VALUE
+        assertEquals(-1, ShortKeys.decode("99999999999"));
+    }
+}
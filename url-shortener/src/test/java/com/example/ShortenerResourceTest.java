@@ -6,6 +6,7 @@ import org.junit.jupiter.api.Test;
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 
 @QuarkusTest
 class ShortenerResourceTest {
@@ -57,4 +58,24 @@ class ShortenerResourceTest {
              .statusCode(404);
     }
 
+    @Test
+    void testKeysAreUnique() {
+        String first = given()
+          .contentType("text/plain")
+          .body("https://example.com/a")
+          .when().post("/api/shorten")
+          .then()
+             .statusCode(200)
+             .extract().asString();
+        String second = given()
+          .contentType("text/plain")
+          .body("https://example.com/a")
+          .when().post("/api/shorten")
+          .then()
+             .statusCode(200)
+             .extract().asString();
+
+        assertNotEquals(first, second);
+    }
+
 }
\ No newline at end of file
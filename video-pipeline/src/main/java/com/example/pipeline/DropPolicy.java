@@ -0,0 +1,22 @@
+package com.example.pipeline;
+
+/**
+ * What a {@link FrameQueue} does when a frame arrives and the queue is full.
+ */
+public enum DropPolicy {
+
+    /**
+     * Wait until the next stage takes a frame (backpressure), no frame is lost
+     */
+    BLOCK,
+
+    /**
+     * Discard the oldest queued frame to make room, keeps latency low for live streams
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard the arriving frame, the queued frames are processed in order
+     */
+    DROP_NEWEST
+}
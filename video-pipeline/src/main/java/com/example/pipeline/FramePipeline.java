@@ -0,0 +1,201 @@
+package com.example.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import io.quarkus.logging.Log;
+
+/**
+ * Chain of stages connected by bounded {@link FrameQueue}s, each stage running
+ * on its own virtual thread.
+ * <p>
+ * A slow stage fills its input queue; the queue's {@link DropPolicy} then either
+ * holds back the stages before it or drops frames, so a slow consumer does not
+ * stall decoding unless backpressure is wanted. The first failure in any stage
+ * aborts all queues and is rethrown by {@link #run()}.
+ * </p>
+ * <p>
+ * A stage owns the frame it takes: it must either pass it on or release it.
+ * </p>
+ */
+public class FramePipeline {
+
+    /**
+     * Work of one stage
+     *
+     * @param <I> input frame type
+     * @param <O> output frame type
+     */
+    @FunctionalInterface
+    public interface StageFunction<I, O> {
+
+        /**
+         * @param input the frame, null for the source stage
+         * @return the frame for the next stage, null if there is none
+         *         (for the source stage: the end of the stream)
+         */
+        O apply(I input) throws Exception;
+    }
+
+    private final class Stage<I, O> {
+        final String name;
+        final FrameQueue<I> input;
+        final FrameQueue<O> output;
+        final StageFunction<I, O> function;
+        final AtomicLong processed = new AtomicLong();
+        final AtomicLong busyNanos = new AtomicLong();
+        volatile long startNanos;
+        volatile long endNanos;
+
+        Stage(String name, FrameQueue<I> input, FrameQueue<O> output, StageFunction<I, O> function) {
+            this.name = name;
+            this.input = input;
+            this.output = output;
+            this.function = function;
+        }
+
+        void run() {
+            startNanos = System.nanoTime();
+            try {
+                while (failure.get() == null) {
+                    I frame = null;
+                    if (input != null) {
+                        frame = input.take();
+                        if (frame == null) {
+                            break;
+                        }
+                    }
+                    long start = System.nanoTime();
+                    O result = function.apply(frame);
+                    if (result == null && input == null) {
+                        break; // end of stream
+                    }
+                    busyNanos.addAndGet(System.nanoTime() - start);
+                    processed.incrementAndGet();
+                    if (result != null && output != null) {
+                        output.put(result);
+                    }
+                }
+                if (output != null) {
+                    output.close();
+                }
+            } catch (Throwable t) {
+                fail(name, t);
+            } finally {
+                endNanos = System.nanoTime();
+            }
+        }
+
+        StageStats stats() {
+            long end = endNanos != 0 ? endNanos : System.nanoTime();
+            long frames = processed.get();
+            double seconds = startNanos != 0 ? (end - startNanos) / 1e9 : 0.0;
+            return new StageStats(
+                    name,
+                    input != null ? input.depth() : 0,
+                    input != null ? input.capacity() : 0,
+                    frames,
+                    input != null ? input.droppedCount() : 0,
+                    seconds > 0 ? frames / seconds : 0.0,
+                    frames > 0 ? busyNanos.get() / 1e6 / frames : 0.0);
+        }
+    }
+
+    private final String name;
+    private final List<Stage<?, ?>> stages = new ArrayList<>();
+    private final List<FrameQueue<?>> queues = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    public FramePipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Create a queue between two stages
+     */
+    public <T> FrameQueue<T> queue(int capacity, DropPolicy dropPolicy, Consumer<? super T> dropHandler) {
+        FrameQueue<T> queue = new FrameQueue<>(capacity, dropPolicy, dropHandler);
+        queues.add(queue);
+        return queue;
+    }
+
+    /**
+     * Add the first stage, producing frames until its function returns null
+     */
+    public <O> FramePipeline source(String stageName, FrameQueue<O> output, StageFunction<Void, O> function) {
+        stages.add(new Stage<>(stageName, null, output, function));
+        return this;
+    }
+
+    /**
+     * Add a stage between two queues
+     */
+    public <I, O> FramePipeline stage(String stageName, FrameQueue<I> input, FrameQueue<O> output,
+            StageFunction<I, O> function) {
+        stages.add(new Stage<>(stageName, input, output, function));
+        return this;
+    }
+
+    /**
+     * Add the last stage
+     */
+    public <I> FramePipeline sink(String stageName, FrameQueue<I> input, StageFunction<I, Void> function) {
+        stages.add(new Stage<>(stageName, input, null, function));
+        return this;
+    }
+
+    /**
+     * Start all stages and wait until the stream is through or a stage failed
+     *
+     * @throws RuntimeException wrapping the first stage failure
+     */
+    public void run() {
+        List<Thread> threads = new ArrayList<>();
+        for (Stage<?, ?> stage : stages) {
+            threads.add(Thread.ofVirtual().name(name + "-" + stage.name).start(stage::run));
+        }
+        boolean interrupted = false;
+        // Stages use native resources the caller frees afterwards, so always wait for all of them
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    if (!interrupted) {
+                        interrupted = true;
+                        fail("caller", e);
+                        threads.forEach(Thread::interrupt);
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw cause instanceof RuntimeException runtime ? runtime : new RuntimeException(cause);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Per-stage queue depth and throughput, also while the pipeline runs
+     */
+    public List<StageStats> getStats() {
+        return stages.stream().map(Stage::stats).toList();
+    }
+
+    private void fail(String stageName, Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            Log.errorf(t, "Pipeline %s failed in stage %s", name, stageName);
+        }
+        queues.forEach(FrameQueue::abort);
+    }
+}
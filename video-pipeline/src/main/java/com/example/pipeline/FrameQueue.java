@@ -0,0 +1,177 @@
+package com.example.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Bounded ring buffer between two pipeline stages.
+ * <p>
+ * A full queue applies its {@link DropPolicy}. Frames that are dropped, or still
+ * queued when the pipeline is aborted, are handed to the drop handler so their
+ * buffers can go back to a pool.
+ * </p>
+ *
+ * @param <T> the frame type
+ */
+public class FrameQueue<T> {
+
+    private final Object[] items;
+    private final DropPolicy dropPolicy;
+    private final Consumer<? super T> dropHandler;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int head;
+    private int count;
+    private boolean closed;
+    private boolean aborted;
+    private long dropped;
+
+    /**
+     * @param capacity    maximum number of queued frames
+     * @param dropPolicy  what to do when the queue is full
+     * @param dropHandler releases a frame that will not be processed
+     */
+    public FrameQueue(int capacity, DropPolicy dropPolicy, Consumer<? super T> dropHandler) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.items = new Object[capacity];
+        this.dropPolicy = dropPolicy;
+        this.dropHandler = dropHandler;
+    }
+
+    /**
+     * Add a frame, waiting or dropping according to the policy when the queue is full
+     *
+     * @return false if the frame was dropped
+     */
+    public boolean put(T item) throws InterruptedException {
+        T discarded;
+        boolean accepted = true;
+        lock.lockInterruptibly();
+        try {
+            while (count == items.length && dropPolicy == DropPolicy.BLOCK && !aborted) {
+                notFull.await();
+            }
+            if (aborted || closed) {
+                discarded = item;
+                accepted = false;
+            } else if (count < items.length) {
+                discarded = null;
+                enqueue(item);
+            } else if (dropPolicy == DropPolicy.DROP_OLDEST) {
+                dropped++;
+                discarded = dequeue();
+                enqueue(item);
+            } else {
+                dropped++;
+                discarded = item;
+                accepted = false;
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (discarded != null) {
+            dropHandler.accept(discarded);
+        }
+        return accepted;
+    }
+
+    /**
+     * Wait for the next frame
+     *
+     * @return the frame, or null once the queue is closed and empty, or aborted
+     */
+    public T take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (count == 0 && !closed && !aborted) {
+                notEmpty.await();
+            }
+            if (aborted || count == 0) {
+                return null;
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * No more frames will be added, the consumer still gets the queued ones
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stop the pipeline: wake up producer and consumer and release all queued frames
+     */
+    public void abort() {
+        List<T> remaining = new ArrayList<>();
+        lock.lock();
+        try {
+            aborted = true;
+            while (count > 0) {
+                remaining.add(dequeue());
+            }
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        remaining.forEach(dropHandler);
+    }
+
+    public int depth() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int capacity() {
+        return items.length;
+    }
+
+    /**
+     * Frames discarded by the drop policy
+     */
+    public long droppedCount() {
+        lock.lock();
+        try {
+            return dropped;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(T item) {
+        items[(head + count) % items.length] = item;
+        count++;
+        notEmpty.signal();
+    }
+
+    @SuppressWarnings("unchecked")
+    private T dequeue() {
+        T item = (T) items[head];
+        items[head] = null;
+        head = (head + 1) % items.length;
+        count--;
+        notFull.signal();
+        return item;
+    }
+}
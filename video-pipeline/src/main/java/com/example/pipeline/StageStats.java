@@ -0,0 +1,22 @@
+package com.example.pipeline;
+
+/**
+ * Metrics of one pipeline stage
+ *
+ * @param stage           stage name
+ * @param queueDepth      frames waiting in the stage's input queue
+ * @param queueCapacity   capacity of the input queue, 0 for the source stage
+ * @param processed       frames the stage has processed
+ * @param dropped         frames its input queue dropped
+ * @param framesPerSecond throughput since the stage started
+ * @param averageMillis   average processing time per frame
+ */
+public record StageStats(
+        String stage,
+        int queueDepth,
+        int queueCapacity,
+        long processed,
+        long dropped,
+        double framesPerSecond,
+        double averageMillis) {
+}
@@ -0,0 +1,133 @@
+package com.example.service;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.lang.foreign.MemorySegment;
+
+/**
+ * Reusable BGR24 frame whose pixels are both a {@link BufferedImage} and a
+ * {@link MemorySegment}.
+ * <p>
+ * The pixel storage is the {@code byte[]} behind a {@code TYPE_3BYTE_BGR} image,
+ * which has the same layout as FFmpeg's {@code AV_PIX_FMT_BGR24} without row
+ * padding. Moving a frame between Java 2D and libav is therefore a single bulk
+ * segment copy (one per row if the native frame has padded rows), and drawing
+ * on the image needs no conversion at all.
+ * </p>
+ * <p>
+ * Frame buffers are meant to be pooled, see {@link FrameBufferPool}.
+ * </p>
+ */
+public final class FrameBuffer {
+
+    private static final int BYTES_PER_PIXEL = 3;
+
+    private final BufferedImage image;
+    private final byte[] pixels;
+    private final MemorySegment segment;
+
+    public FrameBuffer(int width, int height) {
+        this(new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR));
+    }
+
+    private FrameBuffer(BufferedImage image) {
+        this.image = image;
+        this.pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        this.segment = MemorySegment.ofArray(pixels);
+    }
+
+    /**
+     * Use the pixels of an image as a frame buffer without copying
+     *
+     * @return the frame buffer, or null if the image is not an unpadded BGR24 image
+     */
+    public static FrameBuffer wrap(BufferedImage image) {
+        return isPackedBgr(image) ? new FrameBuffer(image) : null;
+    }
+
+    public int width() {
+        return image.getWidth();
+    }
+
+    public int height() {
+        return image.getHeight();
+    }
+
+    /**
+     * Bytes per row, there is no padding between rows
+     */
+    public int stride() {
+        return image.getWidth() * BYTES_PER_PIXEL;
+    }
+
+    public BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * The pixels as a heap segment, B, G, R per pixel
+     */
+    public MemorySegment segment() {
+        return segment;
+    }
+
+    public boolean hasSize(int width, int height) {
+        return image.getWidth() == width && image.getHeight() == height;
+    }
+
+    /**
+     * Copy BGR24 pixels into this frame
+     *
+     * @param source       the pixels, e.g. a native AVFrame plane
+     * @param sourceStride bytes per row of the source
+     */
+    public void copyFrom(MemorySegment source, int sourceStride) {
+        copyRows(source, sourceStride, segment, stride(), stride(), height());
+    }
+
+    /**
+     * Copy an image of the same size into this frame, with an array copy if it is
+     * BGR24 already and a Java 2D conversion otherwise
+     */
+    public void copyFrom(BufferedImage source) {
+        if (isPackedBgr(source) && hasSize(source.getWidth(), source.getHeight())) {
+            byte[] sourcePixels = ((DataBufferByte) source.getRaster().getDataBuffer()).getData();
+            System.arraycopy(sourcePixels, 0, pixels, 0, pixels.length);
+            return;
+        }
+        Graphics2D g2d = image.createGraphics();
+        g2d.drawImage(source, 0, 0, null);
+        g2d.dispose();
+    }
+
+    /**
+     * Copy rows between segments of any kind, in one bulk copy if neither side has row padding
+     */
+    static void copyRows(MemorySegment source, int sourceStride, MemorySegment target, int targetStride,
+            int rowBytes, int rows) {
+        if (sourceStride == rowBytes && targetStride == rowBytes) {
+            MemorySegment.copy(source, 0, target, 0, (long) rowBytes * rows);
+            return;
+        }
+        for (int y = 0; y < rows; y++) {
+            MemorySegment.copy(source, (long) y * sourceStride, target, (long) y * targetStride, rowBytes);
+        }
+    }
+
+    // TYPE_3BYTE_BGR images can still be sub-images sharing a larger buffer
+    private static boolean isPackedBgr(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_3BYTE_BGR
+                || !(image.getRaster().getDataBuffer() instanceof DataBufferByte buffer)
+                || !(image.getSampleModel() instanceof ComponentSampleModel sampleModel)) {
+            return false;
+        }
+        return image.getRaster().getSampleModelTranslateX() == 0
+                && image.getRaster().getSampleModelTranslateY() == 0
+                && sampleModel.getScanlineStride() == image.getWidth() * BYTES_PER_PIXEL
+                && buffer.getNumBanks() == 1
+                && buffer.getOffset() == 0
+                && buffer.getData().length == image.getWidth() * image.getHeight() * BYTES_PER_PIXEL;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.service;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of {@link FrameBuffer}s by frame size, so streams of equally sized
+ * frames allocate their pixel storage once instead of once per frame.
+ * Thread-safe.
+ */
+public class FrameBufferPool {
+
+    private static final class SizeClass {
+        final Queue<FrameBuffer> idle = new ConcurrentLinkedQueue<>();
+        final AtomicInteger idleCount = new AtomicInteger();
+    }
+
+    private final int maxIdlePerSize;
+    private final Map<Long, SizeClass> sizes = new ConcurrentHashMap<>();
+    private final AtomicLong allocations = new AtomicLong();
+
+    /**
+     * @param maxIdlePerSize how many released buffers of one size are kept for reuse
+     */
+    public FrameBufferPool(int maxIdlePerSize) {
+        this.maxIdlePerSize = maxIdlePerSize;
+    }
+
+    /**
+     * Take an idle buffer of this size, or allocate one if none is left
+     */
+    public FrameBuffer acquire(int width, int height) {
+        SizeClass sizeClass = sizes.computeIfAbsent(key(width, height), k -> new SizeClass());
+        FrameBuffer buffer = sizeClass.idle.poll();
+        if (buffer != null) {
+            sizeClass.idleCount.decrementAndGet();
+            return buffer;
+        }
+        allocations.incrementAndGet();
+        return new FrameBuffer(width, height);
+    }
+
+    /**
+     * Return a buffer for reuse, it must not be used by the caller afterwards
+     */
+    public void release(FrameBuffer buffer) {
+        if (buffer == null) {
+            return;
+        }
+        SizeClass sizeClass = sizes.computeIfAbsent(key(buffer.width(), buffer.height()), k -> new SizeClass());
+        if (sizeClass.idleCount.incrementAndGet() <= maxIdlePerSize) {
+            sizeClass.idle.offer(buffer);
+        } else {
+            sizeClass.idleCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Number of buffers allocated so far, stays flat once the pool is warm
+     */
+    public long getAllocationCount() {
+        return allocations.get();
+    }
+
+    private static long key(int width, int height) {
+        return ((long) width << 32) | (height & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,402 @@
+package com.example.service;
+
+import static com.example.ffmpeg.generated.FFmpeg.*;
+import com.example.ffmpeg.generated.AVFrame;
+
+import io.quarkus.logging.Log;
+import java.awt.image.BufferedImage;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+
+/**
+ * Long-lived hqdn3d filter graph for one stream of frames, e.g. one WebSocket
+ * connection or one video extraction job.
+ * <p>
+ * The {@code buffer -> hqdn3d -> format -> buffersink} graph is built on the first
+ * frame and reused for all following frames of the same size, so hqdn3d keeps the
+ * temporal state its {@code luma_tmp}/{@code chroma_tmp} denoising depends on.
+ * The input and output {@code AVFrame}s are allocated once; the output buffers come
+ * from the graph's own frame pool and are recycled on every pull. The graph is only
+ * rebuilt when the frame size changes.
+ * </p>
+ * <p>
+ * Frames are BGR24, the layout of {@link FrameBuffer} and {@code TYPE_3BYTE_BGR}
+ * images, so moving pixels in and out of the graph is a bulk copy. The filtered
+ * frame is written to a frame buffer owned by the session.
+ * Calls are serialized on the session; close it when the stream ends.
+ * </p>
+ *
+ * @see FFmpegFilterService#openSession()
+ */
+public class Hqdn3dSession implements AutoCloseable {
+
+    private static final int BYTES_PER_PIXEL = 3;
+    private static final int FRAME_ALIGNMENT = 32;
+    private static final int STATS_LOG_INTERVAL = 300;
+
+    /**
+     * Frame rate and per-frame latency of a session
+     *
+     * @param frames               frames filtered so far
+     * @param framesPerSecond      observed frame rate between the first and the last frame
+     * @param averageLatencyMillis average time spent filtering one frame, including conversions
+     * @param maxLatencyMillis     slowest frame so far
+     */
+    public record Stats(long frames, double framesPerSecond, double averageLatencyMillis, double maxLatencyMillis) {
+
+        /**
+         * Frame rate this session could sustain if frames arrived back to back
+         */
+        public double sustainableFramesPerSecond() {
+            return averageLatencyMillis > 0 ? 1000.0 / averageLatencyMillis : 0.0;
+        }
+    }
+
+    private final String hqdn3dArgs;
+
+    // Lives as long as the current graph: pointer slots for the native calls
+    private Arena graphArena;
+    private MemorySegment graph;
+    private MemorySegment bufferSrcCtx;
+    private MemorySegment bufferSinkCtx;
+    private MemorySegment inputFrame;
+    private MemorySegment outputFrame;
+    private MemorySegment pointerSlot;
+    private int width;
+    private int height;
+    private boolean graphFailed;
+    private long pts;
+    private boolean closed;
+
+    // Filtered frame handed to the caller, and scratch space for images that are not BGR24
+    private FrameBuffer output;
+    private FrameBuffer converted;
+
+    private long frames;
+    private long totalNanos;
+    private long maxNanos;
+    private long firstFrameNanos;
+    private long lastFrameNanos;
+
+    Hqdn3dSession(String hqdn3dArgs) {
+        this.hqdn3dArgs = hqdn3dArgs;
+    }
+
+    /**
+     * Denoise one frame of the stream
+     * <p>
+     * BGR24 images are read without conversion, other image types are converted once.
+     * Returns the input image if filtering fails or the session is already closed.
+     * </p>
+     *
+     * @return the denoised image, owned by the session and overwritten by the next call
+     */
+    public synchronized BufferedImage filter(BufferedImage image) {
+        if (image == null || closed) {
+            return image;
+        }
+        FrameBuffer source = FrameBuffer.wrap(image);
+        if (source == null) {
+            converted = reuse(converted, image.getWidth(), image.getHeight());
+            converted.copyFrom(image);
+            source = converted;
+        }
+        if (!filterFrame(source.segment(), source.width(), source.height(), null)) {
+            return image;
+        }
+        return output.image();
+    }
+
+    /**
+     * Denoise a frame buffer in place, for pipelines that pass their own pooled buffers along
+     *
+     * @return false if the frame was left unchanged because filtering failed or the
+     *         session is already closed
+     */
+    public synchronized boolean filter(FrameBuffer frame) {
+        return filterFrame(frame.segment(), frame.width(), frame.height(), frame);
+    }
+
+    /**
+     * Denoise one frame of BGR24 pixels (stride {@code width * 3}), heap or native
+     *
+     * @return the denoised frame, owned by the session and overwritten by the next call.
+     *         Holds a copy of the input if filtering fails or the session is closed.
+     */
+    public synchronized FrameBuffer filter(MemorySegment pixels, int frameWidth, int frameHeight) {
+        if (closed || !filterFrame(pixels, frameWidth, frameHeight, null)) {
+            output = reuse(output, frameWidth, frameHeight);
+            output.copyFrom(pixels, frameWidth * BYTES_PER_PIXEL);
+        }
+        return output;
+    }
+
+    /**
+     * Run one frame through the graph
+     *
+     * @param target where the filtered frame goes, null for the session's output frame buffer
+     */
+    private boolean filterFrame(MemorySegment pixels, int frameWidth, int frameHeight, FrameBuffer target) {
+        if (closed) {
+            return false;
+        }
+        long start = System.nanoTime();
+        try {
+            if (!prepareInput(frameWidth, frameHeight)) {
+                return false;
+            }
+            int inputStride = frameStride(inputFrame);
+            FrameBuffer.copyRows(pixels, frameWidth * BYTES_PER_PIXEL,
+                    frameData(inputFrame, frameHeight), inputStride, frameWidth * BYTES_PER_PIXEL, frameHeight);
+            if (!pushAndPull()) {
+                return false;
+            }
+            if (AVFrame.width(outputFrame) != frameWidth || AVFrame.height(outputFrame) != frameHeight
+                    || AVFrame.format(outputFrame) != AV_PIX_FMT_BGR24()) {
+                Log.warnf("Unexpected filtered frame: expected %dx%d BGR24, got %dx%d format %d",
+                        frameWidth, frameHeight, AVFrame.width(outputFrame), AVFrame.height(outputFrame),
+                        AVFrame.format(outputFrame));
+                return false;
+            }
+            if (target == null) {
+                output = reuse(output, frameWidth, frameHeight);
+                target = output;
+            }
+            target.copyFrom(frameData(outputFrame, frameHeight), frameStride(outputFrame));
+            return true;
+        } catch (Exception e) {
+            Log.errorf(e, "Error applying hqdn3d filter: %s", e.getMessage());
+            return false;
+        } finally {
+            recordFrame(start);
+        }
+    }
+
+    public synchronized Stats getStats() {
+        double elapsedSeconds = (lastFrameNanos - firstFrameNanos) / 1e9;
+        double fps = frames > 1 && elapsedSeconds > 0 ? (frames - 1) / elapsedSeconds : 0.0;
+        double average = frames > 0 ? totalNanos / 1e6 / frames : 0.0;
+        return new Stats(frames, fps, average, maxNanos / 1e6);
+    }
+
+    /**
+     * Flush and free the filter graph and the pooled frames
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        releaseGraph();
+        if (frames > 0) {
+            Stats stats = getStats();
+            Log.infof("hqdn3d session closed after %d frames: %.1f fps, %.2f ms avg / %.2f ms max per frame",
+                    stats.frames(), stats.framesPerSecond(), stats.averageLatencyMillis(), stats.maxLatencyMillis());
+        }
+    }
+
+    /**
+     * Make sure a graph for this frame size exists and the input frame can be written
+     */
+    private boolean prepareInput(int frameWidth, int frameHeight) {
+        if (frameWidth != width || frameHeight != height) {
+            if (graph != null) {
+                Log.infof("Frame size changed from %dx%d to %dx%d, rebuilding hqdn3d graph",
+                        width, height, frameWidth, frameHeight);
+            }
+            releaseGraph();
+            width = frameWidth;
+            height = frameHeight;
+            graphFailed = !buildGraph();
+            if (graphFailed) {
+                releaseGraph();
+            }
+        }
+        if (graphFailed) {
+            return false;
+        }
+        // No-op unless the graph still holds a reference to the previous input buffer
+        int ret = av_frame_make_writable(inputFrame);
+        if (ret < 0) {
+            Log.errorf("Could not make input frame writable: %d", ret);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean buildGraph() {
+        graphArena = Arena.ofShared();
+        pointerSlot = graphArena.allocate(C_POINTER);
+
+        graph = avfilter_graph_alloc();
+        if (isNull(graph)) {
+            Log.error("Could not allocate filter graph");
+            return false;
+        }
+
+        // pts advance by one per frame, a 30 fps time base keeps the stream timing plausible
+        String bufferSrcArgs = String.format("video_size=%dx%d:pix_fmt=%d:time_base=1/30:pixel_aspect=1/1",
+                width, height, AV_PIX_FMT_BGR24());
+        bufferSrcCtx = createFilter("buffer", "in", bufferSrcArgs);
+        MemorySegment hqdn3dCtx = createFilter("hqdn3d", "hqdn3d", hqdn3dArgs);
+        MemorySegment formatCtx = createFilter("format", "format", "pix_fmts=bgr24");
+        bufferSinkCtx = createFilter("buffersink", "out", null);
+        if (bufferSrcCtx == null || hqdn3dCtx == null || formatCtx == null || bufferSinkCtx == null) {
+            return false;
+        }
+
+        // Link filters: buffer -> hqdn3d -> format -> buffersink
+        int ret = avfilter_link(bufferSrcCtx, 0, hqdn3dCtx, 0);
+        if (ret >= 0) {
+            ret = avfilter_link(hqdn3dCtx, 0, formatCtx, 0);
+        }
+        if (ret >= 0) {
+            ret = avfilter_link(formatCtx, 0, bufferSinkCtx, 0);
+        }
+        if (ret < 0) {
+            Log.errorf("Could not link hqdn3d filter graph: %d", ret);
+            return false;
+        }
+
+        ret = avfilter_graph_config(graph, MemorySegment.NULL);
+        if (ret < 0) {
+            Log.errorf("Could not configure filter graph: %d", ret);
+            return false;
+        }
+
+        inputFrame = av_frame_alloc();
+        outputFrame = av_frame_alloc();
+        if (isNull(inputFrame) || isNull(outputFrame)) {
+            Log.error("Could not allocate frames");
+            return false;
+        }
+        AVFrame.width(inputFrame, width);
+        AVFrame.height(inputFrame, height);
+        AVFrame.format(inputFrame, AV_PIX_FMT_BGR24());
+        ret = av_frame_get_buffer(inputFrame, FRAME_ALIGNMENT);
+        if (ret < 0) {
+            Log.errorf("Could not allocate input frame buffer: %d", ret);
+            return false;
+        }
+
+        pts = 0;
+        Log.debugf("hqdn3d graph configured for %dx%d", width, height);
+        return true;
+    }
+
+    private MemorySegment createFilter(String filterName, String instanceName, String args) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment filter = avfilter_get_by_name(arena.allocateFrom(filterName));
+            if (isNull(filter)) {
+                Log.errorf("Could not find %s filter", filterName);
+                return null;
+            }
+            int ret = avfilter_graph_create_filter(
+                    pointerSlot,
+                    filter,
+                    arena.allocateFrom(instanceName),
+                    args != null ? arena.allocateFrom(args) : MemorySegment.NULL,
+                    MemorySegment.NULL,
+                    graph);
+            if (ret < 0) {
+                Log.errorf("Could not create %s filter: %d", filterName, ret);
+                return null;
+            }
+            return pointerSlot.get(C_POINTER, 0);
+        }
+    }
+
+    /**
+     * Push the input frame through the graph and pull the filtered frame into the output frame
+     */
+    private boolean pushAndPull() {
+        AVFrame.pts(inputFrame, pts++);
+        // KEEP_REF: the graph takes its own reference, the pooled input frame keeps its buffer
+        int ret = av_buffersrc_add_frame_flags(bufferSrcCtx, inputFrame, AV_BUFFERSRC_FLAG_KEEP_REF());
+        if (ret < 0) {
+            Log.errorf("Could not add frame to buffer source: %d", ret);
+            return false;
+        }
+        // Hands the previous output buffer back to the graph's frame pool
+        av_frame_unref(outputFrame);
+        ret = av_buffersink_get_frame(bufferSinkCtx, outputFrame);
+        if (ret < 0) {
+            Log.errorf("Could not get frame from buffer sink: %d", ret);
+            return false;
+        }
+        return true;
+    }
+
+    private void releaseGraph() {
+        if (!isNull(graph) && bufferSrcCtx != null && bufferSinkCtx != null && !isNull(outputFrame)) {
+            // Signal end of stream and drain, so no frame references outlive the graph
+            av_buffersrc_close(bufferSrcCtx, AV_NOPTS_VALUE(), 0);
+            av_frame_unref(outputFrame);
+            while (av_buffersink_get_frame(bufferSinkCtx, outputFrame) >= 0) {
+                av_frame_unref(outputFrame);
+            }
+        }
+        // The free functions take the address of the pointer and reset it to NULL
+        if (!isNull(inputFrame)) {
+            pointerSlot.set(C_POINTER, 0, inputFrame);
+            av_frame_free(pointerSlot);
+        }
+        if (!isNull(outputFrame)) {
+            pointerSlot.set(C_POINTER, 0, outputFrame);
+            av_frame_free(pointerSlot);
+        }
+        if (!isNull(graph)) {
+            pointerSlot.set(C_POINTER, 0, graph);
+            avfilter_graph_free(pointerSlot);
+        }
+        if (graphArena != null) {
+            graphArena.close();
+        }
+        graphArena = null;
+        graph = null;
+        bufferSrcCtx = null;
+        bufferSinkCtx = null;
+        inputFrame = null;
+        outputFrame = null;
+        pointerSlot = null;
+    }
+
+    private void recordFrame(long start) {
+        long end = System.nanoTime();
+        long elapsed = end - start;
+        if (frames == 0) {
+            firstFrameNanos = end;
+        }
+        lastFrameNanos = end;
+        frames++;
+        totalNanos += elapsed;
+        maxNanos = Math.max(maxNanos, elapsed);
+        if (frames % STATS_LOG_INTERVAL == 0) {
+            Stats stats = getStats();
+            Log.debugf("hqdn3d: %d frames, %.1f fps, %.2f ms avg / %.2f ms max per frame",
+                    stats.frames(), stats.framesPerSecond(), stats.averageLatencyMillis(), stats.maxLatencyMillis());
+        }
+    }
+
+    private static FrameBuffer reuse(FrameBuffer buffer, int frameWidth, int frameHeight) {
+        return buffer != null && buffer.hasSize(frameWidth, frameHeight)
+                ? buffer
+                : new FrameBuffer(frameWidth, frameHeight);
+    }
+
+    // The first plane of a frame, sized so it can be used as a copy source or target
+    private static MemorySegment frameData(MemorySegment frame, int frameHeight) {
+        return AVFrame.data(frame).getAtIndex(ValueLayout.ADDRESS, 0)
+                .reinterpret((long) frameStride(frame) * frameHeight);
+    }
+
+    private static int frameStride(MemorySegment frame) {
+        return AVFrame.linesize(frame).getAtIndex(ValueLayout.JAVA_INT, 0);
+    }
+
+    private static boolean isNull(MemorySegment segment) {
+        return segment == null || segment.equals(MemorySegment.NULL);
+    }
+}
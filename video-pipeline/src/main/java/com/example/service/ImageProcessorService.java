@@ -3,7 +3,6 @@ package com.example.service;
 import java.awt.Graphics2D;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.awt.image.DataBufferByte;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
@@ -19,11 +18,20 @@ import jakarta.inject.Inject;
 @ApplicationScoped
 public class ImageProcessorService {
 
+    private static final int MAX_POOLED_FRAMES_PER_SIZE = 4;
+    private static final int LOGO_MARGIN = 20;
+
     @Inject
     FFmpegFilterService filterService;
 
     private BufferedImage logoImage;
 
+    // Logo at 50% of its original size, scaled once instead of on every frame
+    private BufferedImage scaledLogo;
+
+    // Frames are drawn on pooled BGR24 buffers, so a stream allocates no per-frame pixel storage
+    private final FrameBufferPool framePool = new FrameBufferPool(MAX_POOLED_FRAMES_PER_SIZE);
+
     @PostConstruct
     void init() {
         try {
@@ -31,6 +39,7 @@ public class ImageProcessorService {
             File logoFile = new File("src/main/resources/logo.png");
             if (logoFile.exists()) {
                 this.logoImage = ImageIO.read(logoFile);
+                this.scaledLogo = scaleLogo(logoImage);
                 Log.infof("Logo loaded: %dx%d", logoImage.getWidth(), logoImage.getHeight());
             } else {
                 Log.error("Logo not found!");
@@ -41,46 +50,45 @@ public class ImageProcessorService {
     }
 
     public byte[] overlayLogo(MemorySegment rawBgrData, int width, int height) {
+        FrameBuffer frame = framePool.acquire(width, height);
         try {
-            // 1. Create a Java Image that wraps the raw bytes
-            // TYPE_3BYTE_BGR matches the FFmpeg output perfectly
-            BufferedImage frame = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
-
-            // Get access to the image's internal byte array
-            byte[] imagePixelData = ((DataBufferByte) frame.getRaster().getDataBuffer()).getData();
-
-            // Copy FFmpeg native memory -> Java Heap Array
-            // (This copy is very fast, typically <1ms for HD frames)
-            MemorySegment.copy(rawBgrData, 0, MemorySegment.ofArray(imagePixelData), 0, imagePixelData.length);
-
-            // 2. Draw the Logo
-            Graphics2D g2d = frame.createGraphics();
-
-            // High quality rendering
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-            if (logoImage != null) {
-                // Scale logo to 50% of original size
-                int scaledWidth = logoImage.getWidth() / 2;
-                int scaledHeight = logoImage.getHeight() / 2;
-                
-                // Position in upper right corner
-                int x = width - scaledWidth - 20;
-                int y = 20;
-
-                // Java 2D handles PNG transparency automatically
-                g2d.drawImage(logoImage, x, y, scaledWidth, scaledHeight, null);
-            }
+            // TYPE_3BYTE_BGR matches the FFmpeg output perfectly, one bulk copy
+            frame.copyFrom(rawBgrData, frame.stride());
+            return overlayLogo(frame);
+        } finally {
+            framePool.release(frame);
+        }
+    }
+
+    /**
+     * Overlay logo on a BGR24 frame in place and encode it
+     */
+    public byte[] overlayLogo(FrameBuffer frame) {
+        drawLogo(frame);
+        return encodeJpeg(frame);
+    }
+
+    /**
+     * Overlay logo on a BGR24 frame in place
+     */
+    public void drawLogo(FrameBuffer frame) {
+        Graphics2D g2d = frame.image().createGraphics();
+        try {
+            drawLogo(g2d, frame.width());
+        } finally {
             g2d.dispose();
+        }
+    }
 
-            // 3. Export to JPEG
+    /**
+     * Encode a frame as JPEG
+     */
+    public byte[] encodeJpeg(FrameBuffer frame) {
+        try {
             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(frame, "jpg", baos);
+            ImageIO.write(frame.image(), "jpg", baos);
             return baos.toByteArray();
-
-        } catch (Exception e) {
+        } catch (IOException e) {
             throw new RuntimeException("Java2D Processing Failed", e);
         }
     }
@@ -90,50 +98,56 @@ public class ImageProcessorService {
      * Applies hqdn3d denoising filter before overlaying the logo
      */
     public byte[] overlayLogo(BufferedImage frame) {
-        try {
-            int width = frame.getWidth();
-            int height = frame.getHeight();
-
-            // Apply hqdn3d denoising filter
-            BufferedImage denoisedFrame = filterService.applyHqdn3d(frame);
-            if (denoisedFrame == null) {
-                denoisedFrame = frame; // Fallback to original if denoising fails
-            }
-
-            // Create a copy to avoid modifying the original
-            BufferedImage processedFrame = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-            Graphics2D g2d = processedFrame.createGraphics();
-
-            // High quality rendering
-            g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
-
-            // Draw the denoised frame
-            g2d.drawImage(denoisedFrame, 0, 0, null);
-
-            // Overlay the logo
-            if (logoImage != null) {
-                // Scale logo to 50% of original size
-                int scaledWidth = logoImage.getWidth() / 2;
-                int scaledHeight = logoImage.getHeight() / 2;
-                
-                // Position in upper right corner
-                int x = width - scaledWidth - 20;
-                int y = 20;
-                
-                g2d.drawImage(logoImage, x, y, scaledWidth, scaledHeight, null);
-            }
-
-            g2d.dispose();
+        return overlayLogo(frame, null);
+    }
 
-            // Export to JPEG
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(processedFrame, "jpg", baos);
-            return baos.toByteArray();
+    /**
+     * Overlay logo on a frame of a stream, denoised through the stream's hqdn3d session
+     *
+     * @param denoiser the stream's session, or null to denoise this frame on its own
+     */
+    public byte[] overlayLogo(BufferedImage frame, Hqdn3dSession denoiser) {
+        // Apply hqdn3d denoising filter
+        BufferedImage denoisedFrame = denoiser != null
+                ? denoiser.filter(frame)
+                : filterService.applyHqdn3d(frame);
+        if (denoisedFrame == null) {
+            denoisedFrame = frame; // Fallback to original if denoising fails
+        }
 
-        } catch (Exception e) {
+        // Draw on a pooled copy to avoid modifying the original
+        FrameBuffer processedFrame = framePool.acquire(frame.getWidth(), frame.getHeight());
+        try {
+            processedFrame.copyFrom(denoisedFrame);
+            return overlayLogo(processedFrame);
+        } catch (RuntimeException e) {
             throw new RuntimeException("Image Processing Failed", e);
+        } finally {
+            framePool.release(processedFrame);
         }
     }
-}
\ No newline at end of file
+
+    // Position in upper right corner, Java 2D handles PNG transparency automatically
+    private void drawLogo(Graphics2D g2d, int frameWidth) {
+        if (scaledLogo != null) {
+            int x = frameWidth - scaledLogo.getWidth() - LOGO_MARGIN;
+            g2d.drawImage(scaledLogo, x, LOGO_MARGIN, null);
+        }
+    }
+
+    private static BufferedImage scaleLogo(BufferedImage logo) {
+        // Scale logo to 50% of original size
+        int scaledWidth = Math.max(1, logo.getWidth() / 2);
+        int scaledHeight = Math.max(1, logo.getHeight() / 2);
+        BufferedImage scaled = new BufferedImage(scaledWidth, scaledHeight, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g2d = scaled.createGraphics();
+
+        // High quality rendering
+        g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2d.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+        g2d.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g2d.drawImage(logo, 0, 0, scaledWidth, scaledHeight, null);
+        g2d.dispose();
+        return scaled;
+    }
+}
@@ -8,12 +8,25 @@ import com.example.ffmpeg.generated.AVStream;
 import com.example.ffmpeg.generated.AVPacket;
 import com.example.ffmpeg.generated.AVFrame;
 
+import com.example.pipeline.DropPolicy;
+import com.example.pipeline.FramePipeline;
+import com.example.pipeline.FrameQueue;
+import com.example.pipeline.StageStats;
+
 import io.quarkus.logging.Log;
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.lang.foreign.*;
 import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.BiConsumer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
 
 @ApplicationScoped
 public class VideoExtractorService {
@@ -21,6 +34,7 @@ public class VideoExtractorService {
     private static final int VIDEO_STREAM_INDEX = 0;
     private static final int BGR_BYTES_PER_PIXEL = 3;
     private static final int MAX_PLANES = 4;
+    private static final int MAX_POOLED_FRAMES_PER_SIZE = 32;
 
     static {
         try {
@@ -38,15 +52,48 @@ public class VideoExtractorService {
     @Inject
     ImageProcessorService imageProcessor;
 
+    @Inject
+    FFmpegFilterService filterService;
+
+    @ConfigProperty(name = "video.pipeline.queue-capacity", defaultValue = "8")
+    int queueCapacity;
+
+    @ConfigProperty(name = "video.pipeline.drop-policy", defaultValue = "BLOCK")
+    DropPolicy dropPolicy;
+
+    // Converted frames travel through the pipeline in pooled BGR24 buffers
+    private final FrameBufferPool framePool = new FrameBufferPool(MAX_POOLED_FRAMES_PER_SIZE);
+    private final Map<String, FramePipeline> activePipelines = new ConcurrentHashMap<>();
+    private final AtomicLong jobCounter = new AtomicLong();
+
     public void extractAndProcess(Path videoPath, BiConsumer<byte[], Integer> frameConsumer) {
+        extractAndProcess(videoPath, frameConsumer, queueCapacity, dropPolicy);
+    }
+
+    /**
+     * Process a video in a staged pipeline: decode, color convert, denoise and overlay,
+     * JPEG encode and the frame consumer each run on their own virtual thread, connected
+     * by bounded queues. Several videos can be processed at once, each in its own pipeline.
+     * Blocks until the video is through.
+     *
+     * @param queueCapacity frames each queue between two stages can hold
+     * @param dropPolicy    what a full queue does; {@link DropPolicy#BLOCK} delivers every frame,
+     *                      the drop policies keep decoding going when the consumer is slow
+     */
+    public void extractAndProcess(Path videoPath, BiConsumer<byte[], Integer> frameConsumer,
+                                  int queueCapacity, DropPolicy dropPolicy) {
         Log.infof("Starting video extraction and processing: %s", videoPath);
-        try (Arena arena = Arena.ofConfined()) {
+        // Shared: the stages run on their own threads
+        try (Arena arena = Arena.ofShared();
+                Hqdn3dSession denoiser = filterService.openSession()) {
             MemorySegment formatCtxPtr = arena.allocate(C_POINTER);
+            MemorySegment freeSlot = arena.allocate(C_POINTER);
             MemorySegment formatCtx = MemorySegment.NULL;
             MemorySegment codecCtx = MemorySegment.NULL;
             MemorySegment swsCtx = MemorySegment.NULL;
             MemorySegment packet = MemorySegment.NULL;
             MemorySegment frame = MemorySegment.NULL;
+            DecodedFramePool decodedFrames = new DecodedFramePool();
 
             try {
                 VideoContext videoCtx = initializeVideoContext(videoPath, arena, formatCtxPtr);
@@ -60,17 +107,102 @@ public class VideoExtractorService {
                 packet = av_packet_alloc();
                 frame = av_frame_alloc();
 
-                processVideoFrames(formatCtx, codecCtx, frame, packet, converter, frameConsumer);
+                String jobId = videoPath.getFileName() + "-" + jobCounter.incrementAndGet();
+                FramePipeline pipeline = buildPipeline(jobId, queueCapacity, dropPolicy,
+                        new Decoder(formatCtx, codecCtx, packet, frame, decodedFrames),
+                        converter, denoiser, frameConsumer);
+                activePipelines.put(jobId, pipeline);
+                try {
+                    pipeline.run();
+                } finally {
+                    activePipelines.remove(jobId);
+                    logStats(pipeline);
+                }
                 Log.info("Video processing completed successfully");
             } catch (Exception e) {
                 Log.errorf(e, "Error processing video: %s", videoPath);
                 throw e;
             } finally {
-                cleanupResources(packet, frame, swsCtx, codecCtx, formatCtx, formatCtxPtr);
+                decodedFrames.freeAll(freeSlot);
+                cleanupResources(packet, frame, swsCtx, codecCtx, formatCtx, formatCtxPtr, freeSlot);
             }
         }
     }
 
+    /**
+     * Queue depth, throughput and drops of every stage of the pipelines currently running
+     *
+     * @return stage metrics by job id
+     */
+    public Map<String, List<StageStats>> getPipelineStats() {
+        Map<String, List<StageStats>> stats = new HashMap<>();
+        activePipelines.forEach((jobId, pipeline) -> stats.put(jobId, pipeline.getStats()));
+        return stats;
+    }
+
+    // decode -> convert -> filter (hqdn3d + logo) -> encode -> sink
+    private FramePipeline buildPipeline(String jobId, int queueCapacity, DropPolicy dropPolicy,
+                                        Decoder decoder, FrameConverter converter, Hqdn3dSession denoiser,
+                                        BiConsumer<byte[], Integer> frameConsumer) {
+        FramePipeline pipeline = new FramePipeline(jobId);
+        DecodedFramePool decodedFrames = decoder.pool();
+        FrameQueue<DecodedFrame> decoded = pipeline.queue(queueCapacity, dropPolicy,
+                d -> decodedFrames.release(d.frame()));
+        FrameQueue<ConvertedFrame> converted = pipeline.queue(queueCapacity, dropPolicy,
+                c -> framePool.release(c.buffer()));
+        FrameQueue<ConvertedFrame> filtered = pipeline.queue(queueCapacity, dropPolicy,
+                c -> framePool.release(c.buffer()));
+        FrameQueue<EncodedFrame> encoded = pipeline.queue(queueCapacity, dropPolicy, e -> { });
+
+        return pipeline
+                .source("decode", decoded, none -> decoder.next())
+                .stage("convert", decoded, converted, d -> {
+                    try {
+                        sws_scale(converter.swsCtx(), AVFrame.data(d.frame()), AVFrame.linesize(d.frame()),
+                                0, converter.height(), converter.destData(), converter.destLinesize());
+                    } finally {
+                        decodedFrames.release(d.frame());
+                    }
+                    FrameBuffer buffer = framePool.acquire(converter.width(), converter.height());
+                    buffer.copyFrom(converter.bgrBuffer(), converter.width() * BGR_BYTES_PER_PIXEL);
+                    return new ConvertedFrame(buffer, d.index());
+                })
+                .stage("filter", converted, filtered, c -> {
+                    // One hqdn3d graph for the whole job keeps the temporal denoising state
+                    denoiser.filter(c.buffer());
+                    imageProcessor.drawLogo(c.buffer());
+                    return c;
+                })
+                .stage("encode", filtered, encoded, c -> {
+                    try {
+                        return new EncodedFrame(imageProcessor.encodeJpeg(c.buffer()), c.index());
+                    } finally {
+                        framePool.release(c.buffer());
+                    }
+                })
+                .sink("sink", encoded, e -> {
+                    frameConsumer.accept(e.jpeg(), e.index());
+                    if ((e.index() + 1) % 100 == 0) {
+                        Log.debugf("Processed %d frames", e.index() + 1);
+                    }
+                    return null;
+                });
+    }
+
+    private void logStats(FramePipeline pipeline) {
+        List<StageStats> stats = pipeline.getStats();
+        StageStats decode = stats.get(0);
+        StageStats sink = stats.get(stats.size() - 1);
+        long dropped = stats.stream().mapToLong(StageStats::dropped).sum();
+        Log.infof("Total frames processed: %d of %d decoded (%d dropped)",
+                sink.processed(), decode.processed(), dropped);
+        for (StageStats stage : stats) {
+            Log.infof("  %-8s %6d frames  %7.1f fps  %6.2f ms/frame  queue %d/%d  dropped %d",
+                    stage.stage(), stage.processed(), stage.framesPerSecond(), stage.averageMillis(),
+                    stage.queueDepth(), stage.queueCapacity(), stage.dropped());
+        }
+    }
+
     private VideoContext initializeVideoContext(Path videoPath, Arena arena, MemorySegment formatCtxPtr) {
         if (avformat_open_input(formatCtxPtr, arena.allocateFrom(videoPath.toString()), MemorySegment.NULL,
                 MemorySegment.NULL) < 0) {
@@ -122,53 +254,122 @@ public class VideoExtractorService {
                 videoCtx.width(), videoCtx.height());
     }
 
-    private void processVideoFrames(MemorySegment formatCtx, MemorySegment codecCtx,
-                                    MemorySegment frame, MemorySegment packet,
-                                    FrameConverter converter, BiConsumer<byte[], Integer> frameConsumer) {
-        int frameIdx = 0;
-
-        while (av_read_frame(formatCtx, packet) >= 0) {
-            if (AVPacket.stream_index(packet) == VIDEO_STREAM_INDEX) {
-                avcodec_send_packet(codecCtx, packet);
-                
-                while (avcodec_receive_frame(codecCtx, frame) == 0) {
-                    sws_scale(converter.swsCtx(), AVFrame.data(frame), AVFrame.linesize(frame),
-                            0, converter.height(), converter.destData(), converter.destLinesize());
-
-                    byte[] jpg = imageProcessor.overlayLogo(converter.bgrBuffer(),
-                            converter.width(), converter.height());
-                    frameConsumer.accept(jpg, frameIdx++);
-                    
-                    if (frameIdx % 100 == 0) {
-                        Log.debugf("Processed %d frames", frameIdx);
-                    }
-                }
-            }
-            av_packet_unref(packet);
-        }
-        Log.infof("Total frames processed: %d", frameIdx);
-    }
-
     private void cleanupResources(MemorySegment packet, MemorySegment frame, MemorySegment swsCtx,
                                  MemorySegment codecCtx, MemorySegment formatCtx,
-                                 MemorySegment formatCtxPtr) {
+                                 MemorySegment formatCtxPtr, MemorySegment freeSlot) {
+        // The free functions take the address of the pointer
         if (!packet.equals(MemorySegment.NULL)) {
-            av_packet_free(packet);
+            freeSlot.set(C_POINTER, 0, packet);
+            av_packet_free(freeSlot);
         }
         if (!frame.equals(MemorySegment.NULL)) {
-            av_frame_free(frame);
+            freeSlot.set(C_POINTER, 0, frame);
+            av_frame_free(freeSlot);
         }
         if (!swsCtx.equals(MemorySegment.NULL)) {
             sws_freeContext(swsCtx);
         }
         if (!codecCtx.equals(MemorySegment.NULL)) {
-            avcodec_free_context(codecCtx);
+            freeSlot.set(C_POINTER, 0, codecCtx);
+            avcodec_free_context(freeSlot);
         }
         if (!formatCtx.equals(MemorySegment.NULL)) {
             avformat_close_input(formatCtxPtr);
         }
     }
 
+    /**
+     * Source stage: reads packets and returns decoded frames one at a time, then flushes the decoder
+     */
+    private static final class Decoder {
+        private final MemorySegment formatCtx;
+        private final MemorySegment codecCtx;
+        private final MemorySegment packet;
+        private final MemorySegment frame;
+        private final DecodedFramePool pool;
+        private boolean endOfStream;
+        private int frameIdx;
+
+        Decoder(MemorySegment formatCtx, MemorySegment codecCtx, MemorySegment packet,
+                MemorySegment frame, DecodedFramePool pool) {
+            this.formatCtx = formatCtx;
+            this.codecCtx = codecCtx;
+            this.packet = packet;
+            this.frame = frame;
+            this.pool = pool;
+        }
+
+        DecodedFramePool pool() {
+            return pool;
+        }
+
+        /**
+         * @return the next frame, or null at the end of the video
+         */
+        DecodedFrame next() {
+            while (true) {
+                if (avcodec_receive_frame(codecCtx, frame) == 0) {
+                    // Hand the decoded buffers to a pooled frame, the decoder keeps using its own
+                    MemorySegment decoded = pool.acquire();
+                    av_frame_move_ref(decoded, frame);
+                    return new DecodedFrame(decoded, frameIdx++);
+                }
+                if (endOfStream) {
+                    return null;
+                }
+                if (av_read_frame(formatCtx, packet) < 0) {
+                    avcodec_send_packet(codecCtx, MemorySegment.NULL);
+                    endOfStream = true;
+                    continue;
+                }
+                if (AVPacket.stream_index(packet) == VIDEO_STREAM_INDEX) {
+                    avcodec_send_packet(codecCtx, packet);
+                }
+                av_packet_unref(packet);
+            }
+        }
+    }
+
+    /**
+     * AVFrame structs handed from the decode to the convert stage, reused once converted
+     */
+    private static final class DecodedFramePool {
+        private final Queue<MemorySegment> idle = new ConcurrentLinkedQueue<>();
+        private final Queue<MemorySegment> all = new ConcurrentLinkedQueue<>();
+
+        MemorySegment acquire() {
+            MemorySegment frame = idle.poll();
+            if (frame == null) {
+                frame = av_frame_alloc();
+                if (frame.equals(MemorySegment.NULL)) {
+                    throw new OutOfMemoryError("Could not allocate AVFrame");
+                }
+                all.add(frame);
+            }
+            return frame;
+        }
+
+        void release(MemorySegment frame) {
+            av_frame_unref(frame);
+            idle.offer(frame);
+        }
+
+        void freeAll(MemorySegment freeSlot) {
+            for (MemorySegment frame : all) {
+                freeSlot.set(C_POINTER, 0, frame);
+                av_frame_free(freeSlot);
+            }
+            all.clear();
+            idle.clear();
+        }
+    }
+
+    private record DecodedFrame(MemorySegment frame, int index) {}
+
+    private record ConvertedFrame(FrameBuffer buffer, int index) {}
+
+    private record EncodedFrame(byte[] jpeg, int index) {}
+
     private record VideoContext(MemorySegment formatCtx, MemorySegment codecCtx,
                                int width, int height, int pixelFormat) {}
 
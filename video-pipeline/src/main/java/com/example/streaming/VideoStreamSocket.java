@@ -1,5 +1,7 @@
 package com.example.streaming;
 
+import com.example.service.FFmpegFilterService;
+import com.example.service.Hqdn3dSession;
 import com.example.service.ImageProcessorService;
 import io.quarkus.websockets.next.OnBinaryMessage;
 import io.quarkus.websockets.next.OnClose;
@@ -11,6 +13,8 @@ import io.quarkus.logging.Log;
 import jakarta.inject.Inject;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 import javax.imageio.ImageIO;
 
@@ -21,6 +25,8 @@ import javax.imageio.ImageIO;
  * clients to send video frames (as JPEG images) and receive processed frames back.
  * Each incoming frame is processed by the {@link ImageProcessorService} which applies
  * denoising filters and overlays a logo before sending the processed frame back to the client.
+ * Each connection gets its own long-lived {@link Hqdn3dSession}, so the denoising filter graph
+ * is built once per connection and keeps its temporal state from frame to frame.
  * </p>
  * <p>
  * The service supports control messages:
@@ -45,6 +51,17 @@ public class VideoStreamSocket {
     @Inject
     ImageProcessorService imageProcessor;
 
+    /**
+     * Service opening the per-connection hqdn3d denoising sessions.
+     */
+    @Inject
+    FFmpegFilterService filterService;
+
+    /**
+     * Open hqdn3d sessions by connection id, closed when the connection closes.
+     */
+    private final Map<String, Hqdn3dSession> denoisers = new ConcurrentHashMap<>();
+
     /**
      * Atomic flag to track whether video streaming is currently active.
      * Used to prevent processing frames after a client disconnects.
@@ -54,7 +71,8 @@ public class VideoStreamSocket {
     /**
      * Called when a WebSocket client connects to the endpoint.
      * <p>
-     * Initializes the streaming state and logs the connection.
+     * Initializes the streaming state, opens the connection's denoising session
+     * and logs the connection.
      * </p>
      *
      * @param connection the WebSocket connection that was established
@@ -62,6 +80,7 @@ public class VideoStreamSocket {
     @OnOpen
     public void onOpen(WebSocketConnection connection) {
         Log.info("Client connected! Ready for bidirectional streaming...");
+        denoisers.put(connection.id(), filterService.openSession());
         streaming.set(true);
     }
 
@@ -72,8 +91,8 @@ public class VideoStreamSocket {
      * <ol>
      *   <li>Decodes the incoming JPEG bytes into a {@link BufferedImage}</li>
      *   <li>Checks if streaming is still active (client may have disconnected)</li>
-     *   <li>Processes the frame using {@link ImageProcessorService#overlayLogo(BufferedImage)}
-     *       which applies denoising and overlays a logo</li>
+     *   <li>Processes the frame using {@link ImageProcessorService#overlayLogo(BufferedImage, Hqdn3dSession)}
+     *       which applies denoising through the connection's session and overlays a logo</li>
      *   <li>Sends the processed JPEG frame back to the client</li>
      * </ol>
      * </p>
@@ -108,7 +127,7 @@ public class VideoStreamSocket {
             }
 
             // Process the frame (overlay logo)
-            byte[] processedJpeg = imageProcessor.overlayLogo(inputImage);
+            byte[] processedJpeg = imageProcessor.overlayLogo(inputImage, denoisers.get(connection.id()));
 
             // Check again if still streaming after processing (processing takes time)
             if (!streaming.get()) {
@@ -172,6 +191,7 @@ public class VideoStreamSocket {
      * <p>
      * Cleans up the streaming state by setting the streaming flag to false.
      * This prevents any pending frame processing from continuing after disconnection.
+     * The connection's denoising session is closed once a frame in progress is done.
      * </p>
      *
      * @param connection the WebSocket connection that was closed
@@ -179,6 +199,10 @@ public class VideoStreamSocket {
     @OnClose
     public void onClose(WebSocketConnection connection) {
         streaming.set(false);
+        Hqdn3dSession denoiser = denoisers.remove(connection.id());
+        if (denoiser != null) {
+            denoiser.close();
+        }
         Log.info("Client disconnected");
     }
 }
\ No newline at end of file
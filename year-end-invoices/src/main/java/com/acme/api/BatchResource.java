@@ -32,12 +32,14 @@ public class BatchResource {
     public Response run(@QueryParam("year") int year,
             @QueryParam("bundesland") @DefaultValue("") String bundesland,
             @QueryParam("chunk") @DefaultValue("200") int chunk,
-            @QueryParam("dryRun") @DefaultValue("false") boolean dryRun) {
+            @QueryParam("dryRun") @DefaultValue("false") boolean dryRun,
+            @QueryParam("partitions") @DefaultValue("4") int partitions) {
         Properties p = new Properties();
         p.setProperty("year", String.valueOf(year));
         p.setProperty("bundesland", bundesland);
         p.setProperty("chunkSize", String.valueOf(chunk));
         p.setProperty("dryRun", String.valueOf(dryRun));
+        p.setProperty("partitions", String.valueOf(partitions));
 
         long execId = jobOperator.start("year-end-invoice", p);
         return Response.accepted().entity(new StartResponse(execId)).build();
@@ -3,6 +3,7 @@ package com.acme.batch;
 import java.io.Serializable;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.acme.domain.Invoice;
@@ -39,16 +40,19 @@ public class InvoiceWriter extends AbstractItemWriter {
     @Transactional
     public void writeItems(List<Object> items) throws Exception {
         if (!dryRun) {
+            List<Invoice> invoices = new ArrayList<>(items.size());
             for (Object o : items) {
                 Invoice inv = (Invoice) o;
                 em.persist(inv);
-                em.flush();
-
-                var pdf = pdfService.render(inv);
-                inv.pdfPath = pdf.toString();
+                invoices.add(inv);
+            }
+            // Assigns the ids the PDF file names use
+            em.flush();
 
-                em.merge(inv);
-                em.flush();
+            // Render the chunk in parallel, the invoices stay managed and get their path on commit
+            List<Path> pdfs = pdfService.renderAll(invoices, outDir);
+            for (int i = 0; i < invoices.size(); i++) {
+                invoices.get(i).pdfPath = pdfs.get(i).toString();
             }
         }
     }
@@ -7,6 +7,7 @@ import java.util.List;
 
 import com.acme.domain.Policy;
 
+import jakarta.batch.api.BatchProperty;
 import jakarta.batch.api.chunk.AbstractItemReader;
 import jakarta.batch.runtime.context.JobContext;
 import jakarta.batch.runtime.context.StepContext;
@@ -14,7 +15,17 @@ import jakarta.inject.Inject;
 import jakarta.inject.Named;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
 
+/**
+ * Reads the policies to invoice in id order, one page at a time.
+ * <p>
+ * Pages are fetched with keyset pagination ({@code id > last id}), so every page
+ * costs the same however far the job is. In a partitioned step the reader only
+ * reads the id range {@code (minId, maxId]} of its partition. The last id read is
+ * the checkpoint, so a restarted job continues after it.
+ * </p>
+ */
 @Named("com.acme.batch.PolicyPagingReader")
 public class PolicyPagingReader extends AbstractItemReader {
 
@@ -25,45 +36,82 @@ public class PolicyPagingReader extends AbstractItemReader {
     @PersistenceContext
     EntityManager em;
 
+    @Inject
+    @BatchProperty
+    String minId;
+    @Inject
+    @BatchProperty
+    String maxId;
+
     private Iterator<Policy> buffer;
-    private int page = 0;
     private int pageSize = 200;
+    private long lastId;
+    private long upperId;
 
     @Override
     public void open(Serializable checkpoint) {
         Object cs = jobCtx.getProperties().get("chunkSize");
         if (cs != null)
             pageSize = Integer.parseInt(cs.toString());
+
+        lastId = minId != null && !minId.isBlank() ? Long.parseLong(minId) : Long.MIN_VALUE;
+        upperId = maxId != null && !maxId.isBlank() ? Long.parseLong(maxId) : Long.MAX_VALUE;
+        if (checkpoint != null)
+            lastId = (Long) checkpoint;
     }
 
     @Override
     public Object readItem() {
         if (buffer == null || !buffer.hasNext()) {
-            List<Policy> next = fetchPage(page++, pageSize);
+            List<Policy> next = fetchPage(pageSize);
             if (next.isEmpty())
                 return null;
             buffer = next.iterator();
         }
-        return buffer.next();
+        Policy policy = buffer.next();
+        lastId = policy.id;
+        return policy;
     }
 
-    private List<Policy> fetchPage(int page, int size) {
-        int year = Integer.parseInt(jobCtx.getProperties().getProperty("year"));
+    @Override
+    public Serializable checkpointInfo() {
+        return lastId;
+    }
+
+    private List<Policy> fetchPage(int size) {
         String bundesland = jobCtx.getProperties().getProperty("bundesland");
-        LocalDate day = LocalDate.of(year, 12, 31);
 
-        String base = "SELECT p FROM Policy p WHERE p.validFrom <= :day AND p.validTo >= :day AND p.cancelled=false";
-        if (bundesland != null && !bundesland.isBlank())
-            base += " AND p.bundesland = :bl";
+        // Customer and vehicle are fetched with the policy, the PDFs are rendered from them
+        String query = "SELECT p FROM Policy p JOIN FETCH p.customer JOIN FETCH p.vehicle"
+                + activePolicyFilter(bundesland)
+                + " AND p.id > :lastId AND p.id <= :upperId ORDER BY p.id";
 
-        var q = em.createQuery(base, Policy.class)
-                .setParameter("day", day)
-                .setFirstResult(page * size)
+        var q = em.createQuery(query, Policy.class)
+                .setParameter("lastId", lastId)
+                .setParameter("upperId", upperId)
                 .setMaxResults(size);
+        setFilterParameters(q, jobCtx);
 
+        return q.getResultList();
+    }
+
+    /**
+     * WHERE clause selecting the policies active at the end of the job's year,
+     * for the alias {@code p}
+     */
+    static String activePolicyFilter(String bundesland) {
+        String filter = " WHERE p.validFrom <= :day AND p.validTo >= :day AND p.cancelled=false";
+        if (bundesland != null && !bundesland.isBlank())
+            filter += " AND p.bundesland = :bl";
+        return filter;
+    }
+
+    static void setFilterParameters(TypedQuery<?> q, JobContext jobCtx) {
+        int year = Integer.parseInt(jobCtx.getProperties().getProperty("year"));
+        String bundesland = jobCtx.getProperties().getProperty("bundesland");
+
+        q.setParameter("day", LocalDate.of(year, 12, 31));
         if (bundesland != null && !bundesland.isBlank())
             q.setParameter("bl", bundesland);
-        
-        return q.getResultList();
     }
 }
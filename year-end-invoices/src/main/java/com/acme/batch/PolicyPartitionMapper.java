@@ -0,0 +1,71 @@
+package com.acme.batch;
+
+import java.util.Properties;
+
+import jakarta.batch.api.partition.PartitionMapper;
+import jakarta.batch.api.partition.PartitionPlan;
+import jakarta.batch.api.partition.PartitionPlanImpl;
+import jakarta.batch.runtime.context.JobContext;
+import jakarta.inject.Inject;
+import jakarta.inject.Named;
+import jakarta.persistence.EntityManager;
+import jakarta.transaction.Transactional;
+
+/**
+ * Splits the policies to invoice into {@code partitions} id ranges that are
+ * processed in parallel. Policy ids come from a sequence, so ranges of equal
+ * width hold about the same number of policies.
+ */
+@Named("com.acme.batch.PolicyPartitionMapper")
+public class PolicyPartitionMapper implements PartitionMapper {
+
+    @Inject
+    JobContext jobCtx;
+    @Inject
+    EntityManager em;
+
+    @Override
+    @Transactional
+    public PartitionPlan mapPartitions() {
+        int partitions = Math.max(1, Integer.parseInt(jobCtx.getProperties().getProperty("partitions", "1")));
+        String bundesland = jobCtx.getProperties().getProperty("bundesland");
+
+        var q = em.createQuery("SELECT min(p.id), max(p.id) FROM Policy p"
+                + PolicyPagingReader.activePolicyFilter(bundesland), Object[].class);
+        PolicyPagingReader.setFilterParameters(q, jobCtx);
+        Object[] range = q.getSingleResult();
+
+        Properties[] properties;
+        if (range[0] == null) {
+            // Nothing to invoice, one empty partition
+            properties = new Properties[] { idRange(0, 0) };
+        } else {
+            long min = (Long) range[0];
+            long max = (Long) range[1];
+            partitions = (int) Math.min(partitions, max - min + 1);
+            long width = (max - min + partitions) / partitions;
+
+            properties = new Properties[partitions];
+            // Ranges are (minId, maxId]
+            long lower = min - 1;
+            for (int i = 0; i < partitions; i++) {
+                long upper = i == partitions - 1 ? max : lower + width;
+                properties[i] = idRange(lower, upper);
+                lower = upper;
+            }
+        }
+
+        PartitionPlanImpl plan = new PartitionPlanImpl();
+        plan.setPartitions(properties.length);
+        plan.setThreads(properties.length);
+        plan.setPartitionProperties(properties);
+        return plan;
+    }
+
+    private static Properties idRange(long minId, long maxId) {
+        Properties p = new Properties();
+        p.setProperty("minId", String.valueOf(minId));
+        p.setProperty("maxId", String.valueOf(maxId));
+        return p;
+    }
+}
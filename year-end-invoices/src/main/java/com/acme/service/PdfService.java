@@ -1,12 +1,22 @@
 package com.acme.service;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.time.format.DateTimeFormatter;
-
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.fontbox.ttf.TTFParser;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.pdfbox.io.RandomAccessReadBuffer;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
 import org.apache.pdfbox.pdmodel.PDPageContentStream;
@@ -14,25 +24,102 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType0Font;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import com.acme.domain.Invoice;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import jakarta.enterprise.context.ApplicationScoped;
 
+/**
+ * Renders invoice PDFs.
+ * <p>
+ * The font files are read once. Every rendering thread parses them once and
+ * reuses the parsed fonts for all its documents; only the embedded subset is
+ * built per document. {@link #renderAll(List, Path)} renders on a pool of
+ * {@code billing.pdf.render-threads} threads shared by all callers.
+ * </p>
+ */
 @ApplicationScoped
 public class PdfService {
 
+    private static final DateTimeFormatter DUE_DATE_FORMAT = DateTimeFormatter.ofPattern("dd.MM.yyyy");
+
+    @ConfigProperty(name = "billing.pdf.output-dir", defaultValue = "target/invoices")
+    String outputDir;
+
+    @ConfigProperty(name = "billing.pdf.render-threads", defaultValue = "0")
+    int renderThreads;
+
+    private byte[] titleFontBytes;
+    private byte[] regularFontBytes;
+    // TrueTypeFont is not thread-safe, so each thread parses its own
+    private final ThreadLocal<Fonts> fonts = ThreadLocal.withInitial(this::parseFonts);
+    private ExecutorService renderPool;
+
+    private record Fonts(TrueTypeFont title, TrueTypeFont regular) {
+    }
+
+    @PostConstruct
+    void init() throws IOException {
+        titleFontBytes = readResource("IBMPlexSans-Bold.ttf");
+        regularFontBytes = readResource("IBMPlexSans-Regular.ttf");
+        int threads = renderThreads > 0 ? renderThreads : Runtime.getRuntime().availableProcessors();
+        renderPool = Executors.newFixedThreadPool(threads,
+                Thread.ofPlatform().name("pdf-render-", 0).daemon().factory());
+    }
+
+    @PreDestroy
+    void shutdown() {
+        renderPool.shutdown();
+    }
+
     public Path render(Invoice invoice) throws IOException {
+        return render(invoice, Path.of(outputDir));
+    }
+
+    /**
+     * Render the invoices in parallel. The invoices' policy, customer and vehicle
+     * must be loaded, the rendering threads only read them.
+     *
+     * @return the PDF files, in the order of the invoices
+     */
+    public List<Path> renderAll(List<Invoice> invoices, Path outDir) throws IOException {
+        List<Future<Path>> results = new ArrayList<>(invoices.size());
+        for (Invoice invoice : invoices) {
+            results.add(renderPool.submit(() -> render(invoice, outDir)));
+        }
+        List<Path> paths = new ArrayList<>(invoices.size());
+        try {
+            for (Future<Path> result : results) {
+                paths.add(result.get());
+            }
+        } catch (InterruptedException e) {
+            results.forEach(result -> result.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while rendering invoices", e);
+        } catch (ExecutionException e) {
+            results.forEach(result -> result.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Rendering invoice failed", e.getCause());
+        }
+        return paths;
+    }
+
+    public Path render(Invoice invoice, Path outDir) throws IOException {
         final PDDocument doc = new PDDocument();
         PDPage page = new PDPage(PDRectangle.A4);
         doc.addPage(page);
 
         PDPageContentStream stream = new PDPageContentStream(doc, page);
 
-        // Load fonts
-        PDFont titleFont = PDType0Font.load(doc,
-                getClass().getClassLoader().getResourceAsStream("IBMPlexSans-Bold.ttf"));
-        PDFont regularFont = PDType0Font.load(doc,
-                getClass().getClassLoader().getResourceAsStream("IBMPlexSans-Regular.ttf"));
+        // Fonts parsed once per thread, subset-embedded per document
+        Fonts parsed = fonts.get();
+        PDFont titleFont = PDType0Font.load(doc, parsed.title(), true);
+        PDFont regularFont = PDType0Font.load(doc, parsed.regular(), true);
 
         float yPosition = 750;
         float leftMargin = 50;
@@ -63,7 +150,7 @@ public class PdfService {
         yPosition -= 20;
         stream.beginText();
         stream.newLineAtOffset(leftMargin, yPosition);
-        stream.showText("Due Date: " + invoice.dueDate.format(DateTimeFormatter.ofPattern("dd.MM.yyyy")));
+        stream.showText("Due Date: " + invoice.dueDate.format(DUE_DATE_FORMAT));
         stream.endText();
 
         yPosition -= 50;
@@ -252,15 +339,32 @@ public class PdfService {
 
         // Save to file
         String fileName = "invoice_" + invoice.id + "_" + invoice.year + ".pdf";
-        Path filePath = Path.of("target/invoices", fileName);
+        Path filePath = outDir.resolve(fileName);
         Files.createDirectories(filePath.getParent());
 
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        doc.save(baos);
-        Files.write(filePath, baos.toByteArray());
+        doc.save(filePath.toFile());
         doc.close();
 
         return filePath;
     }
 
+    private byte[] readResource(String name) throws IOException {
+        try (InputStream in = getClass().getClassLoader().getResourceAsStream(name)) {
+            if (in == null) {
+                throw new IOException("Font not found: " + name);
+            }
+            return in.readAllBytes();
+        }
+    }
+
+    private Fonts parseFonts() {
+        try {
+            return new Fonts(
+                    new TTFParser().parse(new RandomAccessReadBuffer(titleFontBytes)),
+                    new TTFParser().parse(new RandomAccessReadBuffer(regularFontBytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
 }